@@ -33,6 +33,7 @@ dependencies {
     implementation(libs.picocli)
     implementation(libs.jline)
     implementation(libs.picoJline)
+    implementation(libs.hdrHistogram)
     testImplementation(libs.bundles.testing)
     implementation(project(":rfq:cluster-protocol"))
 }
@@ -70,6 +71,14 @@ testing {
 
 tasks {
 
+    task("runLoadGenerator", JavaExec::class) {
+        group = "run"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("com.aeroncookbook.rfq.admin.loadgen.LoadGenerator")
+        jvmArgs("--add-opens=java.base/sun.nio.ch=ALL-UNNAMED", "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED")
+        args = (project.findProperty("loadgenArgs") as String? ?: "").split(" ").filter { it.isNotEmpty() }
+    }
+
     task ("uberJar", Jar::class) {
         group = "uber"
         manifest {
@@ -37,7 +37,7 @@ import java.io.PrintWriter;
         PicocliCommands.ClearScreen.class, CommandLine.HelpCommand.class,
         ConnectCluster.class, DisconnectCluster.class, InstrumentAdd.class, InstrumentDisable.class,
         InstrumentEnable.class, InstrumentList.class, RfqCreate.class, RfqCancel.class, RfqQuote.class,
-        RfqCounter.class, RfqAccept.class, RfqReject.class})
+        RfqCounter.class, RfqAccept.class, RfqReject.class, LatencyReport.class})
 public class CliCommands implements Runnable
 {
     PrintWriter out;
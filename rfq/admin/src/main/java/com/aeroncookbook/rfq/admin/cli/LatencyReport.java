@@ -0,0 +1,50 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.cli;
+
+import com.aeroncookbook.rfq.cluster.admin.protocol.BooleanType;
+import com.aeroncookbook.rfq.cluster.admin.protocol.LatencyReportEncoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.MessageHeaderEncoder;
+import org.agrona.ExpandableArrayBuffer;
+import picocli.CommandLine;
+
+/**
+ * Logs the round trip latency of each command type sent to the cluster
+ */
+@CommandLine.Command(name = "latency-report", mixinStandardHelpOptions = false,
+    description = "Logs round trip latency percentiles and timeouts per command type")
+public class LatencyReport implements Runnable
+{
+    @CommandLine.ParentCommand
+    CliCommands parent;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "reset", description = "True to clear the recorded latencies once logged. Default false")
+    private String reset = "false";
+
+    private final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer(1024);
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final LatencyReportEncoder latencyReportEncoder = new LatencyReportEncoder();
+
+    public void run()
+    {
+        latencyReportEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        latencyReportEncoder.reset(Boolean.parseBoolean(reset) ? BooleanType.TRUE : BooleanType.FALSE);
+        parent.offerRingBufferMessage(buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH +
+            latencyReportEncoder.encodedLength());
+    }
+}
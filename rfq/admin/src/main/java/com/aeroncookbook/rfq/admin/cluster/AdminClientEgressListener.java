@@ -141,7 +141,7 @@ public class AdminClientEgressListener implements EgressListener
     private void rejectRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         rejectRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = rejectRfqConfirmEventDecoder.correlation();
+        final long correlationId = rejectRfqConfirmEventDecoder.requestId();
         final int rfqId = rejectRfqConfirmEventDecoder.rfqId();
         final RejectRfqResult result = rejectRfqConfirmEventDecoder.result();
         if (result == RejectRfqResult.SUCCESS)
@@ -152,7 +152,7 @@ public class AdminClientEgressListener implements EgressListener
         {
             log("RFQ reject failed: id=" + rfqId, AttributedStyle.RED);
         }
-        pendingMessageManager.markMessageAsReceived(correlation);
+        pendingMessageManager.markMessageAsReceived(correlationId);
     }
 
     private void rfqAcceptedEvent(final DirectBuffer buffer, final int offset)
@@ -165,7 +165,7 @@ public class AdminClientEgressListener implements EgressListener
     private void acceptRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         acceptRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = acceptRfqConfirmEventDecoder.correlation();
+        final long correlationId = acceptRfqConfirmEventDecoder.requestId();
         final int rfqId = acceptRfqConfirmEventDecoder.rfqId();
         final AcceptRfqResult result = acceptRfqConfirmEventDecoder.result();
         if (result == AcceptRfqResult.SUCCESS)
@@ -176,7 +176,7 @@ public class AdminClientEgressListener implements EgressListener
         {
             log("RFQ accept failed: id=" + rfqId + " reason=" + result, AttributedStyle.RED);
         }
-        pendingMessageManager.markMessageAsReceived(correlation);
+        pendingMessageManager.markMessageAsReceived(correlationId);
     }
 
     private void rfqCounteredEvent(final DirectBuffer buffer, final int offset)
@@ -190,7 +190,7 @@ public class AdminClientEgressListener implements EgressListener
     private void counterRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         counterRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = counterRfqConfirmEventDecoder.correlation();
+        final long correlationId = counterRfqConfirmEventDecoder.requestId();
         final int rfqId = counterRfqConfirmEventDecoder.rfqId();
         final CounterRfqResult result = counterRfqConfirmEventDecoder.result();
         if (result == CounterRfqResult.SUCCESS)
@@ -201,23 +201,21 @@ public class AdminClientEgressListener implements EgressListener
         {
             log("RFQ countered: id=" + rfqId + " failed: " + result, AttributedStyle.RED);
         }
-        pendingMessageManager.markMessageAsReceived(correlation);
+        pendingMessageManager.markMessageAsReceived(correlationId);
     }
 
     private void rfqQuotedEvent(final DirectBuffer buffer, final int offset)
     {
         rfqQuotedEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = rfqQuotedEventDecoder.correlation();
         final int rfqId = rfqQuotedEventDecoder.rfqId();
         final long price = rfqQuotedEventDecoder.price();
         log("RFQ Quoted: id=" + rfqId + " price=" + price, AttributedStyle.GREEN);
-        pendingMessageManager.markMessageAsReceived(correlation);
     }
 
     private void quotedRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         quoteRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = quoteRfqConfirmEventDecoder.correlation();
+        final long correlationId = quoteRfqConfirmEventDecoder.requestId();
         final int rfqId = quoteRfqConfirmEventDecoder.rfqId();
         final QuoteRfqResult result = quoteRfqConfirmEventDecoder.result();
         if (result != QuoteRfqResult.SUCCESS)
@@ -228,7 +226,7 @@ public class AdminClientEgressListener implements EgressListener
         {
             log("Quote RFQ succeeded: id=" + rfqId, AttributedStyle.GREEN);
         }
-        pendingMessageManager.markMessageAsReceived(correlation);
+        pendingMessageManager.markMessageAsReceived(correlationId);
     }
 
     private void rfqCanceledEvent(final DirectBuffer buffer, final int offset)
@@ -241,7 +239,7 @@ public class AdminClientEgressListener implements EgressListener
     private void cancelRfqResult(final DirectBuffer buffer, final int offset)
     {
         cancelRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = cancelRfqConfirmEventDecoder.correlation();
+        final long correlationId = cancelRfqConfirmEventDecoder.requestId();
         final int rfqId = cancelRfqConfirmEventDecoder.rfqId();
         final CancelRfqResult result = cancelRfqConfirmEventDecoder.result();
         if (result != CancelRfqResult.SUCCESS)
@@ -252,7 +250,7 @@ public class AdminClientEgressListener implements EgressListener
         {
             log("Cancel RFQ succeeded: id=" + rfqId, AttributedStyle.GREEN);
         }
-        pendingMessageManager.markMessageAsReceived(correlation);
+        pendingMessageManager.markMessageAsReceived(correlationId);
     }
 
     private void rfqExpiredEvent(final DirectBuffer buffer, final int offset)
@@ -278,7 +276,7 @@ public class AdminClientEgressListener implements EgressListener
     private void createRfqConfirmEvent(final DirectBuffer buffer, final int offset)
     {
         createRfqConfirmEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = createRfqConfirmEventDecoder.correlation();
+        final long correlationId = createRfqConfirmEventDecoder.requestId();
         final int rfqId = createRfqConfirmEventDecoder.rfqId();
         final CreateRfqResult result = createRfqConfirmEventDecoder.result();
 
@@ -291,41 +289,41 @@ public class AdminClientEgressListener implements EgressListener
             log("Created RFQ with ID: " + rfqId, AttributedStyle.GREEN);
         }
 
-        pendingMessageManager.markMessageAsReceived(correlation);
+        pendingMessageManager.markMessageAsReceived(correlationId);
     }
 
     private void listInstruments(final DirectBuffer buffer, final int offset)
     {
         listInstrumentsResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = listInstrumentsResultDecoder.correlation();
+        final long correlationId = listInstrumentsResultDecoder.requestId();
         final RequestResult result = listInstrumentsResultDecoder.result();
         log("List instruments result: " + result.name(), AttributedStyle.GREEN);
-        pendingMessageManager.markMessageAsReceived(correlation);
+        pendingMessageManager.markMessageAsReceived(correlationId);
     }
 
     private void setInstrumentEnabledFlag(final DirectBuffer buffer, final int offset)
     {
         setInstrumentEnabledFlagResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = setInstrumentEnabledFlagResultDecoder.correlation();
+        final long correlationId = setInstrumentEnabledFlagResultDecoder.requestId();
         final RequestResult result = setInstrumentEnabledFlagResultDecoder.result();
         log("Set instrument enabled flag result: " + result.name(), AttributedStyle.GREEN);
-        pendingMessageManager.markMessageAsReceived(correlation);
+        pendingMessageManager.markMessageAsReceived(correlationId);
     }
 
     private void addInstrumentResult(final DirectBuffer buffer, final int offset)
     {
         addInstrumentResultDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        final String correlation = addInstrumentResultDecoder.correlation();
+        final long correlationId = addInstrumentResultDecoder.requestId();
         final RequestResult result = addInstrumentResultDecoder.result();
         log("Add instrument result: " + result.name(), AttributedStyle.GREEN);
-        pendingMessageManager.markMessageAsReceived(correlation);
+        pendingMessageManager.markMessageAsReceived(correlationId);
     }
 
 
     private void displayInstruments(final DirectBuffer buffer, final int offset)
     {
         instrumentsListDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
-        pendingMessageManager.markMessageAsReceived(instrumentsListDecoder.correlation());
+        pendingMessageManager.markMessageAsReceived(instrumentsListDecoder.requestId());
         final InstrumentsListDecoder.ValuesDecoder values = instrumentsListDecoder.values();
         final int count = values.count();
         if (0 == count)
@@ -20,6 +20,7 @@ import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqCommandEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CommandBatchEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CounterRfqCommandEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.ListInstrumentsCommandEncoder;
@@ -34,6 +35,7 @@ import com.aeroncookbook.rfq.cluster.admin.protocol.ConnectClusterDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.CounterRfqCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.CreateRfqCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.DisconnectClusterDecoder;
+import com.aeroncookbook.rfq.cluster.admin.protocol.LatencyReportDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.ListInstrumentsCommandDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.MessageHeaderDecoder;
 import com.aeroncookbook.rfq.cluster.admin.protocol.QuoteRfqCommandDecoder;
@@ -52,13 +54,13 @@ import org.agrona.concurrent.Agent;
 import org.agrona.concurrent.IdleStrategy;
 import org.agrona.concurrent.MessageHandler;
 import org.agrona.concurrent.SystemEpochClock;
+import org.agrona.concurrent.SystemNanoClock;
 import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
 import org.jline.reader.LineReader;
 import org.jline.utils.AttributedStyle;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -69,7 +71,11 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
     private static final long HEARTBEAT_INTERVAL = 250;
     private static final long RETRY_COUNT = 10;
     private static final String INGRESS_CHANNEL = "aeron:udp?term-length=64k";
+    //well within the 8k maximum message length of the 64k ingress term, including the batch and group headers
+    private static final int MAX_BATCH_BYTES = 4096;
     private final MutableDirectBuffer sendBuffer = new ExpandableDirectByteBuffer(1024);
+    private final MutableDirectBuffer queuedCommands = new ExpandableDirectByteBuffer(MAX_BATCH_BYTES);
+    private final MutableDirectBuffer batchBuffer = new ExpandableDirectByteBuffer(MAX_BATCH_BYTES + 64);
     private final OneToOneRingBuffer adminClusterComms;
     private final IdleStrategy idleStrategy;
     private final AtomicBoolean runningFlag;
@@ -84,6 +90,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
     private final CounterRfqCommandDecoder counterRfqCommandDecoder = new CounterRfqCommandDecoder();
     private final AcceptRfqCommandDecoder acceptRfqCommandDecoder = new AcceptRfqCommandDecoder();
     private final RejectRfqCommandDecoder rejectRfqCommandDecoder = new RejectRfqCommandDecoder();
+    private final LatencyReportDecoder latencyReportDecoder = new LatencyReportDecoder();
     private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
     private final AddInstrumentEncoder addInstrumentEncoder = new AddInstrumentEncoder();
     private final ListInstrumentsCommandEncoder listInstrumentsCommandEncoder = new ListInstrumentsCommandEncoder();
@@ -94,7 +101,11 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
     private final CounterRfqCommandEncoder counterRfqCommandEncoder = new CounterRfqCommandEncoder();
     private final AcceptRfqCommandEncoder acceptRfqCommandEncoder = new AcceptRfqCommandEncoder();
     private final RejectRfqCommandEncoder rejectRfqCommandEncoder = new RejectRfqCommandEncoder();
+    private final CommandBatchEncoder commandBatchEncoder = new CommandBatchEncoder();
+    private int queuedCommandCount = 0;
+    private int queuedCommandBytes = 0;
     private long lastHeartbeatTime = Long.MIN_VALUE;
+    private long correlationIdSequence = 0;
     private AdminClientEgressListener adminClientEgressListener;
     private AeronCluster aeronCluster;
     private ConnectionState connectionState = ConnectionState.NOT_CONNECTED;
@@ -116,7 +127,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         this.adminClusterComms = adminClusterChannel;
         this.idleStrategy = idleStrategy;
         this.runningFlag = runningFlag;
-        this.pendingMessageManager = new PendingMessageManager(SystemEpochClock.INSTANCE);
+        this.pendingMessageManager = new PendingMessageManager(SystemNanoClock.INSTANCE);
     }
 
     @Override
@@ -133,8 +144,9 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
             }
         }
 
-        //poll inbound to this agent messages (from the REPL)
+        //poll inbound to this agent messages (from the REPL), sending the cluster commands they produce as one batch
         adminClusterComms.read(this);
+        flushClusterCommands();
 
         //poll outbound messages from the cluster
         if (null != aeronCluster && !aeronCluster.isClosed())
@@ -167,12 +179,25 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
             case CounterRfqCommandDecoder.TEMPLATE_ID -> processCounterRfqCommand(messageHeaderDecoder, buffer, offset);
             case AcceptRfqCommandDecoder.TEMPLATE_ID -> processAcceptRfqCommand(messageHeaderDecoder, buffer, offset);
             case RejectRfqCommandDecoder.TEMPLATE_ID -> processRejectRfqCommand(messageHeaderDecoder, buffer, offset);
-            case ConnectClusterDecoder.TEMPLATE_ID -> processConnectCluster(buffer, offset);
-            case DisconnectClusterDecoder.TEMPLATE_ID -> processDisconnectCluster();
+            case ConnectClusterDecoder.TEMPLATE_ID ->
+            {
+                flushClusterCommands();
+                processConnectCluster(buffer, offset);
+            }
+            case DisconnectClusterDecoder.TEMPLATE_ID ->
+            {
+                flushClusterCommands();
+                processDisconnectCluster();
+            }
             case ListInstrumentsCommandDecoder.TEMPLATE_ID -> processInstrumentListCommand();
             case AddInstrumentDecoder.TEMPLATE_ID -> processAddInstrument(messageHeaderDecoder, buffer, offset);
             case SetInstrumentEnabledFlagDecoder.TEMPLATE_ID ->
                 processSetInstrumentEnabled(messageHeaderDecoder, buffer, offset);
+            case LatencyReportDecoder.TEMPLATE_ID ->
+            {
+                latencyReportDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                pendingMessageManager.logLatencyReport(mapBoolean(latencyReportDecoder.reset()) == BooleanType.TRUE);
+            }
             default -> log("Unknown message type: " + messageHeaderDecoder.templateId(), AttributedStyle.RED);
         }
     }
@@ -182,17 +207,17 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = ++correlationIdSequence;
         rejectRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = rejectRfqCommandDecoder.rfqId();
         final int userId = rejectRfqCommandDecoder.userId();
 
         rejectRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
-        rejectRfqCommandEncoder.correlation(correlationId);
+        rejectRfqCommandEncoder.requestId(correlationId);
         rejectRfqCommandEncoder.rfqId(rfqId);
         rejectRfqCommandEncoder.responderUserId(userId);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        queueClusterCommand(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             rejectRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "reject-rfq");
@@ -203,17 +228,17 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = ++correlationIdSequence;
         acceptRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = acceptRfqCommandDecoder.rfqId();
         final int userId = acceptRfqCommandDecoder.userId();
 
         acceptRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
-        acceptRfqCommandEncoder.correlation(correlationId);
+        acceptRfqCommandEncoder.requestId(correlationId);
         acceptRfqCommandEncoder.rfqId(rfqId);
         acceptRfqCommandEncoder.acceptUserId(userId);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        queueClusterCommand(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             acceptRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "accept-rfq");
@@ -224,19 +249,19 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = ++correlationIdSequence;
         counterRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = counterRfqCommandDecoder.rfqId();
         final int responderId = counterRfqCommandDecoder.userId();
         final long price = counterRfqCommandDecoder.price();
 
         counterRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
-        counterRfqCommandEncoder.correlation(correlationId);
+        counterRfqCommandEncoder.requestId(correlationId);
         counterRfqCommandEncoder.rfqId(rfqId);
         counterRfqCommandEncoder.counterUserId(responderId);
         counterRfqCommandEncoder.price(price);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        queueClusterCommand(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             counterRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "counter-rfq");
@@ -248,19 +273,19 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = ++correlationIdSequence;
         quoteRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = quoteRfqCommandDecoder.rfqId();
         final int responderId = quoteRfqCommandDecoder.userId();
         final long price = quoteRfqCommandDecoder.price();
 
         quoteRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
-        quoteRfqCommandEncoder.correlation(correlationId);
+        quoteRfqCommandEncoder.requestId(correlationId);
         quoteRfqCommandEncoder.rfqId(rfqId);
         quoteRfqCommandEncoder.responderUserId(responderId);
         quoteRfqCommandEncoder.price(price);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        queueClusterCommand(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             quoteRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "quote-rfq");
@@ -271,18 +296,18 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = ++correlationIdSequence;
         cancelRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final int rfqId = cancelRfqCommandDecoder.rfqId();
         final int userId = cancelRfqCommandDecoder.userId();
 
         cancelRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
-        cancelRfqCommandEncoder.correlation(correlationId);
+        cancelRfqCommandEncoder.requestId(correlationId);
         cancelRfqCommandEncoder.rfqId(rfqId);
         cancelRfqCommandEncoder.cancelUserId(userId);
 
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        queueClusterCommand(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             cancelRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "cancel-rfq");
@@ -294,7 +319,7 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = ++correlationIdSequence;
         createRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         final long expireTimeMs = createRfqCommandDecoder.expireTimeMs();
         final int quantity = createRfqCommandDecoder.quantity();
@@ -303,14 +328,14 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final int userId = createRfqCommandDecoder.requesterUserId();
 
         createRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
-        createRfqCommandEncoder.correlation(correlationId);
+        createRfqCommandEncoder.requestId(correlationId);
         createRfqCommandEncoder.expireTimeMs(expireTimeMs);
         createRfqCommandEncoder.quantity(quantity);
         createRfqCommandEncoder.requesterSide(mapSide(side));
         createRfqCommandEncoder.cusip(cusip);
         createRfqCommandEncoder.requesterUserId(userId);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        queueClusterCommand(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             createRfqCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "create-rfq");
@@ -337,12 +362,12 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
 
     private void processInstrumentListCommand()
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = ++correlationIdSequence;
 
         listInstrumentsCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
-        listInstrumentsCommandEncoder.correlation(correlationId);
+        listInstrumentsCommandEncoder.requestId(correlationId);
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        queueClusterCommand(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             listInstrumentsCommandEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "instrument-list");
@@ -385,16 +410,16 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = ++correlationIdSequence;
 
         addInstrumentDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         addInstrumentEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
-        addInstrumentEncoder.correlation(correlationId);
+        addInstrumentEncoder.requestId(correlationId);
         addInstrumentEncoder.cusip(addInstrumentDecoder.cusip());
         addInstrumentEncoder.enabled(mapBoolean(addInstrumentDecoder.enabled()));
         addInstrumentEncoder.minSize(addInstrumentDecoder.minSize());
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        queueClusterCommand(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             addInstrumentEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "instrument-add");
@@ -413,15 +438,15 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         final MutableDirectBuffer buffer,
         final int offset)
     {
-        final String correlationId = UUID.randomUUID().toString();
+        final long correlationId = ++correlationIdSequence;
         setInstrumentEnabledDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
         setInstrumentEnabledEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder);
 
-        setInstrumentEnabledEncoder.correlation(correlationId);
+        setInstrumentEnabledEncoder.requestId(correlationId);
         setInstrumentEnabledEncoder.cusip(setInstrumentEnabledDecoder.cusip());
         setInstrumentEnabledEncoder.enabled(mapBoolean(setInstrumentEnabledDecoder.enabled()));
 
-        retryingClusterOffer(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
+        queueClusterCommand(sendBuffer, MessageHeaderEncoder.ENCODED_LENGTH +
             setInstrumentEnabledEncoder.encodedLength());
 
         pendingMessageManager.addMessage(correlationId, "instrument-set-enabled");
@@ -508,20 +533,67 @@ public class ClusterInteractionAgent implements Agent, MessageHandler
         LineReaderHelper.log(lineReader, message, color);
     }
 
+    /**
+     * Queues a command for the cluster, to be sent with the others queued in this duty cycle
+     *
+     * @param buffer buffer containing the command, at offset 0
+     * @param length length of the command
+     */
+    private void queueClusterCommand(final DirectBuffer buffer, final int length)
+    {
+        if (queuedCommandBytes + Integer.BYTES + length > MAX_BATCH_BYTES)
+        {
+            flushClusterCommands();
+        }
+        queuedCommands.putInt(queuedCommandBytes, length);
+        queuedCommands.putBytes(queuedCommandBytes + Integer.BYTES, buffer, 0, length);
+        queuedCommandBytes += Integer.BYTES + length;
+        queuedCommandCount++;
+    }
+
+    /**
+     * Sends the queued commands to the cluster: a single command as is, or several as one command batch, which the
+     * cluster applies within a single log entry and so at the consensus cost of one message
+     */
+    private void flushClusterCommands()
+    {
+        if (queuedCommandCount == 1)
+        {
+            retryingClusterOffer(queuedCommands, Integer.BYTES, queuedCommandBytes - Integer.BYTES);
+        }
+        else if (queuedCommandCount > 1)
+        {
+            commandBatchEncoder.wrapAndApplyHeader(batchBuffer, 0, messageHeaderEncoder);
+            final CommandBatchEncoder.CommandsEncoder commands = commandBatchEncoder.commandsCount(queuedCommandCount);
+            int position = 0;
+            while (position < queuedCommandBytes)
+            {
+                final int length = queuedCommands.getInt(position);
+                commands.next().putCommand(queuedCommands, position + Integer.BYTES, length);
+                position += Integer.BYTES + length;
+            }
+            retryingClusterOffer(batchBuffer, 0, MessageHeaderEncoder.ENCODED_LENGTH +
+                commandBatchEncoder.encodedLength());
+        }
+        queuedCommandCount = 0;
+        queuedCommandBytes = 0;
+    }
+
     /**
      * sends to cluster with retry as needed, up to the limit
      *
      * @param buffer buffer containing the message
+     * @param offset offset of the message
      * @param length length of the message
      */
-    private void retryingClusterOffer(final DirectBuffer buffer, final int length)
+    private void retryingClusterOffer(final DirectBuffer buffer, final int offset, final int length)
     {
         if (connectionState == ConnectionState.CONNECTED)
         {
             int retries = 0;
             do
             {
-                final long result = aeronCluster.offer(buffer, 0, length);
+                final long result = aeronCluster.offer(buffer, offset, length);
                 if (result > 0L)
                 {
                     return;
@@ -18,7 +18,12 @@ package com.aeroncookbook.rfq.admin.cluster;
 
 /**
  * A message that has been sent to the cluster but has not yet been received by the client.
+ *
+ * @param sentAt        the nano clock time at which the message was sent
+ * @param timerId       the id of the timeout in the timer wheel
+ * @param correlationId the correlation id of the message
+ * @param messageType   the type of message
  */
-public record PendingMessage(long timeoutAt, String correlationId, String messageType)
+public record PendingMessage(long sentAt, long timerId, long correlationId, String messageType)
 {
 }
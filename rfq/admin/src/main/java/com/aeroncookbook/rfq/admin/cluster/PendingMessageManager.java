@@ -16,85 +16,171 @@
 
 package com.aeroncookbook.rfq.admin.cluster;
 
-import org.agrona.concurrent.EpochClock;
+import org.HdrHistogram.Histogram;
+import org.agrona.DeadlineTimerWheel;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.collections.Object2ObjectHashMap;
+import org.agrona.concurrent.NanoClock;
 import org.jline.reader.LineReader;
 import org.jline.utils.AttributedStyle;
 
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Responsible for keeping track of pending messages and their timeouts
+ * Responsible for keeping track of pending messages, their timeouts and their round trip latency.
+ * <p>
+ * Pending messages are keyed by correlation id, so matching a reply costs one lookup however many messages are in
+ * flight. Each timeout is a slot in a {@link DeadlineTimerWheel}, and every message due is timed out in the duty
+ * cycle that reaches its tick. The round trip time of each reply is recorded in a histogram per message type.
  */
-public class PendingMessageManager
+public class PendingMessageManager implements DeadlineTimerWheel.TimerHandler
 {
-    private static final long TIMEOUT_MS = TimeUnit.SECONDS.toMillis(5);
-    private final Deque<PendingMessage> trackedMessages = new LinkedList<>();
-    private final EpochClock current;
+    private static final long TIMEOUT_NS = TimeUnit.SECONDS.toNanos(5);
+    private static final long TICK_RESOLUTION_NS = 1L << 24;
+    private static final int TICKS_PER_WHEEL = 512;
+    private static final long NO_MESSAGE = Long.MIN_VALUE;
+    //replies arriving after the timeout are not matched, so no recorded latency exceeds it by more than a tick
+    private static final long HIGHEST_TRACKABLE_LATENCY_NS = TimeUnit.SECONDS.toNanos(10);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private final Long2ObjectHashMap<PendingMessage> pendingByCorrelationId = new Long2ObjectHashMap<>();
+    private final Long2LongHashMap correlationIdByTimerId = new Long2LongHashMap(NO_MESSAGE);
+    private final Object2ObjectHashMap<String, MessageTypeStats> statsByMessageType = new Object2ObjectHashMap<>();
+    private final DeadlineTimerWheel wheel;
+    private final NanoClock clock;
     private LineReader lineReader;
 
     /**
      * Constructor
-     * @param current the clock to use for timeouts
+     * @param clock the clock to use for timeouts and round trip times
      */
-    public PendingMessageManager(final EpochClock current)
+    public PendingMessageManager(final NanoClock clock)
     {
-        this.current = current;
+        this.clock = clock;
+        this.wheel = new DeadlineTimerWheel(TimeUnit.NANOSECONDS, clock.nanoTime(), TICK_RESOLUTION_NS,
+            TICKS_PER_WHEEL);
     }
 
     /**
-     * Add a message to the list of pending messages
+     * Add a message to the pending messages
      * @param correlationId the correlation id of the message
      * @param messageType  the type of message
      */
-    public void addMessage(final String correlationId, final String messageType)
+    public void addMessage(final long correlationId, final String messageType)
     {
-        final long timeoutAt = current.time() + TIMEOUT_MS;
-        trackedMessages.add(new PendingMessage(timeoutAt, correlationId, messageType));
+        final long now = clock.nanoTime();
+        if (wheel.timerCount() == 0)
+        {
+            wheel.currentTickTime(now);
+        }
+
+        final long timerId = wheel.scheduleTimer(now + TIMEOUT_NS);
+        correlationIdByTimerId.put(timerId, correlationId);
+        pendingByCorrelationId.put(correlationId, new PendingMessage(now, timerId, correlationId, messageType));
     }
 
     /**
-     * Mark a message as received
+     * Mark a message as received, recording its round trip time
      * @param correlationId the correlation id of the message
      */
-    public void markMessageAsReceived(final String correlationId)
+    public void markMessageAsReceived(final long correlationId)
     {
-        trackedMessages.removeIf(pendingMessage -> pendingMessage.correlationId().equals(correlationId));
+        final PendingMessage received = pendingByCorrelationId.remove(correlationId);
+        if (null == received)
+        {
+            return;
+        }
+
+        correlationIdByTimerId.remove(received.timerId());
+        wheel.cancelTimer(received.timerId());
+        final long latencyNs = clock.nanoTime() - received.sentAt();
+        statsFor(received.messageType()).latency.recordValue(Math.min(latencyNs, HIGHEST_TRACKABLE_LATENCY_NS));
     }
 
     /**
-     * Duty cycle in which the pending messages are checked for timeout; if a message is found to be timed out,
-     * only a single message per duty cycle is checked.
+     * Duty cycle in which every pending message that has reached its timeout is timed out
+     *
+     * @return the number of messages timed out
      */
-    public void doWork()
+    public int doWork()
     {
-        final long currentTime = current.time();
-        if (null == trackedMessages.peek())
+        if (wheel.timerCount() == 0)
         {
-            return;
+            return 0;
         }
 
-        //not yet at timeout
-        if (currentTime < trackedMessages.peek().timeoutAt())
+        //the agent can stall for many ticks, such as while it blocks connecting to the cluster, and a poll expires
+        //at most one tick; polling until the wheel reaches now reports every message that timed out in the stall
+        //in this duty cycle, rather than one tick's worth per sleep of the agent's idle strategy
+        final long now = clock.nanoTime();
+        int timedOut = 0;
+        long tickTime;
+        do
         {
-            return;
+            tickTime = wheel.currentTickTime();
+            timedOut += wheel.poll(now, this, Integer.MAX_VALUE);
         }
+        while (wheel.timerCount() > 0 && wheel.currentTickTime() != tickTime);
 
-        final PendingMessage timedOut = trackedMessages.poll();
+        return timedOut;
+    }
 
-        if (null == timedOut)
+    @Override
+    public boolean onTimerExpiry(final TimeUnit timeUnit, final long now, final long timerId)
+    {
+        final long correlationId = correlationIdByTimerId.remove(timerId);
+        final PendingMessage timedOut = pendingByCorrelationId.remove(correlationId);
+        if (null != timedOut)
         {
-            return;
+            statsFor(timedOut.messageType()).timeouts++;
+            log("Message with correlation id " + timedOut.correlationId() + " and type " +
+                timedOut.messageType() + " timed out.", AttributedStyle.RED);
         }
+        return true;
+    }
 
-        //after timeout
-        if (currentTime >= timedOut.timeoutAt())
+    /**
+     * Returns the number of messages awaiting a reply
+     *
+     * @return the number of pending messages
+     */
+    public int pendingCount()
+    {
+        return pendingByCorrelationId.size();
+    }
+
+    /**
+     * Logs the round trip latency percentiles, in microseconds, and the timeouts of each message type sent so far
+     *
+     * @param reset true to clear the recorded latencies and timeouts once logged
+     */
+    public void logLatencyReport(final boolean reset)
+    {
+        if (statsByMessageType.isEmpty())
         {
-            log("Message with correlation id " + timedOut.correlationId() + " and type " +
-                timedOut.messageType() + " timed out.", AttributedStyle.RED);
-            trackedMessages.remove(timedOut);
+            log("No replies recorded", AttributedStyle.YELLOW);
+            return;
         }
+
+        log(String.format("%-24s %8s %10s %10s %10s %10s %8s",
+            "type", "count", "p50 us", "p99 us", "p99.9 us", "max us", "timeouts"), AttributedStyle.WHITE);
+        statsByMessageType.forEach((messageType, stats) ->
+        {
+            final Histogram latency = stats.latency;
+            log(String.format("%-24s %8d %10.1f %10.1f %10.1f %10.1f %8d",
+                messageType,
+                latency.getTotalCount(),
+                latency.getValueAtPercentile(50) / 1000.0,
+                latency.getValueAtPercentile(99) / 1000.0,
+                latency.getValueAtPercentile(99.9) / 1000.0,
+                latency.getMaxValue() / 1000.0,
+                stats.timeouts), AttributedStyle.WHITE);
+            if (reset)
+            {
+                latency.reset();
+                stats.timeouts = 0;
+            }
+        });
     }
 
     /**
@@ -106,6 +192,17 @@ public class PendingMessageManager
         this.lineReader = lineReader;
     }
 
+    private MessageTypeStats statsFor(final String messageType)
+    {
+        MessageTypeStats stats = statsByMessageType.get(messageType);
+        if (null == stats)
+        {
+            stats = new MessageTypeStats();
+            statsByMessageType.put(messageType, stats);
+        }
+        return stats;
+    }
+
     /**
      * Logs a message to the terminal if available or to the logger if not
      *
@@ -116,4 +213,10 @@ public class PendingMessageManager
     {
         LineReaderHelper.log(lineReader, message, color);
     }
+
+    private static final class MessageTypeStats
+    {
+        private final Histogram latency = new Histogram(HIGHEST_TRACKABLE_LATENCY_NS, SIGNIFICANT_DIGITS);
+        private long timeouts;
+    }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.loadgen;
+
+/**
+ * The commands the load generator drives RFQs through
+ */
+public enum CommandType
+{
+    /**
+     * Creates an RFQ as the session's requester
+     */
+    CREATE,
+    /**
+     * Quotes a created RFQ as the session's responder
+     */
+    QUOTE,
+    /**
+     * Counters a quoted RFQ as the session's requester
+     */
+    COUNTER,
+    /**
+     * Accepts a quoted RFQ as the requester, or a countered RFQ as the responder
+     */
+    ACCEPT
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.loadgen;
+
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.driver.MediaDriver;
+import io.aeron.driver.ThreadingMode;
+import io.aeron.samples.cluster.ClusterConfig;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.NanoClock;
+import org.agrona.concurrent.SystemNanoClock;
+import org.agrona.concurrent.YieldingIdleStrategy;
+import picocli.CommandLine;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-interactive load generator for the RFQ cluster.
+ * <p>
+ * Opens a number of cluster sessions and sends a mix of create, quote, counter and accept commands across them at a
+ * fixed total rate, then reports throughput and the latency from each command to its confirm and to the event broadcast
+ * it caused. Commands are sent on a fixed schedule rather than when the previous one completes, and latency is taken
+ * from the scheduled time, so the results are not hidden by coordinated omission.
+ * <p>
+ * Runs on a single thread, with an embedded media driver, against a cluster on localhost by default.
+ */
+@CommandLine.Command(name = "loadgen", mixinStandardHelpOptions = true,
+    description = "Drives the RFQ cluster with a scripted command mix and reports throughput and latency")
+public class LoadGenerator implements Callable<Integer>
+{
+    private static final String INGRESS_CHANNEL = "aeron:udp?term-length=64k";
+    private static final String LOAD_CUSIP = "LOADGEN01";
+    private static final long SET_UP_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(10);
+    private static final long DRAIN_TIMEOUT_NS = TimeUnit.SECONDS.toNanos(5);
+    private static final long REPORT_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1);
+    private static final int SEND_LIMIT = 64;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "hosts", description = "Comma separated cluster hosts. Default localhost")
+    private String hosts = "localhost";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "base-port", description = "Cluster base port. Default 9000")
+    private int basePort = 9000;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "egress-host", description = "Host cluster egress is sent to. Default localhost")
+    private String egressHost = "localhost";
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "sessions", description = "Number of cluster sessions. Default 4")
+    private int sessionCount = 4;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "rate", description = "Commands per second across all sessions. Default 1000")
+    private int rate = 1000;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "warmup", description = "Seconds of load before measuring. Default 5")
+    private int warmupSeconds = 5;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "duration", description = "Seconds of measured load. Default 30")
+    private int durationSeconds = 30;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "create-weight", description = "Relative weight of creates. Default 40")
+    private int createWeight = 40;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "quote-weight", description = "Relative weight of quotes. Default 30")
+    private int quoteWeight = 30;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "counter-weight", description = "Relative weight of counters. Default 10")
+    private int counterWeight = 10;
+
+    @SuppressWarnings("all")
+    @CommandLine.Option(names = "accept-weight", description = "Relative weight of accepts. Default 20")
+    private int acceptWeight = 20;
+
+    /**
+     * Main method
+     *
+     * @param args command line arguments
+     */
+    public static void main(final String[] args)
+    {
+        System.exit(new CommandLine(new LoadGenerator()).execute(args));
+    }
+
+    @Override
+    public Integer call()
+    {
+        final int[] mix = new int[CommandType.values().length];
+        mix[CommandType.CREATE.ordinal()] = createWeight;
+        mix[CommandType.QUOTE.ordinal()] = quoteWeight;
+        mix[CommandType.COUNTER.ordinal()] = counterWeight;
+        mix[CommandType.ACCEPT.ordinal()] = acceptWeight;
+        if (sessionCount <= 0 || rate <= 0 || Arrays.stream(mix).anyMatch(w -> w < 0) || Arrays.stream(mix).sum() == 0)
+        {
+            System.err.println("sessions and rate must be positive, and the weights non-negative with a positive sum");
+            return 1;
+        }
+
+        final PrintStream out = System.out;
+        final NanoClock clock = SystemNanoClock.INSTANCE;
+        final IdleStrategy idleStrategy = new YieldingIdleStrategy();
+        final LoadStats stats = new LoadStats();
+        final LoadSession[] sessions = new LoadSession[sessionCount];
+        final String ingressEndpoints = ClusterConfig.ingressEndpoints(
+            Arrays.asList(hosts.split(",")), basePort, ClusterConfig.CLIENT_FACING_PORT_OFFSET);
+
+        try (MediaDriver mediaDriver = MediaDriver.launchEmbedded(new MediaDriver.Context()
+            .threadingMode(ThreadingMode.SHARED)
+            .dirDeleteOnStart(true)
+            .dirDeleteOnShutdown(true)))
+        {
+            try
+            {
+                for (int i = 0; i < sessionCount; i++)
+                {
+                    sessions[i] = new LoadSession(i, stats, mix, LOAD_CUSIP, clock, idleStrategy);
+                    //port 0 lets the media driver pick a free egress port per session
+                    sessions[i].connect(new AeronCluster.Context()
+                        .egressChannel("aeron:udp?endpoint=" + egressHost + ":0")
+                        .ingressChannel(INGRESS_CHANNEL)
+                        .ingressEndpoints(ingressEndpoints)
+                        .aeronDirectoryName(mediaDriver.aeronDirectoryName()));
+                    sessions[i].setUp(i == 0);
+                }
+                out.printf("connected %d sessions%n", sessionCount);
+
+                if (!pollUntilSetUp(sessions, clock, idleStrategy))
+                {
+                    System.err.println("timed out setting up the load users and instrument");
+                    return 1;
+                }
+
+                run(sessions, stats, clock, idleStrategy, out);
+                return 0;
+            }
+            finally
+            {
+                //the sessions are closed while the media driver they use is still running
+                for (final LoadSession session : sessions)
+                {
+                    CloseHelper.quietClose(session == null ? null : session::close);
+                }
+            }
+        }
+    }
+
+    private void run(
+        final LoadSession[] sessions,
+        final LoadStats stats,
+        final NanoClock clock,
+        final IdleStrategy idleStrategy,
+        final PrintStream out)
+    {
+        //each session sends at an equal share of the rate, staggered so the sessions do not all send at once
+        final long sessionIntervalNs = TimeUnit.SECONDS.toNanos(1) * sessions.length / rate;
+        final long startAt = clock.nanoTime();
+        for (int i = 0; i < sessions.length; i++)
+        {
+            sessions[i].start(startAt + sessionIntervalNs * i / sessions.length, sessionIntervalNs);
+        }
+
+        final long measureFrom = startAt + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        final long endAt = measureFrom + TimeUnit.SECONDS.toNanos(durationSeconds);
+        boolean measuring = warmupSeconds == 0;
+        long nextReportAt = startAt + REPORT_INTERVAL_NS;
+        out.printf("warming up for %d s at %d commands/s%n", warmupSeconds, rate);
+
+        long now;
+        while ((now = clock.nanoTime()) < endAt)
+        {
+            int work = 0;
+            for (final LoadSession session : sessions)
+            {
+                work += session.sendDue(now, SEND_LIMIT);
+                work += session.poll();
+            }
+
+            if (!measuring && now >= measureFrom)
+            {
+                measuring = true;
+                stats.reset();
+                nextReportAt = now + REPORT_INTERVAL_NS;
+                out.printf("measuring for %d s%n", durationSeconds);
+            }
+            else if (now >= nextReportAt)
+            {
+                stats.printInterval(out, REPORT_INTERVAL_NS);
+                nextReportAt += REPORT_INTERVAL_NS;
+            }
+
+            idleStrategy.idle(work);
+        }
+
+        //confirms of the last commands sent are still counted, so they are not lost from the results
+        final long drainUntil = clock.nanoTime() + DRAIN_TIMEOUT_NS;
+        while (clock.nanoTime() < drainUntil && anyPendingConfirms(sessions))
+        {
+            int work = 0;
+            for (final LoadSession session : sessions)
+            {
+                work += session.poll();
+            }
+            idleStrategy.idle(work);
+        }
+
+        stats.printSummary(out, endAt - measureFrom);
+    }
+
+    private static boolean pollUntilSetUp(
+        final LoadSession[] sessions,
+        final NanoClock clock,
+        final IdleStrategy idleStrategy)
+    {
+        final long deadline = clock.nanoTime() + SET_UP_TIMEOUT_NS;
+        while (clock.nanoTime() < deadline)
+        {
+            int work = 0;
+            boolean setUp = true;
+            for (final LoadSession session : sessions)
+            {
+                work += session.poll();
+                setUp &= session.isSetUp();
+            }
+            if (setUp)
+            {
+                return true;
+            }
+            idleStrategy.idle(work);
+        }
+        return false;
+    }
+
+    private static boolean anyPendingConfirms(final LoadSession[] sessions)
+    {
+        for (final LoadSession session : sessions)
+        {
+            if (session.hasPendingConfirms())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+}
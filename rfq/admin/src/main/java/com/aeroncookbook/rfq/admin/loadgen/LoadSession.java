@@ -0,0 +1,476 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.loadgen;
+
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentResultDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddUserCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.InterestType;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RfqAcceptedEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqCounteredEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqCreatedEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqExpiredEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqQuotedEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.cluster.rfq.sbe.SubscribeCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SubscriptionResultDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserResultDecoder;
+import io.aeron.Publication;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.cluster.client.ClusterException;
+import io.aeron.cluster.client.EgressListener;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.concurrent.IdleStrategy;
+import org.agrona.concurrent.NanoClock;
+
+import java.util.SplittableRandom;
+
+/**
+ * One cluster session of the load generator, acting as a requester and a responder user of its own.
+ * <p>
+ * The session only receives the events of RFQs its requester is involved in, and drives each RFQ through create,
+ * quote, counter and accept by picking the next command from the configured mix. A command for which no RFQ is in the
+ * right state becomes a create instead. Each RFQ has at most one command in flight, as an RFQ only becomes eligible
+ * for its next command once the confirm of the previous one arrives.
+ */
+public class LoadSession implements EgressListener
+{
+    private static final int USER_ID_BASE = 10_000;
+    private static final long RFQ_LIFETIME_MS = 60_000;
+    private static final int QUANTITY = 100;
+    private static final long PRICE = 1_000;
+    private static final long NOT_PENDING = Long.MIN_VALUE;
+    private static final CommandType[] COMMAND_TYPES = CommandType.values();
+    private final LoadStats stats;
+    private final int[] mix;
+    private final int mixTotal;
+    private final String cusip;
+    private final int requesterUserId;
+    private final int responderUserId;
+    private final NanoClock clock;
+    private final IdleStrategy idleStrategy;
+    private final SplittableRandom random;
+    private final IntArrayList createdRfqIds = new IntArrayList();
+    private final IntArrayList quotedRfqIds = new IntArrayList();
+    private final IntArrayList counteredRfqIds = new IntArrayList();
+    private final Long2LongHashMap scheduledAtByRequestId = new Long2LongHashMap(NOT_PENDING);
+    private final Long2LongHashMap broadcastScheduledAtByRfqId = new Long2LongHashMap(NOT_PENDING);
+    private final MutableDirectBuffer sendBuffer = new ExpandableDirectByteBuffer(256);
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+    private final AddUserCommandEncoder addUserCommandEncoder = new AddUserCommandEncoder();
+    private final SubscribeCommandEncoder subscribeCommandEncoder = new SubscribeCommandEncoder();
+    private final AddInstrumentEncoder addInstrumentEncoder = new AddInstrumentEncoder();
+    private final CreateRfqCommandEncoder createRfqCommandEncoder = new CreateRfqCommandEncoder();
+    private final QuoteRfqCommandEncoder quoteRfqCommandEncoder = new QuoteRfqCommandEncoder();
+    private final CounterRfqCommandEncoder counterRfqCommandEncoder = new CounterRfqCommandEncoder();
+    private final AcceptRfqCommandEncoder acceptRfqCommandEncoder = new AcceptRfqCommandEncoder();
+    private final UserResultDecoder userResultDecoder = new UserResultDecoder();
+    private final SubscriptionResultDecoder subscriptionResultDecoder = new SubscriptionResultDecoder();
+    private final AddInstrumentResultDecoder addInstrumentResultDecoder = new AddInstrumentResultDecoder();
+    private final CreateRfqConfirmEventDecoder createRfqConfirmDecoder = new CreateRfqConfirmEventDecoder();
+    private final QuoteRfqConfirmEventDecoder quoteRfqConfirmDecoder = new QuoteRfqConfirmEventDecoder();
+    private final CounterRfqConfirmEventDecoder counterRfqConfirmDecoder = new CounterRfqConfirmEventDecoder();
+    private final AcceptRfqConfirmEventDecoder acceptRfqConfirmDecoder = new AcceptRfqConfirmEventDecoder();
+    private final RfqCreatedEventDecoder rfqCreatedEventDecoder = new RfqCreatedEventDecoder();
+    private final RfqQuotedEventDecoder rfqQuotedEventDecoder = new RfqQuotedEventDecoder();
+    private final RfqCounteredEventDecoder rfqCounteredEventDecoder = new RfqCounteredEventDecoder();
+    private final RfqAcceptedEventDecoder rfqAcceptedEventDecoder = new RfqAcceptedEventDecoder();
+    private final RfqExpiredEventDecoder rfqExpiredEventDecoder = new RfqExpiredEventDecoder();
+    private AeronCluster aeronCluster;
+    private long requestIdSequence;
+    private int setUpRepliesPending;
+    private long nextSendAt;
+    private long intervalNs;
+
+    /**
+     * Constructor
+     *
+     * @param index        the index of the session, from which its user ids are derived
+     * @param stats        the stats to record to, shared by every session
+     * @param mix          the relative weight of each command type, indexed by ordinal
+     * @param cusip        the CUSIP of the instrument RFQs are created on
+     * @param clock        the clock commands are scheduled and timed by
+     * @param idleStrategy the idle strategy used while back pressured
+     */
+    public LoadSession(
+        final int index,
+        final LoadStats stats,
+        final int[] mix,
+        final String cusip,
+        final NanoClock clock,
+        final IdleStrategy idleStrategy)
+    {
+        this.stats = stats;
+        this.mix = mix.clone();
+        int total = 0;
+        for (final int weight : mix)
+        {
+            total += weight;
+        }
+        this.mixTotal = total;
+        this.cusip = cusip;
+        this.requesterUserId = USER_ID_BASE + 2 * index;
+        this.responderUserId = requesterUserId + 1;
+        this.clock = clock;
+        this.idleStrategy = idleStrategy;
+        this.random = new SplittableRandom(index);
+    }
+
+    /**
+     * Connects the session to the cluster
+     *
+     * @param context the cluster client context, to which this session is set as the egress listener
+     */
+    public void connect(final AeronCluster.Context context)
+    {
+        aeronCluster = AeronCluster.connect(context.egressListener(this));
+    }
+
+    /**
+     * Adds the session's users to the cluster and subscribes the session to the RFQs of its requester
+     *
+     * @param addInstrument true if this session is also to add the instrument RFQs are created on
+     */
+    public void setUp(final boolean addInstrument)
+    {
+        addUser(requesterUserId, true, false);
+        addUser(responderUserId, false, true);
+
+        subscribeCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder)
+            .requestId(++requestIdSequence)
+            .interest(InterestType.USER)
+            .cusip("")
+            .userId(requesterUserId);
+        offer(MessageHeaderEncoder.ENCODED_LENGTH + subscribeCommandEncoder.encodedLength());
+        setUpRepliesPending++;
+
+        if (addInstrument)
+        {
+            //an instrument already added by an earlier run is rejected, which is fine as long as it is enabled
+            addInstrumentEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder)
+                .requestId(++requestIdSequence)
+                .cusip(cusip)
+                .enabled(BooleanType.TRUE)
+                .minSize(1);
+            offer(MessageHeaderEncoder.ENCODED_LENGTH + addInstrumentEncoder.encodedLength());
+            setUpRepliesPending++;
+        }
+    }
+
+    /**
+     * Checks if every reply to the set up commands has been received
+     *
+     * @return true once the session is set up
+     */
+    public boolean isSetUp()
+    {
+        return setUpRepliesPending == 0;
+    }
+
+    /**
+     * Starts the command schedule of the session
+     *
+     * @param startAt    the clock time at which the first command is due
+     * @param intervalNs the interval between commands of this session
+     */
+    public void start(final long startAt, final long intervalNs)
+    {
+        this.nextSendAt = startAt;
+        this.intervalNs = intervalNs;
+    }
+
+    /**
+     * Sends every command that has fallen due, up to a limit so that egress keeps being polled during a catch up
+     *
+     * @param now   the current clock time
+     * @param limit the most commands to send
+     * @return the number of commands sent
+     */
+    public int sendDue(final long now, final int limit)
+    {
+        int sent = 0;
+        while (nextSendAt <= now && sent < limit)
+        {
+            sendNext(nextSendAt);
+            nextSendAt += intervalNs;
+            sent++;
+        }
+        return sent;
+    }
+
+    /**
+     * Polls the session egress
+     *
+     * @return the number of fragments received
+     */
+    public int poll()
+    {
+        return aeronCluster.pollEgress();
+    }
+
+    /**
+     * Checks if any sent command has not yet been confirmed
+     *
+     * @return true if a confirm is outstanding
+     */
+    public boolean hasPendingConfirms()
+    {
+        return !scheduledAtByRequestId.isEmpty();
+    }
+
+    /**
+     * Closes the cluster session
+     */
+    public void close()
+    {
+        if (null != aeronCluster)
+        {
+            aeronCluster.close();
+        }
+    }
+
+    @Override
+    public void onMessage(
+        final long clusterSessionId,
+        final long timestamp,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length,
+        final Header header)
+    {
+        if (length < MessageHeaderDecoder.ENCODED_LENGTH)
+        {
+            return;
+        }
+
+        messageHeaderDecoder.wrap(buffer, offset);
+        switch (messageHeaderDecoder.templateId())
+        {
+            case CreateRfqConfirmEventDecoder.TEMPLATE_ID ->
+            {
+                createRfqConfirmDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                onConfirm(CommandType.CREATE, createRfqConfirmDecoder.requestId(), createRfqConfirmDecoder.rfqId(),
+                    createRfqConfirmDecoder.result() == CreateRfqResult.SUCCESS, createdRfqIds);
+            }
+            case QuoteRfqConfirmEventDecoder.TEMPLATE_ID ->
+            {
+                quoteRfqConfirmDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                onConfirm(CommandType.QUOTE, quoteRfqConfirmDecoder.requestId(), quoteRfqConfirmDecoder.rfqId(),
+                    quoteRfqConfirmDecoder.result() == QuoteRfqResult.SUCCESS, quotedRfqIds);
+            }
+            case CounterRfqConfirmEventDecoder.TEMPLATE_ID ->
+            {
+                counterRfqConfirmDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                onConfirm(CommandType.COUNTER, counterRfqConfirmDecoder.requestId(), counterRfqConfirmDecoder.rfqId(),
+                    counterRfqConfirmDecoder.result() == CounterRfqResult.SUCCESS, counteredRfqIds);
+            }
+            case AcceptRfqConfirmEventDecoder.TEMPLATE_ID ->
+            {
+                acceptRfqConfirmDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                onConfirm(CommandType.ACCEPT, acceptRfqConfirmDecoder.requestId(), acceptRfqConfirmDecoder.rfqId(),
+                    acceptRfqConfirmDecoder.result() == AcceptRfqResult.SUCCESS, null);
+            }
+            case RfqCreatedEventDecoder.TEMPLATE_ID ->
+            {
+                rfqCreatedEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                onBroadcast(CommandType.CREATE, rfqCreatedEventDecoder.rfqId());
+            }
+            case RfqQuotedEventDecoder.TEMPLATE_ID ->
+            {
+                rfqQuotedEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                onBroadcast(CommandType.QUOTE, rfqQuotedEventDecoder.rfqId());
+            }
+            case RfqCounteredEventDecoder.TEMPLATE_ID ->
+            {
+                rfqCounteredEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                onBroadcast(CommandType.COUNTER, rfqCounteredEventDecoder.rfqId());
+            }
+            case RfqAcceptedEventDecoder.TEMPLATE_ID ->
+            {
+                rfqAcceptedEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                onBroadcast(CommandType.ACCEPT, rfqAcceptedEventDecoder.rfqId());
+            }
+            case RfqExpiredEventDecoder.TEMPLATE_ID ->
+            {
+                rfqExpiredEventDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+                final int rfqId = rfqExpiredEventDecoder.rfqId();
+                createdRfqIds.removeInt(rfqId);
+                quotedRfqIds.removeInt(rfqId);
+                counteredRfqIds.removeInt(rfqId);
+            }
+            case UserResultDecoder.TEMPLATE_ID, SubscriptionResultDecoder.TEMPLATE_ID,
+                AddInstrumentResultDecoder.TEMPLATE_ID -> setUpRepliesPending--;
+            default ->
+            {
+                //other sessions' broadcasts and events of no interest to the load are ignored
+            }
+        }
+    }
+
+    private void addUser(final int userId, final boolean canRequest, final boolean canRespond)
+    {
+        addUserCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder)
+            .requestId(++requestIdSequence)
+            .userId(userId)
+            .canRequest(canRequest ? BooleanType.TRUE : BooleanType.FALSE)
+            .canRespond(canRespond ? BooleanType.TRUE : BooleanType.FALSE);
+        offer(MessageHeaderEncoder.ENCODED_LENGTH + addUserCommandEncoder.encodedLength());
+        setUpRepliesPending++;
+    }
+
+    //picks the next command from the mix, falling back to a create when no RFQ is in the state the command needs
+    private void sendNext(final long scheduledAt)
+    {
+        int roll = random.nextInt(mixTotal);
+        int pick = 0;
+        while (roll >= mix[pick])
+        {
+            roll -= mix[pick];
+            pick++;
+        }
+
+        final long requestId = ++requestIdSequence;
+        final CommandType picked = COMMAND_TYPES[pick];
+        final CommandType type;
+        final int length;
+        if (picked == CommandType.QUOTE && !createdRfqIds.isEmpty())
+        {
+            type = CommandType.QUOTE;
+            quoteRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder)
+                .requestId(requestId)
+                .rfqId(takeLast(createdRfqIds))
+                .responderUserId(responderUserId)
+                .price(PRICE);
+            length = quoteRfqCommandEncoder.encodedLength();
+        }
+        else if (picked == CommandType.COUNTER && !quotedRfqIds.isEmpty())
+        {
+            type = CommandType.COUNTER;
+            counterRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder)
+                .requestId(requestId)
+                .rfqId(takeLast(quotedRfqIds))
+                .counterUserId(requesterUserId)
+                .price(PRICE - 1);
+            length = counterRfqCommandEncoder.encodedLength();
+        }
+        else if (picked == CommandType.ACCEPT && !(counteredRfqIds.isEmpty() && quotedRfqIds.isEmpty()))
+        {
+            type = CommandType.ACCEPT;
+            final boolean countered = !counteredRfqIds.isEmpty();
+            acceptRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder)
+                .requestId(requestId)
+                .rfqId(takeLast(countered ? counteredRfqIds : quotedRfqIds))
+                .acceptUserId(countered ? responderUserId : requesterUserId);
+            length = acceptRfqCommandEncoder.encodedLength();
+        }
+        else
+        {
+            type = CommandType.CREATE;
+            createRfqCommandEncoder.wrapAndApplyHeader(sendBuffer, 0, messageHeaderEncoder)
+                .requestId(requestId)
+                .expireTimeMs(System.currentTimeMillis() + RFQ_LIFETIME_MS)
+                .quantity(QUANTITY)
+                .requesterSide(Side.BUY)
+                .cusip(cusip)
+                .requesterUserId(requesterUserId);
+            length = createRfqCommandEncoder.encodedLength();
+        }
+
+        scheduledAtByRequestId.put(requestId, scheduledAt);
+        offer(MessageHeaderEncoder.ENCODED_LENGTH + length);
+        stats.onSent(type);
+    }
+
+    private void onConfirm(
+        final CommandType type,
+        final long requestId,
+        final int rfqId,
+        final boolean success,
+        final IntArrayList nextState)
+    {
+        final long scheduledAt = scheduledAtByRequestId.remove(requestId);
+        if (scheduledAt == NOT_PENDING)
+        {
+            return;
+        }
+
+        stats.onConfirm(type, success, clock.nanoTime() - scheduledAt);
+        if (success)
+        {
+            //the event broadcast follows the confirm on the same egress stream
+            broadcastScheduledAtByRfqId.put(rfqId, scheduledAt);
+            if (null != nextState)
+            {
+                nextState.addInt(rfqId);
+            }
+        }
+    }
+
+    private void onBroadcast(final CommandType type, final int rfqId)
+    {
+        final long scheduledAt = broadcastScheduledAtByRfqId.remove(rfqId);
+        if (scheduledAt != NOT_PENDING)
+        {
+            stats.onBroadcast(type, clock.nanoTime() - scheduledAt);
+        }
+    }
+
+    private void offer(final int length)
+    {
+        idleStrategy.reset();
+        while (true)
+        {
+            final long result = aeronCluster.offer(sendBuffer, 0, length);
+            if (result > 0)
+            {
+                return;
+            }
+            if (result != Publication.BACK_PRESSURED && result != Publication.ADMIN_ACTION)
+            {
+                throw new ClusterException("failed to offer to cluster: " + Publication.errorString(result));
+            }
+            //keep draining egress while back pressured, so the cluster is not blocked on this session in turn
+            idleStrategy.idle(aeronCluster.pollEgress());
+        }
+    }
+
+    private static int takeLast(final IntArrayList rfqIds)
+    {
+        return rfqIds.removeAt(rfqIds.size() - 1);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.admin.loadgen;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts and latency histograms of the load generator, per command type.
+ * <p>
+ * Latency is measured from the time a command was scheduled to be sent rather than the time it was sent, so a stall
+ * in the cluster or in the generator is charged to every command it delayed, not just to the one in flight.
+ */
+public class LoadStats
+{
+    private static final long HIGHEST_TRACKABLE_LATENCY_NS = TimeUnit.SECONDS.toNanos(60);
+    private static final int SIGNIFICANT_DIGITS = 3;
+    private static final int TYPE_COUNT = CommandType.values().length;
+    private final Histogram[] confirmLatency = new Histogram[TYPE_COUNT];
+    private final Histogram[] broadcastLatency = new Histogram[TYPE_COUNT];
+    private final long[] sent = new long[TYPE_COUNT];
+    private final long[] confirmed = new long[TYPE_COUNT];
+    private final long[] failed = new long[TYPE_COUNT];
+    private long intervalSent;
+    private long intervalConfirmed;
+    private long intervalBroadcasts;
+
+    /**
+     * Constructor
+     */
+    public LoadStats()
+    {
+        for (int i = 0; i < TYPE_COUNT; i++)
+        {
+            confirmLatency[i] = new Histogram(HIGHEST_TRACKABLE_LATENCY_NS, SIGNIFICANT_DIGITS);
+            broadcastLatency[i] = new Histogram(HIGHEST_TRACKABLE_LATENCY_NS, SIGNIFICANT_DIGITS);
+        }
+    }
+
+    /**
+     * Counts a command sent
+     *
+     * @param type the command type
+     */
+    public void onSent(final CommandType type)
+    {
+        sent[type.ordinal()]++;
+        intervalSent++;
+    }
+
+    /**
+     * Records the confirm of a command
+     *
+     * @param type      the command type
+     * @param success   true if the command succeeded
+     * @param latencyNs the time from the command being scheduled to its confirm
+     */
+    public void onConfirm(final CommandType type, final boolean success, final long latencyNs)
+    {
+        if (success)
+        {
+            confirmed[type.ordinal()]++;
+        }
+        else
+        {
+            failed[type.ordinal()]++;
+        }
+        intervalConfirmed++;
+        record(confirmLatency[type.ordinal()], latencyNs);
+    }
+
+    /**
+     * Records the broadcast of the RFQ event a command caused
+     *
+     * @param type      the command type
+     * @param latencyNs the time from the command being scheduled to the broadcast
+     */
+    public void onBroadcast(final CommandType type, final long latencyNs)
+    {
+        intervalBroadcasts++;
+        record(broadcastLatency[type.ordinal()], latencyNs);
+    }
+
+    /**
+     * Clears every count and histogram, such as at the end of warm up
+     */
+    public void reset()
+    {
+        for (int i = 0; i < TYPE_COUNT; i++)
+        {
+            confirmLatency[i].reset();
+            broadcastLatency[i].reset();
+            sent[i] = 0;
+            confirmed[i] = 0;
+            failed[i] = 0;
+        }
+        intervalSent = 0;
+        intervalConfirmed = 0;
+        intervalBroadcasts = 0;
+    }
+
+    /**
+     * Prints the throughput since the last interval was printed, then starts a new interval
+     *
+     * @param out        the stream to print to
+     * @param intervalNs the length of the interval
+     */
+    public void printInterval(final PrintStream out, final long intervalNs)
+    {
+        final double seconds = intervalNs / 1e9;
+        out.printf("sent/s=%.0f confirmed/s=%.0f broadcasts/s=%.0f%n",
+            intervalSent / seconds, intervalConfirmed / seconds, intervalBroadcasts / seconds);
+        intervalSent = 0;
+        intervalConfirmed = 0;
+        intervalBroadcasts = 0;
+    }
+
+    /**
+     * Prints the counts, throughput and latency percentiles, in microseconds, of each command type
+     *
+     * @param out        the stream to print to
+     * @param durationNs the length of the measured run
+     */
+    public void printSummary(final PrintStream out, final long durationNs)
+    {
+        final double seconds = durationNs / 1e9;
+        long totalConfirms = 0;
+        out.printf("%-8s %9s %9s %7s | %-40s | %-40s%n",
+            "type", "sent", "ok", "failed", "command->confirm us p50/p99/p99.9/max",
+            "command->broadcast us p50/p99/p99.9/max");
+        for (final CommandType type : CommandType.values())
+        {
+            final int i = type.ordinal();
+            totalConfirms += confirmed[i] + failed[i];
+            out.printf("%-8s %9d %9d %7d | %-40s | %-40s%n",
+                type, sent[i], confirmed[i], failed[i],
+                percentiles(confirmLatency[i]), percentiles(broadcastLatency[i]));
+        }
+        out.printf("throughput: %.0f confirms/s over %.1f s%n", totalConfirms / seconds, seconds);
+    }
+
+    private static String percentiles(final Histogram histogram)
+    {
+        return String.format("%.1f/%.1f/%.1f/%.1f",
+            histogram.getValueAtPercentile(50) / 1000.0,
+            histogram.getValueAtPercentile(99) / 1000.0,
+            histogram.getValueAtPercentile(99.9) / 1000.0,
+            histogram.getMaxValue() / 1000.0);
+    }
+
+    private static void record(final Histogram histogram, final long latencyNs)
+    {
+        histogram.recordValue(Math.min(Math.max(latencyNs, 0), HIGHEST_TRACKABLE_LATENCY_NS));
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+plugins {
+    java
+    checkstyle
+}
+
+repositories {
+    mavenCentral()
+}
+
+dependencies {
+    checkstyle(libs.checkstyle)
+    implementation(project(":rfq:cluster"))
+    implementation(project(":rfq:cluster-protocol"))
+    implementation(libs.agrona)
+    implementation(libs.aeron.samples)
+    implementation(libs.jmhcore)
+    annotationProcessor(libs.jmhannprocess)
+}
+
+tasks {
+    task("jmh", JavaExec::class) {
+        group = "benchmark"
+        description = "Runs the JMH benchmarks, reporting allocation rates. Filter with -PjmhInclude=<regex>"
+        classpath = sourceSets.main.get().runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        args(project.findProperty("jmhInclude") ?: ".*", "-prof", "gc")
+        jvmArgs("--add-opens=java.base/sun.nio.ch=ALL-UNNAMED")
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmarks;
+
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.instrument.Instrument;
+import com.aeroncookbook.rfq.domain.rfq.HeapRfq;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.infra.ClusterClientResponderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.CUSIP;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.EXPIRE_TIME_MS;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.PRICE;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.QUANTITY;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.REQUESTER;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.RESPONDER;
+
+/**
+ * Egress encoding in {@link ClusterClientResponderImpl}, with a stub session message context in place of the client
+ * sessions.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+    "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED", "-DLOG_LEVEL=warn" })
+public class ClusterClientResponderBenchmark
+{
+    private StubSessionMessageContext context;
+    private ClusterClientResponderImpl responder;
+    private Rfq rfq;
+    private List<Instrument> instruments;
+    private long correlationId;
+
+    /**
+     * Creates a quoted RFQ and an instrument list to encode
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        context = new StubSessionMessageContext();
+        responder = new ClusterClientResponderImpl(context);
+        rfq = new HeapRfq(1, 1, EXPIRE_TIME_MS, QUANTITY, Side.BUY, CUSIP, REQUESTER);
+        rfq.quote(RESPONDER, PRICE);
+
+        instruments = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+        {
+            instruments.add(new Instrument(String.format("%09d", i), true, 100));
+        }
+    }
+
+    /**
+     * Encodes an RfqCreatedEvent
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long broadcastNewRfq()
+    {
+        responder.broadcastNewRfq(rfq);
+        return context.getBytesSent();
+    }
+
+    /**
+     * Encodes a CreateRfqConfirmEvent
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long createRfqConfirm()
+    {
+        responder.createRfqConfirm(++correlationId, rfq, CreateRfqResult.SUCCESS);
+        return context.getBytesSent();
+    }
+
+    /**
+     * Encodes a QuoteRfqConfirmEvent
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long quoteRfqConfirm()
+    {
+        responder.quoteRfqConfirm(++correlationId, rfq, QuoteRfqResult.SUCCESS);
+        return context.getBytesSent();
+    }
+
+    /**
+     * Encodes an RfqQuotedEvent
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long broadcastRfqQuoted()
+    {
+        responder.broadcastRfqQuoted(rfq);
+        return context.getBytesSent();
+    }
+
+    /**
+     * Encodes an InstrumentsList of 20 instruments
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long sendInstruments()
+    {
+        responder.sendInstruments(++correlationId, instruments);
+        return context.getBytesSent();
+    }
+}
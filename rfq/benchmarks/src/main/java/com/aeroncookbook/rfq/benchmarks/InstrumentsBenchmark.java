@@ -0,0 +1,120 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmarks;
+
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import com.aeroncookbook.rfq.domain.instrument.Instrument;
+import com.aeroncookbook.rfq.domain.instrument.InstrumentAddType;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instrument lookups by packed cusip, as made for every RFQ created.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+    "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED", "-DLOG_LEVEL=warn" })
+public class InstrumentsBenchmark
+{
+    @Param({ "10", "10000" })
+    private int instrumentCount;
+
+    private Instruments instruments;
+    private long[] cusips;
+    private UnsafeBuffer cusipBytes;
+    private int index;
+
+    /**
+     * Loads the instruments
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        instruments = new RfqServiceFixture().instruments;
+        cusips = new long[instrumentCount];
+        cusipBytes = new UnsafeBuffer(new byte[instrumentCount * Cusip.LENGTH]);
+        for (int i = 0; i < instrumentCount; i++)
+        {
+            final String cusip = String.format("%09d", i);
+            cusips[i] = Cusip.encode(cusip);
+            cusipBytes.putStringWithoutLengthAscii(i * Cusip.LENGTH, cusip);
+            instruments.addInstrument(InstrumentAddType.SNAPSHOT_LOAD, Instruments.NO_CORRELATION, cusip, true, 100);
+        }
+    }
+
+    /**
+     * Looks up an instrument by packed cusip
+     *
+     * @return the instrument
+     */
+    @Benchmark
+    public Instrument lookup()
+    {
+        return instruments.lookup(cusips[nextIndex()]);
+    }
+
+    /**
+     * Packs a cusip from message bytes
+     *
+     * @return the packed cusip
+     */
+    @Benchmark
+    public long encodeFromBuffer()
+    {
+        return Cusip.encode(cusipBytes, nextIndex() * Cusip.LENGTH);
+    }
+
+    /**
+     * Runs the checks made when validating a new RFQ: packing the cusip from the message, then one lookup
+     *
+     * @return the minimum size, if the instrument is valid and enabled
+     */
+    @Benchmark
+    public int validateForCreate()
+    {
+        final Instrument instrument = instruments.lookup(Cusip.encode(cusipBytes, nextIndex() * Cusip.LENGTH));
+        if (instrument != null && instrument.isEnabled())
+        {
+            return instrument.getMinSize();
+        }
+        return -1;
+    }
+
+    private int nextIndex()
+    {
+        index = index + 1 == cusips.length ? 0 : index + 1;
+        return index;
+    }
+}
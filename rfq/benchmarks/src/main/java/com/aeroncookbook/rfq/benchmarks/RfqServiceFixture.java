@@ -0,0 +1,104 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmarks;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.instrument.InstrumentAddType;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
+import com.aeroncookbook.rfq.domain.rfq.HeapRfqStore;
+import com.aeroncookbook.rfq.domain.rfq.RfqStore;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.users.Users;
+import com.aeroncookbook.rfq.infra.AuditJournal;
+import com.aeroncookbook.rfq.infra.ClusterClientResponderImpl;
+import com.aeroncookbook.rfq.infra.SbeAdapter;
+import com.aeroncookbook.rfq.infra.ServiceConfig;
+import com.aeroncookbook.rfq.infra.SessionInterests;
+import com.aeroncookbook.rfq.infra.SessionUsers;
+import com.aeroncookbook.rfq.infra.TimerManager;
+import io.aeron.cluster.service.Cluster;
+import org.agrona.concurrent.NoOpIdleStrategy;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * The clustered service's domain and infrastructure wired together as in the service, but with a stub context and
+ * cluster, so that benchmarks drive the same code paths as the cluster without a media driver.
+ */
+final class RfqServiceFixture
+{
+    static final String CUSIP = "037833100";
+    static final int REQUESTER = 500;
+    static final int RESPONDER = 501;
+    static final long QUANTITY = 200;
+    static final long PRICE = 1_000;
+    static final long EXPIRE_TIME_MS = Long.MAX_VALUE / 4;
+
+    final StubSessionMessageContext context = new StubSessionMessageContext();
+    final ClusterClientResponderImpl responder = new ClusterClientResponderImpl(context);
+    final TimerManager timerManager = new TimerManager(context);
+    final Instruments instruments = new Instruments(responder);
+    final Users users = new Users(responder);
+    final Rfqs rfqs;
+    final SbeAdapter sbeAdapter;
+    private long correlationId;
+
+    RfqServiceFixture()
+    {
+        this(new HeapRfqStore());
+    }
+
+    RfqServiceFixture(final RfqStore rfqStore)
+    {
+        rfqs = new Rfqs(context, instruments, users, responder, timerManager, AuditJournal.NO_OP,
+            new ServiceConfig().rfqStore(rfqStore));
+        sbeAdapter = new SbeAdapter(
+            context, instruments, rfqs, new SessionInterests(), new SessionUsers(), users, responder);
+        context.setClusterTime(1);
+        timerManager.setCluster(stubCluster());
+        instruments.addInstrument(InstrumentAddType.SNAPSHOT_LOAD, Instruments.NO_CORRELATION, CUSIP, true, 100);
+    }
+
+    long nextCorrelationId()
+    {
+        return ++correlationId;
+    }
+
+    //expiry times are spread a millisecond apart, as for RFQs created over time; a million RFQs sharing one deadline
+    //would land in a single spoke of the expiry wheel, and the wheel sizes every spoke to its fullest one
+    void createLiveRfqs(final int count)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            rfqs.createRfq(nextCorrelationId(), EXPIRE_TIME_MS + i, QUANTITY, Side.BUY, CUSIP, REQUESTER);
+        }
+    }
+
+    //only the timer calls made by TimerManager are answered; the expiry wheel arms at most one cluster timer
+    private static Cluster stubCluster()
+    {
+        return (Cluster)Proxy.newProxyInstance(
+            Cluster.class.getClassLoader(),
+            new Class<?>[]{ Cluster.class },
+            (proxy, method, args) -> switch (method.getName())
+            {
+                case "scheduleTimer", "cancelTimer" -> Boolean.TRUE;
+                case "idleStrategy" -> NoOpIdleStrategy.INSTANCE;
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+}
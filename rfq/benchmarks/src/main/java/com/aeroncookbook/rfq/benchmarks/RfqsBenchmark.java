@@ -0,0 +1,137 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmarks;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.rfq.HeapRfqStore;
+import com.aeroncookbook.rfq.domain.rfq.OffHeapRfqStore;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.CUSIP;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.EXPIRE_TIME_MS;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.PRICE;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.QUANTITY;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.REQUESTER;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.RESPONDER;
+
+/**
+ * RFQ lifecycle commands against a book already holding a number of live RFQs.
+ * <p>
+ * Each benchmark runs a complete lifecycle, so the RFQ it creates is terminal and evicted at the end of the
+ * invocation and the number of live RFQs stays at the parameter value for the whole run. Each is run against both
+ * RFQ storage backends.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+    "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED", "-DLOG_LEVEL=warn", "-Xmx4g" })
+public class RfqsBenchmark
+{
+    @Param({ "1000", "100000", "1000000" })
+    private int liveRfqs;
+
+    @Param({ "heap", "off-heap" })
+    private String store;
+
+    private RfqServiceFixture fixture;
+    private Rfqs rfqs;
+    private int lookupRfqId;
+
+    /**
+     * Creates the live RFQs
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        fixture = new RfqServiceFixture("heap".equals(store) ? new HeapRfqStore() : new OffHeapRfqStore());
+        fixture.createLiveRfqs(liveRfqs);
+        rfqs = fixture.rfqs;
+    }
+
+    /**
+     * Creates an RFQ, has it quoted, and accepts the quote
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long createQuoteAccept()
+    {
+        rfqs.createRfq(fixture.nextCorrelationId(), EXPIRE_TIME_MS, QUANTITY, Side.BUY, CUSIP, REQUESTER);
+        final int rfqId = rfqs.getRfqIdSequence();
+        rfqs.quoteRfq(fixture.nextCorrelationId(), rfqId, RESPONDER, PRICE);
+        rfqs.acceptRfq(fixture.nextCorrelationId(), rfqId, REQUESTER);
+        return fixture.context.getBytesSent();
+    }
+
+    /**
+     * Creates an RFQ, has it quoted, and rejects the quote
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long createQuoteReject()
+    {
+        rfqs.createRfq(fixture.nextCorrelationId(), EXPIRE_TIME_MS, QUANTITY, Side.BUY, CUSIP, REQUESTER);
+        final int rfqId = rfqs.getRfqIdSequence();
+        rfqs.quoteRfq(fixture.nextCorrelationId(), rfqId, RESPONDER, PRICE);
+        rfqs.rejectRfq(fixture.nextCorrelationId(), rfqId, REQUESTER);
+        return fixture.context.getBytesSent();
+    }
+
+    /**
+     * Creates an RFQ and cancels it
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long createCancel()
+    {
+        rfqs.createRfq(fixture.nextCorrelationId(), EXPIRE_TIME_MS, QUANTITY, Side.BUY, CUSIP, REQUESTER);
+        rfqs.cancelRfq(fixture.nextCorrelationId(), rfqs.getRfqIdSequence(), REQUESTER);
+        return fixture.context.getBytesSent();
+    }
+
+    /**
+     * Looks up a live RFQ by id, cycling through the live RFQs
+     *
+     * @return the RFQ found
+     */
+    @Benchmark
+    public Rfq lookupLiveRfq()
+    {
+        lookupRfqId = lookupRfqId == liveRfqs ? 1 : lookupRfqId + 1;
+        return rfqs.getRfq(lookupRfqId);
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmarks;
+
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CommandBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.ListInstrumentsCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RejectRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SetInstrumentEnabledFlagEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.infra.SbeAdapter;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.CUSIP;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.EXPIRE_TIME_MS;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.PRICE;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.QUANTITY;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.REQUESTER;
+import static com.aeroncookbook.rfq.benchmarks.RfqServiceFixture.RESPONDER;
+
+/**
+ * Ingress dispatch through {@link SbeAdapter}, from an encoded command to the encoded replies, per template id.
+ * <p>
+ * Commands are encoded once during setup; only the rfqId of commands that follow a create is updated per invocation.
+ * The RFQ commands run as complete lifecycles so that the book does not grow over the run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {
+    "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED", "-DLOG_LEVEL=warn" })
+public class SbeAdapterBenchmark
+{
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final CreateRfqCommandEncoder createRfqEncoder = new CreateRfqCommandEncoder();
+    private final QuoteRfqCommandEncoder quoteRfqEncoder = new QuoteRfqCommandEncoder();
+    private final AcceptRfqCommandEncoder acceptRfqEncoder = new AcceptRfqCommandEncoder();
+    private final RejectRfqCommandEncoder rejectRfqEncoder = new RejectRfqCommandEncoder();
+    private final CancelRfqCommandEncoder cancelRfqEncoder = new CancelRfqCommandEncoder();
+    private final ListInstrumentsCommandEncoder listInstrumentsEncoder = new ListInstrumentsCommandEncoder();
+    private final AddInstrumentEncoder addInstrumentEncoder = new AddInstrumentEncoder();
+    private final SetInstrumentEnabledFlagEncoder setInstrumentEnabledEncoder = new SetInstrumentEnabledFlagEncoder();
+    private final CommandBatchEncoder commandBatchEncoder = new CommandBatchEncoder();
+
+    private final UnsafeBuffer createRfqBuffer = newBuffer();
+    private final UnsafeBuffer quoteRfqBuffer = newBuffer();
+    private final UnsafeBuffer acceptRfqBuffer = newBuffer();
+    private final UnsafeBuffer rejectRfqBuffer = newBuffer();
+    private final UnsafeBuffer cancelRfqBuffer = newBuffer();
+    private final UnsafeBuffer listInstrumentsBuffer = newBuffer();
+    private final UnsafeBuffer addInstrumentBuffer = newBuffer();
+    private final UnsafeBuffer setInstrumentEnabledBuffer = newBuffer();
+    private final UnsafeBuffer commandBatchBuffer = new UnsafeBuffer(ByteBuffer.allocateDirect(1024));
+
+    private RfqServiceFixture fixture;
+    private SbeAdapter sbeAdapter;
+    private int createRfqLength;
+    private int quoteRfqLength;
+    private int acceptRfqLength;
+    private int rejectRfqLength;
+    private int cancelRfqLength;
+    private int listInstrumentsLength;
+    private int addInstrumentLength;
+    private int setInstrumentEnabledLength;
+    private long requestId;
+
+    /**
+     * Encodes the commands
+     */
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        fixture = new RfqServiceFixture();
+        sbeAdapter = fixture.sbeAdapter;
+
+        createRfqEncoder.wrapAndApplyHeader(createRfqBuffer, 0, headerEncoder)
+            .expireTimeMs(EXPIRE_TIME_MS)
+            .quantity(QUANTITY)
+            .requesterSide(Side.BUY)
+            .cusip(CUSIP)
+            .requesterUserId(REQUESTER)
+            .requestId(1);
+        createRfqLength = headerEncoder.encodedLength() + createRfqEncoder.encodedLength();
+
+        quoteRfqEncoder.wrapAndApplyHeader(quoteRfqBuffer, 0, headerEncoder)
+            .responderUserId(RESPONDER)
+            .price(PRICE)
+            .requestId(2);
+        quoteRfqLength = headerEncoder.encodedLength() + quoteRfqEncoder.encodedLength();
+
+        acceptRfqEncoder.wrapAndApplyHeader(acceptRfqBuffer, 0, headerEncoder)
+            .acceptUserId(REQUESTER)
+            .requestId(3);
+        acceptRfqLength = headerEncoder.encodedLength() + acceptRfqEncoder.encodedLength();
+
+        rejectRfqEncoder.wrapAndApplyHeader(rejectRfqBuffer, 0, headerEncoder)
+            .responderUserId(REQUESTER)
+            .requestId(3);
+        rejectRfqLength = headerEncoder.encodedLength() + rejectRfqEncoder.encodedLength();
+
+        cancelRfqEncoder.wrapAndApplyHeader(cancelRfqBuffer, 0, headerEncoder)
+            .cancelUserId(REQUESTER)
+            .requestId(2);
+        cancelRfqLength = headerEncoder.encodedLength() + cancelRfqEncoder.encodedLength();
+
+        listInstrumentsEncoder.wrapAndApplyHeader(listInstrumentsBuffer, 0, headerEncoder)
+            .requestId(4);
+        listInstrumentsLength = headerEncoder.encodedLength() + listInstrumentsEncoder.encodedLength();
+
+        addInstrumentEncoder.wrapAndApplyHeader(addInstrumentBuffer, 0, headerEncoder)
+            .cusip(CUSIP)
+            .enabled(BooleanType.TRUE)
+            .minSize(100)
+            .requestId(5);
+        addInstrumentLength = headerEncoder.encodedLength() + addInstrumentEncoder.encodedLength();
+
+        setInstrumentEnabledEncoder.wrapAndApplyHeader(setInstrumentEnabledBuffer, 0, headerEncoder)
+            .cusip(CUSIP)
+            .enabled(BooleanType.TRUE)
+            .requestId(6);
+        setInstrumentEnabledLength = headerEncoder.encodedLength() + setInstrumentEnabledEncoder.encodedLength();
+    }
+
+    /**
+     * Dispatches CreateRfqCommand, QuoteRfqCommand and AcceptRfqCommand
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long createQuoteAccept()
+    {
+        //each command needs a fresh request id, as a repeated one is answered from the dedup window
+        createRfqEncoder.requestId(++requestId);
+        quoteRfqEncoder.requestId(++requestId);
+        acceptRfqEncoder.requestId(++requestId);
+        sbeAdapter.dispatch(createRfqBuffer, 0, createRfqLength);
+        final int rfqId = fixture.rfqs.getRfqIdSequence();
+        quoteRfqEncoder.rfqId(rfqId);
+        sbeAdapter.dispatch(quoteRfqBuffer, 0, quoteRfqLength);
+        acceptRfqEncoder.rfqId(rfqId);
+        sbeAdapter.dispatch(acceptRfqBuffer, 0, acceptRfqLength);
+        return fixture.context.getBytesSent();
+    }
+
+    /**
+     * Dispatches CreateRfqCommand, QuoteRfqCommand and AcceptRfqCommand as one CommandBatch, as they would arrive in a
+     * single log entry. The batch is assembled from the encoded commands per invocation.
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long createQuoteAcceptBatched()
+    {
+        createRfqEncoder.requestId(++requestId);
+        quoteRfqEncoder.requestId(++requestId);
+        acceptRfqEncoder.requestId(++requestId);
+        final int rfqId = fixture.rfqs.getRfqIdSequence() + 1;
+        quoteRfqEncoder.rfqId(rfqId);
+        acceptRfqEncoder.rfqId(rfqId);
+        final CommandBatchEncoder.CommandsEncoder commands =
+            commandBatchEncoder.wrapAndApplyHeader(commandBatchBuffer, 0, headerEncoder).commandsCount(3);
+        commands.next().putCommand(createRfqBuffer, 0, createRfqLength);
+        commands.next().putCommand(quoteRfqBuffer, 0, quoteRfqLength);
+        commands.next().putCommand(acceptRfqBuffer, 0, acceptRfqLength);
+        sbeAdapter.dispatch(commandBatchBuffer, 0, headerEncoder.encodedLength() + commandBatchEncoder.encodedLength());
+        return fixture.context.getBytesSent();
+    }
+
+    /**
+     * Dispatches CreateRfqCommand, QuoteRfqCommand and RejectRfqCommand
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long createQuoteReject()
+    {
+        createRfqEncoder.requestId(++requestId);
+        quoteRfqEncoder.requestId(++requestId);
+        rejectRfqEncoder.requestId(++requestId);
+        sbeAdapter.dispatch(createRfqBuffer, 0, createRfqLength);
+        final int rfqId = fixture.rfqs.getRfqIdSequence();
+        quoteRfqEncoder.rfqId(rfqId);
+        sbeAdapter.dispatch(quoteRfqBuffer, 0, quoteRfqLength);
+        rejectRfqEncoder.rfqId(rfqId);
+        sbeAdapter.dispatch(rejectRfqBuffer, 0, rejectRfqLength);
+        return fixture.context.getBytesSent();
+    }
+
+    /**
+     * Dispatches CreateRfqCommand and CancelRfqCommand
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long createCancel()
+    {
+        createRfqEncoder.requestId(++requestId);
+        cancelRfqEncoder.requestId(++requestId);
+        sbeAdapter.dispatch(createRfqBuffer, 0, createRfqLength);
+        cancelRfqEncoder.rfqId(fixture.rfqs.getRfqIdSequence());
+        sbeAdapter.dispatch(cancelRfqBuffer, 0, cancelRfqLength);
+        return fixture.context.getBytesSent();
+    }
+
+    /**
+     * Dispatches ListInstrumentsCommand
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long listInstruments()
+    {
+        sbeAdapter.dispatch(listInstrumentsBuffer, 0, listInstrumentsLength);
+        return fixture.context.getBytesSent();
+    }
+
+    /**
+     * Dispatches AddInstrument, replacing the same instrument each time
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long addInstrument()
+    {
+        sbeAdapter.dispatch(addInstrumentBuffer, 0, addInstrumentLength);
+        return fixture.context.getBytesSent();
+    }
+
+    /**
+     * Dispatches SetInstrumentEnabledFlag
+     *
+     * @return the egress bytes sent, to defeat dead code elimination
+     */
+    @Benchmark
+    public long setInstrumentEnabledFlag()
+    {
+        sbeAdapter.dispatch(setInstrumentEnabledBuffer, 0, setInstrumentEnabledLength);
+        return fixture.context.getBytesSent();
+    }
+
+    private static UnsafeBuffer newBuffer()
+    {
+        return new UnsafeBuffer(ByteBuffer.allocateDirect(256));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.benchmarks;
+
+import com.aeroncookbook.rfq.infra.ClientSessions;
+import com.aeroncookbook.rfq.infra.ServiceConfig;
+import com.aeroncookbook.rfq.infra.SessionMessageContextImpl;
+import org.agrona.DirectBuffer;
+
+/**
+ * Session message context that counts the egress bytes it is given rather than offering them to client sessions, so
+ * that benchmarks measure encoding and domain logic without Aeron publications.
+ */
+public class StubSessionMessageContext extends SessionMessageContextImpl
+{
+    private long bytesSent;
+
+    /**
+     * Constructor
+     */
+    public StubSessionMessageContext()
+    {
+        super(new ClientSessions(), new ServiceConfig());
+    }
+
+    @Override
+    public void reply(final DirectBuffer buffer, final int offset, final int length)
+    {
+        bytesSent += length;
+    }
+
+    @Override
+    public void broadcast(final DirectBuffer buffer, final int offset, final int length)
+    {
+        bytesSent += length;
+    }
+
+    @Override
+    public void broadcastToInterested(
+        final String cusip,
+        final int requesterUserId,
+        final int responderUserId,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
+    {
+        bytesSent += length;
+    }
+
+    /**
+     * Gets the total egress bytes given to this context, for benchmarks to return to the blackhole
+     *
+     * @return the bytes sent
+     */
+    public long getBytesSent()
+    {
+        return bytesSent;
+    }
+}
@@ -0,0 +1,3 @@
+#!/bin/sh
+journal=${AUDIT_JOURNAL_FILE:-$(ls ~/jar/audit-*.journal | head -1)}
+java -cp ~/jar/cluster-uber.jar com.aeroncookbook.rfq.infra.AuditJournalReader $journal
@@ -29,6 +29,7 @@ dependencies {
     implementation(libs.aeron.samples)
     implementation(libs.slf4j)
     implementation(libs.logback)
+    implementation(libs.hdrHistogram)
     implementation(project(":rfq:cluster-protocol"))
     testImplementation(libs.bundles.testing)
 }
@@ -59,7 +60,7 @@ tasks {
         group = "run"
         classpath = sourceSets.main.get().runtimeClasspath
         mainClass.set("com.aeroncookbook.rfq.ClusterApp")
-        jvmArgs("--add-opens=java.base/sun.nio.ch=ALL-UNNAMED")
+        jvmArgs("--add-opens=java.base/sun.nio.ch=ALL-UNNAMED", "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED")
     }
 
 
@@ -16,17 +16,41 @@
 
 package com.aeroncookbook.rfq;
 
+import com.aeroncookbook.rfq.domain.rfq.HeapRfqStore;
+import com.aeroncookbook.rfq.domain.rfq.OffHeapRfqStore;
+import com.aeroncookbook.rfq.domain.rfq.RfqStore;
 import com.aeroncookbook.rfq.infra.AppClusteredService;
+import com.aeroncookbook.rfq.infra.AuditJournalAgent;
+import com.aeroncookbook.rfq.infra.AuditJournalImpl;
+import com.aeroncookbook.rfq.infra.EgressMode;
+import com.aeroncookbook.rfq.infra.LatencyLogAgent;
+import com.aeroncookbook.rfq.infra.LatencyRecorderImpl;
+import com.aeroncookbook.rfq.infra.ObserverFeedAgent;
+import com.aeroncookbook.rfq.infra.ObserverFeedImpl;
+import com.aeroncookbook.rfq.infra.RfqHistoryAgent;
+import com.aeroncookbook.rfq.infra.RfqHistoryImpl;
+import com.aeroncookbook.rfq.infra.RfqHistoryStore;
+import com.aeroncookbook.rfq.infra.RingBuffers;
+import com.aeroncookbook.rfq.infra.SessionEgress;
+import com.aeroncookbook.rfq.infra.ServiceConfig;
+import com.aeroncookbook.rfq.infra.SlowConsumerPolicy;
+import io.aeron.Aeron;
+import io.aeron.Publication;
+import io.aeron.Subscription;
 import io.aeron.cluster.ClusteredMediaDriver;
 import io.aeron.cluster.service.ClusteredServiceContainer;
 import io.aeron.samples.cluster.ClusterConfig;
+import org.agrona.concurrent.AgentRunner;
 import org.agrona.concurrent.ShutdownSignalBarrier;
+import org.agrona.concurrent.SleepingMillisIdleStrategy;
 import org.agrona.concurrent.SystemEpochClock;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
@@ -52,9 +76,46 @@ public class ClusterApp
         final String hosts = getClusterAddresses();
 
         final List<String> hostAddresses = List.of(hosts.split(","));
+        final String auditJournalFile = getAuditJournalFile(nodeId);
+        final RingBuffer auditRingBuffer = auditJournalFile.isEmpty() ?
+            null : RingBuffers.newRingBuffer(AuditJournalImpl.DEFAULT_CAPACITY);
+        final String observerChannel = getObserverChannel();
+        final ObserverFeedImpl observerFeed = observerChannel.isEmpty() ?
+            null : new ObserverFeedImpl(RingBuffers.newRingBuffer(ObserverFeedImpl.DEFAULT_CAPACITY));
+        final String latencyLogFile = getLatencyLogFile(nodeId);
+        final LatencyRecorderImpl latencyRecorder = latencyLogFile.isEmpty() ? null : new LatencyRecorderImpl();
+        final String historyFile = getHistoryFile();
+        final RingBuffer historyRingBuffer = historyFile.isEmpty() ?
+            null : RingBuffers.newRingBuffer(RfqHistoryImpl.DEFAULT_CAPACITY);
+        final String historyQueryChannel = null == historyRingBuffer ? "" : getHistoryQueryChannel();
+        final ServiceConfig serviceConfig = new ServiceConfig()
+            .slowConsumerPolicy(getSlowConsumerPolicy())
+            .maxQueuedBytes(getEgressQueueBytes())
+            .egressMode(getEgressMode())
+            .rfqStore(getRfqStore())
+            .auditRingBuffer(auditRingBuffer)
+            .fullSnapshotInterval(getSnapshotFullInterval());
+        if (null != observerFeed)
+        {
+            serviceConfig.observerFeed(observerFeed);
+        }
+        if (null != latencyRecorder)
+        {
+            serviceConfig.latencyRecorder(latencyRecorder);
+        }
+        if (null != historyRingBuffer)
+        {
+            serviceConfig.rfqHistory(new RfqHistoryImpl(historyRingBuffer));
+        }
         final ClusterConfig clusterConfig = ClusterConfig.create(nodeId, hostAddresses, hostAddresses, portBase,
-            new AppClusteredService());
+            new AppClusteredService(serviceConfig));
         clusterConfig.consensusModuleContext().ingressChannel("aeron:udp");
+        //a standby snapshot is loaded without the chain of base recordings a delta snapshot needs
+        if (serviceConfig.fullSnapshotInterval() > 1 && clusterConfig.consensusModuleContext().acceptStandbySnapshots())
+        {
+            throw new IllegalArgumentException(
+                "SNAPSHOT_FULL_INTERVAL above 1 needs every base snapshot kept, which standby snapshots do not");
+        }
 
         //this may need tuning for your environment.
         clusterConfig.consensusModuleContext().leaderHeartbeatTimeoutNs(TimeUnit.SECONDS.toNanos(3));
@@ -64,10 +125,17 @@ public class ClusterApp
 
         try (
             ShutdownSignalBarrier barrier = new ShutdownSignalBarrier();
+            AgentRunner ignored2 = startAuditJournalAgent(auditRingBuffer, auditJournalFile);
+            AgentRunner ignored4 = startLatencyLogAgent(latencyRecorder, latencyLogFile);
             ClusteredMediaDriver ignored = ClusteredMediaDriver.launch(
                 clusterConfig.mediaDriverContext().terminationHook(barrier::signalAll),
                 clusterConfig.archiveContext(),
                 clusterConfig.consensusModuleContext().terminationHook(barrier::signalAll));
+            Aeron observerAeron = connectAeron(null != observerFeed, clusterConfig);
+            AgentRunner ignored3 = startObserverFeedAgent(observerFeed, observerAeron, observerChannel);
+            Aeron historyAeron = connectAeron(!historyQueryChannel.isEmpty(), clusterConfig);
+            AgentRunner ignored5 = startRfqHistoryAgent(historyRingBuffer, historyFile, historyAeron,
+                historyQueryChannel);
             ClusteredServiceContainer ignored1 = ClusteredServiceContainer.launch(
                 clusterConfig.clusteredServiceContext().terminationHook(barrier::signalAll)))
         {
@@ -123,6 +191,367 @@ public class ClusterApp
         return parseInt(portBaseString);
     }
 
+    /**
+     * Get the policy applied to client sessions whose egress queue is full, from the environment variable
+     * EGRESS_SLOW_CONSUMER_POLICY or the system property egress.slow.consumer.policy
+     *
+     * @return slow consumer policy, default DISCONNECT
+     */
+    private static SlowConsumerPolicy getSlowConsumerPolicy()
+    {
+        String policy = System.getenv("EGRESS_SLOW_CONSUMER_POLICY");
+        if (null == policy || policy.isEmpty())
+        {
+            policy = System.getProperty("egress.slow.consumer.policy", SlowConsumerPolicy.DISCONNECT.name());
+        }
+        return SlowConsumerPolicy.valueOf(policy.toUpperCase());
+    }
+
+    /**
+     * Get the limit on egress bytes queued per client session, from the environment variable EGRESS_QUEUE_BYTES or
+     * the system property egress.queue.bytes. Must be a power of two.
+     *
+     * @return egress queue bytes, default 1MB
+     */
+    private static int getEgressQueueBytes()
+    {
+        String queueBytes = System.getenv("EGRESS_QUEUE_BYTES");
+        if (null == queueBytes || queueBytes.isEmpty())
+        {
+            queueBytes = System.getProperty(
+                "egress.queue.bytes", Integer.toString(SessionEgress.DEFAULT_MAX_QUEUED_BYTES));
+        }
+        return parseInt(queueBytes);
+    }
+
+    /**
+     * Get when egress messages are sent, from the environment variable EGRESS_MODE or the system property egress.mode:
+     * immediate to offer each message as it is encoded, or batched to send them together once each log message has
+     * been handled
+     *
+     * @return egress mode, default IMMEDIATE
+     */
+    private static EgressMode getEgressMode()
+    {
+        String mode = System.getenv("EGRESS_MODE");
+        if (null == mode || mode.isEmpty())
+        {
+            mode = System.getProperty("egress.mode", EgressMode.IMMEDIATE.name());
+        }
+        return EgressMode.valueOf(mode.toUpperCase());
+    }
+
+    /**
+     * Get the storage backend for live RFQs, from the environment variable RFQ_STORE or the system property
+     * rfq.store: heap for an object per RFQ, or off-heap for fixed width slots in an off-heap buffer
+     *
+     * @return the RFQ store, default heap
+     */
+    private static RfqStore getRfqStore()
+    {
+        String store = System.getenv("RFQ_STORE");
+        if (null == store || store.isEmpty())
+        {
+            store = System.getProperty("rfq.store", "heap");
+        }
+        return switch (store.toLowerCase())
+        {
+            case "heap" -> new HeapRfqStore();
+            case "off-heap" -> new OffHeapRfqStore();
+            default -> throw new IllegalArgumentException("Unknown RFQ store: " + store);
+        };
+    }
+
+    /**
+     * Get the audit journal file, from the environment variable AUDIT_JOURNAL_FILE or the system property
+     * audit.journal.file. An empty value disables the journal.
+     *
+     * @param nodeId the cluster node id
+     * @return audit journal file, default audit-&lt;nodeId&gt;.journal
+     */
+    private static String getAuditJournalFile(final int nodeId)
+    {
+        String file = System.getenv("AUDIT_JOURNAL_FILE");
+        if (null == file)
+        {
+            file = System.getProperty("audit.journal.file", "audit-" + nodeId + ".journal");
+        }
+        return file;
+    }
+
+    /**
+     * Starts the agent draining the audit journal to file on a thread of its own
+     *
+     * @param ringBuffer the audit journal ring buffer, or null if the journal is disabled
+     * @param file       the audit journal file
+     * @return the running agent, or null if the journal is disabled
+     */
+    private static AgentRunner startAuditJournalAgent(final RingBuffer ringBuffer, final String file)
+    {
+        if (null == ringBuffer)
+        {
+            return null;
+        }
+
+        final AgentRunner runner = new AgentRunner(new SleepingMillisIdleStrategy(1), Throwable::printStackTrace,
+            null, new AuditJournalAgent(ringBuffer, Path.of(file)));
+        AgentRunner.startOnThread(runner);
+        return runner;
+    }
+
+    /**
+     * Get the latency log file, from the environment variable LATENCY_LOG_FILE or the system property
+     * latency.log.file. The log is rolled over hourly to files with the start time added to the name. An empty
+     * value disables latency recording.
+     *
+     * @param nodeId the cluster node id
+     * @return latency log file, default latency-&lt;nodeId&gt;.hlog
+     */
+    private static String getLatencyLogFile(final int nodeId)
+    {
+        String file = System.getenv("LATENCY_LOG_FILE");
+        if (null == file)
+        {
+            file = System.getProperty("latency.log.file", "latency-" + nodeId + ".hlog");
+        }
+        return file;
+    }
+
+    /**
+     * Get the interval at which latency histograms are written to the latency log, from the environment variable
+     * LATENCY_LOG_INTERVAL_MS or the system property latency.log.interval.ms
+     *
+     * @return latency log interval in milliseconds, default 1000
+     */
+    private static long getLatencyLogIntervalMs()
+    {
+        String intervalMs = System.getenv("LATENCY_LOG_INTERVAL_MS");
+        if (null == intervalMs || intervalMs.isEmpty())
+        {
+            intervalMs = System.getProperty(
+                "latency.log.interval.ms", Long.toString(LatencyLogAgent.DEFAULT_INTERVAL_MS));
+        }
+        return Long.parseLong(intervalMs);
+    }
+
+    /**
+     * Get the number of snapshots from one full snapshot to the next, the others being deltas of the changed RFQs,
+     * from the environment variable SNAPSHOT_FULL_INTERVAL or the system property snapshot.full.interval. Above 1,
+     * every snapshot recording back to the last full one must be kept in each node's archive; see
+     * {@link ServiceConfig#fullSnapshotInterval(int)}
+     *
+     * @return full snapshot interval, default 1 for full snapshots only
+     */
+    private static int getSnapshotFullInterval()
+    {
+        String interval = System.getenv("SNAPSHOT_FULL_INTERVAL");
+        if (null == interval || interval.isEmpty())
+        {
+            interval = System.getProperty("snapshot.full.interval", "1");
+        }
+        return parseInt(interval);
+    }
+
+    /**
+     * Starts the agent writing latency histograms to the latency log on a thread of its own
+     *
+     * @param latencyRecorder the recorder written to by the service, or null if latency recording is disabled
+     * @param file            the latency log file
+     * @return the running agent, or null if latency recording is disabled
+     */
+    private static AgentRunner startLatencyLogAgent(final LatencyRecorderImpl latencyRecorder, final String file)
+    {
+        if (null == latencyRecorder)
+        {
+            return null;
+        }
+
+        final AgentRunner runner = new AgentRunner(new SleepingMillisIdleStrategy(1), Throwable::printStackTrace,
+            null, new LatencyLogAgent(latencyRecorder, Path.of(file), SystemEpochClock.INSTANCE,
+            getLatencyLogIntervalMs(), LatencyLogAgent.DEFAULT_ROLL_INTERVAL_MS));
+        AgentRunner.startOnThread(runner);
+        return runner;
+    }
+
+    /**
+     * Get the channel of the conflated observer stream, from the environment variable OBSERVER_CHANNEL or the system
+     * property observer.channel, such as aeron:ipc or a UDP multicast channel. An empty value disables the stream.
+     *
+     * @return observer channel, default empty
+     */
+    private static String getObserverChannel()
+    {
+        String channel = System.getenv("OBSERVER_CHANNEL");
+        if (null == channel || channel.isEmpty())
+        {
+            channel = System.getProperty("observer.channel", "");
+        }
+        return channel;
+    }
+
+    /**
+     * Get the stream id of the conflated observer stream, from the environment variable OBSERVER_STREAM_ID or the
+     * system property observer.stream.id
+     *
+     * @return observer stream id, default 1100
+     */
+    private static int getObserverStreamId()
+    {
+        String streamId = System.getenv("OBSERVER_STREAM_ID");
+        if (null == streamId || streamId.isEmpty())
+        {
+            streamId = System.getProperty("observer.stream.id", "1100");
+        }
+        return parseInt(streamId);
+    }
+
+    /**
+     * Get the interval at which conflated RFQ states are published to observers, from the environment variable
+     * OBSERVER_INTERVAL_MS or the system property observer.interval.ms
+     *
+     * @return observer publishing interval in milliseconds, default 100
+     */
+    private static long getObserverIntervalMs()
+    {
+        String intervalMs = System.getenv("OBSERVER_INTERVAL_MS");
+        if (null == intervalMs || intervalMs.isEmpty())
+        {
+            intervalMs = System.getProperty(
+                "observer.interval.ms", Long.toString(ObserverFeedAgent.DEFAULT_INTERVAL_MS));
+        }
+        return Long.parseLong(intervalMs);
+    }
+
+    /**
+     * Connects a client of its own to the node's media driver for a stream served away from the cluster, such as
+     * the observer stream, once the driver is launched
+     *
+     * @param enabled       whether the stream is enabled
+     * @param clusterConfig the cluster configuration holding the media driver directory
+     * @return the client, or null if the stream is disabled
+     */
+    private static Aeron connectAeron(final boolean enabled, final ClusterConfig clusterConfig)
+    {
+        if (!enabled)
+        {
+            return null;
+        }
+
+        return Aeron.connect(new Aeron.Context()
+            .aeronDirectoryName(clusterConfig.mediaDriverContext().aeronDirectoryName()));
+    }
+
+    /**
+     * Starts the agent conflating and publishing RFQ states to observers on a thread of its own. It is started before
+     * the service so that the states of RFQs restored from a snapshot are not dropped.
+     *
+     * @param feed    the observer feed, or null if the stream is disabled
+     * @param aeron   the client to publish with
+     * @param channel the observer channel
+     * @return the running agent, or null if the stream is disabled
+     */
+    private static AgentRunner startObserverFeedAgent(
+        final ObserverFeedImpl feed,
+        final Aeron aeron,
+        final String channel)
+    {
+        if (null == feed)
+        {
+            return null;
+        }
+
+        final ObserverFeedAgent agent = new ObserverFeedAgent(feed,
+            aeron.addExclusivePublication(channel, getObserverStreamId()), SystemEpochClock.INSTANCE,
+            getObserverIntervalMs());
+        final AgentRunner runner = new AgentRunner(
+            new SleepingMillisIdleStrategy(1), Throwable::printStackTrace, null, agent);
+        AgentRunner.startOnThread(runner);
+        return runner;
+    }
+
+    /**
+     * Get the RFQ history file, from the environment variable HISTORY_FILE or the system property history.file. An
+     * empty value disables the history.
+     *
+     * @return RFQ history file, default empty
+     */
+    private static String getHistoryFile()
+    {
+        String file = System.getenv("HISTORY_FILE");
+        if (null == file)
+        {
+            file = System.getProperty("history.file", "");
+        }
+        return file;
+    }
+
+    /**
+     * Get the channel RFQ history queries are received on, from the environment variable HISTORY_QUERY_CHANNEL or
+     * the system property history.query.channel. An empty value disables queries.
+     *
+     * @return history query channel, default empty
+     */
+    private static String getHistoryQueryChannel()
+    {
+        String channel = System.getenv("HISTORY_QUERY_CHANNEL");
+        if (null == channel || channel.isEmpty())
+        {
+            channel = System.getProperty("history.query.channel", "");
+        }
+        return channel;
+    }
+
+    /**
+     * Get the channel RFQ history queries are answered on, from the environment variable HISTORY_RESPONSE_CHANNEL or
+     * the system property history.response.channel
+     *
+     * @param queryChannel the channel queries are received on
+     * @return history response channel, default the query channel
+     */
+    private static String getHistoryResponseChannel(final String queryChannel)
+    {
+        String channel = System.getenv("HISTORY_RESPONSE_CHANNEL");
+        if (null == channel || channel.isEmpty())
+        {
+            channel = System.getProperty("history.response.channel", queryChannel);
+        }
+        return channel;
+    }
+
+    /**
+     * Starts the agent storing RFQs evicted in a terminal state to the history file, and answering history queries,
+     * on a thread of its own
+     *
+     * @param ringBuffer   the RFQ history ring buffer, or null if the history is disabled
+     * @param file         the RFQ history file
+     * @param aeron        the client to receive and answer queries with, or null if queries are disabled
+     * @param queryChannel the channel queries are received on
+     * @return the running agent, or null if the history is disabled
+     */
+    private static AgentRunner startRfqHistoryAgent(
+        final RingBuffer ringBuffer,
+        final String file,
+        final Aeron aeron,
+        final String queryChannel)
+    {
+        if (null == ringBuffer)
+        {
+            return null;
+        }
+
+        final Subscription querySubscription = null == aeron ?
+            null : aeron.addSubscription(queryChannel, RfqHistoryAgent.DEFAULT_QUERY_STREAM_ID);
+        final Publication responsePublication = null == aeron ? null : aeron.addExclusivePublication(
+            getHistoryResponseChannel(queryChannel), RfqHistoryAgent.DEFAULT_RESPONSE_STREAM_ID);
+        final RfqHistoryAgent agent = new RfqHistoryAgent(ringBuffer,
+            new RfqHistoryStore(Path.of(file), RfqHistoryStore.DEFAULT_GROWTH_BYTES), querySubscription,
+            responsePublication);
+        final AgentRunner runner = new AgentRunner(
+            new SleepingMillisIdleStrategy(1), Throwable::printStackTrace, null, agent);
+        AgentRunner.startOnThread(runner);
+        return runner;
+    }
+
     /**
      * Await DNS resolution of self. Under Kubernetes, this can take a while.
      *
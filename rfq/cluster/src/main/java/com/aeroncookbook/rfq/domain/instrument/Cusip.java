@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aeroncookbook.rfq.domain.instrument;
+
+import org.agrona.DirectBuffer;
+
+/**
+ * Packs a CUSIP into a long, so that instruments can be keyed and compared without a String.
+ * <p>
+ * Each of the 9 ASCII characters takes 7 bits, first character highest, for 63 bits in all. A CUSIP shorter than 9
+ * characters is padded with zeros, as in the fixed length SBE field, so the packing is exact for any ASCII CUSIP.
+ */
+public final class Cusip
+{
+    /**
+     * Number of characters in a CUSIP
+     */
+    public static final int LENGTH = 9;
+
+    /**
+     * Packed value of the empty CUSIP
+     */
+    public static final long NO_CUSIP = 0;
+
+    private static final int BITS_PER_CHAR = 7;
+    private static final int CHAR_MASK = 0x7F;
+
+    private Cusip()
+    {
+    }
+
+    /**
+     * Packs a CUSIP held as a String.
+     *
+     * @param cusip the cusip, at most 9 ASCII characters
+     * @return the packed cusip
+     */
+    public static long encode(final CharSequence cusip)
+    {
+        final int length = Math.min(cusip.length(), LENGTH);
+        long packed = 0;
+        for (int i = 0; i < LENGTH; i++)
+        {
+            final int c = i < length ? cusip.charAt(i) & CHAR_MASK : 0;
+            packed = (packed << BITS_PER_CHAR) | c;
+        }
+        return packed;
+    }
+
+    /**
+     * Packs a CUSIP held as 9 ASCII bytes, such as a fixed length SBE field, without creating a String. Bytes after
+     * the first zero byte are ignored.
+     *
+     * @param buffer the buffer holding the cusip
+     * @param offset the offset of the first byte of the cusip
+     * @return the packed cusip
+     */
+    public static long encode(final DirectBuffer buffer, final int offset)
+    {
+        long packed = 0;
+        boolean terminated = false;
+        for (int i = 0; i < LENGTH; i++)
+        {
+            final int c = terminated ? 0 : buffer.getByte(offset + i) & CHAR_MASK;
+            terminated = c == 0;
+            packed = (packed << BITS_PER_CHAR) | c;
+        }
+        return packed;
+    }
+
+    /**
+     * Unpacks a CUSIP to a String.
+     *
+     * @param packed the packed cusip
+     * @return the cusip, without any zero padding
+     */
+    public static String decode(final long packed)
+    {
+        final StringBuilder builder = new StringBuilder(LENGTH);
+        for (int i = LENGTH - 1; i >= 0; i--)
+        {
+            final char c = (char)((packed >>> (i * BITS_PER_CHAR)) & CHAR_MASK);
+            if (c == 0)
+            {
+                break;
+            }
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+}
@@ -16,21 +16,30 @@
 
 package com.aeroncookbook.rfq.domain.instrument;
 
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.rfq.infra.AuditJournal;
 import com.aeroncookbook.rfq.infra.ClusterClientResponder;
-import org.agrona.collections.Object2ObjectHashMap;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.agrona.collections.Hashing;
+import org.agrona.collections.Long2ObjectHashMap;
+
+import java.util.Collection;
 
 /**
  * The instrument domain model.
+ * <p>
+ * Instruments are keyed by their CUSIP packed into a long by {@link Cusip}, so that a lookup made while handling a
+ * command needs neither a String nor its hash.
  */
 public class Instruments
 {
-    private static final int DEFAULT_MIN_VALUE = 0;
-    private static final Logger LOGGER = LoggerFactory.getLogger(Instruments.class);
+    /**
+     * Correlation id used for instruments that are not added in response to a client request.
+     */
+    public static final long NO_CORRELATION = Long.MIN_VALUE;
     private final ClusterClientResponder clusterClientResponder;
+    private final AuditJournal auditJournal;
 
-    private final Object2ObjectHashMap<String, Instrument> instrumentByCusip = new Object2ObjectHashMap<>();
+    private Long2ObjectHashMap<Instrument> instrumentByCusip = new Long2ObjectHashMap<>();
 
     /**
      * Constructor for instrument domain model object.
@@ -38,118 +47,124 @@ public class Instruments
      * @param clusterClientResponder the responder to which events are sent
      */
     public Instruments(final ClusterClientResponder clusterClientResponder)
+    {
+        this(clusterClientResponder, AuditJournal.NO_OP);
+    }
+
+    /**
+     * Constructor for instrument domain model object.
+     *
+     * @param clusterClientResponder the responder to which events are sent
+     * @param auditJournal           the journal to which instrument changes are recorded
+     */
+    public Instruments(final ClusterClientResponder clusterClientResponder, final AuditJournal auditJournal)
     {
         this.clusterClientResponder = clusterClientResponder;
+        this.auditJournal = auditJournal;
     }
 
     /**
      * Adds an instrument to the domain model.
      *
      * @param addType the type of add operation
-     * @param correlation the correlation id of the request
+     * @param correlationId the correlation id of the request
      * @param cusip   the cusip of the instrument
      * @param enabled the enabled flag of the instrument
      * @param minSize the minimum size of the instrument
      */
     public void addInstrument(
         final InstrumentAddType addType,
-        final String correlation,
+        final long correlationId,
         final String cusip,
         final boolean enabled,
         final int minSize)
     {
         final Instrument instrument = new Instrument(cusip, enabled, minSize);
-        instrumentByCusip.put(cusip, instrument);
+        final long packedCusip = Cusip.encode(cusip);
+        instrumentByCusip.put(packedCusip, instrument);
 
         if (addType == InstrumentAddType.INTERACTIVE)
         {
-            LOGGER.info("Added instrument {} to domain model", cusip);
-            clusterClientResponder.sendInstrumentAdded(correlation);
+            auditJournal.instrumentEvent(AuditEventType.INSTRUMENT_ADDED, correlationId, packedCusip, enabled);
+            clusterClientResponder.sendInstrumentAdded(correlationId);
         }
     }
 
     /**
      * Sets the enabled flag for an instrument.
      *
-     * @param correlation the correlation id of the request
-     * @param cusip   the cusip of the instrument
+     * @param correlationId the correlation id of the request
+     * @param cusip   the packed cusip of the instrument
      * @param enabled the enabled flag of the instrument
      */
-    public void setEnabledFlagForCusip(final String correlation, final String cusip, final boolean enabled)
+    public void setEnabledFlagForCusip(final long correlationId, final long cusip, final boolean enabled)
     {
         final Instrument instrument = instrumentByCusip.get(cusip);
         if (instrument != null)
         {
             instrument.setEnabled(enabled);
-            LOGGER.info("Set enabled flag for instrument {} to {}", cusip, enabled);
-            clusterClientResponder.sendInstrumentEnabledFlagSet(correlation, true);
+            auditJournal.instrumentEvent(AuditEventType.INSTRUMENT_ENABLED_FLAG_SET, correlationId, cusip, enabled);
+            clusterClientResponder.sendInstrumentEnabledFlagSet(correlationId, true);
         }
         else
         {
-            clusterClientResponder.sendInstrumentEnabledFlagSet(correlation, false);
+            clusterClientResponder.sendInstrumentEnabledFlagSet(correlationId, false);
         }
     }
 
     /**
-     * Returns the enabled flag for an instrument.
+     * Looks up an instrument, giving its enabled flag and minimum size in one probe.
      *
-     * @param cusip the cusip of the instrument
-     * @return the enabled flag for the instrument
+     * @param cusip the packed cusip of the instrument
+     * @return the instrument, or null if the cusip is not known
      */
-    public boolean isInstrumentEnabled(final String cusip)
+    public Instrument lookup(final long cusip)
     {
-        final Instrument instrument = instrumentByCusip.get(cusip);
-        if (instrument == null)
-        {
-            return false;
-        }
-        return instrument.isEnabled();
+        return instrumentByCusip.get(cusip);
     }
 
     /**
-     * Returns true if the instrument is valid.
+     * Returns the number of instruments in the domain model.
      *
-     * @param cusip the cusip of the instrument
-     * @return true if the instrument is valid
+     * @return the number of instruments in the domain model
      */
-    public boolean isValidCusip(final String cusip)
+    public int instrumentCount()
     {
-        return instrumentByCusip.containsKey(cusip);
+        return instrumentByCusip.size();
     }
 
     /**
-     * Returns the minimum size for an instrument.
+     * Sizes the domain model to hold the given number of instruments without rehashing, such as before a snapshot is
+     * loaded. Only takes effect while no instrument is held.
      *
-     * @param cusip the cusip of the instrument
-     * @return the minimum size for the instrument
+     * @param instrumentCount the number of instruments to hold
      */
-    public int getMinSize(final String cusip)
+    public void ensureCapacity(final int instrumentCount)
     {
-        final Instrument instrument = instrumentByCusip.get(cusip);
-        if (instrument == null)
+        final float loadFactor = Hashing.DEFAULT_LOAD_FACTOR;
+        if (instrumentByCusip.isEmpty() && instrumentByCusip.capacity() * loadFactor < instrumentCount)
         {
-            return DEFAULT_MIN_VALUE;
+            instrumentByCusip = new Long2ObjectHashMap<>((int)(instrumentCount / loadFactor) + 1, loadFactor);
         }
-        return instrument.getMinSize();
     }
 
     /**
-     * Returns the number of instruments in the domain model.
+     * Returns all instruments held in the domain model.
      *
-     * @return the number of instruments in the domain model
+     * @return the instruments
      */
-    public int instrumentCount()
+    public Collection<Instrument> getInstruments()
     {
-        return instrumentByCusip.size();
+        return instrumentByCusip.values();
     }
 
     /**
      * Emits a list of instruments to the session.
      *
-     * @param correlation the correlation id of the request
+     * @param correlationId the correlation id of the request
      */
-    public void listInstruments(final String correlation)
+    public void listInstruments(final long correlationId)
     {
-        clusterClientResponder.sendInstruments(correlation, instrumentByCusip.values().stream().toList());
+        clusterClientResponder.sendInstruments(correlationId, instrumentByCusip.values().stream().toList());
     }
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import org.agrona.BitUtil;
+import org.agrona.collections.Hashing;
+
+import java.util.Arrays;
+
+/**
+ * A bounded window over the outcome of the most recent RFQ commands, keyed by the user and correlation id of the
+ * command, so a command retried after a leader election can be answered with the original confirm instead of being
+ * applied twice.
+ * <p>
+ * Entries are held in an open addressed table of parallel primitive arrays, sized at twice the window so probe
+ * chains stay short, and removed by shifting the rest of the chain back rather than leaving tombstones. A ring of the
+ * keys in insertion order bounds the window: once full, recording a new command evicts the oldest. As the window is
+ * part of the replicated state, it is snapshotted in insertion order so a restored window evicts in the same order.
+ */
+public class CommandDedupWindow
+{
+    /**
+     * Default number of commands held.
+     */
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    /**
+     * Returned by {@link #find(int, long)} when no command is held for the key.
+     */
+    public static final int NOT_FOUND = -1;
+
+    /**
+     * Correlation id of commands sent without one, which are never held; a version 1 client has no binary
+     * correlation id to retry with.
+     */
+    public static final long NO_CORRELATION = Long.MIN_VALUE;
+
+    private final int capacity;
+    private final int mask;
+    private final int[] userIds;
+    private final long[] correlationIds;
+    private final byte[] commandTypes;
+    private final int[] rfqIds;
+    private final int[] results;
+    private final int[] ringUserIds;
+    private final long[] ringCorrelationIds;
+    private int ringHead = 0;
+    private int size = 0;
+
+    /**
+     * Constructor, holding {@link #DEFAULT_CAPACITY} commands
+     */
+    public CommandDedupWindow()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param capacity the number of commands held before the oldest is evicted; must be a power of two
+     */
+    public CommandDedupWindow(final int capacity)
+    {
+        if (!BitUtil.isPowerOfTwo(capacity))
+        {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+
+        this.capacity = capacity;
+        final int tableLength = capacity << 1;
+        mask = tableLength - 1;
+        userIds = new int[tableLength];
+        correlationIds = new long[tableLength];
+        Arrays.fill(correlationIds, NO_CORRELATION);
+        commandTypes = new byte[tableLength];
+        rfqIds = new int[tableLength];
+        results = new int[tableLength];
+        ringUserIds = new int[capacity];
+        ringCorrelationIds = new long[capacity];
+    }
+
+    /**
+     * Records the outcome of a command, evicting the oldest command held if the window is full. A command already held
+     * for the key has its outcome replaced, keeping its place in the window.
+     *
+     * @param userId        the user the command was sent for
+     * @param correlationId the correlation id of the command; commands without one are not held
+     * @param commandType   the type of command
+     * @param rfqId         the RFQ id given in the confirm, or -1 if none was
+     * @param result        the result code given in the confirm
+     */
+    public void record(
+        final int userId,
+        final long correlationId,
+        final RfqCommandType commandType,
+        final int rfqId,
+        final int result)
+    {
+        if (correlationId == NO_CORRELATION)
+        {
+            return;
+        }
+
+        int index = find(userId, correlationId);
+        if (index == NOT_FOUND)
+        {
+            if (size == capacity)
+            {
+                remove(ringUserIds[ringHead], ringCorrelationIds[ringHead]);
+                ringHead = (ringHead + 1) & (capacity - 1);
+                size--;
+            }
+
+            final int ringTail = (ringHead + size) & (capacity - 1);
+            ringUserIds[ringTail] = userId;
+            ringCorrelationIds[ringTail] = correlationId;
+            size++;
+
+            index = hash(userId, correlationId);
+            while (correlationIds[index] != NO_CORRELATION)
+            {
+                index = (index + 1) & mask;
+            }
+            userIds[index] = userId;
+            correlationIds[index] = correlationId;
+        }
+
+        commandTypes[index] = (byte)commandType.ordinal();
+        rfqIds[index] = rfqId;
+        results[index] = result;
+    }
+
+    /**
+     * Finds the command held for a key.
+     *
+     * @param userId        the user the command was sent for
+     * @param correlationId the correlation id of the command
+     * @return the slot the command is held in, valid until the next {@link #record}, or {@link #NOT_FOUND}
+     */
+    public int find(final int userId, final long correlationId)
+    {
+        if (correlationId == NO_CORRELATION)
+        {
+            return NOT_FOUND;
+        }
+
+        int index = hash(userId, correlationId);
+        while (correlationIds[index] != NO_CORRELATION)
+        {
+            if (correlationIds[index] == correlationId && userIds[index] == userId)
+            {
+                return index;
+            }
+            index = (index + 1) & mask;
+        }
+
+        return NOT_FOUND;
+    }
+
+    /**
+     * Returns the type of the command held in a slot.
+     *
+     * @param slot the slot, as returned by {@link #find(int, long)}
+     * @return the command type
+     */
+    public RfqCommandType commandType(final int slot)
+    {
+        return RfqCommandType.get(commandTypes[slot]);
+    }
+
+    /**
+     * Returns the RFQ id given in the confirm of the command held in a slot.
+     *
+     * @param slot the slot, as returned by {@link #find(int, long)}
+     * @return the RFQ id, or -1 if the confirm gave none
+     */
+    public int rfqId(final int slot)
+    {
+        return rfqIds[slot];
+    }
+
+    /**
+     * Returns the result code given in the confirm of the command held in a slot.
+     *
+     * @param slot the slot, as returned by {@link #find(int, long)}
+     * @return the result code
+     */
+    public int result(final int slot)
+    {
+        return results[slot];
+    }
+
+    /**
+     * Returns the number of commands held.
+     *
+     * @return the number of commands held
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Visits the commands held, oldest first, so that recording them in the order visited rebuilds the window.
+     *
+     * @param consumer the consumer to call with each command
+     */
+    public void forEach(final CommandConsumer consumer)
+    {
+        for (int i = 0; i < size; i++)
+        {
+            final int ringIndex = (ringHead + i) & (capacity - 1);
+            final int userId = ringUserIds[ringIndex];
+            final long correlationId = ringCorrelationIds[ringIndex];
+            final int slot = find(userId, correlationId);
+            consumer.accept(userId, correlationId, commandType(slot), rfqIds[slot], results[slot]);
+        }
+    }
+
+    private int hash(final int userId, final long correlationId)
+    {
+        return Hashing.hash(correlationId ^ ((long)userId << 32), mask);
+    }
+
+    //backward shift deletion: entries later in the chain that hash at or before the freed slot are moved into it
+    private void remove(final int userId, final long correlationId)
+    {
+        int deleteIndex = find(userId, correlationId);
+        correlationIds[deleteIndex] = NO_CORRELATION;
+
+        int index = deleteIndex;
+        while (true)
+        {
+            index = (index + 1) & mask;
+            if (correlationIds[index] == NO_CORRELATION)
+            {
+                return;
+            }
+
+            final int hash = hash(userIds[index], correlationIds[index]);
+            if ((index < hash && (hash <= deleteIndex || deleteIndex <= index)) ||
+                (hash <= deleteIndex && deleteIndex <= index))
+            {
+                userIds[deleteIndex] = userIds[index];
+                correlationIds[deleteIndex] = correlationIds[index];
+                commandTypes[deleteIndex] = commandTypes[index];
+                rfqIds[deleteIndex] = rfqIds[index];
+                results[deleteIndex] = results[index];
+                correlationIds[index] = NO_CORRELATION;
+                deleteIndex = index;
+            }
+        }
+    }
+
+    /**
+     * Consumer of the commands held in the window.
+     */
+    @FunctionalInterface
+    public interface CommandConsumer
+    {
+        /**
+         * Called with a command held in the window.
+         *
+         * @param userId        the user the command was sent for
+         * @param correlationId the correlation id of the command
+         * @param commandType   the type of command
+         * @param rfqId         the RFQ id given in the confirm, or -1 if none was
+         * @param result        the result code given in the confirm
+         */
+        void accept(int userId, long correlationId, RfqCommandType commandType, int rfqId, int result);
+    }
+}
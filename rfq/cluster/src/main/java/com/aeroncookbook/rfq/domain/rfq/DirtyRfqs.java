@@ -0,0 +1,132 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import org.agrona.collections.IntHashSet;
+
+import java.util.function.IntConsumer;
+
+/**
+ * The RFQs changed or evicted since the last snapshot, from which a delta snapshot is written. An RFQ that changes
+ * and is then evicted between snapshots is held as evicted only.
+ * <p>
+ * Tracking is off unless delta snapshots are enabled, so that the sets do not grow for as long as no snapshot is
+ * taken to clear them.
+ */
+public class DirtyRfqs
+{
+    private final IntHashSet changedRfqIds = new IntHashSet();
+    private final IntHashSet evictedRfqIds = new IntHashSet();
+    private boolean tracking;
+
+    /**
+     * Turns tracking on or off, clearing what has been tracked so far.
+     *
+     * @param tracking whether changes are tracked
+     */
+    public void setTracking(final boolean tracking)
+    {
+        this.tracking = tracking;
+        clear();
+    }
+
+    /**
+     * Returns whether changes are tracked.
+     *
+     * @return true if changes are tracked
+     */
+    public boolean isTracking()
+    {
+        return tracking;
+    }
+
+    /**
+     * Marks an RFQ as created or changed.
+     *
+     * @param rfqId the RFQ id
+     */
+    public void changed(final int rfqId)
+    {
+        if (tracking)
+        {
+            changedRfqIds.add(rfqId);
+        }
+    }
+
+    /**
+     * Marks an RFQ as evicted.
+     *
+     * @param rfqId the RFQ id
+     */
+    public void evicted(final int rfqId)
+    {
+        if (tracking)
+        {
+            changedRfqIds.remove(rfqId);
+            evictedRfqIds.add(rfqId);
+        }
+    }
+
+    /**
+     * Returns the number of RFQs changed and still live.
+     *
+     * @return the number of changed RFQs
+     */
+    public int changedCount()
+    {
+        return changedRfqIds.size();
+    }
+
+    /**
+     * Returns the number of RFQs evicted.
+     *
+     * @return the number of evicted RFQs
+     */
+    public int evictedCount()
+    {
+        return evictedRfqIds.size();
+    }
+
+    /**
+     * Visits the id of every RFQ changed and still live.
+     *
+     * @param consumer the consumer to call with each RFQ id
+     */
+    public void forEachChanged(final IntConsumer consumer)
+    {
+        changedRfqIds.forEachInt(consumer);
+    }
+
+    /**
+     * Visits the id of every RFQ evicted.
+     *
+     * @param consumer the consumer to call with each RFQ id
+     */
+    public void forEachEvicted(final IntConsumer consumer)
+    {
+        evictedRfqIds.forEachInt(consumer);
+    }
+
+    /**
+     * Forgets every change, once a snapshot holding them has been taken or loaded.
+     */
+    public void clear()
+    {
+        changedRfqIds.clear();
+        evictedRfqIds.clear();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqState;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStateHelper;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+
+/**
+ * An RFQ held as a plain object on the heap.
+ */
+public class HeapRfq extends Rfq
+{
+    private final long correlationId;
+    private final long expireTimeMs;
+    private final int rfqId;
+    private final long quantity;
+    private final Side requesterSide;
+    private final String cusip;
+    private final int requesterUserId;
+    private RfqState currentState;
+    private int responderUserId = Integer.MIN_VALUE;
+    private int lastCounterUser = Integer.MIN_VALUE;
+    private int acceptUser = Integer.MIN_VALUE;
+    private int rejectUser = Integer.MIN_VALUE;
+    private long price = Long.MIN_VALUE;
+    private long expiryTimerId = Long.MIN_VALUE;
+
+    /**
+     * Constructor
+     *
+     * @param rfqId           the RFQ id
+     * @param correlationId   the correlation id from the creation
+     * @param expireTimeMs    the time at which the RFQ expires
+     * @param quantity        the quantity of the RFQ
+     * @param requesterSide   the side of the RFQ as defined by the requester
+     * @param cusip           the cusip of the instrument
+     * @param requesterUserId the user id of the requester
+     */
+    public HeapRfq(
+        final int rfqId,
+        final long correlationId,
+        final long expireTimeMs,
+        final long quantity,
+        final Side requesterSide,
+        final String cusip,
+        final int requesterUserId)
+    {
+        this.rfqId = rfqId;
+        this.correlationId = correlationId;
+        this.expireTimeMs = expireTimeMs;
+        this.quantity = quantity;
+        this.requesterSide = requesterSide;
+        this.cusip = cusip;
+        this.requesterUserId = requesterUserId;
+        this.currentState = RfqStateHelper.getState(RfqStates.CREATED.getStateId());
+    }
+
+    @Override
+    public long getCorrelationId()
+    {
+        return correlationId;
+    }
+
+    @Override
+    public long getExpireTimeMs()
+    {
+        return expireTimeMs;
+    }
+
+    @Override
+    public int getRfqId()
+    {
+        return rfqId;
+    }
+
+    @Override
+    public long getQuantity()
+    {
+        return quantity;
+    }
+
+    @Override
+    public Side getRequesterSide()
+    {
+        return requesterSide;
+    }
+
+    @Override
+    public RfqState getCurrentState()
+    {
+        return currentState;
+    }
+
+    @Override
+    public String getCusip()
+    {
+        return cusip;
+    }
+
+    @Override
+    public int getRequesterUserId()
+    {
+        return requesterUserId;
+    }
+
+    @Override
+    public int getResponderUserId()
+    {
+        return responderUserId;
+    }
+
+    @Override
+    public void setResponderUserId(final int responderUserId)
+    {
+        this.responderUserId = responderUserId;
+    }
+
+    @Override
+    public long getPrice()
+    {
+        return price;
+    }
+
+    @Override
+    public int getLastCounterUser()
+    {
+        return lastCounterUser;
+    }
+
+    @Override
+    public void setLastCounterUser(final int lastCounterUser)
+    {
+        this.lastCounterUser = lastCounterUser;
+    }
+
+    @Override
+    public int getAcceptUser()
+    {
+        return acceptUser;
+    }
+
+    @Override
+    public int getRejectUser()
+    {
+        return rejectUser;
+    }
+
+    @Override
+    public long getExpiryTimerId()
+    {
+        return expiryTimerId;
+    }
+
+    @Override
+    public void setExpiryTimerId(final long expiryTimerId)
+    {
+        this.expiryTimerId = expiryTimerId;
+    }
+
+    @Override
+    protected void setCurrentState(final RfqState state)
+    {
+        this.currentState = state;
+    }
+
+    @Override
+    protected void setPrice(final long price)
+    {
+        this.price = price;
+    }
+
+    @Override
+    protected void setAcceptUser(final int acceptUser)
+    {
+        this.acceptUser = acceptUser;
+    }
+
+    @Override
+    protected void setRejectUser(final int rejectUser)
+    {
+        this.rejectUser = rejectUser;
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import org.agrona.collections.Hashing;
+import org.agrona.collections.Int2ObjectHashMap;
+
+import java.util.function.Consumer;
+
+/**
+ * Holds each RFQ as a {@link HeapRfq} object in a primitive keyed map.
+ */
+public class HeapRfqStore implements RfqStore
+{
+    private Int2ObjectHashMap<Rfq> rfqById = new Int2ObjectHashMap<>();
+
+    @Override
+    public Rfq add(
+        final int rfqId,
+        final long correlationId,
+        final long expireTimeMs,
+        final long quantity,
+        final Side requesterSide,
+        final String cusip,
+        final int requesterUserId)
+    {
+        final Rfq rfq = new HeapRfq(rfqId, correlationId, expireTimeMs, quantity, requesterSide, cusip,
+            requesterUserId);
+        rfqById.put(rfqId, rfq);
+        return rfq;
+    }
+
+    @Override
+    public Rfq get(final int rfqId)
+    {
+        return rfqById.get(rfqId);
+    }
+
+    @Override
+    public void remove(final int rfqId)
+    {
+        rfqById.remove(rfqId);
+    }
+
+    @Override
+    public int size()
+    {
+        return rfqById.size();
+    }
+
+    //the map cannot be resized up front, so it is replaced by a large enough one while still empty
+    @Override
+    public void ensureCapacity(final int rfqCount)
+    {
+        if (rfqById.isEmpty() && rfqById.capacity() * Hashing.DEFAULT_LOAD_FACTOR < rfqCount)
+        {
+            rfqById = new Int2ObjectHashMap<>((int)(rfqCount / Hashing.DEFAULT_LOAD_FACTOR) + 1,
+                Hashing.DEFAULT_LOAD_FACTOR);
+        }
+    }
+
+    @Override
+    public void forEach(final Consumer<Rfq> consumer)
+    {
+        rfqById.values().forEach(consumer);
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import org.agrona.BitUtil;
+import org.agrona.BufferUtil;
+import org.agrona.collections.Hashing;
+import org.agrona.collections.Int2IntHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Holds RFQs in fixed width slots of an off-heap buffer, read and written through a reusable {@link RfqFlyweight}.
+ * <p>
+ * Slots freed by evicted RFQs are kept on an intrusive free list, where a free slot holds the index of the next free
+ * slot, and are reused before the buffer grows. The store therefore creates no garbage per RFQ and the open book is
+ * not traced by the garbage collector. The buffer doubles as the high water mark of live RFQs grows and is not shrunk.
+ */
+public class OffHeapRfqStore implements RfqStore
+{
+    private static final int DEFAULT_INITIAL_SLOTS = 1024;
+    private static final int NO_SLOT = -1;
+    private static final int NEXT_FREE_OFFSET = 0;
+    private static final int IN_USE_OFFSET = RfqFlyweight.STATE_OFFSET + 1;
+
+    private final UnsafeBuffer buffer;
+    private Int2IntHashMap slotByRfqId = new Int2IntHashMap(NO_SLOT);
+    private final RfqFlyweight flyweight = new RfqFlyweight();
+    private final RfqFlyweight iteratorFlyweight = new RfqFlyweight();
+    private int freeListHead = NO_SLOT;
+    private int slotCount = 0;
+
+    /**
+     * Constructor with a default initial capacity
+     */
+    public OffHeapRfqStore()
+    {
+        this(DEFAULT_INITIAL_SLOTS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param initialSlots the number of RFQ slots to allocate up front
+     */
+    public OffHeapRfqStore(final int initialSlots)
+    {
+        buffer = new UnsafeBuffer(allocate(Math.max(1, initialSlots) * RfqFlyweight.SLOT_LENGTH));
+    }
+
+    @Override
+    public Rfq add(
+        final int rfqId,
+        final long correlationId,
+        final long expireTimeMs,
+        final long quantity,
+        final Side requesterSide,
+        final String cusip,
+        final int requesterUserId)
+    {
+        final int slot = allocateSlot();
+        final int offset = slot * RfqFlyweight.SLOT_LENGTH;
+        buffer.putByte(offset + IN_USE_OFFSET, (byte)1);
+        slotByRfqId.put(rfqId, slot);
+
+        flyweight.wrap(buffer, offset)
+            .init(rfqId, correlationId, expireTimeMs, quantity, requesterSide, cusip, requesterUserId);
+        return flyweight;
+    }
+
+    @Override
+    public Rfq get(final int rfqId)
+    {
+        final int slot = slotByRfqId.get(rfqId);
+        if (slot == NO_SLOT)
+        {
+            return null;
+        }
+        return flyweight.wrap(buffer, slot * RfqFlyweight.SLOT_LENGTH);
+    }
+
+    @Override
+    public void remove(final int rfqId)
+    {
+        final int slot = slotByRfqId.remove(rfqId);
+        if (slot != NO_SLOT)
+        {
+            final int offset = slot * RfqFlyweight.SLOT_LENGTH;
+            buffer.putByte(offset + IN_USE_OFFSET, (byte)0);
+            buffer.putInt(offset + NEXT_FREE_OFFSET, freeListHead);
+            freeListHead = slot;
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return slotByRfqId.size();
+    }
+
+    //the slot map cannot be resized up front, so it is replaced by a large enough one while still empty
+    @Override
+    public void ensureCapacity(final int rfqCount)
+    {
+        if (rfqCount * RfqFlyweight.SLOT_LENGTH > buffer.capacity())
+        {
+            grow(rfqCount * RfqFlyweight.SLOT_LENGTH);
+        }
+        if (slotByRfqId.isEmpty() && slotByRfqId.capacity() * Hashing.DEFAULT_LOAD_FACTOR < rfqCount)
+        {
+            slotByRfqId = new Int2IntHashMap(
+                (int)(rfqCount / Hashing.DEFAULT_LOAD_FACTOR) + 1, Hashing.DEFAULT_LOAD_FACTOR, NO_SLOT);
+        }
+    }
+
+    @Override
+    public void forEach(final Consumer<Rfq> consumer)
+    {
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            final int offset = slot * RfqFlyweight.SLOT_LENGTH;
+            if (buffer.getByte(offset + IN_USE_OFFSET) != 0)
+            {
+                consumer.accept(iteratorFlyweight.wrap(buffer, offset));
+            }
+        }
+    }
+
+    /**
+     * Returns the number of slots handed out, live or free, which is the high water mark of live RFQs.
+     *
+     * @return the number of slots handed out
+     */
+    public int getSlotCount()
+    {
+        return slotCount;
+    }
+
+    /**
+     * Returns the capacity of the off-heap buffer in bytes.
+     *
+     * @return the capacity in bytes
+     */
+    public int getCapacity()
+    {
+        return buffer.capacity();
+    }
+
+    private int allocateSlot()
+    {
+        if (freeListHead != NO_SLOT)
+        {
+            final int slot = freeListHead;
+            freeListHead = buffer.getInt(slot * RfqFlyweight.SLOT_LENGTH + NEXT_FREE_OFFSET);
+            return slot;
+        }
+
+        final int slot = slotCount++;
+        if ((slot + 1) * RfqFlyweight.SLOT_LENGTH > buffer.capacity())
+        {
+            grow((slot + 1) * RfqFlyweight.SLOT_LENGTH);
+        }
+        return slot;
+    }
+
+    //growth is checked once per new slot rather than on every access, as an expandable buffer would; the buffer
+    //object is rewrapped in place so that the flyweights pointing at it stay valid
+    private void grow(final int minCapacity)
+    {
+        final int capacity = buffer.capacity();
+        int newCapacity = capacity * 2;
+        while (newCapacity < minCapacity)
+        {
+            newCapacity *= 2;
+        }
+        final ByteBuffer grown = allocate(newCapacity);
+        new UnsafeBuffer(grown).putBytes(0, buffer, 0, capacity);
+        buffer.wrap(grown);
+    }
+
+    private static ByteBuffer allocate(final int capacity)
+    {
+        return BufferUtil.allocateDirectAligned(BitUtil.align(capacity, BitUtil.CACHE_LINE_LENGTH),
+            BitUtil.CACHE_LINE_LENGTH);
+    }
+}
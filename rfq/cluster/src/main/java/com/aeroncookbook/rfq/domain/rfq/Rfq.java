@@ -21,180 +21,185 @@ import com.aeroncookbook.rfq.domain.rfq.states.RfqState;
 import com.aeroncookbook.rfq.domain.rfq.states.RfqStateHelper;
 import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
 
-public class Rfq
+/**
+ * An RFQ and its state machine. How the fields are held is left to the {@link RfqStore} backend: {@link HeapRfq}
+ * is a plain object per RFQ, while {@link RfqFlyweight} is a view over a slot of off-heap memory.
+ */
+public abstract class Rfq
 {
-    private final String correlation;
-    private final long expireTimeMs;
-    private final int rfqId;
-    private final long quantity;
-    private final Side requesterSide;
-    private final String cusip;
-    private final int requesterUserId;
-    private RfqState currentState;
-    private int responderUserId = Integer.MIN_VALUE;
-    private int lastCounterUser = Integer.MIN_VALUE;
-    private int acceptUser = Integer.MIN_VALUE;
-    private int rejectUser = Integer.MIN_VALUE;
-    private long price = Long.MIN_VALUE;
-
-    public Rfq(
-        final int rfqId,
-        final String correlation,
-        final long expireTimeMs,
-        final long quantity,
-        final Side requesterSide,
-        final String cusip,
-        final int requesterUserId)
-    {
-        this.rfqId = rfqId;
-        this.correlation = correlation;
-        this.expireTimeMs = expireTimeMs;
-        this.quantity = quantity;
-        this.requesterSide = requesterSide;
-        this.cusip = cusip;
-        this.requesterUserId = requesterUserId;
-        this.currentState = RfqStateHelper.getState(RfqStates.CREATED.getStateId());
-    }
-
     /**
      * Get the correlation id of the RFQ.
      * @return the correlation id from the creation
      */
-    public String getCorrelation()
-    {
-        return correlation;
-    }
+    public abstract long getCorrelationId();
 
     /**
      * Get the time at which the RFQ expires.
      * @return the time at which the RFQ expires
      */
-    public long getExpireTimeMs()
-    {
-        return expireTimeMs;
-    }
+    public abstract long getExpireTimeMs();
 
     /**
      * Get the RFQ id.
      * @return the RFQ id
      */
-    public int getRfqId()
-    {
-        return rfqId;
-    }
+    public abstract int getRfqId();
 
     /**
      * Get the quantity of the RFQ.
      * @return the quantity of the RFQ
      */
-    public long getQuantity()
-    {
-        return quantity;
-    }
+    public abstract long getQuantity();
 
     /**
      * Get the side of the RFQ.
      * @return the side of the RFQ as defined by the requester
      */
-    public Side getRequesterSide()
-    {
-        return requesterSide;
-    }
+    public abstract Side getRequesterSide();
 
     /**
      * Get the current state of the RFQ.
      * @return the current state of the RFQ
      */
-    public RfqState getCurrentState()
-    {
-        return currentState;
-    }
+    public abstract RfqState getCurrentState();
 
     /**
      * Get the cusip of the instrument.
      * @return the cusip of the instrument
      */
-    public String getCusip()
-    {
-        return cusip;
-    }
+    public abstract String getCusip();
 
     /**
      * Get the user id of the requester.
      * @return the user id of the requester
      */
-    public int getRequesterUserId()
-    {
-        return requesterUserId;
-    }
+    public abstract int getRequesterUserId();
 
     /**
      * Get the user id of the responder.
      * @return the user id of the responder
      */
-    public int getResponderUserId()
-    {
-        return responderUserId;
-    }
-
-    /**
-     * Check if the RFQ has a responder.
-     * @return true if the RFQ has a responder
-     */
-    public boolean hasResponder()
-    {
-        return responderUserId != Integer.MIN_VALUE;
-    }
+    public abstract int getResponderUserId();
 
     /**
      * Set the responder user id.
      * @param responderUserId the responder user id
      */
-    public void setResponderUserId(final int responderUserId)
-    {
-        this.responderUserId = responderUserId;
-    }
+    public abstract void setResponderUserId(int responderUserId);
 
     /**
      * Get the price of the RFQ.
      * @return the price of the RFQ
      */
-    public long getPrice()
-    {
-        return price;
-    }
+    public abstract long getPrice();
 
     /**
      * Returns the last user to counter
      * @return the last user to counter
      */
-    public int getLastCounterUser()
+    public abstract int getLastCounterUser();
+
+    /**
+     * Sets the last user to counter
+     * @param lastCounterUser the last user to counter
+     */
+    public abstract void setLastCounterUser(int lastCounterUser);
+
+    /**
+     * Returns the user that accepted the RFQ
+     * @return the user that accepted the RFQ
+     */
+    public abstract int getAcceptUser();
+
+    /**
+     * Returns the user that rejected the RFQ
+     * @return the user that rejected the RFQ
+     */
+    public abstract int getRejectUser();
+
+    /**
+     * Returns the id of the expiry engine timer that will expire this RFQ
+     * @return the expiry timer id
+     */
+    public abstract long getExpiryTimerId();
+
+    /**
+     * Sets the id of the expiry engine timer that will expire this RFQ
+     * @param expiryTimerId the expiry timer id
+     */
+    public abstract void setExpiryTimerId(long expiryTimerId);
+
+    /**
+     * Sets the current state of the RFQ
+     * @param state the new state
+     */
+    protected abstract void setCurrentState(RfqState state);
+
+    /**
+     * Sets the price of the RFQ
+     * @param price the new price
+     */
+    protected abstract void setPrice(long price);
+
+    /**
+     * Sets the user that accepted the RFQ
+     * @param acceptUser the user that accepted the RFQ
+     */
+    protected abstract void setAcceptUser(int acceptUser);
+
+    /**
+     * Sets the user that rejected the RFQ
+     * @param rejectUser the user that rejected the RFQ
+     */
+    protected abstract void setRejectUser(int rejectUser);
+
+    /**
+     * Check if the RFQ has a responder.
+     * @return true if the RFQ has a responder
+     */
+    public boolean hasResponder()
     {
-        return lastCounterUser;
+        return getResponderUserId() != Integer.MIN_VALUE;
     }
 
     /**
-     * Sets the last user to counter
+     * Restores the mutable state of the RFQ, as read from a snapshot.
+     * @param stateId the id of the current state
+     * @param responderUserId the user id of the responder
      * @param lastCounterUser the last user to counter
+     * @param acceptUser the user that accepted the RFQ
+     * @param rejectUser the user that rejected the RFQ
+     * @param price the current price of the RFQ
      */
-    public void setLastCounterUser(final int lastCounterUser)
+    void restore(
+        final short stateId,
+        final int responderUserId,
+        final int lastCounterUser,
+        final int acceptUser,
+        final int rejectUser,
+        final long price)
     {
-        this.lastCounterUser = lastCounterUser;
+        setCurrentState(RfqStateHelper.getState(stateId));
+        setResponderUserId(responderUserId);
+        setLastCounterUser(lastCounterUser);
+        setAcceptUser(acceptUser);
+        setRejectUser(rejectUser);
+        setPrice(price);
     }
 
     @Override
     public String toString()
     {
         return "Rfq{" +
-            "correlation='" + correlation + '\'' +
-            ", expireTimeMs=" + expireTimeMs +
-            ", rfqId=" + rfqId +
-            ", quantity=" + quantity +
-            ", requesterSide='" + requesterSide + '\'' +
-            ", currentState='" + currentState.getCurrentState().name() + '\'' +
-            ", cusip='" + cusip + '\'' +
-            ", price=" + price +
-            ", requesterUserId=" + requesterUserId +
+            "correlationId=" + getCorrelationId() +
+            ", expireTimeMs=" + getExpireTimeMs() +
+            ", rfqId=" + getRfqId() +
+            ", quantity=" + getQuantity() +
+            ", requesterSide='" + getRequesterSide() + '\'' +
+            ", currentState='" + getCurrentState().getCurrentState().name() + '\'' +
+            ", cusip='" + getCusip() + '\'' +
+            ", price=" + getPrice() +
+            ", requesterUserId=" + getRequesterUserId() +
             '}';
     }
 
@@ -204,7 +209,7 @@ public class Rfq
      */
     public boolean canExpire()
     {
-        return currentState.canTransitionTo(RfqStates.EXPIRED);
+        return getCurrentState().canTransitionTo(RfqStates.EXPIRED);
     }
 
     /**
@@ -212,9 +217,10 @@ public class Rfq
      */
     public void expire()
     {
+        final RfqState currentState = getCurrentState();
         if (currentState.canTransitionTo(RfqStates.EXPIRED))
         {
-            currentState = currentState.transitionTo(RfqStates.EXPIRED);
+            setCurrentState(currentState.transitionTo(RfqStates.EXPIRED));
         }
     }
 
@@ -224,7 +230,7 @@ public class Rfq
      */
     public boolean canCancel()
     {
-        return currentState.canTransitionTo(RfqStates.CANCELED);
+        return getCurrentState().canTransitionTo(RfqStates.CANCELED);
     }
 
     /**
@@ -232,9 +238,10 @@ public class Rfq
      */
     public void cancel()
     {
+        final RfqState currentState = getCurrentState();
         if (currentState.canTransitionTo(RfqStates.CANCELED))
         {
-            currentState = currentState.transitionTo(RfqStates.CANCELED);
+            setCurrentState(currentState.transitionTo(RfqStates.CANCELED));
         }
     }
 
@@ -244,7 +251,7 @@ public class Rfq
      */
     public boolean canQuote()
     {
-        return currentState.canTransitionTo(RfqStates.QUOTED);
+        return getCurrentState().canTransitionTo(RfqStates.QUOTED);
     }
 
     /**
@@ -254,11 +261,12 @@ public class Rfq
      */
     public void quote(final int responderUserId, final long price)
     {
+        final RfqState currentState = getCurrentState();
         if (currentState.canTransitionTo(RfqStates.QUOTED))
         {
-            currentState = currentState.transitionTo(RfqStates.QUOTED);
-            this.responderUserId = responderUserId;
-            this.price = price;
+            setCurrentState(currentState.transitionTo(RfqStates.QUOTED));
+            setResponderUserId(responderUserId);
+            setPrice(price);
         }
     }
 
@@ -268,7 +276,7 @@ public class Rfq
      */
     public boolean canCounter()
     {
-        return currentState.canTransitionTo(RfqStates.COUNTERED);
+        return getCurrentState().canTransitionTo(RfqStates.COUNTERED);
     }
 
     /**
@@ -278,11 +286,12 @@ public class Rfq
      */
     public void counter(final int counterUserId, final long price)
     {
+        final RfqState currentState = getCurrentState();
         if (currentState.canTransitionTo(RfqStates.COUNTERED))
         {
-            currentState = currentState.transitionTo(RfqStates.COUNTERED);
-            this.lastCounterUser = counterUserId;
-            this.price = price;
+            setCurrentState(currentState.transitionTo(RfqStates.COUNTERED));
+            setLastCounterUser(counterUserId);
+            setPrice(price);
         }
     }
 
@@ -292,7 +301,7 @@ public class Rfq
      */
     public boolean canAccept()
     {
-        return currentState.canTransitionTo(RfqStates.ACCEPTED);
+        return getCurrentState().canTransitionTo(RfqStates.ACCEPTED);
     }
 
     /**
@@ -301,10 +310,11 @@ public class Rfq
      */
     public void accept(final int acceptUserId)
     {
+        final RfqState currentState = getCurrentState();
         if (currentState.canTransitionTo(RfqStates.ACCEPTED))
         {
-            currentState = currentState.transitionTo(RfqStates.ACCEPTED);
-            this.acceptUser = acceptUserId;
+            setCurrentState(currentState.transitionTo(RfqStates.ACCEPTED));
+            setAcceptUser(acceptUserId);
         }
     }
 
@@ -314,7 +324,7 @@ public class Rfq
      */
     public boolean canReject()
     {
-        return currentState.canTransitionTo(RfqStates.REJECTED);
+        return getCurrentState().canTransitionTo(RfqStates.REJECTED);
     }
 
     /**
@@ -323,10 +333,11 @@ public class Rfq
      */
     public void reject(final int rejectUserId)
     {
+        final RfqState currentState = getCurrentState();
         if (currentState.canTransitionTo(RfqStates.REJECTED))
         {
-            currentState = currentState.transitionTo(RfqStates.REJECTED);
-            this.rejectUser = rejectUserId;
+            setCurrentState(currentState.transitionTo(RfqStates.REJECTED));
+            setRejectUser(rejectUserId);
         }
     }
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+/**
+ * The RFQ commands whose outcome is held in the {@link CommandDedupWindow}. The ordinal is held in snapshots, so
+ * values may only be appended.
+ */
+public enum RfqCommandType
+{
+    CREATE,
+    CANCEL,
+    QUOTE,
+    COUNTER,
+    ACCEPT,
+    REJECT;
+
+    private static final RfqCommandType[] VALUES = values();
+
+    /**
+     * Returns the command type for an ordinal, as read from a snapshot.
+     *
+     * @param ordinal the ordinal of the command type
+     * @return the command type
+     */
+    public static RfqCommandType get(final int ordinal)
+    {
+        return VALUES[ordinal];
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.rfq.infra.SessionMessageContext;
+import com.aeroncookbook.rfq.infra.TimerManager;
+import com.aeroncookbook.rfq.infra.TimerType;
+import org.agrona.DeadlineTimerWheel;
+import org.agrona.collections.Long2LongHashMap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Drives RFQ expiry from a timer wheel held within the service.
+ * <p>
+ * Each RFQ is a slot in a {@link DeadlineTimerWheel} with its rfqId as the payload, rather than a cluster timer of
+ * its own. A single cluster timer is kept armed for the end of the current tick while any RFQ is pending expiry; when
+ * it fires, every RFQ due within the elapsed ticks is expired in one pass. The consensus module therefore sees at most
+ * one timer per tick, however many RFQs are open.
+ * <p>
+ * The wheel is positioned by cluster time only, so every node expires the same RFQs on the same tick.
+ */
+public final class RfqExpiryEngine implements DeadlineTimerWheel.TimerHandler
+{
+    /**
+     * Tick resolution of the wheel in cluster time units. Must be a power of two.
+     */
+    public static final long TICK_RESOLUTION_MS = 128;
+    private static final int TICKS_PER_WHEEL = 1024;
+    private static final long NO_TIMER = Long.MIN_VALUE;
+
+    private final SessionMessageContext context;
+    private final TimerManager timerManager;
+    private final IntConsumer expiryHandler;
+    private final DeadlineTimerWheel wheel =
+        new DeadlineTimerWheel(TimeUnit.MILLISECONDS, 0, TICK_RESOLUTION_MS, TICKS_PER_WHEEL);
+    private final Long2LongHashMap rfqIdByWheelTimerId = new Long2LongHashMap(NO_TIMER);
+    private long tickTimerCorrelationId = NO_TIMER;
+
+    /**
+     * Constructor
+     *
+     * @param context       the context providing the cluster time
+     * @param timerManager  the timer manager used to arm the tick timer
+     * @param expiryHandler called with the rfqId of each RFQ that has reached its expiry time
+     */
+    public RfqExpiryEngine(
+        final SessionMessageContext context,
+        final TimerManager timerManager,
+        final IntConsumer expiryHandler)
+    {
+        this.context = context;
+        this.timerManager = timerManager;
+        this.expiryHandler = expiryHandler;
+        timerManager.setRfqExpiryTickHandler(this::onTick);
+    }
+
+    /**
+     * Schedules the expiry of an RFQ, arming the tick timer if it is not already armed.
+     *
+     * @param rfqId    the RFQ to expire
+     * @param deadline the cluster time at which the RFQ expires
+     * @return the wheel timer id, used to cancel the expiry
+     */
+    public long schedule(final int rfqId, final long deadline)
+    {
+        if (wheel.timerCount() == 0)
+        {
+            wheel.currentTickTime(context.getClusterTime());
+        }
+
+        final long wheelTimerId = wheel.scheduleTimer(deadline);
+        rfqIdByWheelTimerId.put(wheelTimerId, rfqId);
+
+        if (tickTimerCorrelationId == NO_TIMER)
+        {
+            armTickTimer();
+        }
+
+        return wheelTimerId;
+    }
+
+    /**
+     * Cancels the pending expiry of an RFQ that has reached another terminal state. The tick timer is left to lapse
+     * on its own rather than being cancelled.
+     *
+     * @param wheelTimerId the wheel timer id returned from {@link #schedule(int, long)}
+     */
+    public void cancel(final long wheelTimerId)
+    {
+        if (rfqIdByWheelTimerId.remove(wheelTimerId) != NO_TIMER)
+        {
+            wheel.cancelTimer(wheelTimerId);
+        }
+    }
+
+    /**
+     * Returns the number of RFQs pending expiry.
+     *
+     * @return the number of RFQs pending expiry
+     */
+    public long pendingCount()
+    {
+        return wheel.timerCount();
+    }
+
+    /**
+     * Returns the correlation id of the armed tick timer, as held by the timer manager.
+     *
+     * @return the tick timer correlation id, or {@link Long#MIN_VALUE} if no tick timer is armed
+     */
+    public long getTickTimerCorrelationId()
+    {
+        return tickTimerCorrelationId;
+    }
+
+    /**
+     * Returns the time of the current tick of the wheel.
+     *
+     * @return the wheel time
+     */
+    public long getWheelTime()
+    {
+        return wheel.currentTickTime() - TICK_RESOLUTION_MS;
+    }
+
+    /**
+     * Restores the wheel position and the armed tick timer, as read from a snapshot. Must be called before any RFQ
+     * expiry is rescheduled so that the wheel does not have to step forward from its start time. The tick timer itself
+     * is restored by the timer manager, as a typed timer.
+     *
+     * @param wheelTime              the wheel time at the point of the snapshot
+     * @param tickTimerCorrelationId the correlation id of the armed tick timer
+     */
+    public void restore(final long wheelTime, final long tickTimerCorrelationId)
+    {
+        wheel.currentTickTime(wheelTime);
+        this.tickTimerCorrelationId = tickTimerCorrelationId;
+    }
+
+    @Override
+    public boolean onTimerExpiry(final TimeUnit timeUnit, final long now, final long timerId)
+    {
+        final long rfqId = rfqIdByWheelTimerId.remove(timerId);
+        if (rfqId != NO_TIMER)
+        {
+            expiryHandler.accept((int)rfqId);
+        }
+        return true;
+    }
+
+    private void onTick(final long payload)
+    {
+        final long now = context.getClusterTime();
+        tickTimerCorrelationId = NO_TIMER;
+
+        //poll advances at most one tick per call, so keep polling until the tick that contains now has been expired;
+        //this also lets a late tick timer, such as one fired after a leader election, catch up in one pass
+        long tickTime;
+        do
+        {
+            tickTime = wheel.currentTickTime();
+            wheel.poll(now, this, Integer.MAX_VALUE);
+        }
+        while (wheel.timerCount() > 0 && wheel.currentTickTime() != tickTime);
+
+        if (wheel.timerCount() > 0)
+        {
+            armTickTimer();
+        }
+    }
+
+    private void armTickTimer()
+    {
+        tickTimerCorrelationId = timerManager.scheduleTimer(wheel.currentTickTime(), TimerType.RFQ_EXPIRY_TICK, 0);
+    }
+}
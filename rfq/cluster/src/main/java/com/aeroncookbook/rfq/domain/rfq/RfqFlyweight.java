@@ -0,0 +1,264 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqState;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStateHelper;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import org.agrona.MutableDirectBuffer;
+
+/**
+ * A reusable view over a fixed width RFQ slot held in a buffer, as used by the {@link OffHeapRfqStore}.
+ * <p>
+ * Each slot is {@link #SLOT_LENGTH} bytes: the ids, prices and times as primitives, the CUSIP as 9 ASCII bytes padded
+ * with zeros, and the side and state as a byte each. Nothing is allocated on access except when the CUSIP read differs
+ * from the last one decoded by this view. The view must not be held on to once the store has moved it to another slot.
+ */
+public class RfqFlyweight extends Rfq
+{
+    /**
+     * Length in bytes of one RFQ slot
+     */
+    public static final int SLOT_LENGTH = 80;
+    static final int CORRELATION_ID_OFFSET = 0;
+    static final int EXPIRE_TIME_OFFSET = 8;
+    static final int QUANTITY_OFFSET = 16;
+    static final int PRICE_OFFSET = 24;
+    static final int EXPIRY_TIMER_ID_OFFSET = 32;
+    static final int RFQ_ID_OFFSET = 40;
+    static final int REQUESTER_OFFSET = 44;
+    static final int RESPONDER_OFFSET = 48;
+    static final int LAST_COUNTER_OFFSET = 52;
+    static final int ACCEPT_USER_OFFSET = 56;
+    static final int REJECT_USER_OFFSET = 60;
+    static final int CUSIP_OFFSET = 64;
+    static final int CUSIP_LENGTH = 9;
+    static final int SIDE_OFFSET = CUSIP_OFFSET + CUSIP_LENGTH;
+    static final int STATE_OFFSET = SIDE_OFFSET + 1;
+    private static final RfqState[] STATES = buildStates();
+
+    private MutableDirectBuffer buffer;
+    private int offset;
+    private String lastCusip;
+    private long lastCusipHead;
+    private byte lastCusipTail;
+
+    /**
+     * Points the view at a slot.
+     *
+     * @param buffer the buffer holding the slot
+     * @param offset the offset of the slot within the buffer
+     * @return this for a fluent API
+     */
+    public RfqFlyweight wrap(final MutableDirectBuffer buffer, final int offset)
+    {
+        this.buffer = buffer;
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Writes a newly created RFQ into the slot the view points at.
+     *
+     * @param rfqId           the RFQ id
+     * @param correlationId   the correlation id from the creation
+     * @param expireTimeMs    the time at which the RFQ expires
+     * @param quantity        the quantity of the RFQ
+     * @param requesterSide   the side of the RFQ as defined by the requester
+     * @param cusip           the cusip of the instrument, at most 9 ASCII characters
+     * @param requesterUserId the user id of the requester
+     */
+    public void init(
+        final int rfqId,
+        final long correlationId,
+        final long expireTimeMs,
+        final long quantity,
+        final Side requesterSide,
+        final String cusip,
+        final int requesterUserId)
+    {
+        buffer.putLong(offset + CORRELATION_ID_OFFSET, correlationId);
+        buffer.putLong(offset + EXPIRE_TIME_OFFSET, expireTimeMs);
+        buffer.putLong(offset + QUANTITY_OFFSET, quantity);
+        buffer.putLong(offset + PRICE_OFFSET, Long.MIN_VALUE);
+        buffer.putLong(offset + EXPIRY_TIMER_ID_OFFSET, Long.MIN_VALUE);
+        buffer.putInt(offset + RFQ_ID_OFFSET, rfqId);
+        buffer.putInt(offset + REQUESTER_OFFSET, requesterUserId);
+        buffer.putInt(offset + RESPONDER_OFFSET, Integer.MIN_VALUE);
+        buffer.putInt(offset + LAST_COUNTER_OFFSET, Integer.MIN_VALUE);
+        buffer.putInt(offset + ACCEPT_USER_OFFSET, Integer.MIN_VALUE);
+        buffer.putInt(offset + REJECT_USER_OFFSET, Integer.MIN_VALUE);
+        for (int i = 0; i < CUSIP_LENGTH; i++)
+        {
+            buffer.putByte(offset + CUSIP_OFFSET + i, i < cusip.length() ? (byte)cusip.charAt(i) : 0);
+        }
+        buffer.putByte(offset + SIDE_OFFSET, (byte)requesterSide.value());
+        buffer.putByte(offset + STATE_OFFSET, (byte)RfqStates.CREATED.getStateId());
+    }
+
+    @Override
+    public long getCorrelationId()
+    {
+        return buffer.getLong(offset + CORRELATION_ID_OFFSET);
+    }
+
+    @Override
+    public long getExpireTimeMs()
+    {
+        return buffer.getLong(offset + EXPIRE_TIME_OFFSET);
+    }
+
+    @Override
+    public int getRfqId()
+    {
+        return buffer.getInt(offset + RFQ_ID_OFFSET);
+    }
+
+    @Override
+    public long getQuantity()
+    {
+        return buffer.getLong(offset + QUANTITY_OFFSET);
+    }
+
+    @Override
+    public Side getRequesterSide()
+    {
+        return Side.get(buffer.getByte(offset + SIDE_OFFSET));
+    }
+
+    @Override
+    public RfqState getCurrentState()
+    {
+        return STATES[buffer.getByte(offset + STATE_OFFSET)];
+    }
+
+    @Override
+    public String getCusip()
+    {
+        //the 9 CUSIP bytes are compared with the last decoded as a long and a byte, so a repeated CUSIP is not decoded
+        final long head = buffer.getLong(offset + CUSIP_OFFSET);
+        final byte tail = buffer.getByte(offset + CUSIP_OFFSET + Long.BYTES);
+        if (null == lastCusip || head != lastCusipHead || tail != lastCusipTail)
+        {
+            int length = 0;
+            while (length < CUSIP_LENGTH && buffer.getByte(offset + CUSIP_OFFSET + length) != 0)
+            {
+                length++;
+            }
+            lastCusip = buffer.getStringWithoutLengthAscii(offset + CUSIP_OFFSET, length);
+            lastCusipHead = head;
+            lastCusipTail = tail;
+        }
+        return lastCusip;
+    }
+
+    @Override
+    public int getRequesterUserId()
+    {
+        return buffer.getInt(offset + REQUESTER_OFFSET);
+    }
+
+    @Override
+    public int getResponderUserId()
+    {
+        return buffer.getInt(offset + RESPONDER_OFFSET);
+    }
+
+    @Override
+    public void setResponderUserId(final int responderUserId)
+    {
+        buffer.putInt(offset + RESPONDER_OFFSET, responderUserId);
+    }
+
+    @Override
+    public long getPrice()
+    {
+        return buffer.getLong(offset + PRICE_OFFSET);
+    }
+
+    @Override
+    public int getLastCounterUser()
+    {
+        return buffer.getInt(offset + LAST_COUNTER_OFFSET);
+    }
+
+    @Override
+    public void setLastCounterUser(final int lastCounterUser)
+    {
+        buffer.putInt(offset + LAST_COUNTER_OFFSET, lastCounterUser);
+    }
+
+    @Override
+    public int getAcceptUser()
+    {
+        return buffer.getInt(offset + ACCEPT_USER_OFFSET);
+    }
+
+    @Override
+    public int getRejectUser()
+    {
+        return buffer.getInt(offset + REJECT_USER_OFFSET);
+    }
+
+    @Override
+    public long getExpiryTimerId()
+    {
+        return buffer.getLong(offset + EXPIRY_TIMER_ID_OFFSET);
+    }
+
+    @Override
+    public void setExpiryTimerId(final long expiryTimerId)
+    {
+        buffer.putLong(offset + EXPIRY_TIMER_ID_OFFSET, expiryTimerId);
+    }
+
+    @Override
+    protected void setCurrentState(final RfqState state)
+    {
+        buffer.putByte(offset + STATE_OFFSET, (byte)state.getCurrentState().getStateId());
+    }
+
+    @Override
+    protected void setPrice(final long price)
+    {
+        buffer.putLong(offset + PRICE_OFFSET, price);
+    }
+
+    @Override
+    protected void setAcceptUser(final int acceptUser)
+    {
+        buffer.putInt(offset + ACCEPT_USER_OFFSET, acceptUser);
+    }
+
+    @Override
+    protected void setRejectUser(final int rejectUser)
+    {
+        buffer.putInt(offset + REJECT_USER_OFFSET, rejectUser);
+    }
+
+    //indexed by state id, avoiding a map lookup on every read of the state byte
+    private static RfqState[] buildStates()
+    {
+        final RfqStates[] values = RfqStates.values();
+        final RfqState[] states = new RfqState[values.length];
+        for (final RfqStates state : values)
+        {
+            states[state.getStateId()] = RfqStateHelper.getState(state.getStateId());
+        }
+        return states;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.IntHashSet;
+import org.agrona.collections.Long2ObjectHashMap;
+
+/**
+ * Secondary indexes over the live RFQs: by instrument, and by the users taking part as requester or responder.
+ * <p>
+ * Live RFQs are exactly the open RFQs, since an RFQ is evicted on reaching a terminal state, so the indexes answer
+ * queries for open RFQs in the number of matching RFQs rather than the size of the book. The set for a cusip or a
+ * user is kept once emptied, as instruments and users are few and long lived.
+ */
+public class RfqIndex
+{
+    private final Long2ObjectHashMap<IntHashSet> rfqIdsByCusip = new Long2ObjectHashMap<>();
+    private final Int2ObjectHashMap<IntHashSet> rfqIdsByUser = new Int2ObjectHashMap<>();
+
+    /**
+     * Indexes an RFQ that has been added, along with its responder if it has one
+     *
+     * @param rfq the RFQ
+     */
+    public void add(final Rfq rfq)
+    {
+        final int rfqId = rfq.getRfqId();
+        rfqIdsByCusip.computeIfAbsent(Cusip.encode(rfq.getCusip()), cusip -> new IntHashSet()).add(rfqId);
+        rfqIdsByUser.computeIfAbsent(rfq.getRequesterUserId(), userId -> new IntHashSet()).add(rfqId);
+        if (rfq.hasResponder())
+        {
+            addResponder(rfq);
+        }
+    }
+
+    /**
+     * Indexes the responder of an RFQ that has just been quoted
+     *
+     * @param rfq the RFQ
+     */
+    public void addResponder(final Rfq rfq)
+    {
+        rfqIdsByUser.computeIfAbsent(rfq.getResponderUserId(), userId -> new IntHashSet()).add(rfq.getRfqId());
+    }
+
+    /**
+     * Removes an RFQ that is about to be evicted
+     *
+     * @param rfq the RFQ
+     */
+    public void remove(final Rfq rfq)
+    {
+        final int rfqId = rfq.getRfqId();
+        removeFrom(rfqIdsByCusip.get(Cusip.encode(rfq.getCusip())), rfqId);
+        removeFrom(rfqIdsByUser.get(rfq.getRequesterUserId()), rfqId);
+        if (rfq.hasResponder())
+        {
+            removeFrom(rfqIdsByUser.get(rfq.getResponderUserId()), rfqId);
+        }
+    }
+
+    /**
+     * Collects the ids of the open RFQs on an instrument
+     *
+     * @param cusip  the packed cusip of the instrument
+     * @param rfqIds the list to append the ids to
+     */
+    public void collectByCusip(final long cusip, final IntArrayList rfqIds)
+    {
+        addAll(rfqIdsByCusip.get(cusip), rfqIds);
+    }
+
+    /**
+     * Collects the ids of the open RFQs a user requested or is responding to
+     *
+     * @param userId the user id
+     * @param rfqIds the list to append the ids to
+     */
+    public void collectByUser(final int userId, final IntArrayList rfqIds)
+    {
+        addAll(rfqIdsByUser.get(userId), rfqIds);
+    }
+
+    /**
+     * Returns the number of open RFQs on an instrument
+     *
+     * @param cusip the packed cusip of the instrument
+     * @return the number of open RFQs
+     */
+    public int countByCusip(final long cusip)
+    {
+        final IntHashSet rfqIds = rfqIdsByCusip.get(cusip);
+        return rfqIds == null ? 0 : rfqIds.size();
+    }
+
+    /**
+     * Returns the number of open RFQs a user requested or is responding to
+     *
+     * @param userId the user id
+     * @return the number of open RFQs
+     */
+    public int countByUser(final int userId)
+    {
+        final IntHashSet rfqIds = rfqIdsByUser.get(userId);
+        return rfqIds == null ? 0 : rfqIds.size();
+    }
+
+    private static void removeFrom(final IntHashSet rfqIds, final int rfqId)
+    {
+        if (rfqIds != null)
+        {
+            rfqIds.remove(rfqId);
+        }
+    }
+
+    private static void addAll(final IntHashSet rfqIds, final IntArrayList target)
+    {
+        if (rfqIds != null)
+        {
+            final IntHashSet.IntIterator iterator = rfqIds.iterator();
+            while (iterator.hasNext())
+            {
+                target.addInt(iterator.nextValue());
+            }
+        }
+    }
+}
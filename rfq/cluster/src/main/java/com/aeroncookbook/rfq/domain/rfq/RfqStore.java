@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+
+import java.util.function.Consumer;
+
+/**
+ * Storage backend for the live RFQs, keyed by RFQ id.
+ * <p>
+ * The {@link Rfq} returned by a store may be a view that is repointed by the next call to the store, so callers
+ * should use it straight away and not hold on to it.
+ */
+public interface RfqStore
+{
+    /**
+     * Adds a newly created RFQ in the {@link com.aeroncookbook.rfq.domain.rfq.states.RfqStates#CREATED} state.
+     *
+     * @param rfqId           the RFQ id
+     * @param correlationId   the correlation id from the creation
+     * @param expireTimeMs    the time at which the RFQ expires
+     * @param quantity        the quantity of the RFQ
+     * @param requesterSide   the side of the RFQ as defined by the requester
+     * @param cusip           the cusip of the instrument
+     * @param requesterUserId the user id of the requester
+     * @return the added RFQ
+     */
+    Rfq add(
+        int rfqId,
+        long correlationId,
+        long expireTimeMs,
+        long quantity,
+        Side requesterSide,
+        String cusip,
+        int requesterUserId);
+
+    /**
+     * Returns an RFQ by id.
+     *
+     * @param rfqId the RFQ id
+     * @return the RFQ, or null if it is not held
+     */
+    Rfq get(int rfqId);
+
+    /**
+     * Removes an RFQ by id, if held.
+     *
+     * @param rfqId the RFQ id
+     */
+    void remove(int rfqId);
+
+    /**
+     * Returns the number of RFQs held.
+     *
+     * @return the number of RFQs held
+     */
+    int size();
+
+    /**
+     * Sizes the store to hold the given number of RFQs without growing, such as before a snapshot is loaded.
+     *
+     * @param rfqCount the number of RFQs to hold
+     */
+    void ensureCapacity(int rfqCount);
+
+    /**
+     * Visits every RFQ held.
+     *
+     * @param consumer the consumer to call with each RFQ
+     */
+    void forEach(Consumer<Rfq> consumer);
+}
@@ -17,53 +17,111 @@
 package com.aeroncookbook.rfq.domain.rfq;
 
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
 import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import com.aeroncookbook.rfq.domain.instrument.Instrument;
 import com.aeroncookbook.rfq.domain.instrument.Instruments;
 import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
 import com.aeroncookbook.rfq.domain.users.Users;
+import com.aeroncookbook.rfq.infra.AuditJournal;
 import com.aeroncookbook.rfq.infra.ClusterClientResponder;
+import com.aeroncookbook.rfq.infra.ObserverFeed;
+import com.aeroncookbook.rfq.infra.RfqHistory;
+import com.aeroncookbook.rfq.infra.ServiceConfig;
 import com.aeroncookbook.rfq.infra.SessionMessageContextImpl;
 import com.aeroncookbook.rfq.infra.TimerManager;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.util.ArrayList;
-import java.util.List;
-
+import org.agrona.BitUtil;
+import org.agrona.collections.IntArrayList;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * The RFQ domain model.
+ * <p>
+ * Only live RFQs are held; an RFQ is evicted as soon as it reaches a terminal state (accepted, rejected, expired or
+ * canceled), so memory is proportional to the open book rather than to every RFQ ever created. RFQ ids are issued
+ * from a dense sequence, which lets an evicted id still be told apart from one that was never issued. The live RFQs
+ * are also indexed by instrument and by user in an {@link RfqIndex}, kept in step on every add and eviction. An
+ * evicted RFQ is passed on to the {@link RfqHistory}, which keeps it off the service thread for later queries.
+ * <p>
+ * The outcome of each command is held in a {@link CommandDedupWindow}, so a command retried with the same user and
+ * correlation id, as a client may do across a leader election, is answered with the original confirm and not applied
+ * again.
+ */
 public class Rfqs
 {
-    private static final Logger LOGGER = LoggerFactory.getLogger(Rfqs.class);
+    /**
+     * User filter of {@link #listOpenRfqs(long, long, int)} matching any user.
+     */
+    public static final int ANY_USER = 0;
+    /**
+     * Most RFQs listed in answer to {@link #listOpenRfqs(long, long, int)}; the answer says when more matched.
+     */
+    public static final int MAX_OPEN_RFQS_LISTED = 1000;
+    private static final int NO_USER = Integer.MIN_VALUE;
+    private static final int NO_RFQ_ID = -1;
     private final SessionMessageContextImpl context;
     private final Instruments instruments;
     private final Users users;
     private final ClusterClientResponder clusterClientResponder;
-    private final TimerManager timerManager;
-    private final List<Rfq> rfqs = new ArrayList<>();
+    private final AuditJournal auditJournal;
+    private final ObserverFeed observerFeed;
+    private final RfqHistory rfqHistory;
+    private final RfqExpiryEngine expiryEngine;
+    private final RfqStore rfqById;
+    private final RfqIndex index = new RfqIndex();
+    private final CommandDedupWindow commandWindow = new CommandDedupWindow();
+    private final DirtyRfqs dirtyRfqs = new DirtyRfqs();
+    private final IntArrayList queryRfqIds = new IntArrayList();
+    private final IntArrayList userRfqIds = new IntArrayList();
+    private final IntArrayList canceledRfqIds = new IntArrayList();
+    private final IntArrayList expiredRfqIds = new IntArrayList();
+    private final Consumer<Rfq> collectRfqId = rfq -> queryRfqIds.addInt(rfq.getRfqId());
+    private int[] sortScratch = new int[64];
     private int rfqId = 0;
 
+    /**
+     * Constructor
+     *
+     * @param context                the session message context
+     * @param instruments            the instruments the RFQs are on
+     * @param users                  the known users
+     * @param clusterClientResponder the responder to clients
+     * @param timerManager           the timer manager used to drive expiry
+     * @param auditJournal           the journal to which RFQ transitions and denied commands are recorded
+     * @param config                 the service options giving the RFQ store, observer feed and RFQ history
+     */
     public Rfqs(
         final SessionMessageContextImpl context,
         final Instruments instruments,
         final Users users,
         final ClusterClientResponder clusterClientResponder,
-        final TimerManager timerManager)
+        final TimerManager timerManager,
+        final AuditJournal auditJournal,
+        final ServiceConfig config)
     {
+        this.rfqById = config.rfqStore();
         this.context = context;
         this.instruments = instruments;
         this.users = users;
         this.clusterClientResponder = clusterClientResponder;
-        this.timerManager = timerManager;
+        this.auditJournal = auditJournal;
+        this.observerFeed = config.observerFeed();
+        this.rfqHistory = config.rfqHistory();
+        this.expiryEngine = new RfqExpiryEngine(context, timerManager, this::expireRfq);
     }
 
     /**
      * Create a new RFQ.
      *
-     * @param correlation the correlation id
+     * @param correlationId the correlation id
      * @param expireTimeMs the time at which the RFQ expires
      * @param quantity the quantity of the RFQ
      * @param side the side of the RFQ
@@ -71,310 +129,768 @@ public class Rfqs
      * @param userId the user id of the user creating the RFQ
      */
     public void createRfq(
-        final String correlation,
+        final long correlationId,
         final long expireTimeMs,
         final long quantity,
         final Side side,
         final String cusip,
         final int userId)
     {
+        createRfq(correlationId, expireTimeMs, quantity, side, Cusip.encode(cusip), userId);
+    }
+
+    /**
+     * Create a new RFQ, given the cusip packed by {@link Cusip}. The RFQ holds the cusip String of the instrument, so
+     * none is created per RFQ.
+     *
+     * @param correlationId the correlation id
+     * @param expireTimeMs the time at which the RFQ expires
+     * @param quantity the quantity of the RFQ
+     * @param side the side of the RFQ
+     * @param cusip the packed cusip of the instrument
+     * @param userId the user id of the user creating the RFQ
+     */
+    public void createRfq(
+        final long correlationId,
+        final long expireTimeMs,
+        final long quantity,
+        final Side side,
+        final long cusip,
+        final int userId)
+    {
+        if (replayed(RfqCommandType.CREATE, correlationId, userId))
+        {
+            return;
+        }
+
         if (!users.isValidUser(userId))
         {
-            LOGGER.info("Cannot create RFQ: Invalid user id {} for RFQ", userId);
-            clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.UNKNOWN_USER);
+            denyCreate(correlationId, userId, cusip, CreateRfqResult.UNKNOWN_USER);
+            return;
+        }
+
+        if (!users.canRequest(userId))
+        {
+            denyCreate(correlationId, userId, cusip, CreateRfqResult.USER_NOT_PERMITTED);
             return;
         }
 
-        if (!instruments.isValidCusip(cusip))
+        final Instrument instrument = instruments.lookup(cusip);
+        if (instrument == null)
         {
-            LOGGER.info("Cannot create RFQ: Invalid cusip {} for RFQ", cusip);
-            clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.UNKNOWN_CUSIP);
+            denyCreate(correlationId, userId, cusip, CreateRfqResult.UNKNOWN_CUSIP);
             return;
         }
 
         if (expireTimeMs <= context.getClusterTime())
         {
-            LOGGER.info("Cannot create RFQ: RFQ expires in the past");
-            clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.RFQ_EXPIRES_IN_PAST);
+            denyCreate(correlationId, userId, cusip, CreateRfqResult.RFQ_EXPIRES_IN_PAST);
             return;
         }
 
-        if (!instruments.isInstrumentEnabled(cusip))
+        if (!instrument.isEnabled())
         {
-            LOGGER.info("Cannot create RFQ: Instrument {} is not enabled", cusip);
-            clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.INSTRUMENT_NOT_ENABLED);
+            denyCreate(correlationId, userId, cusip, CreateRfqResult.INSTRUMENT_NOT_ENABLED);
             return;
         }
 
-        if (quantity < instruments.getMinSize(cusip))
+        if (quantity < instrument.getMinSize())
         {
-            LOGGER.info("Cannot create RFQ: Instrument {} min size not met", cusip);
-            clusterClientResponder.createRfqConfirm(correlation, null, CreateRfqResult.INSTRUMENT_MIN_SIZE_NOT_MET);
+            denyCreate(correlationId, userId, cusip, CreateRfqResult.INSTRUMENT_MIN_SIZE_NOT_MET);
             return;
         }
 
-        final Rfq rfq = new Rfq(++rfqId, correlation, expireTimeMs, quantity, side, cusip, userId);
-        rfqs.add(rfq);
-        LOGGER.info("Created RFQ {}", rfq);
+        final Rfq rfq = rfqById.add(
+            ++rfqId, correlationId, expireTimeMs, quantity, side, instrument.getCusip(), userId);
+        index.add(rfq);
+        transitioned(AuditEventType.RFQ_CREATED, correlationId, userId, rfq);
 
-        //send a confirmation to the client that created the RFQ
-        clusterClientResponder.createRfqConfirm(correlation, rfq, CreateRfqResult.SUCCESS);
+        //send a confirmation to the client that created the RFQ, holding its outcome should the command be retried
+        commandWindow.record(
+            userId, correlationId, RfqCommandType.CREATE, rfq.getRfqId(), CreateRfqResult.SUCCESS.value());
+        clusterClientResponder.createRfqConfirm(correlationId, rfq, CreateRfqResult.SUCCESS);
 
         //broadcast the new RFQ to all clients
         clusterClientResponder.broadcastNewRfq(rfq);
 
         //schedule the RFQ to expire
-        timerManager.scheduleTimer(rfq.getExpireTimeMs(), () -> expireRfq(rfq.getRfqId()));
+        rfq.setExpiryTimerId(expiryEngine.schedule(rfq.getRfqId(), rfq.getExpireTimeMs()));
+    }
+
+    /**
+     * Restores an RFQ from a snapshot, rescheduling its expiry if the RFQ can still expire.
+     *
+     * @param correlationId the correlation id from the creation
+     * @param expireTimeMs the time at which the RFQ expires
+     * @param rfqId the RFQ id
+     * @param quantity the quantity of the RFQ
+     * @param side the side of the RFQ
+     * @param cusip the packed cusip of the instrument
+     * @param requesterUserId the user id of the requester
+     * @param stateId the id of the current state
+     * @param responderUserId the user id of the responder
+     * @param lastCounterUser the last user to counter
+     * @param acceptUser the user that accepted the RFQ
+     * @param rejectUser the user that rejected the RFQ
+     * @param price the current price
+     */
+    public void restoreRfq(
+        final long correlationId,
+        final long expireTimeMs,
+        final int rfqId,
+        final long quantity,
+        final Side side,
+        final long cusip,
+        final int requesterUserId,
+        final short stateId,
+        final int responderUserId,
+        final int lastCounterUser,
+        final int acceptUser,
+        final int rejectUser,
+        final long price)
+    {
+        //RFQs share the cusip String of their instrument rather than each decoding one of their own
+        final Instrument instrument = instruments.lookup(cusip);
+        final String cusipString = null != instrument ? instrument.getCusip() : Cusip.decode(cusip);
+        final Rfq rfq = rfqById.add(rfqId, correlationId, expireTimeMs, quantity, side, cusipString, requesterUserId);
+        rfq.restore(stateId, responderUserId, lastCounterUser, acceptUser, rejectUser, price);
+        index.add(rfq);
+        observerFeed.rfqUpdated(rfq);
+
+        if (rfq.canExpire())
+        {
+            rfq.setExpiryTimerId(expiryEngine.schedule(rfqId, expireTimeMs));
+        }
+    }
+
+    /**
+     * Sizes the RFQ store to hold the given number of RFQs without growing, such as before a snapshot is loaded.
+     *
+     * @param rfqCount the number of RFQs to hold
+     */
+    public void ensureCapacity(final int rfqCount)
+    {
+        rfqById.ensureCapacity(rfqCount);
+    }
+
+    /**
+     * Visits all live RFQs held in the domain model. The RFQ passed to the consumer may be a reused view, valid only
+     * for the duration of the call.
+     *
+     * @param consumer the consumer to call with each live RFQ
+     */
+    public void forEachRfq(final Consumer<Rfq> consumer)
+    {
+        rfqById.forEach(consumer);
+    }
+
+    /**
+     * Returns the number of live RFQs held in the domain model.
+     *
+     * @return the number of live RFQs
+     */
+    public int getRfqCount()
+    {
+        return rfqById.size();
+    }
+
+    /**
+     * Returns a live RFQ by id.
+     *
+     * @param rfqId the RFQ id
+     * @return the RFQ, or null if it was never issued or has reached a terminal state
+     */
+    public Rfq getRfq(final int rfqId)
+    {
+        return rfqById.get(rfqId);
+    }
+
+    /**
+     * Returns the secondary indexes over the live RFQs.
+     *
+     * @return the RFQ index
+     */
+    public RfqIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Returns the engine driving RFQ expiry.
+     *
+     * @return the expiry engine
+     */
+    public RfqExpiryEngine getExpiryEngine()
+    {
+        return expiryEngine;
+    }
+
+    /**
+     * Returns the window over the outcome of recent commands, used to answer retried commands.
+     *
+     * @return the command dedup window
+     */
+    public CommandDedupWindow getCommandWindow()
+    {
+        return commandWindow;
+    }
+
+    /**
+     * Returns the RFQs changed or evicted since the last snapshot, used to write delta snapshots.
+     *
+     * @return the dirty RFQs
+     */
+    public DirtyRfqs getDirtyRfqs()
+    {
+        return dirtyRfqs;
+    }
+
+    /**
+     * Returns the last RFQ id issued.
+     *
+     * @return the last RFQ id issued
+     */
+    public int getRfqIdSequence()
+    {
+        return rfqId;
+    }
+
+    /**
+     * Restores the last RFQ id issued, as read from a snapshot.
+     *
+     * @param rfqIdSequence the last RFQ id issued
+     */
+    public void restoreRfqIdSequence(final int rfqIdSequence)
+    {
+        this.rfqId = rfqIdSequence;
+    }
+
+    /**
+     * Lists the open RFQs to the requesting client, ordered by RFQ id. Given both filters, the RFQs of the user are
+     * narrowed to the instrument, as a user is expected to have fewer open RFQs than an instrument. At most
+     * {@link #MAX_OPEN_RFQS_LISTED} RFQs are listed, the oldest first, so that a query of the whole book cannot flood
+     * the client's egress; the answer is flagged as truncated when more matched.
+     *
+     * @param correlationId the correlation id of the request
+     * @param cusip         the packed cusip to filter by, or {@link Cusip#NO_CUSIP} for any instrument
+     * @param userId        the user to filter by, as requester or responder, or {@link #ANY_USER} for any user
+     */
+    public void listOpenRfqs(final long correlationId, final long cusip, final int userId)
+    {
+        queryRfqIds.clear();
+        if (userId != ANY_USER)
+        {
+            if (cusip == Cusip.NO_CUSIP)
+            {
+                index.collectByUser(userId, queryRfqIds);
+            }
+            else
+            {
+                userRfqIds.clear();
+                index.collectByUser(userId, userRfqIds);
+                for (int i = 0, size = userRfqIds.size(); i < size; i++)
+                {
+                    final int id = userRfqIds.getInt(i);
+                    if (Cusip.encode(rfqById.get(id).getCusip()) == cusip)
+                    {
+                        queryRfqIds.addInt(id);
+                    }
+                }
+            }
+        }
+        else if (cusip != Cusip.NO_CUSIP)
+        {
+            index.collectByCusip(cusip, queryRfqIds);
+        }
+        else
+        {
+            rfqById.forEach(collectRfqId);
+        }
+
+        final boolean truncated = sortAndCapQueryRfqIds(MAX_OPEN_RFQS_LISTED);
+        clusterClientResponder.sendOpenRfqs(correlationId, queryRfqIds, rfqById, truncated);
+    }
+
+    /**
+     * Cancels every open RFQ a user requested that can still be canceled, broadcasting each cancellation, then
+     * replies with the number canceled. The cost is in the number of RFQs the user takes part in.
+     *
+     * @param correlationId the correlation id of the request
+     * @param userId        the requester whose RFQs are canceled
+     */
+    public void cancelUserRfqs(final long correlationId, final int userId)
+    {
+        //collect first, as eviction updates the index being read
+        queryRfqIds.clear();
+        index.collectByUser(userId, queryRfqIds);
+
+        int canceledCount = 0;
+        for (int i = 0, size = queryRfqIds.size(); i < size; i++)
+        {
+            final Rfq rfq = rfqById.get(queryRfqIds.getInt(i));
+            if (rfq.getRequesterUserId() == userId && rfq.canCancel())
+            {
+                rfq.cancel();
+                transitioned(AuditEventType.RFQ_CANCELED, correlationId, userId, rfq);
+                clusterClientResponder.broadcastRfqCanceled(rfq);
+                expiryEngine.cancel(rfq.getExpiryTimerId());
+                evict(rfq);
+                canceledCount++;
+            }
+        }
+
+        clusterClientResponder.sendUserRfqsCanceled(correlationId, userId, canceledCount);
+    }
+
+    /**
+     * Closes every open RFQ of a user whose last session has disconnected, in one pass over the RFQs the user takes
+     * part in: those it requested are canceled, and those it is responding to are expired, as its price can no longer
+     * be stood behind. One event listing all the closed RFQs is broadcast, rather than an event per RFQ.
+     *
+     * @param userId the user whose RFQs are closed
+     */
+    public void closeUserRfqs(final int userId)
+    {
+        queryRfqIds.clear();
+        index.collectByUser(userId, queryRfqIds);
+        canceledRfqIds.clear();
+        expiredRfqIds.clear();
+
+        for (int i = 0, size = queryRfqIds.size(); i < size; i++)
+        {
+            final Rfq rfq = rfqById.get(queryRfqIds.getInt(i));
+            if (rfq.getRequesterUserId() == userId && rfq.canCancel())
+            {
+                rfq.cancel();
+                transitioned(AuditEventType.RFQ_CANCELED, rfq.getCorrelationId(), NO_USER, rfq);
+                canceledRfqIds.addInt(rfq.getRfqId());
+            }
+            else if (rfq.getResponderUserId() == userId && rfq.canExpire())
+            {
+                rfq.expire();
+                transitioned(AuditEventType.RFQ_EXPIRED, rfq.getCorrelationId(), NO_USER, rfq);
+                expiredRfqIds.addInt(rfq.getRfqId());
+            }
+            else
+            {
+                continue;
+            }
+
+            expiryEngine.cancel(rfq.getExpiryTimerId());
+            evict(rfq);
+        }
+
+        if (!canceledRfqIds.isEmpty() || !expiredRfqIds.isEmpty())
+        {
+            clusterClientResponder.broadcastUserRfqsClosed(userId, canceledRfqIds, expiredRfqIds);
+        }
+    }
+
+    //the sets of the index are unordered, so results are sorted through a scratch array as IntArrayList has no sort
+    //keeps the lowest ids up to the limit, returning whether any were left out
+    private boolean sortAndCapQueryRfqIds(final int limit)
+    {
+        final int size = queryRfqIds.size();
+        if (sortScratch.length < size)
+        {
+            sortScratch = new int[BitUtil.findNextPositivePowerOfTwo(size)];
+        }
+        for (int i = 0; i < size; i++)
+        {
+            sortScratch[i] = queryRfqIds.getInt(i);
+        }
+        Arrays.sort(sortScratch, 0, size);
+        queryRfqIds.clear();
+        for (int i = 0, count = Math.min(size, limit); i < count; i++)
+        {
+            queryRfqIds.addInt(sortScratch[i]);
+        }
+        return size > limit;
+    }
+
+    private void transitioned(final AuditEventType type, final long correlationId, final int userId, final Rfq rfq)
+    {
+        auditJournal.rfqEvent(type, correlationId, userId, rfq);
+        observerFeed.rfqUpdated(rfq);
+        dirtyRfqs.changed(rfq.getRfqId());
+    }
+
+    private void evict(final Rfq rfq)
+    {
+        rfqHistory.rfqArchived(rfq);
+        index.remove(rfq);
+        rfqById.remove(rfq.getRfqId());
+        dirtyRfqs.evicted(rfq.getRfqId());
+    }
+
+    //an id at or below the sequence that is no longer held was issued and has since been evicted in a terminal state
+    private boolean wasEvicted(final int rfqId)
+    {
+        return rfqId > 0 && rfqId <= this.rfqId;
     }
 
     private void expireRfq(final int rfqId)
     {
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        final Rfq rfq = rfqById.get(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot expire RFQ: RFQ {} not found", rfqId);
+            auditJournal.commandDenied(AuditEventType.EXPIRE_DENIED, 0, rfqId, NO_USER, 0);
             return;
         }
 
         if (!rfq.canExpire())
         {
-            LOGGER.info("Cannot expire RFQ: RFQ {}", rfqId);
+            auditJournal.commandDenied(AuditEventType.EXPIRE_DENIED, rfq.getCorrelationId(), rfqId, NO_USER, 0);
             return;
         }
 
         rfq.expire();
-        LOGGER.info("Expired RFQ {}", rfq);
+        transitioned(AuditEventType.RFQ_EXPIRED, rfq.getCorrelationId(), NO_USER, rfq);
         clusterClientResponder.broadcastRfqExpired(rfq);
+        evict(rfq);
     }
 
     /**
      * Cancel an RFQ.
      *
-     * @param correlation the correlation id
+     * @param correlationId the correlation id
      * @param rfqId the id of the RFQ to cancel
      * @param cancelUserId the user id of the user cancelling the RFQ
      */
-    public void cancelRfq(final String correlation, final int rfqId, final int cancelUserId)
+    public void cancelRfq(final long correlationId, final int rfqId, final int cancelUserId)
     {
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        if (replayed(RfqCommandType.CANCEL, correlationId, cancelUserId))
+        {
+            return;
+        }
+
+        final Rfq rfq = rfqById.get(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot cancel RFQ: RFQ {} not found", rfqId);
-            clusterClientResponder.cancelRfqConfirm(correlation, null, CancelRfqResult.UNKNOWN_RFQ);
+            if (wasEvicted(rfqId))
+            {
+                denyCancel(correlationId, rfqId, cancelUserId, CancelRfqResult.INVALID_TRANSITION);
+                return;
+            }
+
+            denyCancel(correlationId, rfqId, cancelUserId, CancelRfqResult.UNKNOWN_RFQ);
             return;
         }
 
         if (!rfq.canCancel())
         {
-            LOGGER.info("Cannot cancel RFQ: RFQ {} invalid transition", rfqId);
-            clusterClientResponder.cancelRfqConfirm(correlation, null, CancelRfqResult.INVALID_TRANSITION);
+            denyCancel(correlationId, rfqId, cancelUserId, CancelRfqResult.INVALID_TRANSITION);
             return;
         }
 
         if (rfq.getRequesterUserId() != cancelUserId)
         {
-            LOGGER.info("Cannot cancel RFQ: RFQ {} not created by user {}", rfqId, cancelUserId);
-            clusterClientResponder.cancelRfqConfirm(correlation, null,
-                CancelRfqResult.CANNOT_CANCEL_USER_NOT_REQUESTER);
+            denyCancel(correlationId, rfqId, cancelUserId, CancelRfqResult.CANNOT_CANCEL_USER_NOT_REQUESTER);
             return;
         }
 
         rfq.cancel();
-        LOGGER.info("Cancelled RFQ {}", rfq);
-        clusterClientResponder.cancelRfqConfirm(correlation, rfq, CancelRfqResult.SUCCESS);
+        transitioned(AuditEventType.RFQ_CANCELED, correlationId, cancelUserId, rfq);
+        commandWindow.record(
+            cancelUserId, correlationId, RfqCommandType.CANCEL, rfq.getRfqId(), CancelRfqResult.SUCCESS.value());
+        clusterClientResponder.cancelRfqConfirm(correlationId, rfq, CancelRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqCanceled(rfq);
+        expiryEngine.cancel(rfq.getExpiryTimerId());
+        evict(rfq);
     }
 
-    public void quoteRfq(final String correlation, final int rfqId, final int responderUserId, final long price)
+    public void quoteRfq(final long correlationId, final int rfqId, final int responderUserId, final long price)
     {
+        if (replayed(RfqCommandType.QUOTE, correlationId, responderUserId))
+        {
+            return;
+        }
+
         if (!users.isValidUser(responderUserId))
         {
-            LOGGER.info("Cannot quote RFQ: Invalid user id {} for RFQ", responderUserId);
-            clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.UNKNOWN_USER);
+            denyQuote(correlationId, rfqId, responderUserId, QuoteRfqResult.UNKNOWN_USER);
             return;
         }
 
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        if (!users.canRespond(responderUserId))
+        {
+            denyQuote(correlationId, rfqId, responderUserId, QuoteRfqResult.USER_NOT_PERMITTED);
+            return;
+        }
+
+        final Rfq rfq = rfqById.get(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot cancel RFQ: RFQ {} not found", rfqId);
-            clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.UNKNOWN_RFQ);
+            if (wasEvicted(rfqId))
+            {
+                denyQuote(correlationId, rfqId, responderUserId, QuoteRfqResult.INVALID_TRANSITION);
+                return;
+            }
+
+            denyQuote(correlationId, rfqId, responderUserId, QuoteRfqResult.UNKNOWN_RFQ);
             return;
         }
 
         if (rfq.hasResponder())
         {
-            LOGGER.info("Cannot quote RFQ: RFQ {} already has a responder", rfqId);
-            clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.ANOTHER_USER_RESPONDED);
+            denyQuote(correlationId, rfqId, responderUserId, QuoteRfqResult.ANOTHER_USER_RESPONDED);
             return;
         }
 
         if (rfq.getRequesterUserId() == responderUserId)
         {
-            LOGGER.info("Cannot quote RFQ: RFQ {} cannot quote own RFQ", rfqId);
-            clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.CANNOT_QUOTE_OWN_RFQ);
+            denyQuote(correlationId, rfqId, responderUserId, QuoteRfqResult.CANNOT_QUOTE_OWN_RFQ);
             return;
         }
 
         if (!rfq.canQuote())
         {
-            LOGGER.info("Cannot quote RFQ: RFQ {} invalid transition", rfqId);
-            clusterClientResponder.quoteRfqConfirm(correlation, null, QuoteRfqResult.INVALID_TRANSITION);
+            denyQuote(correlationId, rfqId, responderUserId, QuoteRfqResult.INVALID_TRANSITION);
             return;
         }
 
         rfq.quote(responderUserId, price);
-        LOGGER.info("Quoted RFQ {}", rfq);
-        clusterClientResponder.quoteRfqConfirm(correlation, rfq, QuoteRfqResult.SUCCESS);
+        index.addResponder(rfq);
+        transitioned(AuditEventType.RFQ_QUOTED, correlationId, responderUserId, rfq);
+        commandWindow.record(
+            responderUserId, correlationId, RfqCommandType.QUOTE, rfq.getRfqId(), QuoteRfqResult.SUCCESS.value());
+        clusterClientResponder.quoteRfqConfirm(correlationId, rfq, QuoteRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqQuoted(rfq);
     }
 
-    public void counterRfq(final String correlation, final int rfqId, final int counterUserId, final long price)
+    public void counterRfq(final long correlationId, final int rfqId, final int counterUserId, final long price)
     {
+        if (replayed(RfqCommandType.COUNTER, correlationId, counterUserId))
+        {
+            return;
+        }
 
         if (!users.isValidUser(counterUserId))
         {
-            LOGGER.info("Cannot counter RFQ: Invalid user id {} for RFQ", counterUserId);
-            clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.UNKNOWN_USER);
+            denyCounter(correlationId, rfqId, counterUserId, CounterRfqResult.UNKNOWN_USER);
             return;
         }
 
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        final Rfq rfq = rfqById.get(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot counter RFQ: RFQ {} not found", rfqId);
-            clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.UNKNOWN_RFQ);
+            if (wasEvicted(rfqId))
+            {
+                denyCounter(correlationId, rfqId, counterUserId, CounterRfqResult.INVALID_TRANSITION);
+                return;
+            }
+
+            denyCounter(correlationId, rfqId, counterUserId, CounterRfqResult.UNKNOWN_RFQ);
             return;
         }
 
         if (!rfq.canCounter())
         {
-            LOGGER.info("Cannot counter RFQ: RFQ {} invalid transition", rfqId);
-            clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.INVALID_TRANSITION);
+            denyCounter(correlationId, rfqId, counterUserId, CounterRfqResult.INVALID_TRANSITION);
             return;
         }
 
         if (rfq.getRequesterUserId() != counterUserId && rfq.getResponderUserId() != counterUserId)
         {
-            LOGGER.info("Cannot counter RFQ: not involved with RFQ {}", rfqId);
-            clusterClientResponder.counterRfqConfirm(correlation, null,
-                CounterRfqResult.CANNOT_COUNTER_RFQ_NOT_INVOLVED_WITH);
+            denyCounter(correlationId, rfqId, counterUserId, CounterRfqResult.CANNOT_COUNTER_RFQ_NOT_INVOLVED_WITH);
             return;
         }
 
-        if (rfq.getLastCounterUser() == Long.MIN_VALUE && counterUserId != rfq.getRequesterUserId())
+        if (rfq.getLastCounterUser() == NO_USER && counterUserId != rfq.getRequesterUserId())
         {
-            LOGGER.info("Cannot counter RFQ: RFQ {} cannot counter first quote", rfqId);
-            clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.CANNOT_COUNTER_OWN_PRICE);
+            denyCounter(correlationId, rfqId, counterUserId, CounterRfqResult.CANNOT_COUNTER_OWN_PRICE);
             return;
         }
 
-        if (rfq.getLastCounterUser() != counterUserId && rfq.getCurrentState().getCurrentState() == RfqStates.COUNTERED)
+        if (rfq.getLastCounterUser() == counterUserId && rfq.getCurrentState().getCurrentState() == RfqStates.COUNTERED)
         {
-            LOGGER.info("Cannot counter RFQ: RFQ {} cannot counter own quote", rfqId);
-            clusterClientResponder.counterRfqConfirm(correlation, null, CounterRfqResult.CANNOT_COUNTER_OWN_PRICE);
+            denyCounter(correlationId, rfqId, counterUserId, CounterRfqResult.CANNOT_COUNTER_OWN_PRICE);
             return;
         }
 
         rfq.counter(counterUserId, price);
-        LOGGER.info("Countered RFQ {}", rfq);
-        clusterClientResponder.counterRfqConfirm(correlation, rfq, CounterRfqResult.SUCCESS);
+        transitioned(AuditEventType.RFQ_COUNTERED, correlationId, counterUserId, rfq);
+        commandWindow.record(
+            counterUserId, correlationId, RfqCommandType.COUNTER, rfq.getRfqId(), CounterRfqResult.SUCCESS.value());
+        clusterClientResponder.counterRfqConfirm(correlationId, rfq, CounterRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqCountered(rfq);
     }
 
-    public void acceptRfq(final String correlation, final int rfqId, final int acceptUserId)
+    public void acceptRfq(final long correlationId, final int rfqId, final int acceptUserId)
     {
+        if (replayed(RfqCommandType.ACCEPT, correlationId, acceptUserId))
+        {
+            return;
+        }
+
         if (!users.isValidUser(acceptUserId))
         {
-            LOGGER.info("Cannot accept RFQ: Invalid user id {} for RFQ", acceptUserId);
-            clusterClientResponder.acceptRfqConfirm(correlation, null, AcceptRfqResult.UNKNOWN_USER);
+            denyAccept(correlationId, rfqId, acceptUserId, AcceptRfqResult.UNKNOWN_USER);
             return;
         }
 
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        final Rfq rfq = rfqById.get(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot accept RFQ: RFQ {} not found", rfqId);
-            clusterClientResponder.acceptRfqConfirm(correlation, null, AcceptRfqResult.UNKNOWN_RFQ);
+            if (wasEvicted(rfqId))
+            {
+                denyAccept(correlationId, rfqId, acceptUserId, AcceptRfqResult.INVALID_TRANSITION);
+                return;
+            }
+
+            denyAccept(correlationId, rfqId, acceptUserId, AcceptRfqResult.UNKNOWN_RFQ);
             return;
         }
 
         if (!rfq.canAccept())
         {
-            LOGGER.info("Cannot accept RFQ: RFQ {} invalid transition", rfqId);
-            clusterClientResponder.acceptRfqConfirm(correlation, null, AcceptRfqResult.INVALID_TRANSITION);
+            denyAccept(correlationId, rfqId, acceptUserId, AcceptRfqResult.INVALID_TRANSITION);
             return;
         }
 
         if (rfq.getRequesterUserId() != acceptUserId && rfq.getResponderUserId() != acceptUserId)
         {
-            LOGGER.info("Cannot accept RFQ: not involved with RFQ {}", rfqId);
-            clusterClientResponder.acceptRfqConfirm(correlation, null,
-                AcceptRfqResult.CANNOT_ACCEPT_RFQ_NOT_INVOLVED_WITH);
+            denyAccept(correlationId, rfqId, acceptUserId, AcceptRfqResult.CANNOT_ACCEPT_RFQ_NOT_INVOLVED_WITH);
+            return;
+        }
+
+        if (rfq.getLastCounterUser() == NO_USER && acceptUserId != rfq.getRequesterUserId())
+        {
+            denyAccept(correlationId, rfqId, acceptUserId, AcceptRfqResult.CANNOT_ACCEPT_OWN_PRICE);
             return;
         }
 
-        if (rfq.getLastCounterUser() == Long.MIN_VALUE && acceptUserId != rfq.getRequesterUserId())
+        if (rfq.getLastCounterUser() == acceptUserId && rfq.getCurrentState().getCurrentState() == RfqStates.COUNTERED)
         {
-            LOGGER.info("Cannot accept RFQ: RFQ {} cannot accept first quote", rfqId);
-            clusterClientResponder.acceptRfqConfirm(correlation, null, AcceptRfqResult.CANNOT_ACCEPT_OWN_PRICE);
+            denyAccept(correlationId, rfqId, acceptUserId, AcceptRfqResult.CANNOT_ACCEPT_OWN_PRICE);
             return;
         }
 
         rfq.accept(acceptUserId);
-        LOGGER.info("Accepted RFQ {}", rfq);
-        clusterClientResponder.acceptRfqConfirm(correlation, rfq, AcceptRfqResult.SUCCESS);
+        transitioned(AuditEventType.RFQ_ACCEPTED, correlationId, acceptUserId, rfq);
+        commandWindow.record(
+            acceptUserId, correlationId, RfqCommandType.ACCEPT, rfq.getRfqId(), AcceptRfqResult.SUCCESS.value());
+        clusterClientResponder.acceptRfqConfirm(correlationId, rfq, AcceptRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqAccepted(rfq);
+        expiryEngine.cancel(rfq.getExpiryTimerId());
+        evict(rfq);
     }
 
-    public void rejectRfq(final String correlation, final int rfqId, final int rejectUserId)
+    public void rejectRfq(final long correlationId, final int rfqId, final int rejectUserId)
     {
+        if (replayed(RfqCommandType.REJECT, correlationId, rejectUserId))
+        {
+            return;
+        }
+
         if (!users.isValidUser(rejectUserId))
         {
-            LOGGER.info("Cannot reject RFQ: Invalid user id {} for RFQ", rejectUserId);
-            clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.UNKNOWN_USER);
+            denyReject(correlationId, rfqId, rejectUserId, RejectRfqResult.UNKNOWN_USER);
             return;
         }
 
-        final Rfq rfq = rfqs.stream().filter(r -> r.getRfqId() == rfqId).findFirst().orElse(null);
+        final Rfq rfq = rfqById.get(rfqId);
         if (rfq == null)
         {
-            LOGGER.info("Cannot reject RFQ: RFQ {} not found", rfqId);
-            clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.UNKNOWN_RFQ);
+            if (wasEvicted(rfqId))
+            {
+                denyReject(correlationId, rfqId, rejectUserId, RejectRfqResult.INVALID_TRANSITION);
+                return;
+            }
+
+            denyReject(correlationId, rfqId, rejectUserId, RejectRfqResult.UNKNOWN_RFQ);
             return;
         }
 
         if (!rfq.canReject())
         {
-            LOGGER.info("Cannot reject RFQ: RFQ {} invalid transition", rfqId);
-            clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.INVALID_TRANSITION);
+            denyReject(correlationId, rfqId, rejectUserId, RejectRfqResult.INVALID_TRANSITION);
             return;
         }
 
         if (rfq.getRequesterUserId() != rejectUserId && rfq.getResponderUserId() != rejectUserId)
         {
-            LOGGER.info("Cannot reject RFQ: not involved with RFQ {}", rfqId);
-            clusterClientResponder.rejectRfqConfirm(correlation, null,
-                RejectRfqResult.CANNOT_REJECT_RFQ_NOT_INVOLVED_WITH);
+            denyReject(correlationId, rfqId, rejectUserId, RejectRfqResult.CANNOT_REJECT_RFQ_NOT_INVOLVED_WITH);
             return;
         }
 
-        if (rfq.getLastCounterUser() == Long.MIN_VALUE && rejectUserId != rfq.getRequesterUserId())
+        if (rfq.getLastCounterUser() == NO_USER && rejectUserId != rfq.getRequesterUserId())
         {
-            LOGGER.info("Cannot reject RFQ: RFQ {} cannot reject first quote", rfqId);
-            clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.CANNOT_REJECT_OWN_PRICE);
+            denyReject(correlationId, rfqId, rejectUserId, RejectRfqResult.CANNOT_REJECT_OWN_PRICE);
             return;
         }
 
-        if (rfq.getLastCounterUser() != rejectUserId && rfq.getCurrentState().getCurrentState() == RfqStates.COUNTERED)
+        if (rfq.getLastCounterUser() == rejectUserId && rfq.getCurrentState().getCurrentState() == RfqStates.COUNTERED)
         {
-            LOGGER.info("Cannot reject RFQ: RFQ {} cannot reject own quote", rfqId);
-            clusterClientResponder.rejectRfqConfirm(correlation, null, RejectRfqResult.CANNOT_REJECT_OWN_PRICE);
+            denyReject(correlationId, rfqId, rejectUserId, RejectRfqResult.CANNOT_REJECT_OWN_PRICE);
+            return;
         }
 
         rfq.reject(rejectUserId);
-        LOGGER.info("Rejected RFQ {}", rfq);
-        clusterClientResponder.rejectRfqConfirm(correlation, rfq, RejectRfqResult.SUCCESS);
+        transitioned(AuditEventType.RFQ_REJECTED, correlationId, rejectUserId, rfq);
+        commandWindow.record(
+            rejectUserId, correlationId, RfqCommandType.REJECT, rfq.getRfqId(), RejectRfqResult.SUCCESS.value());
+        clusterClientResponder.rejectRfqConfirm(correlationId, rfq, RejectRfqResult.SUCCESS);
         clusterClientResponder.broadcastRfqRejected(rfq);
+        expiryEngine.cancel(rfq.getExpiryTimerId());
+        evict(rfq);
+    }
+
+    //a command already applied is answered with the confirm it was given, rather than applied a second time; one
+    //of another type reusing the correlation id is applied, and its outcome then replaces the one held
+    private boolean replayed(final RfqCommandType commandType, final long correlationId, final int userId)
+    {
+        final int slot = commandWindow.find(userId, correlationId);
+        if (slot == CommandDedupWindow.NOT_FOUND || commandWindow.commandType(slot) != commandType)
+        {
+            return false;
+        }
+
+        clusterClientResponder.replayConfirm(
+            correlationId, commandType, commandWindow.rfqId(slot), commandWindow.result(slot));
+        return true;
+    }
+
+    private void denyCreate(final long correlationId, final int userId, final long cusip, final CreateRfqResult result)
+    {
+        auditJournal.createDenied(correlationId, userId, cusip, result.value());
+        commandWindow.record(userId, correlationId, RfqCommandType.CREATE, NO_RFQ_ID, result.value());
+        clusterClientResponder.createRfqConfirm(correlationId, null, result);
+    }
+
+    private void denyCancel(final long correlationId, final int rfqId, final int userId, final CancelRfqResult result)
+    {
+        auditJournal.commandDenied(AuditEventType.CANCEL_DENIED, correlationId, rfqId, userId, result.value());
+        commandWindow.record(userId, correlationId, RfqCommandType.CANCEL, NO_RFQ_ID, result.value());
+        clusterClientResponder.cancelRfqConfirm(correlationId, null, result);
+    }
+
+    private void denyQuote(final long correlationId, final int rfqId, final int userId, final QuoteRfqResult result)
+    {
+        auditJournal.commandDenied(AuditEventType.QUOTE_DENIED, correlationId, rfqId, userId, result.value());
+        commandWindow.record(userId, correlationId, RfqCommandType.QUOTE, NO_RFQ_ID, result.value());
+        clusterClientResponder.quoteRfqConfirm(correlationId, null, result);
+    }
+
+    private void denyCounter(
+        final long correlationId, final int rfqId, final int userId, final CounterRfqResult result)
+    {
+        auditJournal.commandDenied(AuditEventType.COUNTER_DENIED, correlationId, rfqId, userId, result.value());
+        commandWindow.record(userId, correlationId, RfqCommandType.COUNTER, NO_RFQ_ID, result.value());
+        clusterClientResponder.counterRfqConfirm(correlationId, null, result);
+    }
+
+    private void denyAccept(final long correlationId, final int rfqId, final int userId, final AcceptRfqResult result)
+    {
+        auditJournal.commandDenied(AuditEventType.ACCEPT_DENIED, correlationId, rfqId, userId, result.value());
+        commandWindow.record(userId, correlationId, RfqCommandType.ACCEPT, NO_RFQ_ID, result.value());
+        clusterClientResponder.acceptRfqConfirm(correlationId, null, result);
+    }
+
+    private void denyReject(final long correlationId, final int rfqId, final int userId, final RejectRfqResult result)
+    {
+        auditJournal.commandDenied(AuditEventType.REJECT_DENIED, correlationId, rfqId, userId, result.value());
+        commandWindow.record(userId, correlationId, RfqCommandType.REJECT, NO_RFQ_ID, result.value());
+        clusterClientResponder.rejectRfqConfirm(correlationId, null, result);
     }
 }
@@ -1,26 +1,172 @@
 package com.aeroncookbook.rfq.domain.users;
 
-import org.agrona.collections.IntHashSet;
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.rfq.infra.AuditJournal;
+import com.aeroncookbook.rfq.infra.ClusterClientResponder;
+import org.agrona.collections.Int2IntHashMap;
+import org.agrona.collections.IntIntConsumer;
 
 /**
- * A collection of hardcoded users.
+ * The user registry.
+ * <p>
+ * Each known user maps to a set of permission bits in an {@link Int2IntHashMap}, so checking a user while handling a
+ * command is a single primitive lookup. A disabled user is kept, with its enabled bit cleared, so that it can be told
+ * apart from one that was never added. The demo users 500 to 502 are present from the start, with every permission.
  */
 public class Users
 {
-    private final IntHashSet users = new IntHashSet();
+    /**
+     * Permission bit allowing a user to create RFQs.
+     */
+    public static final int CAN_REQUEST = 1;
+    /**
+     * Permission bit allowing a user to quote on RFQs.
+     */
+    public static final int CAN_RESPOND = 2;
+    /**
+     * Bit set while a user is enabled.
+     */
+    public static final int ENABLED = 4;
+    private static final int UNKNOWN = 0;
+
+    private final ClusterClientResponder clusterClientResponder;
+    private final AuditJournal auditJournal;
+    private final Int2IntHashMap permissionsByUser = new Int2IntHashMap(UNKNOWN);
 
     /**
-     * Create a new collection of users.
+     * Create a new registry holding the demo users, without journalling user changes.
+     *
+     * @param clusterClientResponder the responder to which command results are sent
      */
-    public Users()
+    public Users(final ClusterClientResponder clusterClientResponder)
     {
-        users.add(500);
-        users.add(501);
-        users.add(502);
+        this(clusterClientResponder, AuditJournal.NO_OP);
     }
 
+    /**
+     * Create a new registry holding the demo users.
+     *
+     * @param clusterClientResponder the responder to which command results are sent
+     * @param auditJournal           the journal to which user changes are recorded
+     */
+    public Users(final ClusterClientResponder clusterClientResponder, final AuditJournal auditJournal)
+    {
+        this.clusterClientResponder = clusterClientResponder;
+        this.auditJournal = auditJournal;
+        for (int userId = 500; userId <= 502; userId++)
+        {
+            permissionsByUser.put(userId, CAN_REQUEST | CAN_RESPOND | ENABLED);
+        }
+    }
+
+    /**
+     * Adds a user, or re-enables a known user with the given permissions.
+     *
+     * @param correlationId the correlation id of the request
+     * @param userId        the user id, which must be positive
+     * @param canRequest    whether the user may create RFQs
+     * @param canRespond    whether the user may quote on RFQs
+     */
+    public void addUser(final long correlationId, final int userId, final boolean canRequest, final boolean canRespond)
+    {
+        if (userId <= 0)
+        {
+            clusterClientResponder.sendUserResult(correlationId, userId, false);
+            return;
+        }
+
+        final int permissions = ENABLED | (canRequest ? CAN_REQUEST : 0) | (canRespond ? CAN_RESPOND : 0);
+        permissionsByUser.put(userId, permissions);
+        auditJournal.userEvent(AuditEventType.USER_ADDED, correlationId, userId, permissions);
+        clusterClientResponder.sendUserResult(correlationId, userId, true);
+    }
+
+    /**
+     * Disables a known user, keeping its permissions should it be added again.
+     *
+     * @param correlationId the correlation id of the request
+     * @param userId        the user id
+     */
+    public void disableUser(final long correlationId, final int userId)
+    {
+        final int permissions = permissionsByUser.get(userId);
+        if (permissions == UNKNOWN)
+        {
+            clusterClientResponder.sendUserResult(correlationId, userId, false);
+            return;
+        }
+
+        permissionsByUser.put(userId, permissions & ~ENABLED);
+        auditJournal.userEvent(AuditEventType.USER_DISABLED, correlationId, userId, permissions & ~ENABLED);
+        clusterClientResponder.sendUserResult(correlationId, userId, true);
+    }
+
+    /**
+     * Checks if a user is known and enabled.
+     *
+     * @param userId the user id
+     * @return true if the user is known and enabled
+     */
     public boolean isValidUser(final int userId)
     {
-        return users.contains(userId);
+        return (permissionsByUser.get(userId) & ENABLED) != 0;
+    }
+
+    /**
+     * Checks if a user is enabled and may create RFQs.
+     *
+     * @param userId the user id
+     * @return true if the user may create RFQs
+     */
+    public boolean canRequest(final int userId)
+    {
+        return hasAll(userId, ENABLED | CAN_REQUEST);
+    }
+
+    /**
+     * Checks if a user is enabled and may quote on RFQs.
+     *
+     * @param userId the user id
+     * @return true if the user may quote on RFQs
+     */
+    public boolean canRespond(final int userId)
+    {
+        return hasAll(userId, ENABLED | CAN_RESPOND);
+    }
+
+    /**
+     * Returns the number of known users, enabled or not.
+     *
+     * @return the number of known users
+     */
+    public int userCount()
+    {
+        return permissionsByUser.size();
+    }
+
+    /**
+     * Visits every known user, enabled or not, with its permission bits.
+     *
+     * @param consumer the consumer to call with each user id and its permissions
+     */
+    public void forEachUser(final IntIntConsumer consumer)
+    {
+        permissionsByUser.forEachInt(consumer);
+    }
+
+    /**
+     * Restores a user as read from a snapshot, replacing any demo user of the same id.
+     *
+     * @param userId      the user id
+     * @param permissions the permission bits
+     */
+    public void restoreUser(final int userId, final int permissions)
+    {
+        permissionsByUser.put(userId, permissions);
+    }
+
+    private boolean hasAll(final int userId, final int required)
+    {
+        return (permissionsByUser.get(userId) & required) == required;
     }
 }
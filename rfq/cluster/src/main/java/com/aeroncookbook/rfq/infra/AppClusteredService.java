@@ -16,6 +16,8 @@
 
 package com.aeroncookbook.rfq.infra;
 
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
 import com.aeroncookbook.rfq.domain.instrument.Instruments;
 import com.aeroncookbook.rfq.domain.rfq.Rfqs;
 import com.aeroncookbook.rfq.domain.users.Users;
@@ -26,7 +28,9 @@ import io.aeron.cluster.service.ClientSession;
 import io.aeron.cluster.service.Cluster;
 import io.aeron.cluster.service.ClusteredService;
 import io.aeron.logbuffer.Header;
+import org.agrona.CloseHelper;
 import org.agrona.DirectBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,42 +40,106 @@ import org.slf4j.LoggerFactory;
 public class AppClusteredService implements ClusteredService
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(AppClusteredService.class);
+    private static final int NO_TEMPLATE_ID = -1;
     private final ClientSessions clientSessions = new ClientSessions();
-    private final SessionMessageContextImpl context = new SessionMessageContextImpl(clientSessions);
-    private final ClusterClientResponder clusterClientResponder = new ClusterClientResponderImpl(context);
-    private final TimerManager timerManager = new TimerManager(context);
-    private final Instruments instruments = new Instruments(clusterClientResponder);
-    private final Users users = new Users();
-    private final Rfqs rfqs = new Rfqs(context, instruments, users, clusterClientResponder, timerManager);
-    private final SnapshotManager snapshotManager = new SnapshotManager(context);
-    private final SbeAdapter sbeAdapter = new SbeAdapter(instruments, rfqs, clusterClientResponder);
+    private final ServiceCounters serviceCounters = new ServiceCounters();
+    private final SessionEgress sessionEgress;
+    private final SessionMessageContextImpl context;
+    private final ClusterClientResponder clusterClientResponder;
+    private final AuditJournal auditJournal;
+    private final ObserverFeed observerFeed;
+    private final RfqHistory rfqHistory;
+    private final TimerManager timerManager;
+    private final Instruments instruments;
+    private final Users users;
+    private final Rfqs rfqs;
+    private final SnapshotManager snapshotManager;
+    private final SbeAdapter sbeAdapter;
+    private final LatencyRecorder latencyRecorder;
+    private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+    private final int fullSnapshotInterval;
+    private Cluster cluster;
+
+    /**
+     * Constructor with the default options: client sessions that fall behind are disconnected and the audit journal,
+     * observer feed, RFQ history and latency recording are disabled
+     */
+    public AppClusteredService()
+    {
+        this(new ServiceConfig());
+    }
+
+    /**
+     * Constructor
+     *
+     * @param config the options of the service
+     */
+    public AppClusteredService(final ServiceConfig config)
+    {
+        this.latencyRecorder = config.latencyRecorder();
+        this.fullSnapshotInterval = config.fullSnapshotInterval();
+        context = new SessionMessageContextImpl(clientSessions, config);
+        sessionEgress = context.getSessionEgress();
+        clusterClientResponder = new ClusterClientResponderImpl(context);
+        final RingBuffer auditRingBuffer = config.auditRingBuffer();
+        auditJournal = new CountingAuditJournal(
+            null == auditRingBuffer ? AuditJournal.NO_OP : new AuditJournalImpl(context, auditRingBuffer),
+            serviceCounters);
+        observerFeed = config.observerFeed();
+        rfqHistory = config.rfqHistory();
+        timerManager = new TimerManager(context);
+        instruments = new Instruments(clusterClientResponder, auditJournal);
+        users = new Users(clusterClientResponder, auditJournal);
+        rfqs = new Rfqs(context, instruments, users, clusterClientResponder, timerManager, auditJournal, config);
+        snapshotManager = new SnapshotManager(context, instruments, users, rfqs, timerManager,
+            clientSessions.getSessionInterests(), clientSessions.getSessionUsers());
+        sbeAdapter = new SbeAdapter(context, instruments, rfqs, clientSessions.getSessionInterests(),
+            clientSessions.getSessionUsers(), users, clusterClientResponder);
+        clientSessions.setClientSessionListener(new CancelOnDisconnect(clientSessions.getSessionUsers(), rfqs));
+    }
 
     @Override
     public void onStart(final Cluster cluster, final Image snapshotImage)
     {
+        this.cluster = cluster;
         snapshotManager.setIdleStrategy(cluster.idleStrategy());
-        context.setIdleStrategy(cluster.idleStrategy());
+        if (fullSnapshotInterval > 1)
+        {
+            snapshotManager.enableDeltaSnapshots(
+                new ArchiveSnapshotRecordings(cluster, ArchiveSnapshotRecordings.DEFAULT_REPLAY_STREAM_ID),
+                fullSnapshotInterval);
+        }
         timerManager.setCluster(cluster);
+        serviceCounters.attach(cluster.aeron());
+        sessionEgress.attach(cluster.aeron());
         if (snapshotImage != null)
         {
-            LOGGER.info("Snapshotting not supported");
+            snapshotManager.loadSnapshot(snapshotImage);
         }
+        //sessions opened before the snapshot are not re-announced via onSessionOpen, so register them here
+        cluster.forEachClientSession(session -> clientSessions.addSession(session, cluster.time()));
+        updateServiceState();
     }
 
     @Override
     public void onSessionOpen(final ClientSession session, final long timestamp)
     {
-        LOGGER.info("Client session with id {} opened", session.id());
         context.setClusterTime(timestamp);
+        auditJournal.sessionEvent(AuditEventType.SESSION_OPENED, session.id());
         clientSessions.addSession(session, timestamp);
+        context.flushEgress();
+        updateServiceState();
     }
 
     @Override
     public void onSessionClose(final ClientSession session, final long timestamp, final CloseReason closeReason)
     {
-        LOGGER.info("Client session with id {} closed", session.id());
         context.setClusterTime(timestamp);
+        auditJournal.sessionEvent(AuditEventType.SESSION_CLOSED, session.id());
         clientSessions.removeSession(session, timestamp);
+        sessionEgress.onSessionClosed(session.id());
+        context.flushEgress();
+        updateServiceState();
     }
 
     @Override
@@ -83,32 +151,58 @@ public class AppClusteredService implements ClusteredService
         final int length,
         final Header header)
     {
+        final long startNs = System.nanoTime();
         context.setSessionContext(session, timestamp);
         sbeAdapter.dispatch(buffer, offset, length);
+        context.flushEgress();
+        final long durationNs = System.nanoTime() - startNs;
+        serviceCounters.sessionMessageProcessed(durationNs);
+        latencyRecorder.sessionMessage(length >= MessageHeaderDecoder.ENCODED_LENGTH ?
+            headerDecoder.wrap(buffer, offset).templateId() : NO_TEMPLATE_ID, durationNs);
+        updateServiceState();
     }
 
     @Override
     public void onTimerEvent(final long correlationId, final long timestamp)
     {
+        final long startNs = System.nanoTime();
         context.setClusterTime(timestamp);
         timerManager.onTimerEvent(correlationId, timestamp);
+        context.flushEgress();
+        latencyRecorder.timerEvent(System.nanoTime() - startNs);
+        updateServiceState();
+    }
+
+    @Override
+    public int doBackgroundWork(final long nowNs)
+    {
+        return sessionEgress.doWork();
     }
 
     @Override
     public void onTakeSnapshot(final ExclusivePublication snapshotPublication)
     {
-        LOGGER.info("Snapshottting not implemented");
+        snapshotManager.takeSnapshot(snapshotPublication, cluster.logPosition());
     }
 
     @Override
     public void onRoleChange(final Cluster.Role newRole)
     {
         LOGGER.info("Role change: {}", newRole);
+        observerFeed.roleChanged(newRole == Cluster.Role.LEADER);
     }
 
     @Override
     public void onTerminate(final Cluster cluster)
     {
         LOGGER.info("Terminating");
+        CloseHelper.quietCloseAll(sessionEgress, serviceCounters);
+    }
+
+    private void updateServiceState()
+    {
+        serviceCounters.serviceState(
+            rfqs.getRfqCount(), instruments.instrumentCount(), clientSessions.getAllSessions().size());
+        serviceCounters.droppedRecords(observerFeed.droppedRecords(), rfqHistory.droppedRecords());
     }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.ChannelUri;
+import io.aeron.Image;
+import io.aeron.Subscription;
+import io.aeron.archive.client.AeronArchive;
+import io.aeron.cluster.RecordingLog;
+import io.aeron.cluster.client.ClusterException;
+import io.aeron.cluster.service.Cluster;
+import io.aeron.cluster.service.ClusteredServiceContainer;
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.IdleStrategy;
+
+import java.util.List;
+
+/**
+ * Snapshot recordings found in the recording log of the cluster and replayed from the node's archive, as the
+ * clustered service container does for the latest snapshot.
+ * <p>
+ * Replays use a stream of their own on the replay channel, as the container's snapshot subscription is still open
+ * while the service starts and would otherwise be joined by the replay and hold it back.
+ * <p>
+ * Both operations block the service thread. The recording log is the consensus module's file, opened read only for
+ * each lookup, and each replay connects a client of its own to the archive, as is done while a delta is loaded in
+ * onStart. Only the recordings still in the local archive can be replayed, so a chain broken by purging snapshots
+ * or restoring the node from elsewhere fails the load.
+ */
+public class ArchiveSnapshotRecordings implements SnapshotRecordings
+{
+    /**
+     * Default stream id snapshots are replayed on
+     */
+    public static final int DEFAULT_REPLAY_STREAM_ID = 1101;
+    private static final int FRAGMENT_LIMIT = 4096;
+
+    private final Cluster cluster;
+    private final int replayStreamId;
+    private final ControlledFragmentHandler replayHandler = this::onReplayFragment;
+    private ControlledFragmentHandler handler;
+    private boolean handlerBroke;
+
+    /**
+     * Constructor
+     *
+     * @param cluster        the cluster the service is running in
+     * @param replayStreamId the stream id to replay snapshots on
+     */
+    public ArchiveSnapshotRecordings(final Cluster cluster, final int replayStreamId)
+    {
+        this.cluster = cluster;
+        this.replayStreamId = replayStreamId;
+    }
+
+    @Override
+    public long findLatestSnapshot(final long logPosition)
+    {
+        final ClusteredServiceContainer.Context context = cluster.context();
+        try (RecordingLog recordingLog = new RecordingLog(context.clusterDir(), false))
+        {
+            final List<RecordingLog.Entry> entries = recordingLog.entries();
+            for (int i = entries.size() - 1; i >= 0; i--)
+            {
+                final RecordingLog.Entry entry = entries.get(i);
+                if (entry.type == RecordingLog.ENTRY_TYPE_SNAPSHOT && entry.isValid &&
+                    entry.serviceId == context.serviceId())
+                {
+                    return entry.logPosition == logPosition ? entry.recordingId : NULL_RECORDING_ID;
+                }
+            }
+        }
+        return NULL_RECORDING_ID;
+    }
+
+    @Override
+    public void replay(final long recordingId, final ControlledFragmentHandler handler)
+    {
+        final ClusteredServiceContainer.Context context = cluster.context();
+        final IdleStrategy idleStrategy = cluster.idleStrategy();
+        try (AeronArchive archive = AeronArchive.connect(context.archiveContext().clone()
+            .aeron(cluster.aeron())
+            .ownsAeronClient(false)))
+        {
+            final String channel = context.replayChannel();
+            final int sessionId = (int)archive.startReplay(
+                recordingId, 0, AeronArchive.NULL_LENGTH, channel, replayStreamId);
+            try (Subscription subscription = cluster.aeron().addSubscription(
+                ChannelUri.addSessionId(channel, sessionId), replayStreamId))
+            {
+                Image image;
+                idleStrategy.reset();
+                while (null == (image = subscription.imageBySessionId(sessionId)))
+                {
+                    archive.checkForErrorResponse();
+                    idleStrategy.idle();
+                }
+
+                this.handler = handler;
+                handlerBroke = false;
+                idleStrategy.reset();
+                while (!handlerBroke && !image.isEndOfStream())
+                {
+                    if (image.isClosed())
+                    {
+                        throw new ClusterException("snapshot replay closed before its end: " + recordingId);
+                    }
+                    idleStrategy.idle(image.controlledPoll(replayHandler, FRAGMENT_LIMIT));
+                }
+            }
+            finally
+            {
+                this.handler = null;
+            }
+        }
+    }
+
+    private ControlledFragmentHandler.Action onReplayFragment(
+        final DirectBuffer buffer,
+        final int offset,
+        final int length,
+        final Header header)
+    {
+        final ControlledFragmentHandler.Action action = handler.onFragment(buffer, offset, length, header);
+        handlerBroke = action == ControlledFragmentHandler.Action.BREAK;
+        return action;
+    }
+}
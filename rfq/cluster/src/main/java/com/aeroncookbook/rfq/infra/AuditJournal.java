@@ -0,0 +1,125 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+
+/**
+ * Journal of domain events and denied commands, kept off the hot path as fixed size binary records rather than log
+ * lines. Recording an event encodes it into memory and returns; the records are written out by another thread.
+ */
+public interface AuditJournal
+{
+    /**
+     * Journal that records nothing, for when auditing is disabled.
+     */
+    AuditJournal NO_OP = new AuditJournal()
+    {
+        @Override
+        public void rfqEvent(final AuditEventType type, final long correlationId, final int userId, final Rfq rfq)
+        {
+        }
+
+        @Override
+        public void createDenied(final long correlationId, final int userId, final long cusip, final int result)
+        {
+        }
+
+        @Override
+        public void commandDenied(
+            final AuditEventType type, final long correlationId, final int rfqId, final int userId, final int result)
+        {
+        }
+
+        @Override
+        public void instrumentEvent(
+            final AuditEventType type, final long correlationId, final long cusip, final boolean enabled)
+        {
+        }
+
+        @Override
+        public void sessionEvent(final AuditEventType type, final long sessionId)
+        {
+        }
+
+        @Override
+        public void userEvent(
+            final AuditEventType type, final long correlationId, final int userId, final int permissions)
+        {
+        }
+    };
+
+    /**
+     * Records a transition of an RFQ.
+     *
+     * @param type          the event type
+     * @param correlationId the correlation id of the command, or of the creation for an expiry
+     * @param userId        the user sending the command, or {@link Integer#MIN_VALUE} for an expiry
+     * @param rfq           the RFQ after the transition
+     */
+    void rfqEvent(AuditEventType type, long correlationId, int userId, Rfq rfq);
+
+    /**
+     * Records a create RFQ command that was denied.
+     *
+     * @param correlationId the correlation id of the command
+     * @param userId        the user sending the command
+     * @param cusip         the packed cusip of the command
+     * @param result        the result code sent in the confirm
+     */
+    void createDenied(long correlationId, int userId, long cusip, int result);
+
+    /**
+     * Records a command on an existing RFQ that was denied.
+     *
+     * @param type          the event type
+     * @param correlationId the correlation id of the command
+     * @param rfqId         the RFQ the command was for
+     * @param userId        the user sending the command
+     * @param result        the result code sent in the confirm
+     */
+    void commandDenied(AuditEventType type, long correlationId, int rfqId, int userId, int result);
+
+    /**
+     * Records a change to an instrument.
+     *
+     * @param type          the event type
+     * @param correlationId the correlation id of the command
+     * @param cusip         the packed cusip of the instrument
+     * @param enabled       the enabled flag of the instrument
+     */
+    void instrumentEvent(AuditEventType type, long correlationId, long cusip, boolean enabled);
+
+    /**
+     * Records a client session opening or closing.
+     *
+     * @param type      the event type
+     * @param sessionId the session id
+     */
+    void sessionEvent(AuditEventType type, long sessionId);
+
+    /**
+     * Records a change to a user in the registry.
+     *
+     * @param type          the event type
+     * @param correlationId the correlation id of the command
+     * @param userId        the user changed
+     * @param permissions   the permission bits of the user after the change
+     */
+    void userEvent(AuditEventType type, long correlationId, int userId, int permissions);
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.agrona.BufferUtil;
+import org.agrona.LangUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Agent draining the audit journal ring buffer, appending each record as is to the journal file. Records are
+ * staged in a direct buffer so that the file is written once per batch rather than once per record.
+ */
+public class AuditJournalAgent implements Agent
+{
+    private static final int STAGING_BYTES = 64 * 1024;
+    private final RingBuffer ringBuffer;
+    private final FileChannel channel;
+    private final ByteBuffer staging = BufferUtil.allocateDirectAligned(STAGING_BYTES, 64);
+    private final MessageHandler recordHandler = this::onRecord;
+
+    /**
+     * Constructor, opening the journal file for append
+     *
+     * @param ringBuffer the ring buffer written to by {@link AuditJournalImpl}
+     * @param file       the journal file, created if it does not exist
+     */
+    public AuditJournalAgent(final RingBuffer ringBuffer, final Path file)
+    {
+        this.ringBuffer = ringBuffer;
+        try
+        {
+            channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        catch (final IOException ex)
+        {
+            throw new IllegalStateException("cannot open audit journal " + file, ex);
+        }
+    }
+
+    @Override
+    public int doWork()
+    {
+        final int records = ringBuffer.read(recordHandler);
+        if (staging.position() > 0)
+        {
+            flush();
+        }
+        return records;
+    }
+
+    @Override
+    public void onClose()
+    {
+        doWork();
+        try
+        {
+            channel.force(false);
+            channel.close();
+        }
+        catch (final IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "audit-journal";
+    }
+
+    private void onRecord(final int msgTypeId, final MutableDirectBuffer buffer, final int index, final int length)
+    {
+        if (staging.remaining() < length)
+        {
+            flush();
+        }
+        buffer.getBytes(index, staging, staging.position(), length);
+        staging.position(staging.position() + length);
+    }
+
+    private void flush()
+    {
+        staging.flip();
+        try
+        {
+            while (staging.hasRemaining())
+            {
+                channel.write(staging);
+            }
+        }
+        catch (final IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+        staging.clear();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.cluster.rfq.sbe.AuditRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+/**
+ * Audit journal encoding each event as an {@link AuditRecordEncoder} record straight into a claimed slot of a ring
+ * buffer, which an {@link AuditJournalAgent} drains to file on its own thread.
+ * <p>
+ * Recording never blocks the service: if the ring buffer is full because the agent has fallen behind, the record is
+ * dropped and counted. Events replayed from the log after a restart are journaled again, with their original cluster
+ * timestamps.
+ */
+public class AuditJournalImpl implements AuditJournal
+{
+    /**
+     * Default capacity of the ring buffer, in bytes, excluding its trailer.
+     */
+    public static final int DEFAULT_CAPACITY = 1024 * 1024;
+    /**
+     * Ring buffer message type id of an audit record.
+     */
+    public static final int MSG_TYPE_ID = 1;
+    /**
+     * Length of a journal record, including its message header.
+     */
+    public static final int RECORD_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH + AuditRecordEncoder.BLOCK_LENGTH;
+    private static final long NO_SESSION = Long.MIN_VALUE;
+    private static final int NO_USER = Integer.MIN_VALUE;
+
+    private final SessionMessageContextImpl context;
+    private final RingBuffer ringBuffer;
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final AuditRecordEncoder auditRecordEncoder = new AuditRecordEncoder();
+    private long droppedRecords;
+
+    /**
+     * Constructor
+     *
+     * @param context    the context providing the cluster time and session of the current message
+     * @param ringBuffer the ring buffer records are written to
+     */
+    public AuditJournalImpl(final SessionMessageContextImpl context, final RingBuffer ringBuffer)
+    {
+        this.context = context;
+        this.ringBuffer = ringBuffer;
+    }
+
+    /**
+     * Returns the number of records dropped because the ring buffer was full.
+     *
+     * @return the number of records dropped
+     */
+    public long droppedRecords()
+    {
+        return droppedRecords;
+    }
+
+    @Override
+    public void rfqEvent(final AuditEventType type, final long correlationId, final int userId, final Rfq rfq)
+    {
+        final int index = claim(type, userId == NO_USER ? NO_SESSION : context.getSessionId(), correlationId);
+        if (index > 0)
+        {
+            auditRecordEncoder
+                .rfqId(rfq.getRfqId())
+                .userId(userId)
+                .requesterUserId(rfq.getRequesterUserId())
+                .responderUserId(rfq.getResponderUserId())
+                .cusip(Cusip.encode(rfq.getCusip()))
+                .quantity(rfq.getQuantity())
+                .price(rfq.getPrice())
+                .state(rfq.getCurrentState().getCurrentState().getStateId())
+                .result(0);
+            ringBuffer.commit(index);
+        }
+    }
+
+    @Override
+    public void createDenied(final long correlationId, final int userId, final long cusip, final int result)
+    {
+        final int index = claim(AuditEventType.CREATE_DENIED, context.getSessionId(), correlationId);
+        if (index > 0)
+        {
+            clearRfq().userId(userId).cusip(cusip).result(result);
+            ringBuffer.commit(index);
+        }
+    }
+
+    @Override
+    public void commandDenied(
+        final AuditEventType type,
+        final long correlationId,
+        final int rfqId,
+        final int userId,
+        final int result)
+    {
+        final int index = claim(type, userId == NO_USER ? NO_SESSION : context.getSessionId(), correlationId);
+        if (index > 0)
+        {
+            clearRfq().rfqId(rfqId).userId(userId).result(result);
+            ringBuffer.commit(index);
+        }
+    }
+
+    @Override
+    public void instrumentEvent(
+        final AuditEventType type,
+        final long correlationId,
+        final long cusip,
+        final boolean enabled)
+    {
+        final int index = claim(type, context.getSessionId(), correlationId);
+        if (index > 0)
+        {
+            clearRfq().cusip(cusip).result(enabled ? 1 : 0);
+            ringBuffer.commit(index);
+        }
+    }
+
+    @Override
+    public void sessionEvent(final AuditEventType type, final long sessionId)
+    {
+        final int index = claim(type, sessionId, 0);
+        if (index > 0)
+        {
+            clearRfq();
+            ringBuffer.commit(index);
+        }
+    }
+
+    @Override
+    public void userEvent(
+        final AuditEventType type,
+        final long correlationId,
+        final int userId,
+        final int permissions)
+    {
+        final int index = claim(type, context.getSessionId(), correlationId);
+        if (index > 0)
+        {
+            clearRfq().userId(userId).result(permissions);
+            ringBuffer.commit(index);
+        }
+    }
+
+    //claims a record in the ring buffer and encodes the common fields, returning the claimed index or a negative value
+    //if the record was dropped
+    private int claim(final AuditEventType type, final long sessionId, final long correlationId)
+    {
+        final int index = ringBuffer.tryClaim(MSG_TYPE_ID, RECORD_LENGTH);
+        if (index <= 0)
+        {
+            droppedRecords++;
+            return index;
+        }
+
+        auditRecordEncoder.wrapAndApplyHeader(ringBuffer.buffer(), index, messageHeaderEncoder)
+            .timestamp(context.getClusterTime())
+            .eventType(type)
+            .correlationId(correlationId)
+            .sessionId(sessionId);
+        return index;
+    }
+
+    //the claimed slot may hold an earlier record, so every field must be written
+    private AuditRecordEncoder clearRfq()
+    {
+        return auditRecordEncoder
+            .rfqId(0)
+            .userId(NO_USER)
+            .requesterUserId(NO_USER)
+            .responderUserId(NO_USER)
+            .cusip(Cusip.NO_CUSIP)
+            .quantity(0)
+            .price(0)
+            .state((short)-1)
+            .result(0);
+    }
+}
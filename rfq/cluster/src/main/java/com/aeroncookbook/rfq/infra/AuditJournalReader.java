@@ -0,0 +1,176 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.cluster.rfq.sbe.AuditRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.File;
+import java.nio.MappedByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Offline reader of an audit journal file, rendering each record as a line of text.
+ * <p>
+ * Usage: {@code java -cp cluster-uber.jar com.aeroncookbook.rfq.infra.AuditJournalReader <journal file>}
+ */
+public final class AuditJournalReader
+{
+    private static final int NO_USER = Integer.MIN_VALUE;
+
+    private AuditJournalReader()
+    {
+    }
+
+    /**
+     * Prints the records of a journal file to standard out.
+     *
+     * @param args the path of the journal file
+     */
+    public static void main(final String[] args)
+    {
+        if (args.length != 1)
+        {
+            System.err.println("Usage: AuditJournalReader <journal file>");
+            System.exit(1);
+        }
+
+        final File file = new File(args[0]);
+        final MappedByteBuffer mapped = IoUtil.mapExistingFile(file, "audit journal");
+        try
+        {
+            final StringBuilder line = new StringBuilder();
+            read(new UnsafeBuffer(mapped), mapped.capacity(), record ->
+            {
+                line.setLength(0);
+                format(record, line);
+                System.out.println(line);
+            });
+        }
+        finally
+        {
+            IoUtil.unmap(mapped);
+        }
+    }
+
+    /**
+     * Reads the records in a journal buffer, in the order they were written. A trailing partial record, such as one
+     * still being written, is not read.
+     *
+     * @param buffer   the buffer holding the journal
+     * @param length   the length of the journal in the buffer
+     * @param consumer called with each record, valid only for the duration of the call
+     * @return the number of records read
+     */
+    public static int read(final DirectBuffer buffer, final int length, final Consumer<AuditRecordDecoder> consumer)
+    {
+        final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+        final AuditRecordDecoder recordDecoder = new AuditRecordDecoder();
+        int offset = 0;
+        int records = 0;
+        while (offset + MessageHeaderDecoder.ENCODED_LENGTH <= length)
+        {
+            headerDecoder.wrap(buffer, offset);
+            final int recordLength = MessageHeaderDecoder.ENCODED_LENGTH + headerDecoder.blockLength();
+            if (headerDecoder.templateId() != AuditRecordDecoder.TEMPLATE_ID || offset + recordLength > length)
+            {
+                break;
+            }
+
+            recordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+            consumer.accept(recordDecoder);
+            offset += recordLength;
+            records++;
+        }
+        return records;
+    }
+
+    /**
+     * Renders a record as text, omitting the fields that do not apply to its event type.
+     *
+     * @param record the record
+     * @param out    the builder to append to
+     */
+    public static void format(final AuditRecordDecoder record, final StringBuilder out)
+    {
+        final AuditEventType type = record.eventType();
+        out.append(record.timestamp()).append(' ').append(type);
+        if (record.sessionId() != Long.MIN_VALUE)
+        {
+            out.append(" session=").append(record.sessionId());
+        }
+
+        switch (type)
+        {
+            case SESSION_OPENED, SESSION_CLOSED ->
+            {
+                return;
+            }
+            case INSTRUMENT_ADDED, INSTRUMENT_ENABLED_FLAG_SET ->
+            {
+                out.append(" correlationId=").append(record.correlationId());
+                out.append(" cusip=").append(Cusip.decode(record.cusip()));
+                out.append(" enabled=").append(record.result() != 0);
+                return;
+            }
+            case USER_ADDED, USER_DISABLED ->
+            {
+                out.append(" correlationId=").append(record.correlationId());
+                out.append(" user=").append(record.userId());
+                out.append(" permissions=").append(record.result());
+                return;
+            }
+            default -> out.append(" correlationId=").append(record.correlationId());
+        }
+
+        if (record.rfqId() != 0)
+        {
+            out.append(" rfqId=").append(record.rfqId());
+        }
+        appendUser(out, " user=", record.userId());
+        if (record.state() >= 0)
+        {
+            appendUser(out, " requester=", record.requesterUserId());
+            appendUser(out, " responder=", record.responderUserId());
+            out.append(" state=").append(RfqStates.fromId(record.state()));
+            out.append(" quantity=").append(record.quantity());
+            out.append(" price=").append(record.price());
+        }
+        if (record.cusip() != Cusip.NO_CUSIP)
+        {
+            out.append(" cusip=").append(Cusip.decode(record.cusip()));
+        }
+        if (record.state() < 0)
+        {
+            out.append(" result=").append(record.result());
+        }
+    }
+
+    private static void appendUser(final StringBuilder out, final String name, final int userId)
+    {
+        if (userId != NO_USER)
+        {
+            out.append(name).append(userId);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import io.aeron.cluster.service.ClientSession;
+
+/**
+ * Closes the open RFQs of a user once the last of its cancel-on-disconnect sessions has closed, so that RFQs nobody
+ * can act on no longer wait for their expiry.
+ */
+public class CancelOnDisconnect implements ClientSessionListener
+{
+    private final SessionUsers sessionUsers;
+    private final Rfqs rfqs;
+
+    /**
+     * Constructor
+     *
+     * @param sessionUsers the binding of sessions to users
+     * @param rfqs         the RFQ domain model holding the users' RFQs
+     */
+    public CancelOnDisconnect(final SessionUsers sessionUsers, final Rfqs rfqs)
+    {
+        this.sessionUsers = sessionUsers;
+        this.rfqs = rfqs;
+    }
+
+    @Override
+    public void onSessionOpen(final ClientSession session, final long timestampMs)
+    {
+        //sessions are bound by command once open
+    }
+
+    @Override
+    public void onSessionClose(final ClientSession session, final long timestampMs)
+    {
+        final int userId = sessionUsers.removeSession(session.id());
+        if (userId != SessionUsers.NO_USER)
+        {
+            rfqs.closeUserRfqs(userId);
+        }
+    }
+}
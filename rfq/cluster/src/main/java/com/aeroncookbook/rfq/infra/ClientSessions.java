@@ -29,6 +29,8 @@ public class ClientSessions
 {
     private final List<ClientSession> allSessions = new ArrayList<>();
     private final Long2ObjectHashMap<ClientSession> sessionsById = new Long2ObjectHashMap<>();
+    private final SessionInterests sessionInterests = new SessionInterests();
+    private final SessionUsers sessionUsers = new SessionUsers();
 
     private ClientSessionListener clientSessionListener;
 
@@ -50,6 +52,7 @@ public class ClientSessions
     {
         allSessions.add(session);
         sessionsById.put(session.id(), session);
+        sessionInterests.addSession(session.id());
         if (clientSessionListener != null)
         {
             clientSessionListener.onSessionOpen(session, timestamp);
@@ -66,6 +69,7 @@ public class ClientSessions
     {
         allSessions.remove(session);
         sessionsById.remove(session.id());
+        sessionInterests.removeSession(session.id());
         if (clientSessionListener != null)
         {
             clientSessionListener.onSessionClose(session, timestamp);
@@ -81,6 +85,24 @@ public class ClientSessions
         return allSessions;
     }
 
+    /**
+     * Gets the index of which sessions are interested in which RFQ events
+     * @return the session interests
+     */
+    public SessionInterests getSessionInterests()
+    {
+        return sessionInterests;
+    }
+
+    /**
+     * Gets the binding of sessions to the users they trade as
+     * @return the session users
+     */
+    public SessionUsers getSessionUsers()
+    {
+        return sessionUsers;
+    }
+
     /**
      * Gets a client session by id
      * @param id the id of the session
@@ -24,6 +24,9 @@ import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
 import com.aeroncookbook.rfq.domain.instrument.Instrument;
 import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.RfqCommandType;
+import com.aeroncookbook.rfq.domain.rfq.RfqStore;
+import org.agrona.collections.IntArrayList;
 
 import java.util.List;
 
@@ -33,35 +36,57 @@ import java.util.List;
 public interface ClusterClientResponder
 {
 
-    void sendInstrumentAdded(String correlation);
+    void sendInstrumentAdded(long correlationId);
 
-    void sendInstrumentEnabledFlagSet(String correlation, boolean success);
+    void sendInstrumentEnabledFlagSet(long correlationId, boolean success);
 
-    void sendInstruments(String correlation, List<Instrument> values);
+    void sendInstruments(long correlationId, List<Instrument> values);
 
     void broadcastNewRfq(Rfq rfq);
 
-    void createRfqConfirm(String correlation, Rfq rfq, CreateRfqResult result);
+    void createRfqConfirm(long correlationId, Rfq rfq, CreateRfqResult result);
 
     void broadcastRfqExpired(Rfq rfq);
 
-    void cancelRfqConfirm(String correlation, Rfq rfq, CancelRfqResult result);
+    void cancelRfqConfirm(long correlationId, Rfq rfq, CancelRfqResult result);
 
     void broadcastRfqCanceled(Rfq rfq);
 
-    void quoteRfqConfirm(String correlation, Rfq rfq, QuoteRfqResult result);
+    void quoteRfqConfirm(long correlationId, Rfq rfq, QuoteRfqResult result);
 
     void broadcastRfqQuoted(Rfq rfq);
 
-    void counterRfqConfirm(String correlation, Rfq rfq, CounterRfqResult result);
+    void counterRfqConfirm(long correlationId, Rfq rfq, CounterRfqResult result);
 
     void broadcastRfqCountered(Rfq rfq);
 
-    void acceptRfqConfirm(String correlation, Rfq rfq, AcceptRfqResult result);
+    void acceptRfqConfirm(long correlationId, Rfq rfq, AcceptRfqResult result);
 
     void broadcastRfqAccepted(Rfq rfq);
 
-    void rejectRfqConfirm(String correlation, Rfq rfq, RejectRfqResult result);
+    void rejectRfqConfirm(long correlationId, Rfq rfq, RejectRfqResult result);
 
     void broadcastRfqRejected(Rfq rfq);
+
+    /**
+     * Sends again the confirm a command was given, for a command retried with the same correlation id.
+     *
+     * @param correlationId the correlation id of the command
+     * @param commandType   the type of command, selecting the confirm sent
+     * @param rfqId         the RFQ id given in the original confirm, or -1 if none was
+     * @param result        the result code given in the original confirm
+     */
+    void replayConfirm(long correlationId, RfqCommandType commandType, int rfqId, int result);
+
+    void sendSubscriptionResult(long correlationId, boolean success);
+
+    void sendOpenRfqs(long correlationId, IntArrayList rfqIds, RfqStore rfqStore, boolean truncated);
+
+    void sendUserRfqsCanceled(long correlationId, int userId, int canceledCount);
+
+    void broadcastUserRfqsClosed(int userId, IntArrayList canceledRfqIds, IntArrayList expiredRfqIds);
+
+    void sendSessionUserBound(long correlationId, boolean success);
+
+    void sendUserResult(long correlationId, int userId, boolean success);
 }
@@ -19,15 +19,18 @@ package com.aeroncookbook.rfq.infra;
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqConfirmEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentResultEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.BindSessionUserResultEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqConfirmEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CancelUserRfqsResultEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CounterRfqConfirmEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqConfirmEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.InstrumentsListEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.OpenRfqsListEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqConfirmEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqConfirmEventEncoder;
@@ -41,9 +44,15 @@ import com.aeroncookbook.cluster.rfq.sbe.RfqExpiredEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.RfqQuotedEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.RfqRejectedEventEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.SetInstrumentEnabledFlagResultEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SubscriptionResultEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserResultEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserRfqsClosedEventEncoder;
 import com.aeroncookbook.rfq.domain.instrument.Instrument;
 import com.aeroncookbook.rfq.domain.rfq.Rfq;
-import org.agrona.ExpandableDirectByteBuffer;
+import com.aeroncookbook.rfq.domain.rfq.RfqCommandType;
+import com.aeroncookbook.rfq.domain.rfq.RfqStore;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.IntArrayList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,9 +64,10 @@ import java.util.List;
 public class ClusterClientResponderImpl implements ClusterClientResponder
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(ClusterClientResponderImpl.class);
+    private static final int OPEN_RFQS_PAGE_SIZE = 64;
+    private static final int NO_RFQ_ID = -1;
     private final SessionMessageContextImpl context;
     private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
-    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(1024);
     private final RfqExpiredEventEncoder rfqExpiredEventEncoder = new RfqExpiredEventEncoder();
     private final RfqCanceledEventEncoder rfqCanceledEventEncoder = new RfqCanceledEventEncoder();
     private final AddInstrumentResultEncoder addInstrumentResultEncoder = new AddInstrumentResultEncoder();
@@ -75,6 +85,12 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
     private final RfqRejectedEventEncoder rfqRejectedEventEncoder = new RfqRejectedEventEncoder();
     private final AcceptRfqConfirmEventEncoder acceptRfqConfirmEventEncoder = new AcceptRfqConfirmEventEncoder();
     private final RejectRfqConfirmEventEncoder rejectRfqConfirmEventEncoder = new RejectRfqConfirmEventEncoder();
+    private final SubscriptionResultEncoder subscriptionResultEncoder = new SubscriptionResultEncoder();
+    private final OpenRfqsListEncoder openRfqsListEncoder = new OpenRfqsListEncoder();
+    private final CancelUserRfqsResultEncoder cancelUserRfqsResultEncoder = new CancelUserRfqsResultEncoder();
+    private final UserRfqsClosedEventEncoder userRfqsClosedEventEncoder = new UserRfqsClosedEventEncoder();
+    private final BindSessionUserResultEncoder bindSessionUserResultEncoder = new BindSessionUserResultEncoder();
+    private final UserResultEncoder userResultEncoder = new UserResultEncoder();
 
     public ClusterClientResponderImpl(final SessionMessageContextImpl context)
     {
@@ -82,30 +98,39 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
     }
 
     @Override
-    public void sendInstrumentAdded(final String correlation)
+    public void sendInstrumentAdded(final long correlationId)
     {
-        addInstrumentResultEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        addInstrumentResultEncoder.correlation(correlation);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        addInstrumentResultEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        addInstrumentResultEncoder.requestId(correlationId);
+        addInstrumentResultEncoder.putCorrelation(context.getLegacyCorrelation(), 0);
         addInstrumentResultEncoder.result(RequestResult.SUCCESS);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
             addInstrumentResultEncoder.encodedLength());
     }
 
     @Override
-    public void sendInstrumentEnabledFlagSet(final String correlation, final boolean success)
+    public void sendInstrumentEnabledFlagSet(final long correlationId, final boolean success)
     {
-        setInstrumentEnabledFlagResultEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        setInstrumentEnabledFlagResultEncoder.correlation(correlation);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        setInstrumentEnabledFlagResultEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        setInstrumentEnabledFlagResultEncoder.requestId(correlationId);
+        setInstrumentEnabledFlagResultEncoder.putCorrelation(context.getLegacyCorrelation(), 0);
         setInstrumentEnabledFlagResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
             setInstrumentEnabledFlagResultEncoder.encodedLength());
     }
 
     @Override
-    public void sendInstruments(final String correlation, final List<Instrument> values)
+    public void sendInstruments(final long correlationId, final List<Instrument> values)
     {
-        instrumentsListEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        instrumentsListEncoder.correlation(correlation);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        instrumentsListEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        instrumentsListEncoder.requestId(correlationId);
+        instrumentsListEncoder.putCorrelation(context.getLegacyCorrelation(), 0);
         final InstrumentsListEncoder.ValuesEncoder valuesEncoder = instrumentsListEncoder.valuesCount(values.size());
 
         for (final Instrument instrument : values)
@@ -117,194 +142,358 @@ public class ClusterClientResponderImpl implements ClusterClientResponder
                 .minSize(instrument.getMinSize());
         }
 
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
             instrumentsListEncoder.encodedLength());
     }
 
     @Override
     public void broadcastNewRfq(final Rfq rfq)
     {
-        rfqCreatedEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        rfqCreatedEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
         rfqCreatedEventEncoder.cusip(rfq.getCusip());
         rfqCreatedEventEncoder.expireTimeMs(rfq.getExpireTimeMs());
         rfqCreatedEventEncoder.quantity(rfq.getQuantity());
         rfqCreatedEventEncoder.requesterSide(rfq.getRequesterSide());
         rfqCreatedEventEncoder.rfqId(rfq.getRfqId());
 
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.broadcastToInterested(rfq.getCusip(), rfq.getRequesterUserId(), rfq.getResponderUserId(),
+            buffer, offset, messageHeaderEncoder.encodedLength() +
             rfqCreatedEventEncoder.encodedLength());
     }
 
     @Override
-    public void createRfqConfirm(final String correlation, final Rfq rfq, final CreateRfqResult result)
+    public void createRfqConfirm(final long correlationId, final Rfq rfq, final CreateRfqResult result)
     {
-        createRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        createRfqConfirmEventEncoder.correlation(correlation);
-        if (rfq != null)
-        {
-            createRfqConfirmEventEncoder.rfqId(rfq.getRfqId());
-        }
-        else
-        {
-            createRfqConfirmEventEncoder.rfqId(-1);
-        }
-        createRfqConfirmEventEncoder.result(result);
-
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            createRfqConfirmEventEncoder.encodedLength());
+        createRfqConfirm(correlationId, null == rfq ? NO_RFQ_ID : rfq.getRfqId(), result);
     }
 
     @Override
     public void broadcastRfqExpired(final Rfq rfq)
     {
-        rfqExpiredEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        rfqExpiredEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
         rfqExpiredEventEncoder.rfqId(rfq.getRfqId());
         rfqExpiredEventEncoder.requesterUserId(rfq.getRfqId());
         rfqExpiredEventEncoder.responderUserId(rfq.getRfqId());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.broadcastToInterested(rfq.getCusip(), rfq.getRequesterUserId(), rfq.getResponderUserId(),
+            buffer, offset, messageHeaderEncoder.encodedLength() +
             rfqExpiredEventEncoder.encodedLength());
     }
 
     @Override
-    public void cancelRfqConfirm(final String correlation, final Rfq rfq, final CancelRfqResult result)
+    public void cancelRfqConfirm(final long correlationId, final Rfq rfq, final CancelRfqResult result)
     {
-        cancelRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        cancelRfqConfirmEventEncoder.correlation(correlation);
-        if (rfq != null)
-        {
-            cancelRfqConfirmEventEncoder.rfqId(rfq.getRfqId());
-        }
-        else
-        {
-            cancelRfqConfirmEventEncoder.rfqId(-1);
-        }
-        cancelRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            cancelRfqConfirmEventEncoder.encodedLength());
+        cancelRfqConfirm(correlationId, null == rfq ? NO_RFQ_ID : rfq.getRfqId(), result);
     }
 
     @Override
     public void broadcastRfqCanceled(final Rfq rfq)
     {
-        rfqCanceledEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        rfqCanceledEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
         rfqCanceledEventEncoder.rfqId(rfq.getRfqId());
         rfqCanceledEventEncoder.requesterUserId(rfq.getRfqId());
         rfqCanceledEventEncoder.responderUserId(rfq.getRfqId());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.broadcastToInterested(rfq.getCusip(), rfq.getRequesterUserId(), rfq.getResponderUserId(),
+            buffer, offset, messageHeaderEncoder.encodedLength() +
             rfqCanceledEventEncoder.encodedLength());
     }
 
     @Override
-    public void quoteRfqConfirm(final String correlation, final Rfq rfq, final QuoteRfqResult result)
+    public void quoteRfqConfirm(final long correlationId, final Rfq rfq, final QuoteRfqResult result)
     {
-        quoteRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        quoteRfqConfirmEventEncoder.correlation(correlation);
-        if (rfq != null)
-        {
-            quoteRfqConfirmEventEncoder.rfqId(rfq.getRfqId());
-        }
-        else
-        {
-            quoteRfqConfirmEventEncoder.rfqId(-1);
-        }
-        quoteRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            quoteRfqConfirmEventEncoder.encodedLength());
+        quoteRfqConfirm(correlationId, null == rfq ? NO_RFQ_ID : rfq.getRfqId(), result);
     }
 
     @Override
     public void broadcastRfqQuoted(final Rfq rfq)
     {
-        rfqQuotedEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        rfqQuotedEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
         rfqQuotedEventEncoder.rfqId(rfq.getRfqId());
         rfqQuotedEventEncoder.price(rfq.getPrice());
         rfqQuotedEventEncoder.requesterUserId(rfq.getRfqId());
         rfqQuotedEventEncoder.responderUserId(rfq.getRfqId());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.broadcastToInterested(rfq.getCusip(), rfq.getRequesterUserId(), rfq.getResponderUserId(),
+            buffer, offset, messageHeaderEncoder.encodedLength() +
             rfqQuotedEventEncoder.encodedLength());
     }
 
     @Override
-    public void counterRfqConfirm(final String correlation, final Rfq rfq, final CounterRfqResult result)
+    public void counterRfqConfirm(final long correlationId, final Rfq rfq, final CounterRfqResult result)
     {
-        counterRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        counterRfqConfirmEventEncoder.correlation(correlation);
-        if (rfq != null)
-        {
-            counterRfqConfirmEventEncoder.rfqId(rfq.getRfqId());
-        }
-        else
-        {
-            counterRfqConfirmEventEncoder.rfqId(-1);
-        }
-        counterRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            counterRfqConfirmEventEncoder.encodedLength());
+        counterRfqConfirm(correlationId, null == rfq ? NO_RFQ_ID : rfq.getRfqId(), result);
     }
 
     @Override
     public void broadcastRfqCountered(final Rfq rfq)
     {
-        rfqCounteredEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        rfqCounteredEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
         rfqCounteredEventEncoder.rfqId(rfq.getRfqId());
         rfqCounteredEventEncoder.price(rfq.getPrice());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.broadcastToInterested(rfq.getCusip(), rfq.getRequesterUserId(), rfq.getResponderUserId(),
+            buffer, offset, messageHeaderEncoder.encodedLength() +
             rfqCounteredEventEncoder.encodedLength());
     }
 
     @Override
-    public void acceptRfqConfirm(final String correlation, final Rfq rfq, final AcceptRfqResult result)
+    public void acceptRfqConfirm(final long correlationId, final Rfq rfq, final AcceptRfqResult result)
     {
-        acceptRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        acceptRfqConfirmEventEncoder.correlation(correlation);
-        if (rfq != null)
-        {
-            acceptRfqConfirmEventEncoder.rfqId(rfq.getRfqId());
-        }
-        else
-        {
-            acceptRfqConfirmEventEncoder.rfqId(-1);
-        }
-        acceptRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            acceptRfqConfirmEventEncoder.encodedLength());
+        acceptRfqConfirm(correlationId, null == rfq ? NO_RFQ_ID : rfq.getRfqId(), result);
     }
 
     @Override
     public void broadcastRfqAccepted(final Rfq rfq)
     {
-        rfqAcceptedEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        rfqAcceptedEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
         rfqAcceptedEventEncoder.rfqId(rfq.getRfqId());
         rfqAcceptedEventEncoder.price(rfq.getPrice());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.broadcastToInterested(rfq.getCusip(), rfq.getRequesterUserId(), rfq.getResponderUserId(),
+            buffer, offset, messageHeaderEncoder.encodedLength() +
             rfqAcceptedEventEncoder.encodedLength());
     }
 
     @Override
-    public void rejectRfqConfirm(final String correlation, final Rfq rfq, final RejectRfqResult result)
+    public void rejectRfqConfirm(final long correlationId, final Rfq rfq, final RejectRfqResult result)
     {
-        rejectRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
-        rejectRfqConfirmEventEncoder.correlation(correlation);
-        if (rfq != null)
-        {
-            rejectRfqConfirmEventEncoder.rfqId(rfq.getRfqId());
-        }
-        else
+        rejectRfqConfirm(correlationId, null == rfq ? NO_RFQ_ID : rfq.getRfqId(), result);
+    }
+
+    @Override
+    public void replayConfirm(
+        final long correlationId, final RfqCommandType commandType, final int rfqId, final int result)
+    {
+        switch (commandType)
         {
-            rejectRfqConfirmEventEncoder.rfqId(-1);
+            case CREATE -> createRfqConfirm(correlationId, rfqId, CreateRfqResult.get(result));
+            case CANCEL -> cancelRfqConfirm(correlationId, rfqId, CancelRfqResult.get(result));
+            case QUOTE -> quoteRfqConfirm(correlationId, rfqId, QuoteRfqResult.get(result));
+            case COUNTER -> counterRfqConfirm(correlationId, rfqId, CounterRfqResult.get(result));
+            case ACCEPT -> acceptRfqConfirm(correlationId, rfqId, AcceptRfqResult.get(result));
+            case REJECT -> rejectRfqConfirm(correlationId, rfqId, RejectRfqResult.get(result));
+            default -> throw new IllegalArgumentException("unknown command type: " + commandType);
         }
-        rejectRfqConfirmEventEncoder.result(result);
-        context.reply(buffer, 0, messageHeaderEncoder.encodedLength() +
-            rejectRfqConfirmEventEncoder.encodedLength());
     }
 
     @Override
     public void broadcastRfqRejected(final Rfq rfq)
     {
-        rfqRejectedEventEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder);
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        rfqRejectedEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
         rfqRejectedEventEncoder.rfqId(rfq.getRfqId());
         rfqRejectedEventEncoder.price(rfq.getPrice());
-        context.broadcast(buffer, 0, messageHeaderEncoder.encodedLength() +
+        context.broadcastToInterested(rfq.getCusip(), rfq.getRequesterUserId(), rfq.getResponderUserId(),
+            buffer, offset, messageHeaderEncoder.encodedLength() +
             rfqRejectedEventEncoder.encodedLength());
     }
+
+    @Override
+    public void sendSubscriptionResult(final long correlationId, final boolean success)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        subscriptionResultEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        subscriptionResultEncoder.requestId(correlationId);
+        subscriptionResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+            subscriptionResultEncoder.encodedLength());
+    }
+
+    @Override
+    public void sendOpenRfqs(
+        final long correlationId,
+        final IntArrayList rfqIds,
+        final RfqStore rfqStore,
+        final boolean truncated)
+    {
+        //page the results so that a large book does not make for one very large message
+        final int size = rfqIds.size();
+        int index = 0;
+        do
+        {
+            final int pageSize = Math.min(OPEN_RFQS_PAGE_SIZE, size - index);
+            final MutableDirectBuffer buffer = context.egressBuffer();
+            final int offset = context.egressOffset();
+            openRfqsListEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+            openRfqsListEncoder.requestId(correlationId);
+            openRfqsListEncoder.lastPage(index + pageSize == size ? BooleanType.TRUE : BooleanType.FALSE);
+            openRfqsListEncoder.truncated(truncated ? BooleanType.TRUE : BooleanType.FALSE);
+            final OpenRfqsListEncoder.RfqsEncoder rfqsEncoder = openRfqsListEncoder.rfqsCount(pageSize);
+
+            for (int i = 0; i < pageSize; i++)
+            {
+                final Rfq rfq = rfqStore.get(rfqIds.getInt(index++));
+                rfqsEncoder
+                    .next()
+                    .rfqId(rfq.getRfqId())
+                    .cusip(rfq.getCusip())
+                    .requesterUserId(rfq.getRequesterUserId())
+                    .responderUserId(rfq.getResponderUserId())
+                    .requesterSide(rfq.getRequesterSide())
+                    .quantity(rfq.getQuantity())
+                    .price(rfq.getPrice())
+                    .state(rfq.getCurrentState().getCurrentState().getStateId())
+                    .expireTimeMs(rfq.getExpireTimeMs());
+            }
+
+            context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+                openRfqsListEncoder.encodedLength());
+        }
+        while (index < size);
+    }
+
+    @Override
+    public void sendUserRfqsCanceled(final long correlationId, final int userId, final int canceledCount)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        cancelUserRfqsResultEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        cancelUserRfqsResultEncoder.requestId(correlationId);
+        cancelUserRfqsResultEncoder.userId(userId);
+        cancelUserRfqsResultEncoder.canceledCount(canceledCount);
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+            cancelUserRfqsResultEncoder.encodedLength());
+    }
+
+    @Override
+    public void broadcastUserRfqsClosed(
+        final int userId,
+        final IntArrayList canceledRfqIds,
+        final IntArrayList expiredRfqIds)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        userRfqsClosedEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        userRfqsClosedEventEncoder.userId(userId);
+
+        final UserRfqsClosedEventEncoder.CanceledEncoder canceledEncoder =
+            userRfqsClosedEventEncoder.canceledCount(canceledRfqIds.size());
+        for (int i = 0, size = canceledRfqIds.size(); i < size; i++)
+        {
+            canceledEncoder.next().rfqId(canceledRfqIds.getInt(i));
+        }
+
+        final UserRfqsClosedEventEncoder.ExpiredEncoder expiredEncoder =
+            userRfqsClosedEventEncoder.expiredCount(expiredRfqIds.size());
+        for (int i = 0, size = expiredRfqIds.size(); i < size; i++)
+        {
+            expiredEncoder.next().rfqId(expiredRfqIds.getInt(i));
+        }
+
+        context.broadcast(buffer, offset, messageHeaderEncoder.encodedLength() +
+            userRfqsClosedEventEncoder.encodedLength());
+    }
+
+    @Override
+    public void sendSessionUserBound(final long correlationId, final boolean success)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        bindSessionUserResultEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        bindSessionUserResultEncoder.requestId(correlationId);
+        bindSessionUserResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+            bindSessionUserResultEncoder.encodedLength());
+    }
+
+    @Override
+    public void sendUserResult(final long correlationId, final int userId, final boolean success)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        userResultEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        userResultEncoder.requestId(correlationId);
+        userResultEncoder.userId(userId);
+        userResultEncoder.result(success ? RequestResult.SUCCESS : RequestResult.ERROR);
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() + userResultEncoder.encodedLength());
+    }
+
+    private void createRfqConfirm(final long correlationId, final int rfqId, final CreateRfqResult result)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        createRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        createRfqConfirmEventEncoder.requestId(correlationId);
+        createRfqConfirmEventEncoder.putCorrelation(context.getLegacyCorrelation(), 0);
+        createRfqConfirmEventEncoder.rfqId(rfqId);
+        createRfqConfirmEventEncoder.result(result);
+
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+            createRfqConfirmEventEncoder.encodedLength());
+    }
+
+    private void cancelRfqConfirm(final long correlationId, final int rfqId, final CancelRfqResult result)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        cancelRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        cancelRfqConfirmEventEncoder.requestId(correlationId);
+        cancelRfqConfirmEventEncoder.putCorrelation(context.getLegacyCorrelation(), 0);
+        cancelRfqConfirmEventEncoder.rfqId(rfqId);
+        cancelRfqConfirmEventEncoder.result(result);
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+            cancelRfqConfirmEventEncoder.encodedLength());
+    }
+
+    private void quoteRfqConfirm(final long correlationId, final int rfqId, final QuoteRfqResult result)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        quoteRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        quoteRfqConfirmEventEncoder.requestId(correlationId);
+        quoteRfqConfirmEventEncoder.putCorrelation(context.getLegacyCorrelation(), 0);
+        quoteRfqConfirmEventEncoder.rfqId(rfqId);
+        quoteRfqConfirmEventEncoder.result(result);
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+            quoteRfqConfirmEventEncoder.encodedLength());
+    }
+
+    private void counterRfqConfirm(final long correlationId, final int rfqId, final CounterRfqResult result)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        counterRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        counterRfqConfirmEventEncoder.requestId(correlationId);
+        counterRfqConfirmEventEncoder.putCorrelation(context.getLegacyCorrelation(), 0);
+        counterRfqConfirmEventEncoder.rfqId(rfqId);
+        counterRfqConfirmEventEncoder.result(result);
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+            counterRfqConfirmEventEncoder.encodedLength());
+    }
+
+    private void acceptRfqConfirm(final long correlationId, final int rfqId, final AcceptRfqResult result)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        acceptRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        acceptRfqConfirmEventEncoder.requestId(correlationId);
+        acceptRfqConfirmEventEncoder.putCorrelation(context.getLegacyCorrelation(), 0);
+        acceptRfqConfirmEventEncoder.rfqId(rfqId);
+        acceptRfqConfirmEventEncoder.result(result);
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+            acceptRfqConfirmEventEncoder.encodedLength());
+    }
+
+    private void rejectRfqConfirm(final long correlationId, final int rfqId, final RejectRfqResult result)
+    {
+        final MutableDirectBuffer buffer = context.egressBuffer();
+        final int offset = context.egressOffset();
+        rejectRfqConfirmEventEncoder.wrapAndApplyHeader(buffer, offset, messageHeaderEncoder);
+        rejectRfqConfirmEventEncoder.requestId(correlationId);
+        rejectRfqConfirmEventEncoder.putCorrelation(context.getLegacyCorrelation(), 0);
+        rejectRfqConfirmEventEncoder.rfqId(rfqId);
+        rejectRfqConfirmEventEncoder.result(result);
+        context.reply(buffer, offset, messageHeaderEncoder.encodedLength() +
+            rejectRfqConfirmEventEncoder.encodedLength());
+    }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+
+/**
+ * Audit journal that counts RFQ transitions and denied commands in the {@link ServiceCounters} before passing each
+ * event on to the journal it wraps. The domain already reports every transition and denial to its journal, so counting
+ * here needs no further hooks in the domain model.
+ */
+public class CountingAuditJournal implements AuditJournal
+{
+    private final AuditJournal delegate;
+    private final ServiceCounters serviceCounters;
+
+    /**
+     * Constructor
+     *
+     * @param delegate        the journal events are passed on to, which may be {@link AuditJournal#NO_OP}
+     * @param serviceCounters the counters the events are counted in
+     */
+    public CountingAuditJournal(final AuditJournal delegate, final ServiceCounters serviceCounters)
+    {
+        this.delegate = delegate;
+        this.serviceCounters = serviceCounters;
+    }
+
+    @Override
+    public void rfqEvent(final AuditEventType type, final long correlationId, final int userId, final Rfq rfq)
+    {
+        serviceCounters.rfqTransition(type);
+        delegate.rfqEvent(type, correlationId, userId, rfq);
+    }
+
+    @Override
+    public void createDenied(final long correlationId, final int userId, final long cusip, final int result)
+    {
+        serviceCounters.commandDenied(AuditEventType.CREATE_DENIED, result);
+        delegate.createDenied(correlationId, userId, cusip, result);
+    }
+
+    @Override
+    public void commandDenied(
+        final AuditEventType type, final long correlationId, final int rfqId, final int userId, final int result)
+    {
+        serviceCounters.commandDenied(type, result);
+        delegate.commandDenied(type, correlationId, rfqId, userId, result);
+    }
+
+    @Override
+    public void instrumentEvent(
+        final AuditEventType type, final long correlationId, final long cusip, final boolean enabled)
+    {
+        delegate.instrumentEvent(type, correlationId, cusip, enabled);
+    }
+
+    @Override
+    public void sessionEvent(final AuditEventType type, final long sessionId)
+    {
+        delegate.sessionEvent(type, sessionId);
+    }
+
+    @Override
+    public void userEvent(final AuditEventType type, final long correlationId, final int userId, final int permissions)
+    {
+        delegate.userEvent(type, correlationId, userId, permissions);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.cluster.service.ClientSession;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.IntArrayList;
+
+import java.util.ArrayList;
+
+/**
+ * Egress messages encoded while the service handles one log message, held until the service has finished with it and
+ * then sent together.
+ * <p>
+ * Each message is encoded once, in place, at the end of the batch buffer, so a confirm and the event broadcast after
+ * it neither share nor overwrite one encoding buffer. The sessions to send each message to are resolved when it is
+ * added, so a later change of interests within the same log message does not alter who receives it.
+ */
+public class EgressBatch
+{
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int ENTRY_FIELDS = 3;
+
+    private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(INITIAL_CAPACITY);
+    private final IntArrayList entries = new IntArrayList();
+    private final ArrayList<ClientSession> recipients = new ArrayList<>();
+    private int position;
+
+    /**
+     * Gets the buffer to encode the next message into
+     *
+     * @return the batch buffer
+     */
+    public MutableDirectBuffer buffer()
+    {
+        return buffer;
+    }
+
+    /**
+     * Gets the offset in the batch buffer at which the next message is to be encoded
+     *
+     * @return the offset of the next message
+     */
+    public int position()
+    {
+        return position;
+    }
+
+    /**
+     * Adds a message to the batch. A message already encoded at {@link #position()} of the batch buffer is taken as
+     * is; any other is copied in.
+     *
+     * @param source the buffer holding the message
+     * @param offset the offset of the message
+     * @param length the length of the message
+     */
+    public void addMessage(final DirectBuffer source, final int offset, final int length)
+    {
+        if (source != buffer || offset != position)
+        {
+            buffer.putBytes(position, source, offset, length);
+        }
+
+        entries.addInt(position);
+        entries.addInt(length);
+        entries.addInt(recipients.size());
+        position += length;
+    }
+
+    /**
+     * Adds a session to send the last message added to
+     *
+     * @param session the session
+     */
+    public void addRecipient(final ClientSession session)
+    {
+        recipients.add(session);
+    }
+
+    /**
+     * Returns true if no message is held
+     *
+     * @return true if the batch is empty
+     */
+    public boolean isEmpty()
+    {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Sends every held message to its sessions, in the order the messages were added, then empties the batch
+     *
+     * @param sessionEgress the egress to send through
+     * @return the number of messages sent
+     */
+    public int flush(final SessionEgress sessionEgress)
+    {
+        final int messageCount = entries.size() / ENTRY_FIELDS;
+        for (int i = 0; i < entries.size(); i += ENTRY_FIELDS)
+        {
+            final int offset = entries.getInt(i);
+            final int length = entries.getInt(i + 1);
+            final int firstRecipient = entries.getInt(i + 2);
+            final int recipientLimit = i + ENTRY_FIELDS < entries.size() ?
+                entries.getInt(i + ENTRY_FIELDS + 2) : recipients.size();
+
+            for (int r = firstRecipient; r < recipientLimit; r++)
+            {
+                sessionEgress.claim(recipients.get(r), buffer, offset, length);
+            }
+        }
+
+        entries.clear();
+        recipients.clear();
+        position = 0;
+        return messageCount;
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+/**
+ * When messages encoded for client sessions are sent.
+ */
+public enum EgressMode
+{
+    /**
+     * Offer each message to its sessions as soon as it is encoded.
+     */
+    IMMEDIATE,
+    /**
+     * Encode each message once into an {@link EgressBatch} and send the batch when the service has finished handling
+     * the log message, claiming each message straight into the session publication where it fits a single frame.
+     */
+    BATCHED
+}
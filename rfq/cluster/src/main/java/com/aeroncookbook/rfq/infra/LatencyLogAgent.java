@@ -0,0 +1,172 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.EpochClock;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Agent swapping the interval histograms of a {@link LatencyRecorderImpl} once per interval and writing those with
+ * any samples to an HdrHistogram log, tagged with what they record. The log is rolled over to a new file every
+ * roll interval, each file named after the log file with the time it was started in epoch milliseconds inserted
+ * before the extension, so that files can be processed or removed while the node is running.
+ * <p>
+ * Values are in nanoseconds, so use an output value unit ratio of 1000 with HistogramLogProcessor for microseconds.
+ */
+public class LatencyLogAgent implements Agent
+{
+    /**
+     * Default interval in milliseconds at which histograms are swapped and written
+     */
+    public static final long DEFAULT_INTERVAL_MS = 1000;
+    /**
+     * Default interval in milliseconds at which the log is rolled over to a new file
+     */
+    public static final long DEFAULT_ROLL_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final LatencyRecorderImpl latencyRecorder;
+    private final Path file;
+    private final EpochClock clock;
+    private final long intervalMs;
+    private final long rollIntervalMs;
+    private final Histogram[] intervalHistograms;
+    private HistogramLogWriter logWriter;
+    private long nextIntervalMs;
+    private long nextRollMs;
+
+    /**
+     * Constructor
+     *
+     * @param latencyRecorder the recorder written to by the service
+     * @param file            the log file, to which the start time of each rolled file is added
+     * @param clock           the clock timing intervals and rolls
+     * @param intervalMs      the interval in milliseconds at which histograms are swapped and written
+     * @param rollIntervalMs  the interval in milliseconds at which the log is rolled over to a new file
+     */
+    public LatencyLogAgent(
+        final LatencyRecorderImpl latencyRecorder,
+        final Path file,
+        final EpochClock clock,
+        final long intervalMs,
+        final long rollIntervalMs)
+    {
+        this.latencyRecorder = latencyRecorder;
+        this.file = file;
+        this.clock = clock;
+        this.intervalMs = intervalMs;
+        this.rollIntervalMs = rollIntervalMs;
+        this.intervalHistograms = new Histogram[latencyRecorder.recorderCount()];
+    }
+
+    @Override
+    public void onStart()
+    {
+        final long nowMs = clock.time();
+        nextIntervalMs = nowMs + intervalMs;
+        roll(nowMs);
+        //discards anything recorded before the log was started
+        writeIntervals(false);
+    }
+
+    @Override
+    public int doWork()
+    {
+        final long nowMs = clock.time();
+        if (nowMs < nextIntervalMs)
+        {
+            return 0;
+        }
+
+        nextIntervalMs = nowMs + intervalMs;
+        writeIntervals(true);
+        if (nowMs >= nextRollMs)
+        {
+            roll(nowMs);
+        }
+        return 1;
+    }
+
+    @Override
+    public void onClose()
+    {
+        writeIntervals(true);
+        logWriter.close();
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "latency-log";
+    }
+
+    /**
+     * Gets the path of the file the log is rolled over to at the given time
+     *
+     * @param startMs the epoch time in milliseconds the file is started
+     * @return the path of the file
+     */
+    public Path rolledFile(final long startMs)
+    {
+        final String name = file.getFileName().toString();
+        final int extension = name.lastIndexOf('.');
+        final String rolledName = extension > 0 ?
+            name.substring(0, extension) + "." + startMs + name.substring(extension) : name + "." + startMs;
+        return file.resolveSibling(rolledName);
+    }
+
+    private void writeIntervals(final boolean write)
+    {
+        for (int i = 0; i < intervalHistograms.length; i++)
+        {
+            final Histogram histogram = latencyRecorder.swapIntervalHistogram(i, intervalHistograms[i]);
+            intervalHistograms[i] = histogram;
+            if (write && histogram.getTotalCount() > 0)
+            {
+                logWriter.outputIntervalHistogram(histogram);
+            }
+        }
+    }
+
+    private void roll(final long nowMs)
+    {
+        if (null != logWriter)
+        {
+            logWriter.close();
+        }
+
+        final Path rolledFile = rolledFile(nowMs);
+        try
+        {
+            logWriter = new HistogramLogWriter(rolledFile.toFile());
+        }
+        catch (final FileNotFoundException ex)
+        {
+            throw new IllegalStateException("cannot open latency log " + rolledFile, ex);
+        }
+        logWriter.outputLogFormatVersion();
+        logWriter.outputStartTime(nowMs);
+        logWriter.setBaseTime(nowMs);
+        logWriter.outputLegend();
+        nextRollMs = nowMs + rollIntervalMs;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+/**
+ * Records how long the clustered service spends handling each log message and offering egress. Recording is done on
+ * the service thread and must not allocate or block; export is left to another thread.
+ */
+public interface LatencyRecorder
+{
+    /**
+     * Recorder that records nothing, for when the latency log is disabled.
+     */
+    LatencyRecorder NO_OP = new LatencyRecorder()
+    {
+        @Override
+        public void sessionMessage(final int templateId, final long durationNs)
+        {
+        }
+
+        @Override
+        public void timerEvent(final long durationNs)
+        {
+        }
+
+        @Override
+        public void sessionOffer(final long durationNs)
+        {
+        }
+    };
+
+    /**
+     * Records the time taken to handle a session message, including any egress it sent.
+     *
+     * @param templateId the template id of the message, or -1 if it has no message header
+     * @param durationNs the time taken in nanoseconds
+     */
+    void sessionMessage(int templateId, long durationNs);
+
+    /**
+     * Records the time taken to handle a timer event, including any egress it sent.
+     *
+     * @param durationNs the time taken in nanoseconds
+     */
+    void timerEvent(long durationNs);
+
+    /**
+     * Records the time taken to offer egress to client sessions: a single offer when egress is offered as encoded,
+     * or a whole batch when egress is batched per log message.
+     *
+     * @param durationNs the time taken in nanoseconds
+     */
+    void sessionOffer(long durationNs);
+}
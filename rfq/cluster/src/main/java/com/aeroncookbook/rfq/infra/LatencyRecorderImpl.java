@@ -0,0 +1,145 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency recorder keeping a double buffered interval histogram per session message type, for timer events and for
+ * egress offers. The service thread records into the active histogram of each pair without allocating or locking;
+ * {@link LatencyLogAgent} swaps the pairs from a thread of its own and writes out the inactive histograms.
+ * <p>
+ * Durations are recorded in nanoseconds to two significant digits, and clamped to {@link #HIGHEST_TRACKABLE_NS}.
+ */
+public class LatencyRecorderImpl implements LatencyRecorder
+{
+    /**
+     * The highest duration tracked; longer durations are recorded as this
+     */
+    public static final long HIGHEST_TRACKABLE_NS = TimeUnit.SECONDS.toNanos(10);
+    private static final int SIGNIFICANT_DIGITS = 2;
+    private static final String SESSION_MESSAGE_TAG_PREFIX = "onSessionMessage.";
+
+    private final List<SingleWriterRecorder> recorders = new ArrayList<>();
+    private final List<String> tags = new ArrayList<>();
+    private final SingleWriterRecorder[] sessionMessageRecorders;
+    private final SingleWriterRecorder otherSessionMessageRecorder;
+    private final SingleWriterRecorder timerEventRecorder;
+    private final SingleWriterRecorder sessionOfferRecorder;
+
+    /**
+     * Constructor, creating a recorder for each session message type handled by {@link SbeAdapter}
+     */
+    public LatencyRecorderImpl()
+    {
+        SingleWriterRecorder[] recordersByTemplateId = new SingleWriterRecorder[0];
+        for (final Class<?> decoder : SbeAdapter.SESSION_MESSAGE_DECODERS)
+        {
+            final int templateId = templateIdOf(decoder);
+            if (templateId >= recordersByTemplateId.length)
+            {
+                recordersByTemplateId = Arrays.copyOf(recordersByTemplateId, templateId + 1);
+            }
+            final String name = decoder.getSimpleName();
+            recordersByTemplateId[templateId] =
+                newRecorder(SESSION_MESSAGE_TAG_PREFIX + name.substring(0, name.length() - "Decoder".length()));
+        }
+        sessionMessageRecorders = recordersByTemplateId;
+        otherSessionMessageRecorder = newRecorder(SESSION_MESSAGE_TAG_PREFIX + "Other");
+        timerEventRecorder = newRecorder("onTimerEvent");
+        sessionOfferRecorder = newRecorder("offerToSession");
+    }
+
+    @Override
+    public void sessionMessage(final int templateId, final long durationNs)
+    {
+        SingleWriterRecorder recorder = null;
+        if (templateId >= 0 && templateId < sessionMessageRecorders.length)
+        {
+            recorder = sessionMessageRecorders[templateId];
+        }
+        record(null == recorder ? otherSessionMessageRecorder : recorder, durationNs);
+    }
+
+    @Override
+    public void timerEvent(final long durationNs)
+    {
+        record(timerEventRecorder, durationNs);
+    }
+
+    @Override
+    public void sessionOffer(final long durationNs)
+    {
+        record(sessionOfferRecorder, durationNs);
+    }
+
+    /**
+     * Gets the number of recorders, each of which is swapped by index
+     *
+     * @return the number of recorders
+     */
+    public int recorderCount()
+    {
+        return recorders.size();
+    }
+
+    /**
+     * Swaps the histograms of a recorder, returning the one recorded into since the previous swap, tagged with what
+     * it records. Safe to call from a thread other than the service thread, which is never blocked by it.
+     *
+     * @param index   the index of the recorder
+     * @param recycle the histogram this recorder returned on the previous swap, to be reused, or null
+     * @return the histogram of the interval since the previous swap
+     */
+    public Histogram swapIntervalHistogram(final int index, final Histogram recycle)
+    {
+        final Histogram histogram = recorders.get(index).getIntervalHistogram(recycle);
+        histogram.setTag(tags.get(index));
+        return histogram;
+    }
+
+    private SingleWriterRecorder newRecorder(final String tag)
+    {
+        final SingleWriterRecorder recorder = new SingleWriterRecorder(HIGHEST_TRACKABLE_NS, SIGNIFICANT_DIGITS);
+        recorders.add(recorder);
+        tags.add(tag);
+        return recorder;
+    }
+
+    private static int templateIdOf(final Class<?> decoder)
+    {
+        try
+        {
+            return decoder.getField("TEMPLATE_ID").getInt(null);
+        }
+        catch (final ReflectiveOperationException ex)
+        {
+            throw new IllegalArgumentException("not an SBE message decoder: " + decoder.getName(), ex);
+        }
+    }
+
+    private static void record(final SingleWriterRecorder recorder, final long durationNs)
+    {
+        recorder.recordValue(Math.min(Math.max(durationNs, 0), HIGHEST_TRACKABLE_NS));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+
+/**
+ * Feed of RFQ state for passive observers, published away from the cluster egress. The service passes on each
+ * new RFQ state as it happens; conflation and publishing are left to another thread.
+ */
+public interface ObserverFeed
+{
+    /**
+     * Feed that passes on nothing, for when the observer stream is disabled.
+     */
+    ObserverFeed NO_OP = new ObserverFeed()
+    {
+        @Override
+        public void rfqUpdated(final Rfq rfq)
+        {
+        }
+
+        @Override
+        public void roleChanged(final boolean leader)
+        {
+        }
+
+        @Override
+        public long droppedRecords()
+        {
+            return 0;
+        }
+    };
+
+    /**
+     * Passes on the latest state of an RFQ, after a transition or on restoring it from a snapshot.
+     *
+     * @param rfq the RFQ
+     */
+    void rfqUpdated(Rfq rfq);
+
+    /**
+     * Passes on a change of cluster role. Every node keeps the latest states, but only the leader publishes them.
+     *
+     * @param leader whether this node is now the leader
+     */
+    void roleChanged(boolean leader);
+
+    /**
+     * Returns the number of RFQ states that could not be passed on and were lost to observers until the next
+     * snapshot that includes the RFQ.
+     *
+     * @return the number of RFQ states dropped
+     */
+    long droppedRecords();
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.ObserverRfqStatesEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqStateRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import io.aeron.Publication;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.EpochClock;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * Agent conflating the RFQ states passed on by {@link ObserverFeedImpl} and publishing them to passive observers on a
+ * stream of their own, so that observers get bounded bandwidth however busy negotiation gets and the cluster egress
+ * carries only traffic for participants.
+ * <p>
+ * Only the latest state of each RFQ is kept. Once per interval the RFQs that changed in it are published, each once
+ * whatever the number of transitions, and every {@link #SNAPSHOT_INTERVALS} intervals every open RFQ is published
+ * instead, so a late joiner is complete within a snapshot period. Each message fits a single frame, and messages
+ * carry a sequence so that an observer can detect a gap and wait for the next snapshot.
+ * <p>
+ * Every node keeps the states, so a new leader can publish straight away, but only the leader publishes. An interval
+ * that is back pressured is retried in the next, conflated with whatever has changed since.
+ * <p>
+ * A state dropped from a full ring buffer is not passed on again. Were it an RFQ's terminal state, the RFQ would be
+ * held and published as open for ever, so each snapshot first releases, unpublished, every RFQ a snapshot period past
+ * its expiry time, by which time the cluster has ended it one way or another.
+ */
+public class ObserverFeedAgent implements Agent
+{
+    /**
+     * Default publishing interval in milliseconds
+     */
+    public static final long DEFAULT_INTERVAL_MS = 100;
+    /**
+     * Number of intervals between snapshots
+     */
+    public static final int SNAPSHOT_INTERVALS = 10;
+
+    private final ObserverFeedImpl feed;
+    private final RingBuffer ringBuffer;
+    private final Publication publication;
+    private final EpochClock clock;
+    private final long intervalMs;
+    private final long snapshotPeriodMs;
+    private final int rfqsPerMessage;
+    private final MessageHandler recordHandler = this::onRecord;
+    private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+    private final RfqStateRecordDecoder rfqStateRecordDecoder = new RfqStateRecordDecoder();
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final ObserverRfqStatesEncoder observerRfqStatesEncoder = new ObserverRfqStatesEncoder();
+    private final MutableDirectBuffer buffer = new ExpandableDirectByteBuffer(2048);
+    private final Int2ObjectHashMap<ObservedRfq> rfqById = new Int2ObjectHashMap<>();
+    private final ArrayDeque<ObservedRfq> pool = new ArrayDeque<>();
+    private final IntArrayList changedRfqIds = new IntArrayList();
+    private final IntArrayList snapshotRfqIds = new IntArrayList();
+    private boolean leader;
+    private long nextPublishMs;
+    private int intervalsToSnapshot;
+    private long sequence;
+
+    /**
+     * Constructor
+     *
+     * @param feed        the feed whose ring buffer is drained and whose role is followed
+     * @param publication the publication observers subscribe to
+     * @param clock       the clock timing the publishing intervals
+     * @param intervalMs  the publishing interval in milliseconds
+     */
+    public ObserverFeedAgent(
+        final ObserverFeedImpl feed,
+        final Publication publication,
+        final EpochClock clock,
+        final long intervalMs)
+    {
+        this.feed = feed;
+        this.ringBuffer = feed.ringBuffer();
+        this.publication = publication;
+        this.clock = clock;
+        this.intervalMs = intervalMs;
+        this.snapshotPeriodMs = intervalMs * SNAPSHOT_INTERVALS;
+        this.rfqsPerMessage = (publication.maxPayloadLength() - MessageHeaderEncoder.ENCODED_LENGTH -
+            ObserverRfqStatesEncoder.BLOCK_LENGTH - ObserverRfqStatesEncoder.RfqsEncoder.sbeHeaderSize()) /
+            ObserverRfqStatesEncoder.RfqsEncoder.sbeBlockLength();
+    }
+
+    @Override
+    public int doWork()
+    {
+        int workCount = ringBuffer.read(recordHandler);
+        leader = feed.isLeader();
+
+        final long nowMs = clock.time();
+        if (nowMs >= nextPublishMs)
+        {
+            nextPublishMs = nowMs + intervalMs;
+            if (intervalsToSnapshot-- == 0)
+            {
+                intervalsToSnapshot = SNAPSHOT_INTERVALS - 1;
+                workCount += publishSnapshot(nowMs);
+            }
+            else
+            {
+                workCount += publishChanges(nowMs);
+            }
+        }
+
+        return workCount;
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "observer-feed";
+    }
+
+    /**
+     * Returns the number of RFQs whose latest state is held.
+     *
+     * @return the number of RFQs held
+     */
+    public int rfqCount()
+    {
+        return rfqById.size();
+    }
+
+    private void onRecord(final int msgTypeId, final MutableDirectBuffer buffer, final int index, final int length)
+    {
+        rfqStateRecordDecoder.wrapAndApplyHeader(buffer, index, messageHeaderDecoder);
+        final int rfqId = rfqStateRecordDecoder.rfqId();
+        ObservedRfq rfq = rfqById.get(rfqId);
+        if (rfq == null)
+        {
+            rfq = pool.isEmpty() ? new ObservedRfq() : pool.poll();
+            rfqById.put(rfqId, rfq);
+        }
+        if (!rfq.changed)
+        {
+            rfq.changed = true;
+            changedRfqIds.addInt(rfqId);
+        }
+
+        rfq.rfqId = rfqId;
+        rfqStateRecordDecoder.getCusip(rfq.cusip, 0);
+        rfq.requesterUserId = rfqStateRecordDecoder.requesterUserId();
+        rfq.responderUserId = rfqStateRecordDecoder.responderUserId();
+        rfq.requesterSide = rfqStateRecordDecoder.requesterSide();
+        rfq.quantity = rfqStateRecordDecoder.quantity();
+        rfq.price = rfqStateRecordDecoder.price();
+        rfq.state = rfqStateRecordDecoder.state();
+        rfq.expireTimeMs = rfqStateRecordDecoder.expireTimeMs();
+    }
+
+    private int publishChanges(final long nowMs)
+    {
+        if (changedRfqIds.isEmpty())
+        {
+            return 0;
+        }
+
+        if (!leader || publish(changedRfqIds, false, nowMs))
+        {
+            settleChanges();
+        }
+        return 1;
+    }
+
+    private int publishSnapshot(final long nowMs)
+    {
+        collectSnapshot(nowMs);
+        if (!leader)
+        {
+            settleChanges();
+            return 0;
+        }
+
+        if (publish(snapshotRfqIds, true, nowMs))
+        {
+            settleChanges();
+        }
+        return 1;
+    }
+
+    //collects the RFQs to publish in a snapshot, releasing those long expired whose terminal state was never received;
+    //an RFQ with an unpublished change is kept for that change to settle
+    private void collectSnapshot(final long nowMs)
+    {
+        snapshotRfqIds.clear();
+        final long expiredBeforeMs = nowMs - snapshotPeriodMs;
+        final Iterator<ObservedRfq> rfqs = rfqById.values().iterator();
+        while (rfqs.hasNext())
+        {
+            final ObservedRfq rfq = rfqs.next();
+            if (!rfq.changed && rfq.expireTimeMs < expiredBeforeMs)
+            {
+                rfqs.remove();
+                pool.offer(rfq);
+            }
+            else
+            {
+                snapshotRfqIds.addInt(rfq.rfqId);
+            }
+        }
+    }
+
+    //publishes the RFQs in pages of one frame each, returning false if a page could not be sent; observers that are
+    //not connected catch up from the next snapshot, so that counts as sent
+    private boolean publish(final IntArrayList rfqIds, final boolean snapshot, final long nowMs)
+    {
+        final int size = rfqIds.size();
+        int index = 0;
+        do
+        {
+            final int count = Math.min(rfqsPerMessage, size - index);
+            observerRfqStatesEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder)
+                .sequence(sequence + 1)
+                .timestamp(nowMs)
+                .snapshot(snapshot ? BooleanType.TRUE : BooleanType.FALSE)
+                .lastPage(index + count == size ? BooleanType.TRUE : BooleanType.FALSE);
+            final ObserverRfqStatesEncoder.RfqsEncoder rfqsEncoder = observerRfqStatesEncoder.rfqsCount(count);
+            for (int i = 0; i < count; i++)
+            {
+                final ObservedRfq rfq = rfqById.get(rfqIds.getInt(index++));
+                rfqsEncoder.next()
+                    .rfqId(rfq.rfqId)
+                    .putCusip(rfq.cusip, 0)
+                    .requesterUserId(rfq.requesterUserId)
+                    .responderUserId(rfq.responderUserId)
+                    .requesterSide(rfq.requesterSide)
+                    .quantity(rfq.quantity)
+                    .price(rfq.price)
+                    .state(rfq.state)
+                    .expireTimeMs(rfq.expireTimeMs);
+            }
+
+            final long result = publication.offer(
+                buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + observerRfqStatesEncoder.encodedLength());
+            if (result == Publication.NOT_CONNECTED)
+            {
+                return true;
+            }
+            if (result < 0)
+            {
+                return false;
+            }
+            sequence++;
+        }
+        while (index < size);
+
+        return true;
+    }
+
+    //RFQs in a terminal state have now been published for the last time, so are released
+    private void settleChanges()
+    {
+        for (int i = 0, size = changedRfqIds.size(); i < size; i++)
+        {
+            final int rfqId = changedRfqIds.getInt(i);
+            final ObservedRfq rfq = rfqById.get(rfqId);
+            rfq.changed = false;
+            if (isTerminal(rfq.state))
+            {
+                rfqById.remove(rfqId);
+                pool.offer(rfq);
+            }
+        }
+        changedRfqIds.clear();
+    }
+
+    private static boolean isTerminal(final short stateId)
+    {
+        final RfqStates state = RfqStates.fromId(stateId);
+        return state == RfqStates.ACCEPTED || state == RfqStates.REJECTED || state == RfqStates.EXPIRED ||
+            state == RfqStates.CANCELED || state == RfqStates.COMPLETED;
+    }
+
+    private static final class ObservedRfq
+    {
+        private final byte[] cusip = new byte[Cusip.LENGTH];
+        private int rfqId;
+        private int requesterUserId;
+        private int responderUserId;
+        private Side requesterSide;
+        private long quantity;
+        private long price;
+        private short state;
+        private long expireTimeMs;
+        private boolean changed;
+    }
+}
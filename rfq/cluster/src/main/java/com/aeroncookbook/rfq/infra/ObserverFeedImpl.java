@@ -0,0 +1,99 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.RfqStateRecordEncoder;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+/**
+ * Observer feed encoding each RFQ state as an {@link RfqStateRecordEncoder} record straight into a claimed slot of a
+ * ring buffer, which an {@link ObserverFeedAgent} drains, conflates and publishes on its own thread.
+ * <p>
+ * Like the audit journal, passing on a state never blocks the service: if the ring buffer is full the record is
+ * dropped and counted. The cluster role is not a record, as losing it would leave the agent publishing as a follower
+ * or silent as the leader; it is held in a volatile field that the agent reads on each duty cycle.
+ * <p>
+ * Loading a snapshot passes on every restored RFQ at once, far faster than the agent drains them, so the ring buffer
+ * is sized to hold a record per RFQ of a large book. A terminal state that is dropped anyway is recovered by the
+ * agent releasing the RFQ once it is long expired.
+ */
+public class ObserverFeedImpl implements ObserverFeed
+{
+    /**
+     * Default capacity of the ring buffer, in bytes, excluding its trailer; room for over 200,000 RFQ states, so the
+     * restore of a book of that size is passed on in full.
+     */
+    public static final int DEFAULT_CAPACITY = 16 * 1024 * 1024;
+
+    private final RingBuffer ringBuffer;
+    private final RfqStateRecordWriter writer;
+    private long droppedRecords;
+    private volatile boolean leader;
+
+    /**
+     * Constructor
+     *
+     * @param ringBuffer the ring buffer records are written to
+     */
+    public ObserverFeedImpl(final RingBuffer ringBuffer)
+    {
+        this.ringBuffer = ringBuffer;
+        this.writer = new RfqStateRecordWriter(ringBuffer);
+    }
+
+    /**
+     * Gets the ring buffer records are written to, for the agent to drain.
+     *
+     * @return the ring buffer
+     */
+    public RingBuffer ringBuffer()
+    {
+        return ringBuffer;
+    }
+
+    /**
+     * Returns whether this node was the leader at the last role change, for the agent to read from its own thread.
+     *
+     * @return true if this node is the leader
+     */
+    public boolean isLeader()
+    {
+        return leader;
+    }
+
+    @Override
+    public long droppedRecords()
+    {
+        return droppedRecords;
+    }
+
+    @Override
+    public void rfqUpdated(final Rfq rfq)
+    {
+        if (!writer.tryWrite(rfq))
+        {
+            droppedRecords++;
+        }
+    }
+
+    @Override
+    public void roleChanged(final boolean leader)
+    {
+        this.leader = leader;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+
+/**
+ * History of the RFQs evicted from the book in a terminal state. The service passes on each RFQ as it is evicted;
+ * storing and querying the history are left to another thread, so the book only holds live RFQs.
+ */
+public interface RfqHistory
+{
+    /**
+     * History that keeps nothing, for when the history store is disabled.
+     */
+    RfqHistory NO_OP = new RfqHistory()
+    {
+        @Override
+        public void rfqArchived(final Rfq rfq)
+        {
+        }
+
+        @Override
+        public long droppedRecords()
+        {
+            return 0;
+        }
+    };
+
+    /**
+     * Passes on the final state of an RFQ that is being evicted in a terminal state.
+     *
+     * @param rfq the RFQ
+     */
+    void rfqArchived(Rfq rfq);
+
+    /**
+     * Returns the number of evicted RFQs that could not be passed on and are missing from the history.
+     *
+     * @return the number of RFQs dropped
+     */
+    long droppedRecords();
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QueryRfqHistoryDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqHistoryListEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqStateRecordDecoder;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import io.aeron.Publication;
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.logbuffer.Header;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.IntArrayList;
+import org.agrona.concurrent.Agent;
+import org.agrona.concurrent.MessageHandler;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+/**
+ * Agent draining the RFQs passed on by {@link RfqHistoryImpl} into an {@link RfqHistoryStore}, and answering
+ * {@link QueryRfqHistoryDecoder} queries from it. Queries are served by each node from its own history, outside
+ * consensus, so they put no load on the log and a follower can answer them as well as the leader.
+ * <p>
+ * Queries arrive on a subscription of their own and are answered on a single response publication, each answer
+ * carrying the request id of its query and paged so that each message fits a single frame. An answer that is back
+ * pressured is dropped rather than retried; a query has no effect, so a client that does not get its last page in
+ * time can simply query again.
+ */
+public class RfqHistoryAgent implements Agent
+{
+    /**
+     * Default stream id of history queries
+     */
+    public static final int DEFAULT_QUERY_STREAM_ID = 1102;
+    /**
+     * Default stream id of history query answers
+     */
+    public static final int DEFAULT_RESPONSE_STREAM_ID = 1103;
+    /**
+     * Most RFQs returned for a query
+     */
+    public static final int MAX_QUERY_RESULTS = 1000;
+    private static final int FRAGMENT_LIMIT = 10;
+
+    private final RingBuffer ringBuffer;
+    private final RfqHistoryStore store;
+    private final Subscription querySubscription;
+    private final Publication responsePublication;
+    private final int rfqsPerMessage;
+    private final MessageHandler recordHandler = this::onRecord;
+    private final FragmentHandler queryHandler = this::onQuery;
+    private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+    private final QueryRfqHistoryDecoder queryRfqHistoryDecoder = new QueryRfqHistoryDecoder();
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final RfqHistoryListEncoder rfqHistoryListEncoder = new RfqHistoryListEncoder();
+    private final MutableDirectBuffer buffer = new ExpandableDirectByteBuffer(2048);
+    private final IntArrayList queryRecords = new IntArrayList();
+
+    /**
+     * Constructor
+     *
+     * @param ringBuffer          the ring buffer written to by {@link RfqHistoryImpl}
+     * @param store               the history store, closed with the agent
+     * @param querySubscription   the subscription queries arrive on, or null if queries are disabled
+     * @param responsePublication the publication queries are answered on, or null if queries are disabled
+     */
+    public RfqHistoryAgent(
+        final RingBuffer ringBuffer,
+        final RfqHistoryStore store,
+        final Subscription querySubscription,
+        final Publication responsePublication)
+    {
+        this.ringBuffer = ringBuffer;
+        this.store = store;
+        this.querySubscription = querySubscription;
+        this.responsePublication = responsePublication;
+        this.rfqsPerMessage = null == responsePublication ? 0 : (responsePublication.maxPayloadLength() -
+            MessageHeaderEncoder.ENCODED_LENGTH - RfqHistoryListEncoder.BLOCK_LENGTH -
+            RfqHistoryListEncoder.RfqsEncoder.sbeHeaderSize()) / RfqHistoryListEncoder.RfqsEncoder.sbeBlockLength();
+    }
+
+    @Override
+    public int doWork()
+    {
+        int workCount = ringBuffer.read(recordHandler);
+        if (null != querySubscription)
+        {
+            workCount += querySubscription.poll(queryHandler, FRAGMENT_LIMIT);
+        }
+        return workCount;
+    }
+
+    @Override
+    public void onClose()
+    {
+        doWork();
+        store.close();
+    }
+
+    @Override
+    public String roleName()
+    {
+        return "rfq-history";
+    }
+
+    private void onRecord(final int msgTypeId, final MutableDirectBuffer buffer, final int index, final int length)
+    {
+        store.append(buffer, index);
+    }
+
+    private void onQuery(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        if (length < MessageHeaderDecoder.ENCODED_LENGTH ||
+            messageHeaderDecoder.wrap(buffer, offset).templateId() != QueryRfqHistoryDecoder.TEMPLATE_ID)
+        {
+            return;
+        }
+
+        queryRfqHistoryDecoder.wrapAndApplyHeader(buffer, offset, messageHeaderDecoder);
+        queryRecords.clear();
+        final int rfqId = queryRfqHistoryDecoder.rfqId();
+        if (rfqId != 0)
+        {
+            final int record = store.findRecord(rfqId);
+            if (record != RfqHistoryStore.NOT_FOUND)
+            {
+                queryRecords.addInt(record);
+            }
+        }
+        else
+        {
+            final int maxResults = queryRfqHistoryDecoder.maxResults();
+            store.collectRecords(
+                Cusip.encode(buffer, offset + MessageHeaderDecoder.ENCODED_LENGTH +
+                QueryRfqHistoryDecoder.cusipEncodingOffset()),
+                maxResults <= 0 ? MAX_QUERY_RESULTS : Math.min(maxResults, MAX_QUERY_RESULTS),
+                queryRecords);
+        }
+
+        answer(queryRfqHistoryDecoder.requestId());
+    }
+
+    //always sends at least one page, so that a query matching nothing is still answered
+    private void answer(final long requestId)
+    {
+        final int size = queryRecords.size();
+        int index = 0;
+        do
+        {
+            final int count = Math.min(rfqsPerMessage, size - index);
+            rfqHistoryListEncoder.wrapAndApplyHeader(buffer, 0, messageHeaderEncoder)
+                .requestId(requestId)
+                .lastPage(index + count == size ? BooleanType.TRUE : BooleanType.FALSE);
+            final RfqHistoryListEncoder.RfqsEncoder rfqsEncoder = rfqHistoryListEncoder.rfqsCount(count);
+            for (int i = 0; i < count; i++)
+            {
+                final RfqStateRecordDecoder rfq = store.record(queryRecords.getInt(index++));
+                rfqsEncoder.next()
+                    .rfqId(rfq.rfqId())
+                    .requesterUserId(rfq.requesterUserId())
+                    .responderUserId(rfq.responderUserId())
+                    .requesterSide(rfq.requesterSide())
+                    .quantity(rfq.quantity())
+                    .price(rfq.price())
+                    .state(rfq.state())
+                    .expireTimeMs(rfq.expireTimeMs());
+                for (int c = 0; c < Cusip.LENGTH; c++)
+                {
+                    rfqsEncoder.cusip(c, rfq.cusip(c));
+                }
+            }
+
+            if (responsePublication.offer(
+                buffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + rfqHistoryListEncoder.encodedLength()) < 0)
+            {
+                return;
+            }
+        }
+        while (index < size);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.RfqStateRecordEncoder;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+/**
+ * RFQ history encoding the final state of each evicted RFQ as an {@link RfqStateRecordEncoder} record straight into a
+ * claimed slot of a ring buffer, which an {@link RfqHistoryAgent} drains into the history file on its own thread.
+ * <p>
+ * An RFQ is passed on once, as it leaves the book, so a record that is lost leaves a permanent gap in the history.
+ * The ring buffer is therefore sized to absorb a burst of evictions while the agent grows its file. The service thread
+ * never waits on the agent: when the ring buffer is full the record is dropped at once, and drops are counted and
+ * exported as a service counter.
+ */
+public class RfqHistoryImpl implements RfqHistory
+{
+    /**
+     * Default capacity of the ring buffer, in bytes, excluding its trailer; room for over 100,000 evicted RFQs.
+     */
+    public static final int DEFAULT_CAPACITY = 8 * 1024 * 1024;
+
+    private final RfqStateRecordWriter writer;
+    private long droppedRecords;
+
+    /**
+     * Constructor
+     *
+     * @param ringBuffer the ring buffer records are written to
+     */
+    public RfqHistoryImpl(final RingBuffer ringBuffer)
+    {
+        this.writer = new RfqStateRecordWriter(ringBuffer);
+    }
+
+    @Override
+    public long droppedRecords()
+    {
+        return droppedRecords;
+    }
+
+    @Override
+    public void rfqArchived(final Rfq rfq)
+    {
+        if (!writer.tryWrite(rfq))
+        {
+            droppedRecords++;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqStateRecordDecoder;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import org.agrona.BitUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.IoUtil;
+import org.agrona.LangUtil;
+import org.agrona.collections.Int2IntHashMap;
+import org.agrona.collections.IntArrayList;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only, memory-mapped file of the final states of RFQs evicted in a terminal state, indexed in memory by RFQ id
+ * and by cusip. It is written and read by the {@link RfqHistoryAgent} alone, so it needs no locking.
+ * <p>
+ * The file starts with a header holding the number of records, written after each record so that a record is only
+ * counted once complete, followed by fixed length records, each an {@link RfqStateRecordDecoder} record with its
+ * message header, padded to {@link #RECORD_LENGTH}. The mapping grows by a fixed number of bytes at a time, up to a
+ * little under 2GB; once full, further records are discarded with a warning rather than failing the agent, which keeps
+ * draining its ring buffer and answering queries. The indexes are not stored; they are rebuilt by scanning the records
+ * when the file is opened.
+ * <p>
+ * Every node replays the log, so an RFQ already held is not appended again, which keeps the history free of
+ * duplicates when a node restarts and replays evictions it has stored before.
+ */
+public class RfqHistoryStore implements AutoCloseable
+{
+    /**
+     * Length of each record in the file, in bytes.
+     */
+    public static final int RECORD_LENGTH =
+        BitUtil.align(MessageHeaderEncoder.ENCODED_LENGTH + RfqStateRecordDecoder.BLOCK_LENGTH, 64);
+    /**
+     * Length of the file header, in bytes.
+     */
+    public static final int HEADER_LENGTH = 64;
+    /**
+     * Default number of bytes by which the file and its mapping grow.
+     */
+    public static final int DEFAULT_GROWTH_BYTES = 64 * 1024 * 1024;
+    /**
+     * Record index returned when an RFQ is not held.
+     */
+    public static final int NOT_FOUND = -1;
+    private static final int RECORD_COUNT_OFFSET = 0;
+    private static final Logger LOGGER = LoggerFactory.getLogger(RfqHistoryStore.class);
+    private static final int MAX_MAPPED_BYTES = Integer.MAX_VALUE & ~(RECORD_LENGTH - 1);
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int growthBytes;
+    private final UnsafeBuffer buffer = new UnsafeBuffer(0, 0);
+    private final MessageHeaderDecoder messageHeaderDecoder = new MessageHeaderDecoder();
+    private final RfqStateRecordDecoder rfqStateRecordDecoder = new RfqStateRecordDecoder();
+    private final Int2IntHashMap recordByRfqId = new Int2IntHashMap(NOT_FOUND);
+    private final Long2ObjectHashMap<IntArrayList> recordsByCusip = new Long2ObjectHashMap<>();
+    private MappedByteBuffer mappedBuffer;
+    private int recordCount;
+    private boolean full;
+
+    /**
+     * Constructor, opening the history file and rebuilding its indexes
+     *
+     * @param file        the history file, created if it does not exist
+     * @param growthBytes the number of bytes by which the file and its mapping grow; a power of two
+     */
+    public RfqHistoryStore(final Path file, final int growthBytes)
+    {
+        if (!BitUtil.isPowerOfTwo(growthBytes) || growthBytes < RECORD_LENGTH)
+        {
+            throw new IllegalArgumentException(
+                "growth must be a power of two of at least " + RECORD_LENGTH + " bytes: " + growthBytes);
+        }
+
+        this.file = file;
+        this.growthBytes = growthBytes;
+        try
+        {
+            channel = FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map(Math.max(channel.size(), HEADER_LENGTH + this.growthBytes));
+        }
+        catch (final IOException ex)
+        {
+            throw new IllegalStateException("cannot open RFQ history " + file, ex);
+        }
+
+        final int storedCount = (int)buffer.getLongVolatile(RECORD_COUNT_OFFSET);
+        for (int i = 0; i < storedCount; i++)
+        {
+            index(i);
+        }
+        recordCount = storedCount;
+    }
+
+    /**
+     * Appends an RFQ state record, unless the RFQ is already held or the file is full.
+     *
+     * @param source the buffer holding the record
+     * @param offset the offset of the record's message header
+     * @return true if the record was appended, false if the RFQ was already held or the file is full
+     */
+    public boolean append(final DirectBuffer source, final int offset)
+    {
+        final int rfqId = source.getInt(
+            offset + MessageHeaderDecoder.ENCODED_LENGTH + RfqStateRecordDecoder.rfqIdEncodingOffset(),
+            RfqStateRecordDecoder.BYTE_ORDER);
+        if (recordByRfqId.containsKey(rfqId))
+        {
+            return false;
+        }
+
+        final long recordOffset = recordOffset(recordCount);
+        if (recordOffset + RECORD_LENGTH > buffer.capacity() && !grow(recordOffset + RECORD_LENGTH))
+        {
+            return false;
+        }
+        buffer.putBytes((int)recordOffset, source, offset,
+            MessageHeaderDecoder.ENCODED_LENGTH + RfqStateRecordDecoder.BLOCK_LENGTH);
+        index(recordCount);
+        recordCount++;
+        buffer.putLongOrdered(RECORD_COUNT_OFFSET, recordCount);
+        return true;
+    }
+
+    /**
+     * Returns the number of RFQs held.
+     *
+     * @return the number of records
+     */
+    public int recordCount()
+    {
+        return recordCount;
+    }
+
+    /**
+     * Finds the record of an RFQ.
+     *
+     * @param rfqId the RFQ id
+     * @return the record index, or {@link #NOT_FOUND} if the RFQ is not held
+     */
+    public int findRecord(final int rfqId)
+    {
+        return recordByRfqId.get(rfqId);
+    }
+
+    /**
+     * Collects the records of the RFQs on a cusip, newest first.
+     *
+     * @param cusip   the packed cusip
+     * @param limit   the most records to collect
+     * @param records the list the record indexes are added to
+     */
+    public void collectRecords(final long cusip, final int limit, final IntArrayList records)
+    {
+        final IntArrayList cusipRecords = recordsByCusip.get(cusip);
+        if (null == cusipRecords)
+        {
+            return;
+        }
+
+        for (int i = cusipRecords.size() - 1, end = Math.max(0, cusipRecords.size() - limit); i >= end; i--)
+        {
+            records.addInt(cusipRecords.getInt(i));
+        }
+    }
+
+    /**
+     * Returns a decoder over a record, valid until the next call.
+     *
+     * @param recordIndex the record index
+     * @return the decoder wrapping the record
+     */
+    public RfqStateRecordDecoder record(final int recordIndex)
+    {
+        return rfqStateRecordDecoder.wrapAndApplyHeader(
+            buffer, (int)recordOffset(recordIndex), messageHeaderDecoder);
+    }
+
+    @Override
+    public void close()
+    {
+        mappedBuffer.force();
+        IoUtil.unmap(mappedBuffer);
+        try
+        {
+            channel.close();
+        }
+        catch (final IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+    }
+
+    private void index(final int recordIndex)
+    {
+        final int offset = (int)recordOffset(recordIndex) + MessageHeaderDecoder.ENCODED_LENGTH;
+        recordByRfqId.put(
+            buffer.getInt(offset + RfqStateRecordDecoder.rfqIdEncodingOffset(), RfqStateRecordDecoder.BYTE_ORDER),
+            recordIndex);
+        final long cusip = Cusip.encode(buffer, offset + RfqStateRecordDecoder.cusipEncodingOffset());
+        IntArrayList cusipRecords = recordsByCusip.get(cusip);
+        if (null == cusipRecords)
+        {
+            cusipRecords = new IntArrayList();
+            recordsByCusip.put(cusip, cusipRecords);
+        }
+        cusipRecords.addInt(recordIndex);
+    }
+
+    private boolean grow(final long minLength)
+    {
+        if (minLength > MAX_MAPPED_BYTES)
+        {
+            if (!full)
+            {
+                full = true;
+                LOGGER.warn("RFQ history is full, discarding further records: {}", file);
+            }
+            return false;
+        }
+
+        mappedBuffer.force();
+        IoUtil.unmap(mappedBuffer);
+        try
+        {
+            map(Math.min(MAX_MAPPED_BYTES, BitUtil.align(minLength, growthBytes) + HEADER_LENGTH));
+        }
+        catch (final IOException ex)
+        {
+            LangUtil.rethrowUnchecked(ex);
+        }
+        return true;
+    }
+
+    //mapping past the end of the file extends it
+    private void map(final long length) throws IOException
+    {
+        mappedBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        buffer.wrap(mappedBuffer);
+    }
+
+    private static long recordOffset(final int recordIndex)
+    {
+        return HEADER_LENGTH + (long)recordIndex * RECORD_LENGTH;
+    }
+}
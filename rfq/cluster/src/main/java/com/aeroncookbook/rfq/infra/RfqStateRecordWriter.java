@@ -0,0 +1,73 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqStateRecordEncoder;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+/**
+ * Writes the state of an RFQ as an {@link RfqStateRecordEncoder} record straight into a claimed slot of a ring buffer,
+ * for the observer feed and RFQ history agents to read.
+ */
+final class RfqStateRecordWriter
+{
+    /**
+     * Ring buffer message type id of an RFQ state record.
+     */
+    static final int MSG_TYPE_ID = 1;
+    private static final int RECORD_LENGTH = MessageHeaderEncoder.ENCODED_LENGTH + RfqStateRecordEncoder.BLOCK_LENGTH;
+
+    private final RingBuffer ringBuffer;
+    private final MessageHeaderEncoder messageHeaderEncoder = new MessageHeaderEncoder();
+    private final RfqStateRecordEncoder rfqStateRecordEncoder = new RfqStateRecordEncoder();
+
+    RfqStateRecordWriter(final RingBuffer ringBuffer)
+    {
+        this.ringBuffer = ringBuffer;
+    }
+
+    /**
+     * Writes the current state of an RFQ if there is room in the ring buffer.
+     *
+     * @param rfq the RFQ
+     * @return true if written, false if the ring buffer is full
+     */
+    boolean tryWrite(final Rfq rfq)
+    {
+        final int index = ringBuffer.tryClaim(MSG_TYPE_ID, RECORD_LENGTH);
+        if (index <= 0)
+        {
+            return false;
+        }
+
+        rfqStateRecordEncoder.wrapAndApplyHeader(ringBuffer.buffer(), index, messageHeaderEncoder)
+            .rfqId(rfq.getRfqId())
+            .cusip(rfq.getCusip())
+            .requesterUserId(rfq.getRequesterUserId())
+            .responderUserId(rfq.getResponderUserId())
+            .requesterSide(rfq.getRequesterSide())
+            .quantity(rfq.getQuantity())
+            .price(rfq.getPrice())
+            .state(rfq.getCurrentState().getCurrentState().getStateId())
+            .expireTimeMs(rfq.getExpireTimeMs());
+        ringBuffer.commit(index);
+        return true;
+    }
+}
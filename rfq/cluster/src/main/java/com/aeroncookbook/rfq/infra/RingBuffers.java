@@ -0,0 +1,48 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aeroncookbook.rfq.infra;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.OneToOneRingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.agrona.concurrent.ringbuffer.RingBufferDescriptor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Allocates the ring buffers through which the service thread hands records to the audit journal, observer feed and
+ * RFQ history agents.
+ */
+public final class RingBuffers
+{
+    private RingBuffers()
+    {
+    }
+
+    /**
+     * Allocates an off-heap ring buffer with a single producer, the service thread, and a single consumer, the agent.
+     *
+     * @param capacity the capacity in bytes, excluding the trailer; must be a power of two
+     * @return the ring buffer
+     */
+    public static RingBuffer newRingBuffer(final int capacity)
+    {
+        return new OneToOneRingBuffer(
+            new UnsafeBuffer(ByteBuffer.allocateDirect(capacity + RingBufferDescriptor.TRAILER_LENGTH)));
+    }
+}
@@ -18,32 +18,75 @@ package com.aeroncookbook.rfq.infra;
 
 import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqCommandDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.AddInstrumentDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.AddUserCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.BindSessionUserCommandDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
 import com.aeroncookbook.cluster.rfq.sbe.CancelRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CancelUserRfqsCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CommandBatchDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.CounterRfqCommandDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.DisableUserCommandDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.InstrumentRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.InterestType;
 import com.aeroncookbook.cluster.rfq.sbe.InstrumentRecordEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.ListInstrumentsCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.ListOpenRfqsCommandDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqCommandDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.RejectRfqCommandDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.SetInstrumentEnabledFlagDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SubscribeCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.UnsubscribeCommandDecoder;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
 import com.aeroncookbook.rfq.domain.instrument.InstrumentAddType;
 import com.aeroncookbook.rfq.domain.instrument.Instruments;
 import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.users.Users;
 import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 /**
  * Demultiplexes messages from the ingress stream to the appropriate domain handler.
  */
 public class SbeAdapter
 {
+    /**
+     * The decoders of the session messages handled by {@link #dispatch}, in the order of its cases. The template id
+     * and name of each message are read from its decoder, so a message added here is recorded by
+     * {@link LatencyRecorderImpl} under its own name.
+     */
+    static final List<Class<?>> SESSION_MESSAGE_DECODERS = List.of(
+        AddInstrumentDecoder.class,
+        SetInstrumentEnabledFlagDecoder.class,
+        InstrumentRecordDecoder.class,
+        ListInstrumentsCommandDecoder.class,
+        CreateRfqCommandDecoder.class,
+        CancelRfqCommandDecoder.class,
+        QuoteRfqCommandDecoder.class,
+        CounterRfqCommandDecoder.class,
+        AcceptRfqCommandDecoder.class,
+        RejectRfqCommandDecoder.class,
+        SubscribeCommandDecoder.class,
+        UnsubscribeCommandDecoder.class,
+        CommandBatchDecoder.class,
+        ListOpenRfqsCommandDecoder.class,
+        CancelUserRfqsCommandDecoder.class,
+        BindSessionUserCommandDecoder.class,
+        AddUserCommandDecoder.class,
+        DisableUserCommandDecoder.class);
+
     private static final Logger LOGGER = LoggerFactory.getLogger(SbeAdapter.class);
+    private final SessionMessageContextImpl context;
     private final Instruments instruments;
     private final Rfqs rfqs;
+    private final SessionInterests sessionInterests;
+    private final SessionUsers sessionUsers;
+    private final Users users;
     private final ClusterClientResponder responder;
 
     private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
@@ -57,21 +100,46 @@ public class SbeAdapter
     private final CounterRfqCommandDecoder counterRfqCommandDecoder = new CounterRfqCommandDecoder();
     private final AcceptRfqCommandDecoder acceptRfqCommandDecoder = new AcceptRfqCommandDecoder();
     private final RejectRfqCommandDecoder rejectRfqCommandDecoder = new RejectRfqCommandDecoder();
+    private final SubscribeCommandDecoder subscribeCommandDecoder = new SubscribeCommandDecoder();
+    private final UnsubscribeCommandDecoder unsubscribeCommandDecoder = new UnsubscribeCommandDecoder();
+    private final CommandBatchDecoder commandBatchDecoder = new CommandBatchDecoder();
+    private final ListOpenRfqsCommandDecoder listOpenRfqsCommandDecoder = new ListOpenRfqsCommandDecoder();
+    private final CancelUserRfqsCommandDecoder cancelUserRfqsCommandDecoder = new CancelUserRfqsCommandDecoder();
+    private final BindSessionUserCommandDecoder bindSessionUserCommandDecoder = new BindSessionUserCommandDecoder();
+    private final AddUserCommandDecoder addUserCommandDecoder = new AddUserCommandDecoder();
+    private final DisableUserCommandDecoder disableUserCommandDecoder = new DisableUserCommandDecoder();
+    private final UnsafeBuffer batchedCommand = new UnsafeBuffer(0, 0);
 
     /**
      * Dispatches ingress messages to domain logic.
+     * <p>
+     * Commands are correlated by the binary requestId added in schema version 2. The legacy uuidString
+     * correlation is copied as raw bytes into the session message context, without decoding to a String, so that
+     * replies to version 1 clients still echo it back.
      *
-     * @param instruments the instrument domain model to which commands are dispatched
-     * @param rfqs        the RFQ domain model to which commands are dispatched
-     * @param responder   the responder to which responses are sent
+     * @param context          the session message context, which holds the legacy correlation of the current message
+     * @param instruments      the instrument domain model to which commands are dispatched
+     * @param rfqs             the RFQ domain model to which commands are dispatched
+     * @param sessionInterests the session interests to which subscriptions are applied
+     * @param sessionUsers     the binding of sessions to users, to which bind commands are applied
+     * @param users            the known users, which sessions may be bound to
+     * @param responder        the responder to which responses are sent
      */
     public SbeAdapter(
+        final SessionMessageContextImpl context,
         final Instruments instruments,
         final Rfqs rfqs,
+        final SessionInterests sessionInterests,
+        final SessionUsers sessionUsers,
+        final Users users,
         final ClusterClientResponder responder)
     {
+        this.context = context;
         this.instruments = instruments;
         this.rfqs = rfqs;
+        this.sessionInterests = sessionInterests;
+        this.sessionUsers = sessionUsers;
+        this.users = users;
         this.responder = responder;
     }
 
@@ -103,15 +171,122 @@ public class SbeAdapter
             case CounterRfqCommandDecoder.TEMPLATE_ID -> counterRfq(buffer, offset);
             case AcceptRfqCommandDecoder.TEMPLATE_ID -> acceptRfq(buffer, offset);
             case RejectRfqCommandDecoder.TEMPLATE_ID -> rejectRfq(buffer, offset);
+            case SubscribeCommandDecoder.TEMPLATE_ID -> subscribe(buffer, offset);
+            case UnsubscribeCommandDecoder.TEMPLATE_ID -> unsubscribe(buffer, offset);
+            case CommandBatchDecoder.TEMPLATE_ID -> commandBatch(buffer, offset);
+            case ListOpenRfqsCommandDecoder.TEMPLATE_ID -> listOpenRfqs(buffer, offset);
+            case CancelUserRfqsCommandDecoder.TEMPLATE_ID -> cancelUserRfqs(buffer, offset);
+            case BindSessionUserCommandDecoder.TEMPLATE_ID -> bindSessionUser(buffer, offset);
+            case AddUserCommandDecoder.TEMPLATE_ID -> addUser(buffer, offset);
+            case DisableUserCommandDecoder.TEMPLATE_ID -> disableUser(buffer, offset);
             default -> LOGGER.error("Unknown message template {}, ignored.", headerDecoder.templateId());
         }
     }
 
+    //a batch arrives as one log entry, so its commands are applied back to back with no other message between them;
+    //each command is dispatched as if it had been sent alone and is confirmed individually
+    private void commandBatch(final DirectBuffer buffer, final int offset)
+    {
+        commandBatchDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final CommandBatchDecoder.CommandsDecoder commands = commandBatchDecoder.commands();
+        while (commands.hasNext())
+        {
+            commands.next();
+            commands.wrapCommand(batchedCommand);
+            if (batchedCommand.capacity() >= MessageHeaderDecoder.ENCODED_LENGTH &&
+                headerDecoder.wrap(batchedCommand, 0).templateId() == CommandBatchDecoder.TEMPLATE_ID)
+            {
+                LOGGER.error("Nested command batch, ignored.");
+                continue;
+            }
+            dispatch(batchedCommand, 0, batchedCommand.capacity());
+        }
+    }
+
+    private void subscribe(final DirectBuffer buffer, final int offset)
+    {
+        subscribeCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final InterestType interest = subscribeCommandDecoder.interest();
+        if (interest != InterestType.NULL_VAL)
+        {
+            sessionInterests.subscribe(
+                context.getSessionId(),
+                interest,
+                subscribeCommandDecoder.cusip(),
+                subscribeCommandDecoder.userId());
+        }
+        responder.sendSubscriptionResult(subscribeCommandDecoder.requestId(), interest != InterestType.NULL_VAL);
+    }
+
+    private void unsubscribe(final DirectBuffer buffer, final int offset)
+    {
+        unsubscribeCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final InterestType interest = unsubscribeCommandDecoder.interest();
+        if (interest != InterestType.NULL_VAL)
+        {
+            sessionInterests.unsubscribe(
+                context.getSessionId(),
+                interest,
+                unsubscribeCommandDecoder.cusip(),
+                unsubscribeCommandDecoder.userId());
+        }
+        responder.sendSubscriptionResult(unsubscribeCommandDecoder.requestId(), interest != InterestType.NULL_VAL);
+    }
+
+    private void listOpenRfqs(final DirectBuffer buffer, final int offset)
+    {
+        listOpenRfqsCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        //an empty cusip packs to Cusip.NO_CUSIP, leaving the query unfiltered by instrument
+        final int cusipOffset = listOpenRfqsCommandDecoder.offset() + ListOpenRfqsCommandDecoder.cusipEncodingOffset();
+        rfqs.listOpenRfqs(
+            listOpenRfqsCommandDecoder.requestId(),
+            Cusip.encode(buffer, cusipOffset),
+            listOpenRfqsCommandDecoder.userId());
+    }
+
+    private void cancelUserRfqs(final DirectBuffer buffer, final int offset)
+    {
+        cancelUserRfqsCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        rfqs.cancelUserRfqs(cancelUserRfqsCommandDecoder.requestId(), cancelUserRfqsCommandDecoder.userId());
+    }
+
+    private void bindSessionUser(final DirectBuffer buffer, final int offset)
+    {
+        bindSessionUserCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final int userId = bindSessionUserCommandDecoder.userId();
+        final boolean valid = users.isValidUser(userId);
+        if (valid)
+        {
+            sessionUsers.bind(
+                context.getSessionId(),
+                userId,
+                bindSessionUserCommandDecoder.cancelOnDisconnect() == BooleanType.TRUE);
+        }
+        responder.sendSessionUserBound(bindSessionUserCommandDecoder.requestId(), valid);
+    }
+
+    private void addUser(final DirectBuffer buffer, final int offset)
+    {
+        addUserCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        users.addUser(
+            addUserCommandDecoder.requestId(),
+            addUserCommandDecoder.userId(),
+            addUserCommandDecoder.canRequest() == BooleanType.TRUE,
+            addUserCommandDecoder.canRespond() == BooleanType.TRUE);
+    }
+
+    private void disableUser(final DirectBuffer buffer, final int offset)
+    {
+        disableUserCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        users.disableUser(disableUserCommandDecoder.requestId(), disableUserCommandDecoder.userId());
+    }
+
     private void rejectRfq(final DirectBuffer buffer, final int offset)
     {
         rejectRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        rejectRfqCommandDecoder.getCorrelation(context.getLegacyCorrelation(), 0);
         rfqs.rejectRfq(
-            rejectRfqCommandDecoder.correlation(),
+            rejectRfqCommandDecoder.requestId(),
             rejectRfqCommandDecoder.rfqId(),
             rejectRfqCommandDecoder.responderUserId());
     }
@@ -119,8 +294,9 @@ public class SbeAdapter
     private void acceptRfq(final DirectBuffer buffer, final int offset)
     {
         acceptRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        acceptRfqCommandDecoder.getCorrelation(context.getLegacyCorrelation(), 0);
         rfqs.acceptRfq(
-            acceptRfqCommandDecoder.correlation(),
+            acceptRfqCommandDecoder.requestId(),
             acceptRfqCommandDecoder.rfqId(),
             acceptRfqCommandDecoder.acceptUserId());
     }
@@ -128,8 +304,9 @@ public class SbeAdapter
     private void counterRfq(final DirectBuffer buffer, final int offset)
     {
         counterRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        counterRfqCommandDecoder.getCorrelation(context.getLegacyCorrelation(), 0);
         rfqs.counterRfq(
-            counterRfqCommandDecoder.correlation(),
+            counterRfqCommandDecoder.requestId(),
             counterRfqCommandDecoder.rfqId(),
             counterRfqCommandDecoder.counterUserId(),
             counterRfqCommandDecoder.price());
@@ -138,8 +315,9 @@ public class SbeAdapter
     private void quoteRfq(final DirectBuffer buffer, final int offset)
     {
         quoteRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        quoteRfqCommandDecoder.getCorrelation(context.getLegacyCorrelation(), 0);
         rfqs.quoteRfq(
-            quoteRfqCommandDecoder.correlation(),
+            quoteRfqCommandDecoder.requestId(),
             quoteRfqCommandDecoder.rfqId(),
             quoteRfqCommandDecoder.responderUserId(),
             quoteRfqCommandDecoder.price());
@@ -148,8 +326,9 @@ public class SbeAdapter
     private void cancelRfq(final DirectBuffer buffer, final int offset)
     {
         cancelRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        cancelRfqCommandDecoder.getCorrelation(context.getLegacyCorrelation(), 0);
         rfqs.cancelRfq(
-            cancelRfqCommandDecoder.correlation(),
+            cancelRfqCommandDecoder.requestId(),
             cancelRfqCommandDecoder.rfqId(),
             cancelRfqCommandDecoder.cancelUserId());
     }
@@ -157,19 +336,23 @@ public class SbeAdapter
     private void createRfq(final DirectBuffer buffer, final int offset)
     {
         createRfqCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        createRfqCommandDecoder.getCorrelation(context.getLegacyCorrelation(), 0);
+        //the cusip is packed straight from the message bytes rather than decoded to a String
+        final int cusipOffset = createRfqCommandDecoder.offset() + CreateRfqCommandDecoder.cusipEncodingOffset();
         rfqs.createRfq(
-            createRfqCommandDecoder.correlation(),
+            createRfqCommandDecoder.requestId(),
             createRfqCommandDecoder.expireTimeMs(),
             createRfqCommandDecoder.quantity(),
             createRfqCommandDecoder.requesterSide(),
-            createRfqCommandDecoder.cusip(),
+            Cusip.encode(buffer, cusipOffset),
             createRfqCommandDecoder.requesterUserId());
     }
 
     private void listInstruments(final DirectBuffer buffer, final int offset)
     {
         listInstrumentsCommandDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
-        instruments.listInstruments(listInstrumentsCommandDecoder.correlation());
+        listInstrumentsCommandDecoder.getCorrelation(context.getLegacyCorrelation(), 0);
+        instruments.listInstruments(listInstrumentsCommandDecoder.requestId());
     }
 
     private void initializeInstrument(final DirectBuffer buffer, final int offset)
@@ -178,7 +361,7 @@ public class SbeAdapter
 
         instruments.addInstrument(
             InstrumentAddType.SNAPSHOT_LOAD,
-            "",
+            Instruments.NO_CORRELATION,
             instrumentRecordDecoder.cusip(),
             instrumentRecordDecoder.enabled().equals(BooleanType.TRUE),
             instrumentRecordDecoder.minSize());
@@ -187,20 +370,24 @@ public class SbeAdapter
     private void setInstrumentEnabledFlag(final DirectBuffer buffer, final int offset)
     {
         setInstrumentEnabledDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        setInstrumentEnabledDecoder.getCorrelation(context.getLegacyCorrelation(), 0);
+        final int cusipOffset =
+            setInstrumentEnabledDecoder.offset() + SetInstrumentEnabledFlagDecoder.cusipEncodingOffset();
 
         instruments.setEnabledFlagForCusip(
-            setInstrumentEnabledDecoder.correlation(),
-            setInstrumentEnabledDecoder.cusip(),
+            setInstrumentEnabledDecoder.requestId(),
+            Cusip.encode(buffer, cusipOffset),
             setInstrumentEnabledDecoder.enabled().equals(BooleanType.TRUE));
     }
 
     private void addInstrument(final DirectBuffer buffer, final int offset)
     {
         addInstrumentDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        addInstrumentDecoder.getCorrelation(context.getLegacyCorrelation(), 0);
 
         instruments.addInstrument(
             InstrumentAddType.INTERACTIVE,
-            addInstrumentDecoder.correlation(),
+            addInstrumentDecoder.requestId(),
             addInstrumentDecoder.cusip(),
             addInstrumentDecoder.enabled().equals(BooleanType.TRUE),
             addInstrumentDecoder.minSize());
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.rfq.domain.rfq.HeapRfqStore;
+import com.aeroncookbook.rfq.domain.rfq.RfqStore;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+/**
+ * The options of the clustered service. Each option has a default, so only those that differ need to be set; the
+ * optional outputs (audit journal, observer feed, RFQ history and latency recording) are disabled by default.
+ */
+public class ServiceConfig
+{
+    private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DISCONNECT;
+    private int maxQueuedBytes = SessionEgress.DEFAULT_MAX_QUEUED_BYTES;
+    private EgressMode egressMode = EgressMode.IMMEDIATE;
+    private RfqStore rfqStore;
+    private RingBuffer auditRingBuffer;
+    private ObserverFeed observerFeed = ObserverFeed.NO_OP;
+    private RfqHistory rfqHistory = RfqHistory.NO_OP;
+    private LatencyRecorder latencyRecorder = LatencyRecorder.NO_OP;
+    private int fullSnapshotInterval = 1;
+
+    /**
+     * Sets what is done with a client session that falls behind, {@link SlowConsumerPolicy#DISCONNECT} by default.
+     *
+     * @param slowConsumerPolicy the policy
+     * @return this for a fluent API
+     */
+    public ServiceConfig slowConsumerPolicy(final SlowConsumerPolicy slowConsumerPolicy)
+    {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        return this;
+    }
+
+    /**
+     * Gets what is done with a client session that falls behind.
+     *
+     * @return the policy
+     */
+    public SlowConsumerPolicy slowConsumerPolicy()
+    {
+        return slowConsumerPolicy;
+    }
+
+    /**
+     * Sets the bytes a client session may have queued before the slow consumer policy applies, a power of two,
+     * {@link SessionEgress#DEFAULT_MAX_QUEUED_BYTES} by default.
+     *
+     * @param maxQueuedBytes the most bytes queued per session
+     * @return this for a fluent API
+     */
+    public ServiceConfig maxQueuedBytes(final int maxQueuedBytes)
+    {
+        this.maxQueuedBytes = maxQueuedBytes;
+        return this;
+    }
+
+    /**
+     * Gets the bytes a client session may have queued before the slow consumer policy applies.
+     *
+     * @return the most bytes queued per session
+     */
+    public int maxQueuedBytes()
+    {
+        return maxQueuedBytes;
+    }
+
+    /**
+     * Sets when encoded messages are sent to client sessions, {@link EgressMode#IMMEDIATE} by default.
+     *
+     * @param egressMode the egress mode
+     * @return this for a fluent API
+     */
+    public ServiceConfig egressMode(final EgressMode egressMode)
+    {
+        this.egressMode = egressMode;
+        return this;
+    }
+
+    /**
+     * Gets when encoded messages are sent to client sessions.
+     *
+     * @return the egress mode
+     */
+    public EgressMode egressMode()
+    {
+        return egressMode;
+    }
+
+    /**
+     * Sets the storage backend for the live RFQs, a {@link HeapRfqStore} by default.
+     *
+     * @param rfqStore the RFQ store
+     * @return this for a fluent API
+     */
+    public ServiceConfig rfqStore(final RfqStore rfqStore)
+    {
+        this.rfqStore = rfqStore;
+        return this;
+    }
+
+    /**
+     * Gets the storage backend for the live RFQs, creating the default the first time when none was set.
+     *
+     * @return the RFQ store
+     */
+    public RfqStore rfqStore()
+    {
+        if (null == rfqStore)
+        {
+            rfqStore = new HeapRfqStore();
+        }
+        return rfqStore;
+    }
+
+    /**
+     * Sets the ring buffer to which audit records are written, enabling the audit journal. Unset by default.
+     *
+     * @param auditRingBuffer the ring buffer drained by the {@link AuditJournalAgent}
+     * @return this for a fluent API
+     */
+    public ServiceConfig auditRingBuffer(final RingBuffer auditRingBuffer)
+    {
+        this.auditRingBuffer = auditRingBuffer;
+        return this;
+    }
+
+    /**
+     * Gets the ring buffer to which audit records are written.
+     *
+     * @return the ring buffer, or null when the audit journal is disabled
+     */
+    public RingBuffer auditRingBuffer()
+    {
+        return auditRingBuffer;
+    }
+
+    /**
+     * Sets the feed to which each new RFQ state is passed on for passive observers, {@link ObserverFeed#NO_OP} by
+     * default.
+     *
+     * @param observerFeed the observer feed
+     * @return this for a fluent API
+     */
+    public ServiceConfig observerFeed(final ObserverFeed observerFeed)
+    {
+        this.observerFeed = observerFeed;
+        return this;
+    }
+
+    /**
+     * Gets the feed to which each new RFQ state is passed on for passive observers.
+     *
+     * @return the observer feed
+     */
+    public ObserverFeed observerFeed()
+    {
+        return observerFeed;
+    }
+
+    /**
+     * Sets the history to which each RFQ evicted in a terminal state is passed on, {@link RfqHistory#NO_OP} by
+     * default.
+     *
+     * @param rfqHistory the RFQ history
+     * @return this for a fluent API
+     */
+    public ServiceConfig rfqHistory(final RfqHistory rfqHistory)
+    {
+        this.rfqHistory = rfqHistory;
+        return this;
+    }
+
+    /**
+     * Gets the history to which each RFQ evicted in a terminal state is passed on.
+     *
+     * @return the RFQ history
+     */
+    public RfqHistory rfqHistory()
+    {
+        return rfqHistory;
+    }
+
+    /**
+     * Sets the recorder of service and egress latencies, {@link LatencyRecorder#NO_OP} by default.
+     *
+     * @param latencyRecorder the latency recorder
+     * @return this for a fluent API
+     */
+    public ServiceConfig latencyRecorder(final LatencyRecorder latencyRecorder)
+    {
+        this.latencyRecorder = latencyRecorder;
+        return this;
+    }
+
+    /**
+     * Gets the recorder of service and egress latencies.
+     *
+     * @return the latency recorder
+     */
+    public LatencyRecorder latencyRecorder()
+    {
+        return latencyRecorder;
+    }
+
+    /**
+     * Sets how many snapshots are taken per full snapshot, those in between holding only the RFQs changed since the
+     * one before. The default of 1 takes every snapshot in full.
+     * <p>
+     * A delta can only be loaded while every snapshot recording back to the last full snapshot is in the node's
+     * archive, so leave this at 1 where snapshots are purged, or where nodes are restored from a ClusterBackup or
+     * start from a standby snapshot; a node missing part of the chain fails to start.
+     *
+     * @param fullSnapshotInterval the snapshots per full snapshot, at least 1
+     * @return this for a fluent API
+     */
+    public ServiceConfig fullSnapshotInterval(final int fullSnapshotInterval)
+    {
+        if (fullSnapshotInterval < 1)
+        {
+            throw new IllegalArgumentException("fullSnapshotInterval must be at least 1: " + fullSnapshotInterval);
+        }
+        this.fullSnapshotInterval = fullSnapshotInterval;
+        return this;
+    }
+
+    /**
+     * Gets how many snapshots are taken per full snapshot.
+     *
+     * @return the snapshots per full snapshot
+     */
+    public int fullSnapshotInterval()
+    {
+        return fullSnapshotInterval;
+    }
+}
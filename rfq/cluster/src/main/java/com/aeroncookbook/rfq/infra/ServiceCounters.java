@@ -0,0 +1,314 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.cluster.rfq.sbe.CancelRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
+import io.aeron.Aeron;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.AtomicCounter;
+import org.agrona.concurrent.status.CountersManager;
+import org.agrona.concurrent.status.CountersReader;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Domain metrics of the service, published as Aeron counters so they can be watched with AeronStat alongside the
+ * media driver and cluster counters.
+ * <p>
+ * The counters are defined up front, one for each RFQ transition, each command type and result code a command can be
+ * denied with, the live RFQ, instrument and session counts, the processing time of session messages, and the records
+ * the observer feed and RFQ history had to drop. Until the
+ * service has started they are held in a private counters buffer; {@link #attach(Aeron)} then moves them to counters
+ * allocated through the cluster's Aeron client, carrying their values across. Updates are plain increments and
+ * ordered sets on the service thread, without allocation.
+ * <p>
+ * Counters are not part of the replicated state: they count what this node has processed since it started, including
+ * log replayed at startup.
+ */
+public class ServiceCounters implements AutoCloseable
+{
+    /**
+     * Type id of the counters of RFQ transitions.
+     */
+    public static final int RFQ_TRANSITIONS_TYPE_ID = 10_001;
+
+    /**
+     * Type id of the counters of denied commands, one per command type and result code.
+     */
+    public static final int COMMANDS_DENIED_TYPE_ID = 10_002;
+
+    /**
+     * Type id of the counters of live RFQs, instruments and sessions.
+     */
+    public static final int SERVICE_STATE_TYPE_ID = 10_003;
+
+    /**
+     * Type id of the counters of session message processing.
+     */
+    public static final int SESSION_MESSAGES_TYPE_ID = 10_004;
+
+    /**
+     * Type id of the counters of records dropped because the ring buffer to an agent thread was full.
+     */
+    public static final int DROPPED_RECORDS_TYPE_ID = 10_005;
+
+    /**
+     * Type id of the counters of the bytes queued and the messages dropped for a back pressured client session,
+     * allocated by {@link SessionEgress} rather than defined here.
+     */
+    public static final int SESSION_EGRESS_TYPE_ID = 10_006;
+
+    private static final short FIRST_DENIED_TYPE = AuditEventType.CREATE_DENIED.value();
+    private static final short LAST_DENIED_TYPE = AuditEventType.EXPIRE_DENIED.value();
+    private static final int NO_COUNTER = -1;
+
+    private final List<String> labels = new ArrayList<>();
+    private final List<Integer> typeIds = new ArrayList<>();
+    private final int[] transitionCounters;
+    private final int[][] deniedCounters;
+    private final int liveRfqsCounter;
+    private final int instrumentsCounter;
+    private final int sessionsCounter;
+    private final int sessionMessagesCounter;
+    private final int maxProcessingNsCounter;
+    private final int avgProcessingNsCounter;
+    private final int observerDroppedCounter;
+    private final int historyDroppedCounter;
+    private final AtomicCounter[] counters;
+    private long sessionMessages;
+    private long totalProcessingNs;
+    private long maxProcessingNs;
+
+    /**
+     * Constructor, defining the counters in a private counters buffer until {@link #attach(Aeron)} is called
+     */
+    public ServiceCounters()
+    {
+        transitionCounters = new int[AuditEventType.RFQ_EXPIRED.value() + 1];
+        for (final AuditEventType type : AuditEventType.values())
+        {
+            if (type != AuditEventType.NULL_VAL && type.value() < transitionCounters.length)
+            {
+                transitionCounters[type.value()] = define(RFQ_TRANSITIONS_TYPE_ID, "RFQ transitions: " + type.name());
+            }
+        }
+
+        deniedCounters = new int[LAST_DENIED_TYPE - FIRST_DENIED_TYPE + 1][];
+        defineDenied(AuditEventType.CREATE_DENIED, resultNames(CreateRfqResult.values()));
+        defineDenied(AuditEventType.QUOTE_DENIED, resultNames(QuoteRfqResult.values()));
+        defineDenied(AuditEventType.COUNTER_DENIED, resultNames(CounterRfqResult.values()));
+        defineDenied(AuditEventType.ACCEPT_DENIED, resultNames(AcceptRfqResult.values()));
+        defineDenied(AuditEventType.REJECT_DENIED, resultNames(RejectRfqResult.values()));
+        defineDenied(AuditEventType.CANCEL_DENIED, resultNames(CancelRfqResult.values()));
+        //an expiry is denied only when the RFQ has already left a state it can expire from, always with result 0
+        defineDenied(AuditEventType.EXPIRE_DENIED, new String[]{ "INVALID_TRANSITION" });
+
+        liveRfqsCounter = define(SERVICE_STATE_TYPE_ID, "Live RFQs");
+        instrumentsCounter = define(SERVICE_STATE_TYPE_ID, "Instruments");
+        sessionsCounter = define(SERVICE_STATE_TYPE_ID, "Client sessions");
+        sessionMessagesCounter = define(SESSION_MESSAGES_TYPE_ID, "Session messages");
+        maxProcessingNsCounter = define(SESSION_MESSAGES_TYPE_ID, "Session message max processing ns");
+        avgProcessingNsCounter = define(SESSION_MESSAGES_TYPE_ID, "Session message avg processing ns");
+        observerDroppedCounter = define(DROPPED_RECORDS_TYPE_ID, "Observer feed records dropped");
+        historyDroppedCounter = define(DROPPED_RECORDS_TYPE_ID, "RFQ history records dropped");
+
+        final int count = labels.size();
+        final CountersManager countersManager = new CountersManager(
+            new UnsafeBuffer(ByteBuffer.allocateDirect(count * CountersReader.METADATA_LENGTH)),
+            new UnsafeBuffer(ByteBuffer.allocateDirect(count * CountersReader.COUNTER_LENGTH)));
+        counters = new AtomicCounter[count];
+        for (int i = 0; i < count; i++)
+        {
+            counters[i] = countersManager.newCounter(labels.get(i), typeIds.get(i));
+        }
+    }
+
+    /**
+     * Moves the counters to counters allocated through an Aeron client, so they are visible to AeronStat, keeping
+     * the values counted so far.
+     *
+     * @param aeron the Aeron client of the cluster
+     */
+    public void attach(final Aeron aeron)
+    {
+        for (int i = 0; i < counters.length; i++)
+        {
+            final AtomicCounter counter = aeron.addCounter(typeIds.get(i), labels.get(i));
+            counter.setOrdered(counters[i].get());
+            counters[i] = counter;
+        }
+    }
+
+    /**
+     * Counts an RFQ transition.
+     *
+     * @param type the audit event type of the transition, from {@link AuditEventType#RFQ_CREATED} to
+     *             {@link AuditEventType#RFQ_EXPIRED}
+     */
+    public void rfqTransition(final AuditEventType type)
+    {
+        final short value = type.value();
+        if (value >= 0 && value < transitionCounters.length)
+        {
+            counters[transitionCounters[value]].increment();
+        }
+    }
+
+    /**
+     * Counts a denied command.
+     *
+     * @param type   the audit event type of the denial, from {@link AuditEventType#CREATE_DENIED} to
+     *               {@link AuditEventType#EXPIRE_DENIED}
+     * @param result the result code sent in the confirm
+     */
+    public void commandDenied(final AuditEventType type, final int result)
+    {
+        final int typeIndex = type.value() - FIRST_DENIED_TYPE;
+        if (typeIndex < 0 || typeIndex >= deniedCounters.length)
+        {
+            return;
+        }
+
+        final int[] resultCounters = deniedCounters[typeIndex];
+        if (result >= 0 && result < resultCounters.length && resultCounters[result] != NO_COUNTER)
+        {
+            counters[resultCounters[result]].increment();
+        }
+    }
+
+    /**
+     * Counts a session message and the time the service thread took to process it.
+     *
+     * @param processingNs the processing time in nanoseconds
+     */
+    public void sessionMessageProcessed(final long processingNs)
+    {
+        sessionMessages++;
+        totalProcessingNs += processingNs;
+        counters[sessionMessagesCounter].setOrdered(sessionMessages);
+        counters[avgProcessingNsCounter].setOrdered(totalProcessingNs / sessionMessages);
+        if (processingNs > maxProcessingNs)
+        {
+            maxProcessingNs = processingNs;
+            counters[maxProcessingNsCounter].setOrdered(processingNs);
+        }
+    }
+
+    /**
+     * Sets the counts of live RFQs, instruments and client sessions.
+     *
+     * @param liveRfqs    the number of live RFQs
+     * @param instruments the number of instruments
+     * @param sessions    the number of connected client sessions
+     */
+    public void serviceState(final int liveRfqs, final int instruments, final int sessions)
+    {
+        counters[liveRfqsCounter].setOrdered(liveRfqs);
+        counters[instrumentsCounter].setOrdered(instruments);
+        counters[sessionsCounter].setOrdered(sessions);
+    }
+
+    /**
+     * Sets the counts of records dropped on the way to agent threads.
+     *
+     * @param observerFeed the RFQ states dropped by the observer feed
+     * @param rfqHistory   the evicted RFQs dropped by the RFQ history
+     */
+    public void droppedRecords(final long observerFeed, final long rfqHistory)
+    {
+        counters[observerDroppedCounter].setOrdered(observerFeed);
+        counters[historyDroppedCounter].setOrdered(rfqHistory);
+    }
+
+    /**
+     * Returns the value of the counter of an RFQ transition.
+     *
+     * @param type the audit event type of the transition
+     * @return the number of transitions counted
+     */
+    public long transitionCount(final AuditEventType type)
+    {
+        return counters[transitionCounters[type.value()]].get();
+    }
+
+    /**
+     * Returns the value of the counter of a denied command.
+     *
+     * @param type   the audit event type of the denial
+     * @param result the result code sent in the confirm
+     * @return the number of denials counted
+     */
+    public long deniedCount(final AuditEventType type, final int result)
+    {
+        return counters[deniedCounters[type.value() - FIRST_DENIED_TYPE][result]].get();
+    }
+
+    /**
+     * Returns the value of the counter of live RFQs.
+     *
+     * @return the number of live RFQs last set
+     */
+    public long liveRfqCount()
+    {
+        return counters[liveRfqsCounter].get();
+    }
+
+    @Override
+    public void close()
+    {
+        CloseHelper.closeAll(counters);
+    }
+
+    private int define(final int typeId, final String label)
+    {
+        labels.add(label);
+        typeIds.add(typeId);
+        return labels.size() - 1;
+    }
+
+    //result codes are dense from 0 and index the names; a result without a name, such as SUCCESS, has no counter
+    private void defineDenied(final AuditEventType type, final String[] resultNames)
+    {
+        final int[] resultCounters = new int[resultNames.length];
+        for (int result = 0; result < resultNames.length; result++)
+        {
+            resultCounters[result] = null == resultNames[result] ? NO_COUNTER :
+                define(COMMANDS_DENIED_TYPE_ID, "Commands denied: " + type.name() + " " + resultNames[result]);
+        }
+        deniedCounters[type.value() - FIRST_DENIED_TYPE] = resultCounters;
+    }
+
+    private static String[] resultNames(final Enum<?>[] results)
+    {
+        //the last value of a generated enum is NULL_VAL, and the first SUCCESS
+        final String[] names = new String[results.length - 1];
+        for (int i = 1; i < names.length; i++)
+        {
+            names[i] = results[i].name();
+        }
+        return names;
+    }
+}
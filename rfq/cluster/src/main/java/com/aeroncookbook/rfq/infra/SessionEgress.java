@@ -0,0 +1,377 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.Aeron;
+import io.aeron.ChannelUri;
+import io.aeron.CommonContext;
+import io.aeron.Publication;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.driver.Configuration;
+import io.aeron.logbuffer.BufferClaim;
+import io.aeron.protocol.DataHeaderFlyweight;
+import org.agrona.CloseHelper;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableRingBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.SystemUtil;
+import org.agrona.collections.ArrayListUtil;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Non-blocking egress to client sessions.
+ * <p>
+ * A message is offered directly to the session when nothing is queued for it. If the session is back pressured, the
+ * message is appended to a bounded off-heap queue for that session instead of being retried, and the queue is drained
+ * from the clustered service's background work. The service thread therefore never idles on a slow client. Once a
+ * queue reaches its limit, the {@link SlowConsumerPolicy} decides whether to drop the new message, drop the oldest or
+ * disconnect. Once {@link #attach(Aeron)} has been called, each queue publishes its queued bytes and dropped messages
+ * as Aeron counters. The counters are a pool of {@link #COUNTER_SLOTS} slots allocated by {@code attach}; a session
+ * takes a free slot when it is first back pressured and returns it when it closes, and only counter values are set
+ * then, so a lagging client never makes the service thread wait on the media driver. Sessions back pressured while
+ * every slot is taken are queued as usual, without counters.
+ * <p>
+ * Egress is not replicated state, so queues are neither snapshotted nor required to be identical across nodes.
+ */
+public class SessionEgress implements AutoCloseable
+{
+    /**
+     * Default limit on the bytes queued for a single session
+     */
+    public static final int DEFAULT_MAX_QUEUED_BYTES = 1024 * 1024;
+    /**
+     * Number of back pressured sessions whose egress queues can be published as Aeron counters at the same time
+     */
+    public static final int COUNTER_SLOTS = 64;
+    private static final Logger LOGGER = LoggerFactory.getLogger(SessionEgress.class);
+    private static final int DRAIN_LIMIT = 64;
+    private static final long NO_CLAIM_LENGTH = -1;
+
+    private final SlowConsumerPolicy slowConsumerPolicy;
+    private final int maxQueuedBytes;
+    private final Long2ObjectHashMap<SessionEgressQueue> queueBySessionId = new Long2ObjectHashMap<>();
+    private final Long2LongHashMap maxClaimLengthBySessionId = new Long2LongHashMap(NO_CLAIM_LENGTH);
+    private final ArrayList<SessionEgressQueue> backloggedQueues = new ArrayList<>();
+    private final ExpandableRingBuffer.MessageConsumer queuedMessageOffer = this::offerQueuedMessage;
+    private final BufferClaim bufferClaim = new BufferClaim();
+    private final ArrayList<SessionEgressCounters> counterSlots = new ArrayList<>();
+    private final ArrayList<SessionEgressCounters> freeCounterSlots = new ArrayList<>();
+    private ClientSession drainingSession;
+
+    /**
+     * Constructor
+     *
+     * @param slowConsumerPolicy what to do when a session's queue is full
+     * @param maxQueuedBytes     limit on the bytes queued per session; must be a power of two
+     */
+    public SessionEgress(final SlowConsumerPolicy slowConsumerPolicy, final int maxQueuedBytes)
+    {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+        this.maxQueuedBytes = maxQueuedBytes;
+    }
+
+    /**
+     * Allocates the pool of counter slots through an Aeron client, so the queues created from now on are visible to
+     * AeronStat. Called once, as the service starts.
+     *
+     * @param aeron the Aeron client of the cluster
+     */
+    public void attach(final Aeron aeron)
+    {
+        for (int slot = 0; slot < COUNTER_SLOTS; slot++)
+        {
+            final SessionEgressCounters counters = new SessionEgressCounters(aeron, slot);
+            counterSlots.add(counters);
+            freeCounterSlots.add(counters);
+        }
+    }
+
+    /**
+     * Offers a message to a session without blocking, queueing it if the session is back pressured or already has
+     * messages queued, so that ordering is preserved.
+     *
+     * @param session the session to offer to
+     * @param buffer  the buffer to read data from
+     * @param offset  the offset to read from
+     * @param length  the length to read
+     */
+    public void offer(final ClientSession session, final DirectBuffer buffer, final int offset, final int length)
+    {
+        send(session, buffer, offset, length, false);
+    }
+
+    /**
+     * As {@link #offer(ClientSession, DirectBuffer, int, int)}, but a message that fits a single frame of the session
+     * publication, at the MTU of its response channel, is copied straight into a claimed frame rather than offered.
+     *
+     * @param session the session to send to
+     * @param buffer  the buffer to read data from
+     * @param offset  the offset to read from
+     * @param length  the length to read
+     */
+    public void claim(final ClientSession session, final DirectBuffer buffer, final int offset, final int length)
+    {
+        send(session, buffer, offset, length, length <= maxClaimLength(session));
+    }
+
+    /**
+     * Drains the queues of back pressured sessions, up to a limit per session
+     *
+     * @return the number of sessions for which queued messages were offered
+     */
+    public int doWork()
+    {
+        int workCount = 0;
+        for (int i = backloggedQueues.size() - 1; i >= 0; i--)
+        {
+            final SessionEgressQueue queue = backloggedQueues.get(i);
+            drainingSession = queue.getSession();
+            if (queue.drain(queuedMessageOffer, DRAIN_LIMIT) > 0)
+            {
+                workCount++;
+            }
+
+            if (queue.isEmpty())
+            {
+                ArrayListUtil.fastUnorderedRemove(backloggedQueues, i);
+            }
+        }
+        drainingSession = null;
+
+        return workCount;
+    }
+
+    /**
+     * Discards the queue of a closed session
+     *
+     * @param sessionId the id of the closed session
+     */
+    public void onSessionClosed(final long sessionId)
+    {
+        maxClaimLengthBySessionId.remove(sessionId);
+        final SessionEgressQueue queue = queueBySessionId.remove(sessionId);
+        if (queue != null)
+        {
+            backloggedQueues.remove(queue);
+            final SessionEgressCounters counters = queue.counters();
+            if (null != counters)
+            {
+                counters.release();
+                freeCounterSlots.add(counters);
+            }
+        }
+    }
+
+    /**
+     * Closes the pool of counter slots
+     */
+    @Override
+    public void close()
+    {
+        CloseHelper.closeAll(counterSlots);
+        counterSlots.clear();
+        freeCounterSlots.clear();
+    }
+
+    /**
+     * Gets the egress queue of a session, holding its queued bytes and drop counters
+     *
+     * @param sessionId the session id
+     * @return the queue, or null if the session has never been back pressured
+     */
+    public SessionEgressQueue getQueue(final long sessionId)
+    {
+        return queueBySessionId.get(sessionId);
+    }
+
+    /**
+     * Gets the queues of sessions that currently have messages waiting
+     *
+     * @return the backlogged queues
+     */
+    public List<SessionEgressQueue> getBackloggedQueues()
+    {
+        return backloggedQueues;
+    }
+
+    private void send(
+        final ClientSession session,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length,
+        final boolean tryClaim)
+    {
+        if (session.isClosing())
+        {
+            return;
+        }
+
+        final SessionEgressQueue queue = queueBySessionId.get(session.id());
+        if (queue == null || queue.isEmpty())
+        {
+            final long result = tryClaim ?
+                claimAndCopy(session, buffer, offset, length) : session.offer(buffer, offset, length);
+            if (result > 0L)
+            {
+                return;
+            }
+            else if (result != Publication.BACK_PRESSURED && result != Publication.ADMIN_ACTION)
+            {
+                LOGGER.warn("unexpected state on session offer: {}", result);
+                return;
+            }
+        }
+
+        enqueue(session, queue, buffer, offset, length);
+    }
+
+    //a claim longer than a single frame is rejected with an exception, so longer messages are offered, to be
+    //fragmented; the frame is that of the response channel's MTU, or of the media driver's when it sets none
+    private int maxClaimLength(final ClientSession session)
+    {
+        long maxClaimLength = maxClaimLengthBySessionId.get(session.id());
+        if (maxClaimLength == NO_CLAIM_LENGTH)
+        {
+            maxClaimLength = mtuLength(session.responseChannel()) -
+                DataHeaderFlyweight.HEADER_LENGTH - AeronCluster.SESSION_HEADER_LENGTH;
+            maxClaimLengthBySessionId.put(session.id(), maxClaimLength);
+        }
+        return (int)maxClaimLength;
+    }
+
+    private static int mtuLength(final String responseChannel)
+    {
+        final ChannelUri channelUri = null == responseChannel ? null : ChannelUri.parse(responseChannel);
+        final String mtu = null == channelUri ? null : channelUri.get(CommonContext.MTU_LENGTH_PARAM_NAME);
+        if (null != mtu)
+        {
+            return (int)SystemUtil.parseSize(CommonContext.MTU_LENGTH_PARAM_NAME, mtu);
+        }
+        return null != channelUri && channelUri.isIpc() ? Configuration.ipcMtuLength() : Configuration.mtuLength();
+    }
+
+    //the claimed frame starts with the session header, which the cluster fills in
+    private long claimAndCopy(
+        final ClientSession session,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
+    {
+        final long result = session.tryClaim(length, bufferClaim);
+        if (result > 0L)
+        {
+            bufferClaim.buffer().putBytes(
+                bufferClaim.offset() + AeronCluster.SESSION_HEADER_LENGTH, buffer, offset, length);
+            bufferClaim.commit();
+        }
+        return result;
+    }
+
+    private void enqueue(
+        final ClientSession session,
+        final SessionEgressQueue existingQueue,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
+    {
+        SessionEgressQueue queue = existingQueue;
+        if (queue == null)
+        {
+            queue = newQueue(session);
+            queueBySessionId.put(session.id(), queue);
+        }
+
+        final boolean wasEmpty = queue.isEmpty();
+        if (!queue.append(buffer, offset, length))
+        {
+            onQueueFull(queue, buffer, offset, length);
+        }
+
+        if (wasEmpty && !queue.isEmpty())
+        {
+            backloggedQueues.add(queue);
+        }
+    }
+
+    private void onQueueFull(
+        final SessionEgressQueue queue,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
+    {
+        switch (slowConsumerPolicy)
+        {
+            case DROP -> queue.drop();
+            case DROP_OLDEST ->
+            {
+                boolean appended = false;
+                while (!appended && queue.dropOldest())
+                {
+                    appended = queue.append(buffer, offset, length);
+                }
+
+                if (!appended)
+                {
+                    queue.drop();
+                }
+            }
+            case DISCONNECT ->
+            {
+                LOGGER.warn("egress queue full for session {} with {} bytes queued. Closing client session.",
+                    queue.getSession().id(), queue.getQueuedBytes());
+                queue.drop();
+                queue.clear();
+                queue.getSession().close();
+            }
+            default -> throw new IllegalStateException("Unknown slow consumer policy: " + slowConsumerPolicy);
+        }
+    }
+
+    private SessionEgressQueue newQueue(final ClientSession session)
+    {
+        SessionEgressCounters counters = null;
+        if (!freeCounterSlots.isEmpty())
+        {
+            counters = freeCounterSlots.remove(freeCounterSlots.size() - 1);
+            counters.assign(session.id());
+        }
+        return new SessionEgressQueue(session, maxQueuedBytes, counters);
+    }
+
+    private boolean offerQueuedMessage(
+        final MutableDirectBuffer buffer,
+        final int offset,
+        final int length,
+        final int headOffset)
+    {
+        if (drainingSession.isClosing())
+        {
+            return true;
+        }
+
+        final long result = drainingSession.offer(buffer, offset, length);
+        //still back pressured, so leave this message and any after it queued until the next duty cycle
+        return result > 0L || (result != Publication.BACK_PRESSURED && result != Publication.ADMIN_ACTION);
+    }
+}
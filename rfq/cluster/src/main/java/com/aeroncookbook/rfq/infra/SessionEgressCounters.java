@@ -0,0 +1,74 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.Aeron;
+import org.agrona.CloseHelper;
+import org.agrona.concurrent.status.AtomicCounter;
+
+/**
+ * One slot of the pool of Aeron counters publishing the egress queue of a back pressured session: the id of the
+ * session currently holding the slot, its queued bytes and its dropped messages. The counters are allocated once,
+ * when the service attaches to Aeron, and a slot is handed from session to session by setting its values only, so the
+ * service thread never waits on the media driver to allocate or free a counter.
+ */
+final class SessionEgressCounters implements AutoCloseable
+{
+    private final AtomicCounter sessionId;
+    private final AtomicCounter queuedBytes;
+    private final AtomicCounter droppedMessages;
+
+    SessionEgressCounters(final Aeron aeron, final int slot)
+    {
+        final String slotLabel = "slot=" + slot;
+        sessionId = aeron.addCounter(ServiceCounters.SESSION_EGRESS_TYPE_ID, "Egress session id: " + slotLabel);
+        queuedBytes = aeron.addCounter(ServiceCounters.SESSION_EGRESS_TYPE_ID, "Egress queued bytes: " + slotLabel);
+        droppedMessages =
+            aeron.addCounter(ServiceCounters.SESSION_EGRESS_TYPE_ID, "Egress dropped messages: " + slotLabel);
+    }
+
+    void assign(final long sessionId)
+    {
+        queuedBytes.setOrdered(0);
+        droppedMessages.setOrdered(0);
+        this.sessionId.setOrdered(sessionId);
+    }
+
+    void release()
+    {
+        sessionId.setOrdered(0);
+        queuedBytes.setOrdered(0);
+        droppedMessages.setOrdered(0);
+    }
+
+    void queuedBytes(final long queuedBytes)
+    {
+        this.queuedBytes.setOrdered(queuedBytes);
+    }
+
+    void droppedMessages(final long droppedMessages)
+    {
+        this.droppedMessages.setOrdered(droppedMessages);
+    }
+
+    @Override
+    public void close()
+    {
+        CloseHelper.closeAll(sessionId, queuedBytes, droppedMessages);
+    }
+}
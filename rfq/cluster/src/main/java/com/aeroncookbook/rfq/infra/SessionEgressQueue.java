@@ -0,0 +1,139 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.cluster.service.ClientSession;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableRingBuffer;
+
+/**
+ * Bounded off-heap queue of egress messages for a single client session that is back pressured, along with the
+ * counters describing how far behind the session is. Once the service has started, and while a slot of the pool of
+ * egress counters is free, the queued bytes and dropped messages are also published as Aeron counters of type
+ * {@link ServiceCounters#SESSION_EGRESS_TYPE_ID}.
+ */
+public class SessionEgressQueue
+{
+    private final ClientSession session;
+    private final ExpandableRingBuffer messages;
+    private final SessionEgressCounters counters;
+    private long droppedMessages;
+
+    SessionEgressQueue(
+        final ClientSession session,
+        final int maxQueuedBytes,
+        final SessionEgressCounters counters)
+    {
+        this.session = session;
+        this.messages = new ExpandableRingBuffer(0, maxQueuedBytes, true);
+        this.counters = counters;
+    }
+
+    /**
+     * Gets the session this queue belongs to
+     *
+     * @return the client session
+     */
+    public ClientSession getSession()
+    {
+        return session;
+    }
+
+    /**
+     * Gets the number of bytes currently queued, including ring buffer framing
+     *
+     * @return the queued bytes
+     */
+    public int getQueuedBytes()
+    {
+        return messages.size();
+    }
+
+    /**
+     * Gets the number of messages dropped for this session by the slow consumer policy
+     *
+     * @return the dropped message count
+     */
+    public long getDroppedMessages()
+    {
+        return droppedMessages;
+    }
+
+    SessionEgressCounters counters()
+    {
+        return counters;
+    }
+
+    boolean isEmpty()
+    {
+        return messages.isEmpty();
+    }
+
+    boolean append(final DirectBuffer buffer, final int offset, final int length)
+    {
+        final boolean appended = messages.append(buffer, offset, length);
+        if (appended)
+        {
+            queuedBytesChanged();
+        }
+        return appended;
+    }
+
+    boolean dropOldest()
+    {
+        if (messages.isEmpty())
+        {
+            return false;
+        }
+        messages.consume((buffer, offset, length, headOffset) -> true, 1);
+        queuedBytesChanged();
+        drop();
+        return true;
+    }
+
+    void drop()
+    {
+        droppedMessages++;
+        if (null != counters)
+        {
+            counters.droppedMessages(droppedMessages);
+        }
+    }
+
+    void clear()
+    {
+        while (!messages.isEmpty())
+        {
+            dropOldest();
+        }
+    }
+
+    int drain(final ExpandableRingBuffer.MessageConsumer consumer, final int messageLimit)
+    {
+        final int messageCount = messages.consume(consumer, messageLimit);
+        queuedBytesChanged();
+        return messageCount;
+    }
+
+    private void queuedBytesChanged()
+    {
+        if (null != counters)
+        {
+            counters.queuedBytes(messages.size());
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.InterestType;
+import org.agrona.collections.Int2ObjectHashMap;
+import org.agrona.collections.IntHashSet;
+import org.agrona.collections.Long2ObjectHashMap;
+import org.agrona.collections.LongHashSet;
+import org.agrona.collections.Object2ObjectHashMap;
+import org.agrona.collections.ObjectHashSet;
+
+import java.util.Map;
+
+/**
+ * Index of which client sessions are interested in which RFQ events.
+ * <p>
+ * A session starts out unfiltered and receives every event. Once it subscribes to a CUSIP or a user id it becomes
+ * filtered, and receives only events for RFQs on a CUSIP it subscribed to, or in which a subscribed user is the
+ * requester or responder. A client following its own RFQs subscribes to its own user id. Subscribing to
+ * {@link InterestType#ALL} makes a session unfiltered again, and unsubscribing from it leaves the session filtered
+ * with whatever specific interests remain, if any.
+ * <p>
+ * The index is keyed by CUSIP and by user id, so finding the recipients of an event costs the number of interested
+ * sessions rather than the number of connected sessions.
+ */
+public class SessionInterests
+{
+    private final LongHashSet unfilteredSessions = new LongHashSet();
+    private final Long2ObjectHashMap<Interest> interestBySession = new Long2ObjectHashMap<>();
+    private final Object2ObjectHashMap<String, LongHashSet> sessionsByCusip = new Object2ObjectHashMap<>();
+    private final Int2ObjectHashMap<LongHashSet> sessionsByUser = new Int2ObjectHashMap<>();
+
+    /**
+     * Visitor for the filtered sessions and their interests, used when taking a snapshot
+     */
+    public interface InterestConsumer
+    {
+        /**
+         * Called once per filtered session with {@link InterestType#ALL}, marking it as filtered, then once per
+         * specific interest of that session
+         *
+         * @param sessionId the session id
+         * @param type      the interest type
+         * @param cusip     the cusip, for a CUSIP interest
+         * @param userId    the user id, for a USER interest
+         */
+        void accept(long sessionId, InterestType type, String cusip, int userId);
+    }
+
+    /**
+     * Registers a newly opened session. Sessions restored with interests from a snapshot keep them.
+     *
+     * @param sessionId the session id
+     */
+    public void addSession(final long sessionId)
+    {
+        if (!interestBySession.containsKey(sessionId))
+        {
+            unfilteredSessions.add(sessionId);
+        }
+    }
+
+    /**
+     * Removes a closed session and all of its interests.
+     *
+     * @param sessionId the session id
+     */
+    public void removeSession(final long sessionId)
+    {
+        unfilteredSessions.remove(sessionId);
+        final Interest interest = interestBySession.remove(sessionId);
+        if (interest != null)
+        {
+            interest.clear(sessionId);
+        }
+    }
+
+    /**
+     * Adds an interest to a session.
+     *
+     * @param sessionId the session id
+     * @param type      the interest type
+     * @param cusip     the cusip, used for a CUSIP interest
+     * @param userId    the user id, used for a USER interest
+     */
+    public void subscribe(final long sessionId, final InterestType type, final String cusip, final int userId)
+    {
+        switch (type)
+        {
+            case ALL ->
+            {
+                final Interest interest = interestBySession.remove(sessionId);
+                if (interest != null)
+                {
+                    interest.clear(sessionId);
+                }
+                unfilteredSessions.add(sessionId);
+            }
+            case CUSIP ->
+            {
+                if (filtered(sessionId).cusips.add(cusip))
+                {
+                    sessionsByCusip.computeIfAbsent(cusip, c -> new LongHashSet()).add(sessionId);
+                }
+            }
+            case USER ->
+            {
+                if (filtered(sessionId).userIds.add(userId))
+                {
+                    sessionsByUser.computeIfAbsent(userId, u -> new LongHashSet()).add(sessionId);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown interest type: " + type);
+        }
+    }
+
+    /**
+     * Removes an interest from a session.
+     *
+     * @param sessionId the session id
+     * @param type      the interest type
+     * @param cusip     the cusip, used for a CUSIP interest
+     * @param userId    the user id, used for a USER interest
+     */
+    public void unsubscribe(final long sessionId, final InterestType type, final String cusip, final int userId)
+    {
+        switch (type)
+        {
+            case ALL -> filtered(sessionId);
+            case CUSIP ->
+            {
+                final Interest interest = interestBySession.get(sessionId);
+                if (interest != null && interest.cusips.remove(cusip))
+                {
+                    removeFromIndex(sessionsByCusip, cusip, sessionId);
+                }
+            }
+            case USER ->
+            {
+                final Interest interest = interestBySession.get(sessionId);
+                if (interest != null && interest.userIds.remove(userId))
+                {
+                    removeFromIndex(sessionsByUser, userId, sessionId);
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown interest type: " + type);
+        }
+    }
+
+    /**
+     * Collects the sessions interested in an RFQ event, without duplicates.
+     *
+     * @param cusip           the cusip of the RFQ
+     * @param requesterUserId the requester of the RFQ
+     * @param responderUserId the responder of the RFQ, if any
+     * @param recipients      the set to fill; cleared first
+     */
+    public void collectRecipients(
+        final String cusip,
+        final int requesterUserId,
+        final int responderUserId,
+        final LongHashSet recipients)
+    {
+        recipients.clear();
+        recipients.addAll(unfilteredSessions);
+        addAllIfPresent(sessionsByCusip.get(cusip), recipients);
+        addAllIfPresent(sessionsByUser.get(requesterUserId), recipients);
+        addAllIfPresent(sessionsByUser.get(responderUserId), recipients);
+    }
+
+    /**
+     * Visits every filtered session and its interests.
+     *
+     * @param consumer the consumer to call
+     */
+    public void forEachFilteredSession(final InterestConsumer consumer)
+    {
+        interestBySession.forEach((sessionId, interest) ->
+        {
+            consumer.accept(sessionId, InterestType.ALL, "", 0);
+            interest.cusips.forEach(cusip -> consumer.accept(sessionId, InterestType.CUSIP, cusip, 0));
+            interest.userIds.forEachInt(userId -> consumer.accept(sessionId, InterestType.USER, "", userId));
+        });
+    }
+
+    /**
+     * Restores a session interest as read from a snapshot.
+     *
+     * @param sessionId the session id
+     * @param type      the interest type, where {@link InterestType#ALL} marks the session as filtered
+     * @param cusip     the cusip, used for a CUSIP interest
+     * @param userId    the user id, used for a USER interest
+     */
+    public void restoreInterest(final long sessionId, final InterestType type, final String cusip, final int userId)
+    {
+        if (type == InterestType.ALL)
+        {
+            filtered(sessionId);
+        }
+        else
+        {
+            subscribe(sessionId, type, cusip, userId);
+        }
+    }
+
+    private Interest filtered(final long sessionId)
+    {
+        unfilteredSessions.remove(sessionId);
+        Interest interest = interestBySession.get(sessionId);
+        if (interest == null)
+        {
+            interest = new Interest();
+            interestBySession.put(sessionId, interest);
+        }
+        return interest;
+    }
+
+    private static void addAllIfPresent(final LongHashSet sessions, final LongHashSet recipients)
+    {
+        if (sessions != null)
+        {
+            recipients.addAll(sessions);
+        }
+    }
+
+    private static <K> void removeFromIndex(
+        final Map<K, LongHashSet> index,
+        final K key,
+        final long sessionId)
+    {
+        final LongHashSet sessions = index.get(key);
+        if (sessions != null)
+        {
+            sessions.remove(sessionId);
+            if (sessions.isEmpty())
+            {
+                index.remove(key);
+            }
+        }
+    }
+
+    private final class Interest
+    {
+        private final ObjectHashSet<String> cusips = new ObjectHashSet<>();
+        private final IntHashSet userIds = new IntHashSet();
+
+        private void clear(final long sessionId)
+        {
+            cusips.forEach(cusip -> removeFromIndex(sessionsByCusip, cusip, sessionId));
+            userIds.forEachInt(userId -> removeFromIndex(sessionsByUser, userId, sessionId));
+            cusips.clear();
+            userIds.clear();
+        }
+    }
+}
@@ -44,5 +44,22 @@ public interface SessionMessageContext
      * @param length the length to read
      */
     void broadcast(DirectBuffer buffer, int offset, int length);
+
+    /**
+     * Broadcast an RFQ event to the sessions interested in it only
+     * @param cusip the cusip of the RFQ
+     * @param requesterUserId the requester of the RFQ
+     * @param responderUserId the responder of the RFQ, if any
+     * @param buffer the buffer to read data from
+     * @param offset the offset to read from
+     * @param length the length to read
+     */
+    void broadcastToInterested(
+        String cusip,
+        int requesterUserId,
+        int responderUserId,
+        DirectBuffer buffer,
+        int offset,
+        int length);
 }
 
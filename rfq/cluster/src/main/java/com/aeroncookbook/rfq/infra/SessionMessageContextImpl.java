@@ -16,34 +16,43 @@
 
 package com.aeroncookbook.rfq.infra;
 
-import io.aeron.Publication;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandDecoder;
 import io.aeron.cluster.service.ClientSession;
 import org.agrona.DirectBuffer;
-import org.agrona.concurrent.IdleStrategy;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.collections.LongHashSet;
 
-import java.util.Objects;
+import java.util.List;
 
 /**
  * The context for a single cluster session message
  */
 public class SessionMessageContextImpl implements SessionMessageContext
 {
-    private static final Logger LOGGER = LoggerFactory.getLogger(SessionMessageContextImpl.class);
-    private static final long RETRY_COUNT = 3;
-    private IdleStrategy idleStrategy;
     private final ClientSessions clientSessions;
+    private final SessionEgress sessionEgress;
+    private final LongHashSet recipients = new LongHashSet();
+    private final ExpandableDirectByteBuffer encodingBuffer = new ExpandableDirectByteBuffer(1024);
+    private final EgressBatch egressBatch;
+    private final LatencyRecorder latencyRecorder;
+    private final byte[] legacyCorrelation = new byte[CreateRfqCommandDecoder.correlationLength()];
     private long timestamp;
     private ClientSession session;
 
     /**
      * Constructor
+     *
      * @param clientSessions the client session store
+     * @param config         the service options giving the slow consumer policy, the bytes each session may have
+     *                       queued, the egress mode and the latency recorder
      */
-    public SessionMessageContextImpl(final ClientSessions clientSessions)
+    public SessionMessageContextImpl(final ClientSessions clientSessions, final ServiceConfig config)
     {
         this.clientSessions = clientSessions;
+        this.sessionEgress = new SessionEgress(config.slowConsumerPolicy(), config.maxQueuedBytes());
+        this.egressBatch = config.egressMode() == EgressMode.BATCHED ? new EgressBatch() : null;
+        this.latencyRecorder = config.latencyRecorder();
     }
 
     /**
@@ -58,6 +67,28 @@ public class SessionMessageContextImpl implements SessionMessageContext
         this.session = session;
     }
 
+    /**
+     * Returns the scratch buffer holding the raw uuidString correlation of the current session message. Version 1
+     * clients correlate on this string, so it is copied in as bytes on ingress and echoed back as bytes on reply,
+     * without ever being decoded into a String.
+     *
+     * @return the legacy correlation bytes of the current session message
+     */
+    public byte[] getLegacyCorrelation()
+    {
+        return legacyCorrelation;
+    }
+
+    /**
+     * Gets the id of the session that sent the current session message
+     *
+     * @return the session id
+     */
+    public long getSessionId()
+    {
+        return session.id();
+    }
+
     /**
      * Sets the cluster timestamp for the current context
      * @param timestamp
@@ -79,43 +110,95 @@ public class SessionMessageContextImpl implements SessionMessageContext
     }
 
     /**
-     * Sets the idle strategy to be used during offers
-     * @param idleStrategy the idle strategy to be used
+     * Replies to the sender of the current session message without blocking
+     * @param buffer the buffer to read data from
+     * @param offset the offset to read from
+     * @param length the length to read
      */
-    public void setIdleStrategy(final IdleStrategy idleStrategy)
+    @Override
+    public void reply(final DirectBuffer buffer, final int offset, final int length)
     {
-        this.idleStrategy = idleStrategy;
+        if (null != egressBatch)
+        {
+            egressBatch.addMessage(buffer, offset, length);
+            egressBatch.addRecipient(session);
+        }
+        else
+        {
+            offerToSession(session, buffer, offset, length);
+        }
     }
 
     /**
-     * Replies to the sender of the current session message, with retry. Disconnects a client that failed to offer
+     * Broadcasts a message to all connected sessions without blocking
      * @param buffer the buffer to read data from
      * @param offset the offset to read from
      * @param length the length to read
      */
     @Override
-    public void reply(final DirectBuffer buffer, final int offset, final int length)
+    public void broadcast(final DirectBuffer buffer, final int offset, final int length)
     {
-        offerToSession(session, buffer, offset, length);
+        final List<ClientSession> allSessions = clientSessions.getAllSessions();
+        if (null != egressBatch)
+        {
+            egressBatch.addMessage(buffer, offset, length);
+            for (int i = 0, size = allSessions.size(); i < size; i++)
+            {
+                egressBatch.addRecipient(allSessions.get(i));
+            }
+        }
+        else
+        {
+            for (int i = 0, size = allSessions.size(); i < size; i++)
+            {
+                offerToSession(allSessions.get(i), buffer, offset, length);
+            }
+        }
     }
 
     /**
-     * Broadcasts a message to all connected sessions. If the offer fails to any session after a number of retries,
-     * then that session is disconnected.
+     * Broadcasts an RFQ event to the sessions interested in its cusip, requester or responder, and to sessions that
+     * have not filtered their interests. Each interested session is offered the event once.
+     * @param cusip the cusip of the RFQ
+     * @param requesterUserId the requester of the RFQ
+     * @param responderUserId the responder of the RFQ, if any
      * @param buffer the buffer to read data from
      * @param offset the offset to read from
      * @param length the length to read
      */
     @Override
-    public void broadcast(final DirectBuffer buffer, final int offset, final int length)
+    public void broadcastToInterested(
+        final String cusip,
+        final int requesterUserId,
+        final int responderUserId,
+        final DirectBuffer buffer,
+        final int offset,
+        final int length)
     {
-        clientSessions.getAllSessions().forEach(clientSession -> offerToSession(clientSession, buffer, offset, length));
-    }
+        clientSessions.getSessionInterests().collectRecipients(cusip, requesterUserId, responderUserId, recipients);
+        final LongHashSet.LongIterator iterator = recipients.iterator();
+        if (null != egressBatch)
+        {
+            egressBatch.addMessage(buffer, offset, length);
+            while (iterator.hasNext())
+            {
+                final ClientSession clientSession = clientSessions.getById(iterator.nextValue());
+                if (clientSession != null)
+                {
+                    egressBatch.addRecipient(clientSession);
+                }
+            }
+            return;
+        }
 
+        while (iterator.hasNext())
+        {
+            offerToSessionById(iterator.nextValue(), buffer, offset, length);
+        }
+    }
 
     /**
-     * Sends a message to a specific session, with retry.
-     * Disconnects a client that failed to offer after RETRY_COUNT retries
+     * Sends a message to a specific session without blocking
      * @param sessionId the session to send to
      * @param buffer the buffer to read data from
      * @param offset the offset to read from
@@ -124,50 +207,80 @@ public class SessionMessageContextImpl implements SessionMessageContext
     public void offerToSessionById(final long sessionId, final DirectBuffer buffer, final int offset, final int length)
     {
         final ClientSession clientSession = clientSessions.getById(sessionId);
-        if (clientSession != null)
+        if (clientSession == null)
+        {
+            return;
+        }
+
+        if (null != egressBatch)
+        {
+            egressBatch.addMessage(buffer, offset, length);
+            egressBatch.addRecipient(clientSession);
+        }
+        else
         {
             offerToSession(clientSession, buffer, offset, length);
         }
     }
 
     /**
-     * Offers a message to a session, with retry. Disconnects a client that failed to offer after RETRY_COUNT retries
-     * @param targetSession the session to offer to
-     * @param buffer the buffer to read data from
-     * @param offset the offset to read from
-     * @param length the length to read
+     * Gets the buffer in which to encode the next egress message. When batching, this is the batch buffer, so that
+     * the message is encoded once in place rather than copied into the batch.
+     *
+     * @return the buffer to encode into
+     */
+    public MutableDirectBuffer egressBuffer()
+    {
+        return null != egressBatch ? egressBatch.buffer() : encodingBuffer;
+    }
+
+    /**
+     * Gets the offset in {@link #egressBuffer()} at which to encode the next egress message
+     *
+     * @return the offset to encode at
      */
+    public int egressOffset()
+    {
+        return null != egressBatch ? egressBatch.position() : 0;
+    }
+
+    /**
+     * Sends the egress messages batched while handling the current log message. Does nothing when messages are
+     * offered as they are encoded.
+     *
+     * @return the number of messages sent
+     */
+    public int flushEgress()
+    {
+        if (null == egressBatch || egressBatch.isEmpty())
+        {
+            return 0;
+        }
+
+        final long startNs = System.nanoTime();
+        final int messageCount = egressBatch.flush(sessionEgress);
+        latencyRecorder.sessionOffer(System.nanoTime() - startNs);
+        return messageCount;
+    }
+
+    /**
+     * Gets the non-blocking session egress used for all replies and broadcasts
+     *
+     * @return the session egress
+     */
+    public SessionEgress getSessionEgress()
+    {
+        return sessionEgress;
+    }
+
     private void offerToSession(
-        final ClientSession targetSession,
+        final ClientSession clientSession,
         final DirectBuffer buffer,
         final int offset,
         final int length)
     {
-        Objects.requireNonNull(idleStrategy, "idleStrategy must be set");
-        int retries = 0;
-        do
-        {
-            final long result = targetSession.offer(buffer, offset, length);
-            if (result > 0L)
-            {
-                return;
-            }
-            else if (result == Publication.ADMIN_ACTION || result == Publication.BACK_PRESSURED)
-            {
-                LOGGER.warn("backpressure or admin action on session offer");
-            }
-            else if (result == Publication.NOT_CONNECTED || result == Publication.MAX_POSITION_EXCEEDED)
-            {
-                LOGGER.error("unexpected state on session offer: {}", result);
-                return;
-            }
-
-            idleStrategy.idle();
-            retries += 1;
-        }
-        while (retries < RETRY_COUNT);
-
-        LOGGER.error("failed to offer snapshot within {} retries. Closing client session.", RETRY_COUNT);
-        session.close();
+        final long startNs = System.nanoTime();
+        sessionEgress.offer(clientSession, buffer, offset, length);
+        latencyRecorder.sessionOffer(System.nanoTime() - startNs);
     }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import org.agrona.collections.Int2IntHashMap;
+import org.agrona.collections.Long2LongHashMap;
+import org.agrona.collections.LongHashSet;
+
+/**
+ * Binding of client sessions to the users they trade as, along with the cancel-on-disconnect policy of each binding.
+ * <p>
+ * Several sessions may be bound to one user, such as a market maker quoting from more than one desk. A user's open
+ * RFQs are due to be closed only when the last of its cancel-on-disconnect sessions closes, so a user with another
+ * such session still connected keeps its RFQs.
+ */
+public class SessionUsers
+{
+    /**
+     * Returned when a session is not bound, or its close does not require a user's RFQs to be closed
+     */
+    public static final int NO_USER = Integer.MIN_VALUE;
+
+    private final Long2LongHashMap userBySession = new Long2LongHashMap(NO_USER);
+    private final LongHashSet cancelOnDisconnectSessions = new LongHashSet();
+    private final Int2IntHashMap cancelOnDisconnectCountByUser = new Int2IntHashMap(0);
+
+    /**
+     * Visitor for the session bindings, used when taking a snapshot
+     */
+    public interface BindingConsumer
+    {
+        /**
+         * Called once per bound session
+         *
+         * @param sessionId          the session id
+         * @param userId             the user the session is bound to
+         * @param cancelOnDisconnect whether the user's RFQs are closed when the session closes
+         */
+        void accept(long sessionId, int userId, boolean cancelOnDisconnect);
+    }
+
+    /**
+     * Binds a session to a user, replacing any earlier binding of the session.
+     *
+     * @param sessionId          the session id
+     * @param userId             the user the session trades as
+     * @param cancelOnDisconnect whether the user's RFQs are closed when the session closes
+     */
+    public void bind(final long sessionId, final int userId, final boolean cancelOnDisconnect)
+    {
+        unbind(sessionId);
+        userBySession.put(sessionId, userId);
+        if (cancelOnDisconnect)
+        {
+            cancelOnDisconnectSessions.add(sessionId);
+            cancelOnDisconnectCountByUser.put(userId, cancelOnDisconnectCountByUser.get(userId) + 1);
+        }
+    }
+
+    /**
+     * Removes the binding of a closed session.
+     *
+     * @param sessionId the session id
+     * @return the user whose open RFQs are now to be closed, or {@link #NO_USER} if there are none to close
+     */
+    public int removeSession(final long sessionId)
+    {
+        final int userId = (int)userBySession.get(sessionId);
+        if (userId == NO_USER || !cancelOnDisconnectSessions.contains(sessionId))
+        {
+            unbind(sessionId);
+            return NO_USER;
+        }
+
+        unbind(sessionId);
+        return cancelOnDisconnectCountByUser.get(userId) == 0 ? userId : NO_USER;
+    }
+
+    /**
+     * Returns the user a session is bound to.
+     *
+     * @param sessionId the session id
+     * @return the user, or {@link #NO_USER} if the session is not bound
+     */
+    public int userOf(final long sessionId)
+    {
+        return (int)userBySession.get(sessionId);
+    }
+
+    /**
+     * Visits every session binding.
+     *
+     * @param consumer the consumer to call
+     */
+    public void forEachBinding(final BindingConsumer consumer)
+    {
+        userBySession.forEachLong((sessionId, userId) ->
+            consumer.accept(sessionId, (int)userId, cancelOnDisconnectSessions.contains(sessionId)));
+    }
+
+    private void unbind(final long sessionId)
+    {
+        final int userId = (int)userBySession.remove(sessionId);
+        if (userId != NO_USER && cancelOnDisconnectSessions.remove(sessionId))
+        {
+            final int remaining = cancelOnDisconnectCountByUser.get(userId) - 1;
+            if (remaining == 0)
+            {
+                cancelOnDisconnectCountByUser.remove(userId);
+            }
+            else
+            {
+                cancelOnDisconnectCountByUser.put(userId, remaining);
+            }
+        }
+    }
+}
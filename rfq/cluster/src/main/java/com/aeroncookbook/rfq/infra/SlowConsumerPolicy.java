@@ -0,0 +1,38 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+/**
+ * What to do when a client session falls so far behind that its egress queue is full.
+ */
+public enum SlowConsumerPolicy
+{
+    /**
+     * Drop the new message and keep the messages already queued.
+     */
+    DROP,
+    /**
+     * Drop the oldest queued messages to make room for the new message, so the client catches up on the most recent
+     * events. Messages are dropped whatever their kind, so a command confirm sent only to this client can be lost
+     * along with broadcasts; a client using this policy must be prepared to retry a command it has no confirm for.
+     */
+    DROP_OLDEST,
+    /**
+     * Close the client session and discard its queue.
+     */
+    DISCONNECT
+}
@@ -16,44 +16,176 @@
 
 package com.aeroncookbook.rfq.infra;
 
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.CommandResultRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CommandResultRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.InstrumentRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.InstrumentRecordEncoder;
 import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
 import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqExpiryRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqExpiryRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqSequenceRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqSequenceRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqTombstoneRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqTombstoneRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SessionInterestRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SessionInterestRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SessionUserRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SessionUserRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SnapshotChainRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SnapshotChainRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SnapshotHeaderRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SnapshotHeaderRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.SnapshotMark;
+import com.aeroncookbook.cluster.rfq.sbe.SnapshotMarkerDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.SnapshotMarkerEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.TimerRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.TimerRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.TimerSequenceRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.TimerSequenceRecordEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.UserRecordEncoder;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import com.aeroncookbook.rfq.domain.instrument.Instrument;
+import com.aeroncookbook.rfq.domain.instrument.InstrumentAddType;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
+import com.aeroncookbook.rfq.domain.rfq.DirtyRfqs;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.RfqCommandType;
+import com.aeroncookbook.rfq.domain.rfq.RfqExpiryEngine;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.users.Users;
 import io.aeron.ExclusivePublication;
 import io.aeron.Image;
 import io.aeron.Publication;
-import io.aeron.logbuffer.FragmentHandler;
+import io.aeron.cluster.client.ClusterException;
+import io.aeron.logbuffer.ControlledFragmentHandler;
 import io.aeron.logbuffer.Header;
 import org.agrona.DirectBuffer;
 import org.agrona.ExpandableDirectByteBuffer;
+import org.agrona.collections.IntHashSet;
 import org.agrona.concurrent.IdleStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Manages the loading and writing of domain data snapshots within the cluster
+ * Manages the loading and writing of domain data snapshots within the cluster.
+ * <p>
+ * A snapshot is written as a sequence of small SBE records, one per offer, bracketed by a BEGIN and END
+ * {@link SnapshotMark}. Writing record by record keeps every offer within a single frame regardless of the size
+ * of the book, and means restart time is bounded by the size of the snapshot rather than the length of the log.
+ * <p>
+ * The BEGIN marker is followed by a header carrying the record counts, from which the domain model is sized before
+ * any record is loaded and load progress is reported. Records are decoded straight into the domain model as they are
+ * polled, and polling stops at the END marker rather than waiting for the end of the stream.
+ * <p>
+ * Once delta snapshots are enabled, only every n-th snapshot is full. The others hold the RFQs created or changed
+ * since the previous snapshot, plus a tombstone for each RFQ evicted since, and name the recording of the previous
+ * snapshot as their base; everything other than RFQs is small and is always written in full. A delta is loaded
+ * newest first: its RFQs are restored, then each base in the chain is replayed down to the full snapshot, restoring
+ * only the RFQs not already restored or tombstoned by a newer snapshot. A delta is only written when the latest
+ * snapshot in the recording log is the one the dirty RFQs were tracked from, which after a restart is the snapshot
+ * loaded; otherwise the snapshot is full. Every base recording back to the last full snapshot must therefore be kept
+ * in the archive of each node that may load the delta.
  */
-public class SnapshotManager implements FragmentHandler
+public class SnapshotManager implements ControlledFragmentHandler
 {
     private static final Logger LOGGER = LoggerFactory.getLogger(SnapshotManager.class);
-    private static final int RETRY_COUNT = 3;
+    private static final int FRAGMENT_LIMIT = 4096;
+    private static final int PROGRESS_STEPS = 10;
+    private static final long PROGRESS_MIN_RECORDS = 100_000;
+    private static final long NULL_POSITION = -1;
     private final SessionMessageContext context;
+    private final Instruments instruments;
+    private final Users users;
+    private final Rfqs rfqs;
+    private final TimerManager timerManager;
+    private final SessionInterests sessionInterests;
+    private final SessionUsers sessionUsers;
     private final ExpandableDirectByteBuffer buffer = new ExpandableDirectByteBuffer(1024);
     private final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
     private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final SnapshotMarkerEncoder snapshotMarkerEncoder = new SnapshotMarkerEncoder();
+    private final SnapshotMarkerDecoder snapshotMarkerDecoder = new SnapshotMarkerDecoder();
+    private final SnapshotHeaderRecordEncoder snapshotHeaderRecordEncoder = new SnapshotHeaderRecordEncoder();
+    private final SnapshotHeaderRecordDecoder snapshotHeaderRecordDecoder = new SnapshotHeaderRecordDecoder();
+    private final SnapshotChainRecordEncoder snapshotChainRecordEncoder = new SnapshotChainRecordEncoder();
+    private final SnapshotChainRecordDecoder snapshotChainRecordDecoder = new SnapshotChainRecordDecoder();
+    private final RfqTombstoneRecordEncoder rfqTombstoneRecordEncoder = new RfqTombstoneRecordEncoder();
+    private final RfqTombstoneRecordDecoder rfqTombstoneRecordDecoder = new RfqTombstoneRecordDecoder();
+    private final InstrumentRecordEncoder instrumentRecordEncoder = new InstrumentRecordEncoder();
+    private final InstrumentRecordDecoder instrumentRecordDecoder = new InstrumentRecordDecoder();
+    private final RfqRecordEncoder rfqRecordEncoder = new RfqRecordEncoder();
+    private final RfqRecordDecoder rfqRecordDecoder = new RfqRecordDecoder();
+    private final RfqSequenceRecordEncoder rfqSequenceRecordEncoder = new RfqSequenceRecordEncoder();
+    private final RfqSequenceRecordDecoder rfqSequenceRecordDecoder = new RfqSequenceRecordDecoder();
+    private final RfqExpiryRecordEncoder rfqExpiryRecordEncoder = new RfqExpiryRecordEncoder();
+    private final RfqExpiryRecordDecoder rfqExpiryRecordDecoder = new RfqExpiryRecordDecoder();
+    private final TimerRecordEncoder timerRecordEncoder = new TimerRecordEncoder();
+    private final TimerRecordDecoder timerRecordDecoder = new TimerRecordDecoder();
+    private final TimerSequenceRecordEncoder timerSequenceRecordEncoder = new TimerSequenceRecordEncoder();
+    private final TimerSequenceRecordDecoder timerSequenceRecordDecoder = new TimerSequenceRecordDecoder();
+    private final SessionInterestRecordEncoder sessionInterestRecordEncoder = new SessionInterestRecordEncoder();
+    private final SessionInterestRecordDecoder sessionInterestRecordDecoder = new SessionInterestRecordDecoder();
+    private final SessionUserRecordEncoder sessionUserRecordEncoder = new SessionUserRecordEncoder();
+    private final SessionUserRecordDecoder sessionUserRecordDecoder = new SessionUserRecordDecoder();
+    private final UserRecordEncoder userRecordEncoder = new UserRecordEncoder();
+    private final UserRecordDecoder userRecordDecoder = new UserRecordDecoder();
+    private final CommandResultRecordEncoder commandResultRecordEncoder = new CommandResultRecordEncoder();
+    private final CommandResultRecordDecoder commandResultRecordDecoder = new CommandResultRecordDecoder();
     private boolean snapshotFullyLoaded = false;
     private IdleStrategy idleStrategy;
+    private long loadStartNs;
+    private long loadedRecordCount;
+    private long loadedBytes;
+    private long expectedRecordCount;
+    private long progressStepRecordCount;
+    private long nextProgressRecordCount = Long.MAX_VALUE;
+    private long unknownRecordCount;
+    private final ControlledFragmentHandler baseFragmentHandler = this::onBaseFragment;
+    private final IntHashSet loadedRfqIds = new IntHashSet();
+    private SnapshotRecordings snapshotRecordings;
+    private int fullSnapshotInterval = 1;
+    private int deltasSinceFull;
+    private long lastSnapshotLogPosition = NULL_POSITION;
+    private long loadedLogPosition = NULL_POSITION;
+    private long baseRecordingId = SnapshotRecordings.NULL_RECORDING_ID;
+    private long baseLogPosition = NULL_POSITION;
+    private boolean baseFullyLoaded;
 
     /**
      * Constructor
      *
-     * @param context the session message context to use for snapshot interactions
+     * @param context          the session message context to use for snapshot interactions
+     * @param instruments      the instrument domain model to snapshot
+     * @param users            the user registry to snapshot
+     * @param rfqs             the RFQ domain model to snapshot
+     * @param timerManager     the timer manager to snapshot
+     * @param sessionInterests the session interests to snapshot
+     * @param sessionUsers     the session to user bindings to snapshot
      */
     public SnapshotManager(
-        final SessionMessageContext context)
+        final SessionMessageContext context,
+        final Instruments instruments,
+        final Users users,
+        final Rfqs rfqs,
+        final TimerManager timerManager,
+        final SessionInterests sessionInterests,
+        final SessionUsers sessionUsers)
     {
         this.context = context;
+        this.instruments = instruments;
+        this.users = users;
+        this.rfqs = rfqs;
+        this.timerManager = timerManager;
+        this.sessionInterests = sessionInterests;
+        this.sessionUsers = sessionUsers;
     }
 
     /**
@@ -62,9 +194,119 @@ public class SnapshotManager implements FragmentHandler
      * @param snapshotPublication the publication to write snapshot data to
      */
     public void takeSnapshot(final ExclusivePublication snapshotPublication)
+    {
+        takeSnapshot(snapshotPublication, NULL_POSITION);
+    }
+
+    /**
+     * Called by the clustered service once a snapshot needs to be taken, writing a delta snapshot if they are
+     * enabled and due
+     *
+     * @param snapshotPublication the publication to write snapshot data to
+     * @param logPosition         the log position the snapshot is taken at
+     */
+    public void takeSnapshot(final ExclusivePublication snapshotPublication, final long logPosition)
     {
         LOGGER.info("Starting snapshot...");
-        LOGGER.info("Snapshot complete");
+        Objects.requireNonNull(idleStrategy, "Idle strategy must be set before taking snapshot");
+        final long baseRecordingId = findDeltaBase(logPosition);
+        final boolean delta = baseRecordingId != SnapshotRecordings.NULL_RECORDING_ID;
+
+        offerSnapshotMarker(snapshotPublication, SnapshotMark.BEGIN);
+        offerSnapshotHeader(snapshotPublication, delta);
+        offerSnapshotChain(snapshotPublication, logPosition, baseRecordingId);
+
+        for (final Instrument instrument : instruments.getInstruments())
+        {
+            instrumentRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+            instrumentRecordEncoder.cusip(instrument.getCusip());
+            instrumentRecordEncoder.enabled(instrument.isEnabled() ? BooleanType.TRUE : BooleanType.FALSE);
+            instrumentRecordEncoder.minSize(instrument.getMinSize());
+            retryingOffer(snapshotPublication, buffer,
+                MessageHeaderEncoder.ENCODED_LENGTH + instrumentRecordEncoder.encodedLength());
+        }
+
+        users.forEachUser((userId, permissions) ->
+        {
+            userRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+            userRecordEncoder.userId(userId);
+            userRecordEncoder.permissions(permissions);
+            retryingOffer(snapshotPublication, buffer,
+                MessageHeaderEncoder.ENCODED_LENGTH + userRecordEncoder.encodedLength());
+        });
+
+        offerRfqs(snapshotPublication, delta);
+
+        //oldest first, so the restored window evicts in the same order as the one snapshotted
+        rfqs.getCommandWindow().forEach((userId, correlationId, commandType, rfqId, result) ->
+        {
+            commandResultRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+            commandResultRecordEncoder.userId(userId);
+            commandResultRecordEncoder.correlationId(correlationId);
+            commandResultRecordEncoder.commandType((byte)commandType.ordinal());
+            commandResultRecordEncoder.rfqId(rfqId);
+            commandResultRecordEncoder.result(result);
+            retryingOffer(snapshotPublication, buffer,
+                MessageHeaderEncoder.ENCODED_LENGTH + commandResultRecordEncoder.encodedLength());
+        });
+
+        timerSequenceRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+        timerSequenceRecordEncoder.correlationIdSequence(timerManager.getCorrelationIdSequence());
+        retryingOffer(snapshotPublication, buffer,
+            MessageHeaderEncoder.ENCODED_LENGTH + timerSequenceRecordEncoder.encodedLength());
+
+        timerManager.forEachTimer((correlationId, deadline, timerType, payload) ->
+        {
+            timerRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+            timerRecordEncoder.correlationId(correlationId);
+            timerRecordEncoder.deadline(deadline);
+            timerRecordEncoder.timerType((byte)timerType.ordinal());
+            timerRecordEncoder.payload(payload);
+            retryingOffer(snapshotPublication, buffer,
+                MessageHeaderEncoder.ENCODED_LENGTH + timerRecordEncoder.encodedLength());
+        });
+
+        //sessions survive leader election and restart, so their interests are part of the replicated state
+        sessionInterests.forEachFilteredSession((sessionId, type, cusip, userId) ->
+        {
+            sessionInterestRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+            sessionInterestRecordEncoder.sessionId(sessionId);
+            sessionInterestRecordEncoder.interest(type);
+            sessionInterestRecordEncoder.cusip(cusip);
+            sessionInterestRecordEncoder.userId(userId);
+            retryingOffer(snapshotPublication, buffer,
+                MessageHeaderEncoder.ENCODED_LENGTH + sessionInterestRecordEncoder.encodedLength());
+        });
+
+        sessionUsers.forEachBinding((sessionId, userId, cancelOnDisconnect) ->
+        {
+            sessionUserRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+            sessionUserRecordEncoder.sessionId(sessionId);
+            sessionUserRecordEncoder.userId(userId);
+            sessionUserRecordEncoder.cancelOnDisconnect(cancelOnDisconnect ? BooleanType.TRUE : BooleanType.FALSE);
+            retryingOffer(snapshotPublication, buffer,
+                MessageHeaderEncoder.ENCODED_LENGTH + sessionUserRecordEncoder.encodedLength());
+        });
+
+        offerSnapshotMarker(snapshotPublication, SnapshotMark.END);
+
+        rfqs.getDirtyRfqs().clear();
+        lastSnapshotLogPosition = logPosition;
+        deltasSinceFull = delta ? deltasSinceFull + 1 : 0;
+        LOGGER.info("Snapshot complete{}", delta ? ", delta of recording " + baseRecordingId : "");
+    }
+
+    /**
+     * Enables delta snapshots, tracking the RFQs changed between snapshots from now on.
+     *
+     * @param snapshotRecordings   the recordings of earlier snapshots, to name and replay bases
+     * @param fullSnapshotInterval the number of snapshots from one full snapshot to the next; 1 for full only
+     */
+    public void enableDeltaSnapshots(final SnapshotRecordings snapshotRecordings, final int fullSnapshotInterval)
+    {
+        this.snapshotRecordings = snapshotRecordings;
+        this.fullSnapshotInterval = fullSnapshotInterval;
+        rfqs.getDirtyRfqs().setTracking(fullSnapshotInterval > 1);
     }
 
     /**
@@ -77,17 +319,39 @@ public class SnapshotManager implements FragmentHandler
         LOGGER.info("Loading snapshot...");
         snapshotFullyLoaded = false;
         Objects.requireNonNull(idleStrategy, "Idle strategy must be set before loading snapshot");
+        loadStartNs = System.nanoTime();
+        loadedRecordCount = 0;
+        loadedBytes = 0;
+        expectedRecordCount = 0;
+        nextProgressRecordCount = Long.MAX_VALUE;
+        unknownRecordCount = 0;
+        loadedLogPosition = NULL_POSITION;
+        baseRecordingId = SnapshotRecordings.NULL_RECORDING_ID;
         idleStrategy.reset();
-        while (!snapshotImage.isEndOfStream())
+        while (!snapshotFullyLoaded && !snapshotImage.isEndOfStream())
         {
-            idleStrategy.idle(snapshotImage.poll(this, 20));
+            idleStrategy.idle(snapshotImage.controlledPoll(this, FRAGMENT_LIMIT));
         }
 
         if (!snapshotFullyLoaded)
         {
             LOGGER.warn("Snapshot load not completed; no end of snapshot marker found");
         }
-        LOGGER.info("Snapshot load complete.");
+        if (unknownRecordCount > 0)
+        {
+            LOGGER.warn("Skipped {} snapshot records of unknown template id", unknownRecordCount);
+        }
+        //the chain continues from the loaded snapshot, so the next snapshot can be a delta of it
+        final long snapshotLogPosition = loadedLogPosition;
+        loadBaseSnapshots();
+        lastSnapshotLogPosition = snapshotLogPosition;
+        final long elapsedNs = Math.max(1, System.nanoTime() - loadStartNs);
+        LOGGER.info("Snapshot load complete: {} records, {} bytes in {} ms, {} records/s, {} MB/s",
+            loadedRecordCount,
+            loadedBytes,
+            TimeUnit.NANOSECONDS.toMillis(elapsedNs),
+            loadedRecordCount * TimeUnit.SECONDS.toNanos(1) / elapsedNs,
+            loadedBytes * TimeUnit.SECONDS.toNanos(1) / elapsedNs / (1024 * 1024));
     }
 
     /**
@@ -105,22 +369,376 @@ public class SnapshotManager implements FragmentHandler
      * @param offset at which the data begins.
      * @param length of the data in bytes.
      * @param header representing the metadata for the data.
+     * @return {@link Action#BREAK} once the end of snapshot marker has been loaded, otherwise
+     * {@link Action#CONTINUE}
      */
     @Override
-    public void onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    public Action onFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
     {
         if (length < MessageHeaderDecoder.ENCODED_LENGTH)
         {
-            return;
+            return Action.CONTINUE;
         }
 
         headerDecoder.wrap(buffer, offset);
+        loadedBytes += length;
+        if (++loadedRecordCount >= nextProgressRecordCount)
+        {
+            reportProgress();
+        }
+
+        switch (headerDecoder.templateId())
+        {
+            case SnapshotMarkerDecoder.TEMPLATE_ID -> loadSnapshotMarker(buffer, offset);
+            case SnapshotHeaderRecordDecoder.TEMPLATE_ID -> loadSnapshotHeader(buffer, offset);
+            case SnapshotChainRecordDecoder.TEMPLATE_ID -> loadSnapshotChain(buffer, offset);
+            case RfqTombstoneRecordDecoder.TEMPLATE_ID -> loadRfqTombstone(buffer, offset);
+            case InstrumentRecordDecoder.TEMPLATE_ID -> loadInstrument(buffer, offset);
+            case UserRecordDecoder.TEMPLATE_ID -> loadUser(buffer, offset);
+            case RfqSequenceRecordDecoder.TEMPLATE_ID -> loadRfqSequence(buffer, offset);
+            case RfqExpiryRecordDecoder.TEMPLATE_ID -> loadRfqExpiry(buffer, offset);
+            case RfqRecordDecoder.TEMPLATE_ID -> loadRfq(buffer, offset);
+            case CommandResultRecordDecoder.TEMPLATE_ID -> loadCommandResult(buffer, offset);
+            case TimerSequenceRecordDecoder.TEMPLATE_ID -> loadTimerSequence(buffer, offset);
+            case TimerRecordDecoder.TEMPLATE_ID -> loadTimer(buffer, offset);
+            case SessionInterestRecordDecoder.TEMPLATE_ID -> loadSessionInterest(buffer, offset);
+            case SessionUserRecordDecoder.TEMPLATE_ID -> loadSessionUser(buffer, offset);
+            default -> unknownRecordCount++;
+        }
 
-        LOGGER.warn("Unknown snapshot message template id: {}", headerDecoder.templateId());
+        return snapshotFullyLoaded ? Action.BREAK : Action.CONTINUE;
+    }
+
+    private void loadSnapshotMarker(final DirectBuffer buffer, final int offset)
+    {
+        snapshotMarkerDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        if (snapshotMarkerDecoder.mark() == SnapshotMark.END)
+        {
+            snapshotFullyLoaded = true;
+        }
+    }
+
+    //sizes the domain model for the records to come, so that loading them does not rehash or grow it
+    private void loadSnapshotHeader(final DirectBuffer buffer, final int offset)
+    {
+        snapshotHeaderRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        final int instrumentCount = snapshotHeaderRecordDecoder.instrumentCount();
+        final int rfqCount = snapshotHeaderRecordDecoder.rfqCount();
+        instruments.ensureCapacity(instrumentCount);
+        rfqs.ensureCapacity(rfqCount);
+
+        expectedRecordCount = loadedRecordCount + (long)instrumentCount + snapshotHeaderRecordDecoder.userCount() +
+            rfqCount + snapshotHeaderRecordDecoder.commandResultCount();
+        progressStepRecordCount = Math.max(1, expectedRecordCount / PROGRESS_STEPS);
+        if (expectedRecordCount >= PROGRESS_MIN_RECORDS)
+        {
+            nextProgressRecordCount = loadedRecordCount + progressStepRecordCount;
+        }
+        LOGGER.info("Snapshot holds {} instruments and {} RFQs", instrumentCount, rfqCount);
+    }
+
+    private void reportProgress()
+    {
+        final long elapsedNs = Math.max(1, System.nanoTime() - loadStartNs);
+        LOGGER.info("Snapshot load {}%: {} of {} records, {} records/s",
+            Math.min(100, loadedRecordCount * 100 / expectedRecordCount),
+            loadedRecordCount,
+            expectedRecordCount,
+            loadedRecordCount * TimeUnit.SECONDS.toNanos(1) / elapsedNs);
+        nextProgressRecordCount = loadedRecordCount < expectedRecordCount ?
+            loadedRecordCount + progressStepRecordCount : Long.MAX_VALUE;
+    }
+
+    private void loadInstrument(final DirectBuffer buffer, final int offset)
+    {
+        instrumentRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        instruments.addInstrument(
+            InstrumentAddType.SNAPSHOT_LOAD,
+            Instruments.NO_CORRELATION,
+            instrumentRecordDecoder.cusip(),
+            instrumentRecordDecoder.enabled() == BooleanType.TRUE,
+            instrumentRecordDecoder.minSize());
+    }
+
+    private void loadUser(final DirectBuffer buffer, final int offset)
+    {
+        userRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        users.restoreUser(userRecordDecoder.userId(), userRecordDecoder.permissions());
+    }
+
+    private void loadRfqSequence(final DirectBuffer buffer, final int offset)
+    {
+        rfqSequenceRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        rfqs.restoreRfqIdSequence(rfqSequenceRecordDecoder.rfqIdSequence());
+    }
+
+    private void loadRfqExpiry(final DirectBuffer buffer, final int offset)
+    {
+        rfqExpiryRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        rfqs.getExpiryEngine().restore(
+            rfqExpiryRecordDecoder.wheelTime(),
+            rfqExpiryRecordDecoder.tickTimerCorrelationId());
+    }
+
+    private void loadRfq(final DirectBuffer buffer, final int offset)
+    {
+        rfqRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        rfqs.restoreRfq(
+            rfqRecordDecoder.correlationId(),
+            rfqRecordDecoder.expireTimeMs(),
+            rfqRecordDecoder.rfqId(),
+            rfqRecordDecoder.quantity(),
+            rfqRecordDecoder.requesterSide(),
+            Cusip.encode(buffer, rfqRecordDecoder.offset() + RfqRecordDecoder.cusipEncodingOffset()),
+            rfqRecordDecoder.requesterUserId(),
+            rfqRecordDecoder.state(),
+            rfqRecordDecoder.responderUserId(),
+            rfqRecordDecoder.lastCounterUserId(),
+            rfqRecordDecoder.acceptUserId(),
+            rfqRecordDecoder.rejectUserId(),
+            rfqRecordDecoder.price());
+        if (baseRecordingId != SnapshotRecordings.NULL_RECORDING_ID)
+        {
+            loadedRfqIds.add(rfqRecordDecoder.rfqId());
+        }
+    }
+
+    private void loadRfqTombstone(final DirectBuffer buffer, final int offset)
+    {
+        rfqTombstoneRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        loadedRfqIds.add(rfqTombstoneRecordDecoder.rfqId());
+    }
+
+    private void loadSnapshotChain(final DirectBuffer buffer, final int offset)
+    {
+        snapshotChainRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        loadedLogPosition = snapshotChainRecordDecoder.logPosition();
+        baseRecordingId = snapshotChainRecordDecoder.baseRecordingId();
+        baseLogPosition = snapshotChainRecordDecoder.baseLogPosition();
+        rfqs.ensureCapacity(snapshotChainRecordDecoder.liveRfqCount());
+    }
+
+    //replays each base of a delta in turn, newest first, restoring the RFQs no newer snapshot has restored or
+    //tombstoned; each base must be the snapshot taken at the position its delta was tracked from
+    private void loadBaseSnapshots()
+    {
+        int deltas = 0;
+        while (baseRecordingId != SnapshotRecordings.NULL_RECORDING_ID)
+        {
+            if (null == snapshotRecordings)
+            {
+                throw new ClusterException("delta snapshot loaded without delta snapshots enabled; base recording " +
+                    baseRecordingId);
+            }
+
+            final long recordingId = baseRecordingId;
+            final long expectedLogPosition = baseLogPosition;
+            LOGGER.info("Loading base snapshot from recording {}...", recordingId);
+            baseRecordingId = SnapshotRecordings.NULL_RECORDING_ID;
+            baseLogPosition = NULL_POSITION;
+            baseFullyLoaded = false;
+            loadedLogPosition = NULL_POSITION;
+            snapshotRecordings.replay(recordingId, baseFragmentHandler);
+            if (!baseFullyLoaded || loadedLogPosition != expectedLogPosition)
+            {
+                throw new ClusterException("base snapshot recording " + recordingId +
+                    " is incomplete or not the snapshot its delta was taken against");
+            }
+            deltas++;
+        }
+
+        loadedRfqIds.clear();
+        rfqs.getDirtyRfqs().clear();
+        deltasSinceFull = deltas;
+        LOGGER.info("Snapshot chain loaded: {} live RFQs, {} deltas", rfqs.getRfqCount(), deltas);
+    }
+
+    //a base only contributes RFQs, everything else being held in full by the newest snapshot of the chain
+    private Action onBaseFragment(final DirectBuffer buffer, final int offset, final int length, final Header header)
+    {
+        if (length < MessageHeaderDecoder.ENCODED_LENGTH)
+        {
+            return Action.CONTINUE;
+        }
+
+        headerDecoder.wrap(buffer, offset);
+        switch (headerDecoder.templateId())
+        {
+            case SnapshotMarkerDecoder.TEMPLATE_ID ->
+            {
+                snapshotMarkerDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                baseFullyLoaded = snapshotMarkerDecoder.mark() == SnapshotMark.END;
+            }
+            case SnapshotChainRecordDecoder.TEMPLATE_ID ->
+            {
+                snapshotChainRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                loadedLogPosition = snapshotChainRecordDecoder.logPosition();
+                baseRecordingId = snapshotChainRecordDecoder.baseRecordingId();
+                baseLogPosition = snapshotChainRecordDecoder.baseLogPosition();
+            }
+            case RfqRecordDecoder.TEMPLATE_ID ->
+            {
+                rfqRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+                if (!loadedRfqIds.contains(rfqRecordDecoder.rfqId()))
+                {
+                    loadRfq(buffer, offset);
+                }
+            }
+            case RfqTombstoneRecordDecoder.TEMPLATE_ID -> loadRfqTombstone(buffer, offset);
+            default ->
+            {
+            }
+        }
+
+        return baseFullyLoaded ? Action.BREAK : Action.CONTINUE;
+    }
+
+    private void loadCommandResult(final DirectBuffer buffer, final int offset)
+    {
+        commandResultRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        rfqs.getCommandWindow().record(
+            commandResultRecordDecoder.userId(),
+            commandResultRecordDecoder.correlationId(),
+            RfqCommandType.get(commandResultRecordDecoder.commandType()),
+            commandResultRecordDecoder.rfqId(),
+            commandResultRecordDecoder.result());
+    }
+
+    private void loadTimerSequence(final DirectBuffer buffer, final int offset)
+    {
+        timerSequenceRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        timerManager.restoreCorrelationIdSequence(timerSequenceRecordDecoder.correlationIdSequence());
+    }
+
+    private void loadTimer(final DirectBuffer buffer, final int offset)
+    {
+        timerRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        timerManager.restoreTimer(
+            timerRecordDecoder.correlationId(),
+            timerRecordDecoder.deadline(),
+            TimerType.get(timerRecordDecoder.timerType()),
+            timerRecordDecoder.payload());
+    }
+
+    private void loadSessionInterest(final DirectBuffer buffer, final int offset)
+    {
+        sessionInterestRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        sessionInterests.restoreInterest(
+            sessionInterestRecordDecoder.sessionId(),
+            sessionInterestRecordDecoder.interest(),
+            sessionInterestRecordDecoder.cusip(),
+            sessionInterestRecordDecoder.userId());
+    }
+
+    private void loadSessionUser(final DirectBuffer buffer, final int offset)
+    {
+        sessionUserRecordDecoder.wrapAndApplyHeader(buffer, offset, headerDecoder);
+        sessionUsers.bind(
+            sessionUserRecordDecoder.sessionId(),
+            sessionUserRecordDecoder.userId(),
+            sessionUserRecordDecoder.cancelOnDisconnect() == BooleanType.TRUE);
+    }
+
+    private void offerSnapshotMarker(final ExclusivePublication publication, final SnapshotMark mark)
+    {
+        snapshotMarkerEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+        snapshotMarkerEncoder.mark(mark);
+        snapshotMarkerEncoder.timestamp(context.getClusterTime());
+        retryingOffer(publication, buffer, MessageHeaderEncoder.ENCODED_LENGTH + snapshotMarkerEncoder.encodedLength());
+    }
+
+    //a delta is only written against the snapshot the dirty RFQs were tracked from, and only if that snapshot was
+    //completed by the cluster; the chain is compacted into a full snapshot every fullSnapshotInterval snapshots
+    private long findDeltaBase(final long logPosition)
+    {
+        if (null == snapshotRecordings || !rfqs.getDirtyRfqs().isTracking() || logPosition == NULL_POSITION ||
+            lastSnapshotLogPosition == NULL_POSITION || deltasSinceFull + 1 >= fullSnapshotInterval)
+        {
+            return SnapshotRecordings.NULL_RECORDING_ID;
+        }
+        return snapshotRecordings.findLatestSnapshot(lastSnapshotLogPosition);
+    }
+
+    private void offerSnapshotHeader(final ExclusivePublication publication, final boolean delta)
+    {
+        snapshotHeaderRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+        snapshotHeaderRecordEncoder.instrumentCount(instruments.instrumentCount());
+        snapshotHeaderRecordEncoder.userCount(users.userCount());
+        snapshotHeaderRecordEncoder.rfqCount(delta ? rfqs.getDirtyRfqs().changedCount() : rfqs.getRfqCount());
+        snapshotHeaderRecordEncoder.commandResultCount(rfqs.getCommandWindow().size());
+        retryingOffer(publication, buffer,
+            MessageHeaderEncoder.ENCODED_LENGTH + snapshotHeaderRecordEncoder.encodedLength());
+    }
+
+    private void offerSnapshotChain(
+        final ExclusivePublication publication,
+        final long logPosition,
+        final long baseRecordingId)
+    {
+        final boolean delta = baseRecordingId != SnapshotRecordings.NULL_RECORDING_ID;
+        snapshotChainRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+        snapshotChainRecordEncoder.logPosition(logPosition);
+        snapshotChainRecordEncoder.baseRecordingId(baseRecordingId);
+        snapshotChainRecordEncoder.baseLogPosition(delta ? lastSnapshotLogPosition : NULL_POSITION);
+        snapshotChainRecordEncoder.liveRfqCount(rfqs.getRfqCount());
+        retryingOffer(publication, buffer,
+            MessageHeaderEncoder.ENCODED_LENGTH + snapshotChainRecordEncoder.encodedLength());
+    }
+
+    private void offerRfqs(final ExclusivePublication publication, final boolean delta)
+    {
+        rfqSequenceRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+        rfqSequenceRecordEncoder.rfqIdSequence(rfqs.getRfqIdSequence());
+        retryingOffer(publication, buffer,
+            MessageHeaderEncoder.ENCODED_LENGTH + rfqSequenceRecordEncoder.encodedLength());
+
+        //the expiry wheel is positioned before any RFQ is loaded, so restored expiries are rescheduled relative to it
+        final RfqExpiryEngine expiryEngine = rfqs.getExpiryEngine();
+        rfqExpiryRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+        rfqExpiryRecordEncoder.wheelTime(expiryEngine.getWheelTime());
+        rfqExpiryRecordEncoder.tickTimerCorrelationId(expiryEngine.getTickTimerCorrelationId());
+        retryingOffer(publication, buffer,
+            MessageHeaderEncoder.ENCODED_LENGTH + rfqExpiryRecordEncoder.encodedLength());
+
+        if (!delta)
+        {
+            rfqs.forEachRfq(rfq -> offerRfq(publication, rfq));
+            return;
+        }
+
+        final DirtyRfqs dirtyRfqs = rfqs.getDirtyRfqs();
+        dirtyRfqs.forEachChanged(rfqId -> offerRfq(publication, rfqs.getRfq(rfqId)));
+        dirtyRfqs.forEachEvicted(rfqId ->
+        {
+            rfqTombstoneRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+            rfqTombstoneRecordEncoder.rfqId(rfqId);
+            retryingOffer(publication, buffer,
+                MessageHeaderEncoder.ENCODED_LENGTH + rfqTombstoneRecordEncoder.encodedLength());
+        });
+    }
+
+    private void offerRfq(final ExclusivePublication publication, final Rfq rfq)
+    {
+        rfqRecordEncoder.wrapAndApplyHeader(buffer, 0, headerEncoder);
+        rfqRecordEncoder.correlationId(rfq.getCorrelationId());
+        rfqRecordEncoder.expireTimeMs(rfq.getExpireTimeMs());
+        rfqRecordEncoder.rfqId(rfq.getRfqId());
+        rfqRecordEncoder.quantity(rfq.getQuantity());
+        rfqRecordEncoder.requesterSide(rfq.getRequesterSide());
+        rfqRecordEncoder.cusip(rfq.getCusip());
+        rfqRecordEncoder.requesterUserId(rfq.getRequesterUserId());
+        rfqRecordEncoder.state(rfq.getCurrentState().getCurrentStateId());
+        rfqRecordEncoder.responderUserId(rfq.getResponderUserId());
+        rfqRecordEncoder.lastCounterUserId(rfq.getLastCounterUser());
+        rfqRecordEncoder.acceptUserId(rfq.getAcceptUser());
+        rfqRecordEncoder.rejectUserId(rfq.getRejectUser());
+        rfqRecordEncoder.price(rfq.getPrice());
+        retryingOffer(publication, buffer, MessageHeaderEncoder.ENCODED_LENGTH + rfqRecordEncoder.encodedLength());
     }
 
     /**
-     * Retries the offer to the publication if it fails on back pressure or admin action.
+     * Offers to the publication, retrying for as long as it is back pressured or an admin action is in progress.
+     * A snapshot that is missing records cannot be restored from, so any other failure aborts the snapshot.
      * Buffer is assumed to always start at offset 0
      *
      * @param publication the publication to offer data to
@@ -130,28 +748,20 @@ public class SnapshotManager implements FragmentHandler
     private void retryingOffer(final ExclusivePublication publication, final DirectBuffer buffer, final int length)
     {
         final int offset = 0;
-        int retries = 0;
-        do
+        idleStrategy.reset();
+        while (true)
         {
             final long result = publication.offer(buffer, offset, length);
             if (result > 0L)
             {
                 return;
             }
-            else if (result == Publication.ADMIN_ACTION || result == Publication.BACK_PRESSURED)
-            {
-                LOGGER.warn("backpressure or admin action on snapshot");
-            }
-            else if (result == Publication.NOT_CONNECTED || result == Publication.MAX_POSITION_EXCEEDED)
+            else if (result != Publication.ADMIN_ACTION && result != Publication.BACK_PRESSURED)
             {
                 LOGGER.error("unexpected publication state on snapshot: {}", result);
-                return;
+                throw new ClusterException("failed to offer snapshot record: " + Publication.errorString(result));
             }
             idleStrategy.idle();
-            retries += 1;
         }
-        while (retries < RETRY_COUNT);
-
-        LOGGER.error("failed to offer snapshot within {} retries", RETRY_COUNT);
     }
 }
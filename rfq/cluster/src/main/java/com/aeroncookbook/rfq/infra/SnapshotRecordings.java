@@ -0,0 +1,49 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.logbuffer.ControlledFragmentHandler;
+
+/**
+ * Access to the recordings of earlier snapshots of this service, so that a delta snapshot can name the snapshot it
+ * is a delta of and that snapshot can be replayed when the delta is loaded.
+ */
+public interface SnapshotRecordings
+{
+    /**
+     * Returned when no snapshot recording is found
+     */
+    long NULL_RECORDING_ID = -1;
+
+    /**
+     * Finds the recording of the latest snapshot of this service, provided it was taken at the given log position.
+     * A snapshot that was written but never completed by the cluster is not found.
+     *
+     * @param logPosition the log position the snapshot was taken at
+     * @return the recording id, or {@link #NULL_RECORDING_ID} if the latest snapshot was not taken at the position
+     */
+    long findLatestSnapshot(long logPosition);
+
+    /**
+     * Replays a snapshot recording, polling it with the handler until the handler breaks or the recording ends.
+     * Blocks the calling thread, which is the service thread while a delta snapshot is loaded.
+     *
+     * @param recordingId the recording id of the snapshot
+     * @param handler     the handler to poll the snapshot with
+     */
+    void replay(long recordingId, ControlledFragmentHandler handler);
+}
@@ -17,6 +17,7 @@
 package com.aeroncookbook.rfq.infra;
 
 import io.aeron.cluster.service.Cluster;
+import org.agrona.collections.Long2LongHashMap;
 import org.agrona.collections.Long2ObjectHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,7 +25,11 @@ import org.slf4j.LoggerFactory;
 import java.util.Objects;
 
 /**
- * Manages timers within the cluster
+ * Manages timers within the cluster.
+ * <p>
+ * Each timer is held as a {@link TimerType} and a long payload, and dispatched on the type when it fires, so no task
+ * is allocated per timer and pending timers are restored from a snapshot in full, without their owners having to
+ * re-register them.
  */
 public class TimerManager
 {
@@ -32,7 +37,10 @@ public class TimerManager
     private final SessionMessageContextImpl context;
     private Cluster cluster;
 
-    private final Long2ObjectHashMap<Runnable> correlationIdToRunnable = new Long2ObjectHashMap<>();
+    private final Long2ObjectHashMap<TimerType> correlationIdToType = new Long2ObjectHashMap<>();
+    private final Long2LongHashMap correlationIdToDeadline = new Long2LongHashMap(Long.MIN_VALUE);
+    private final Long2LongHashMap correlationIdToPayload = new Long2LongHashMap(Long.MIN_VALUE);
+    private TimerHandler rfqExpiryTickHandler;
 
     private long correlationId = 0;
 
@@ -45,18 +53,30 @@ public class TimerManager
         this.context = context;
     }
 
+    /**
+     * Sets the handler of {@link TimerType#RFQ_EXPIRY_TICK} timers
+     * @param handler the handler called with the payload of each timer that fires
+     */
+    public void setRfqExpiryTickHandler(final TimerHandler handler)
+    {
+        this.rfqExpiryTickHandler = handler;
+    }
+
     /**
      * Schedules a timer
      *
-     * @param deadline the deadline of the timer
-     * @param timerRunnable the timerRunnable to perform when the timer fires
+     * @param deadline  the deadline of the timer
+     * @param timerType the type of timer, selecting the handler called when it fires
+     * @param payload   the payload passed to the handler
      * @return the correlation id of the timer
      */
-    public long scheduleTimer(final long deadline, final Runnable timerRunnable)
+    public long scheduleTimer(final long deadline, final TimerType timerType, final long payload)
     {
         correlationId++;
         Objects.requireNonNull(cluster, "Cluster must be set before scheduling timers");
-        correlationIdToRunnable.put(correlationId, timerRunnable);
+        correlationIdToType.put(correlationId, timerType);
+        correlationIdToDeadline.put(correlationId, deadline);
+        correlationIdToPayload.put(correlationId, payload);
 
         cluster.idleStrategy().reset();
         while (!cluster.scheduleTimer(correlationId, deadline))
@@ -66,16 +86,6 @@ public class TimerManager
         return correlationId;
     }
 
-    /**
-     * Restores a timer that the cluster has snapshotted the timer state, but not the timer manager internal state
-     * @param timerCorrelationId the correlation id of the timer
-     * @param task the task to perform when the timer fires
-     */
-    public void restoreTimer(final long timerCorrelationId, final Runnable task)
-    {
-        correlationIdToRunnable.put(timerCorrelationId, task);
-    }
-
     /**
      * Called when a timer cluster event occurs
      * @param correlationId the cluster timer id
@@ -84,17 +94,80 @@ public class TimerManager
     public void onTimerEvent(final long correlationId, final long timestamp)
     {
         context.setClusterTime(timestamp);
-        if (correlationIdToRunnable.containsKey(correlationId))
+        final TimerType timerType = correlationIdToType.remove(correlationId);
+        if (timerType == null)
         {
-            correlationIdToRunnable.get(correlationId).run();
-            correlationIdToRunnable.remove(correlationId);
+            LOGGER.warn("Timer fired for unknown correlation id {}", correlationId);
+            return;
         }
-        else
+
+        correlationIdToDeadline.remove(correlationId);
+        final long payload = correlationIdToPayload.remove(correlationId);
+        switch (timerType)
         {
-            LOGGER.warn("Timer fired for unknown correlation id {}", correlationId);
+            case RFQ_EXPIRY_TICK -> rfqExpiryTickHandler.onTimer(payload);
+            default -> LOGGER.warn("Timer fired with unhandled type {}", timerType);
         }
     }
 
+    /**
+     * Restores a pending timer, as read from a snapshot
+     * @param timerCorrelationId the correlation id of the timer
+     * @param deadline           the deadline of the timer
+     * @param timerType          the type of timer
+     * @param payload            the payload passed to the handler
+     */
+    public void restoreTimer(
+        final long timerCorrelationId,
+        final long deadline,
+        final TimerType timerType,
+        final long payload)
+    {
+        correlationIdToType.put(timerCorrelationId, timerType);
+        correlationIdToDeadline.put(timerCorrelationId, deadline);
+        correlationIdToPayload.put(timerCorrelationId, payload);
+    }
+
+    /**
+     * Restores the last correlation id issued, as read from a snapshot
+     * @param correlationIdSequence the last correlation id issued
+     */
+    public void restoreCorrelationIdSequence(final long correlationIdSequence)
+    {
+        this.correlationId = correlationIdSequence;
+    }
+
+    /**
+     * Returns the last correlation id issued
+     * @return the last correlation id issued
+     */
+    public long getCorrelationIdSequence()
+    {
+        return correlationId;
+    }
+
+    /**
+     * Returns the deadlines of all pending timers, keyed by correlation id
+     * @return the pending timer deadlines
+     */
+    public Long2LongHashMap getPendingTimers()
+    {
+        return correlationIdToDeadline;
+    }
+
+    /**
+     * Visits all pending timers
+     * @param consumer the consumer to call with each pending timer
+     */
+    public void forEachTimer(final TimerConsumer consumer)
+    {
+        correlationIdToDeadline.forEachLong((timerCorrelationId, deadline) -> consumer.accept(
+            timerCorrelationId,
+            deadline,
+            correlationIdToType.get(timerCorrelationId),
+            correlationIdToPayload.get(timerCorrelationId)));
+    }
+
     /***
      * Sets the cluster object used for scheduling timers
      * @param cluster the cluster object
@@ -104,5 +177,32 @@ public class TimerManager
         this.cluster = cluster;
     }
 
+    /**
+     * Handler of the timers of one {@link TimerType}
+     */
+    @FunctionalInterface
+    public interface TimerHandler
+    {
+        /**
+         * Called when a timer fires, with the cluster time already set on the context
+         * @param payload the payload the timer was scheduled with
+         */
+        void onTimer(long payload);
+    }
 
+    /**
+     * Consumer of the pending timers
+     */
+    @FunctionalInterface
+    public interface TimerConsumer
+    {
+        /**
+         * Called with a pending timer
+         * @param correlationId the correlation id of the timer
+         * @param deadline      the deadline of the timer
+         * @param timerType     the type of timer
+         * @param payload       the payload of the timer
+         */
+        void accept(long correlationId, long deadline, TimerType timerType, long payload);
+    }
 }
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+/**
+ * The types of cluster timer scheduled through the {@link TimerManager}. A timer is held as its type and a long
+ * payload rather than as a task, so pending timers can be written to and restored from a snapshot. The ordinal is held
+ * in snapshots, so values may only be appended.
+ */
+public enum TimerType
+{
+    /**
+     * Tick of the RFQ expiry wheel, expiring every RFQ due by the time it fires; the payload is unused.
+     */
+    RFQ_EXPIRY_TICK;
+
+    private static final TimerType[] VALUES = values();
+
+    /**
+     * Returns the timer type for an ordinal, as read from a snapshot.
+     *
+     * @param ordinal the ordinal of the timer type
+     * @return the timer type
+     */
+    public static TimerType get(final int ordinal)
+    {
+        return VALUES[ordinal];
+    }
+}
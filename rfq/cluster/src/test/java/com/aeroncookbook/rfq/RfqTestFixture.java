@@ -0,0 +1,146 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aeroncookbook.rfq;
+
+import com.aeroncookbook.rfq.domain.instrument.InstrumentAddType;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.users.Users;
+import com.aeroncookbook.rfq.infra.AuditJournal;
+import com.aeroncookbook.rfq.infra.AuditJournalImpl;
+import com.aeroncookbook.rfq.infra.ClientSessions;
+import com.aeroncookbook.rfq.infra.ClusterClientResponder;
+import com.aeroncookbook.rfq.infra.CountingAuditJournal;
+import com.aeroncookbook.rfq.infra.ServiceConfig;
+import com.aeroncookbook.rfq.infra.ServiceCounters;
+import com.aeroncookbook.rfq.infra.SessionMessageContextImpl;
+import com.aeroncookbook.rfq.infra.TimerManager;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.cluster.service.Cluster;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.NoOpIdleStrategy;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+
+import java.util.function.Function;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The clustered service's domain wired together as in {@code AppClusteredService}, with a mock cluster whose timers
+ * always schedule, so tests drive the same code paths as the service at a cluster time of 1000.
+ */
+public final class RfqTestFixture implements AutoCloseable
+{
+    public static final String CUSIP = "037833100";
+    public static final String OTHER_CUSIP = "594918104";
+    public static final long CLUSTER_TIME = 1_000;
+
+    public final ClientSessions clientSessions = new ClientSessions();
+    public final ServiceCounters serviceCounters = new ServiceCounters();
+    public final Cluster cluster = mock(Cluster.class);
+    public final SessionMessageContextImpl context;
+    public final ClusterClientResponder responder;
+    public final TimerManager timerManager;
+    public final AuditJournalImpl auditJournalImpl;
+    public final AuditJournal auditJournal;
+    public final Instruments instruments;
+    public final Users users;
+    public final Rfqs rfqs;
+
+    /**
+     * A fixture with a mock responder and the default service configuration.
+     */
+    public RfqTestFixture()
+    {
+        this(new ServiceConfig());
+    }
+
+    /**
+     * A fixture with a mock responder.
+     *
+     * @param config the service configuration
+     */
+    public RfqTestFixture(final ServiceConfig config)
+    {
+        this(context -> mock(ClusterClientResponder.class), config);
+    }
+
+    /**
+     * A fixture with the responder built for its context, such as {@code ClusterClientResponderImpl::new}.
+     * The audit journal is journalled to the config's audit ring buffer when it has one, as in the service.
+     *
+     * @param responderFactory creates the responder for the fixture's context
+     * @param config           the service configuration
+     */
+    public RfqTestFixture(
+        final Function<SessionMessageContextImpl, ClusterClientResponder> responderFactory,
+        final ServiceConfig config)
+    {
+        when(cluster.idleStrategy()).thenReturn(NoOpIdleStrategy.INSTANCE);
+        when(cluster.scheduleTimer(anyLong(), anyLong())).thenReturn(true);
+
+        context = new SessionMessageContextImpl(clientSessions, config);
+        context.setClusterTime(CLUSTER_TIME);
+        responder = responderFactory.apply(context);
+        timerManager = new TimerManager(context);
+        timerManager.setCluster(cluster);
+
+        final RingBuffer auditRingBuffer = config.auditRingBuffer();
+        auditJournalImpl = null == auditRingBuffer ? null : new AuditJournalImpl(context, auditRingBuffer);
+        auditJournal = new CountingAuditJournal(
+            null == auditJournalImpl ? AuditJournal.NO_OP : auditJournalImpl, serviceCounters);
+        instruments = new Instruments(responder, auditJournal);
+        users = new Users(responder, auditJournal);
+        rfqs = new Rfqs(context, instruments, users, responder, timerManager, auditJournal, config);
+    }
+
+    /**
+     * Adds an enabled instrument as a snapshot load would, so without an audit record or a reply.
+     *
+     * @param cusip the instrument's CUSIP
+     */
+    public void addInstrument(final String cusip)
+    {
+        instruments.addInstrument(InstrumentAddType.SNAPSHOT_LOAD, Instruments.NO_CORRELATION, cusip, true, 100);
+    }
+
+    /**
+     * Makes a mock session whose offers always succeed the sender of the current message.
+     *
+     * @param sessionId the session's id
+     * @return the mock session
+     */
+    public ClientSession connectSession(final long sessionId)
+    {
+        final ClientSession session = mock(ClientSession.class);
+        when(session.id()).thenReturn(sessionId);
+        when(session.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenReturn(1L);
+        context.setSessionContext(session, CLUSTER_TIME);
+        return session;
+    }
+
+    @Override
+    public void close()
+    {
+        serviceCounters.close();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aeroncookbook.rfq.domain.instrument;
+
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class CusipTests
+{
+    @Test
+    public void roundTripsAlphanumericCusip()
+    {
+        Assertions.assertEquals("037833100", Cusip.decode(Cusip.encode("037833100")));
+        Assertions.assertEquals("9128ZZ7A#", Cusip.decode(Cusip.encode("9128ZZ7A#")));
+        Assertions.assertNotEquals(Cusip.encode("037833100"), Cusip.encode("037833101"));
+    }
+
+    @Test
+    public void packsMessageBytesAsString()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[16]);
+        buffer.setMemory(0, 16, (byte)'X');
+        buffer.putStringWithoutLengthAscii(3, "594918104");
+
+        Assertions.assertEquals(Cusip.encode("594918104"), Cusip.encode(buffer, 3));
+    }
+
+    @Test
+    public void ignoresBytesAfterZeroPadding()
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(new byte[Cusip.LENGTH]);
+        buffer.putStringWithoutLengthAscii(0, "ABC");
+        buffer.putByte(5, (byte)'Z');
+
+        Assertions.assertEquals(Cusip.encode("ABC"), Cusip.encode(buffer, 0));
+        Assertions.assertEquals("ABC", Cusip.decode(Cusip.encode(buffer, 0)));
+        Assertions.assertEquals(Cusip.NO_CUSIP, Cusip.encode(""));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import com.aeroncookbook.rfq.infra.ClusterClientResponder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CommandDedupWindowTests
+{
+    @Test
+    public void evictsOldestOnceFullAndKeepsLaterEntriesReachable()
+    {
+        final CommandDedupWindow window = new CommandDedupWindow(8);
+        for (int i = 1; i <= 20; i++)
+        {
+            window.record(500 + (i % 3), i, RfqCommandType.CREATE, i, 0);
+        }
+
+        Assertions.assertEquals(8, window.size());
+        for (int i = 1; i <= 12; i++)
+        {
+            Assertions.assertEquals(CommandDedupWindow.NOT_FOUND, window.find(500 + (i % 3), i));
+        }
+        for (int i = 13; i <= 20; i++)
+        {
+            final int slot = window.find(500 + (i % 3), i);
+            Assertions.assertNotEquals(CommandDedupWindow.NOT_FOUND, slot);
+            Assertions.assertEquals(i, window.rfqId(slot));
+        }
+        Assertions.assertEquals(CommandDedupWindow.NOT_FOUND, window.find(501, 14));
+    }
+
+    @Test
+    public void visitsOldestFirstAndSkipsCommandsWithoutCorrelation()
+    {
+        final CommandDedupWindow window = new CommandDedupWindow(4);
+        window.record(500, 7L, RfqCommandType.CREATE, 1, 0);
+        window.record(501, CommandDedupWindow.NO_CORRELATION, RfqCommandType.QUOTE, 1, 0);
+        window.record(501, 7L, RfqCommandType.QUOTE, 1, 0);
+        window.record(500, 7L, RfqCommandType.ACCEPT, 1, 0);
+
+        final List<String> visited = new ArrayList<>();
+        window.forEach((userId, correlationId, commandType, rfqId, result) ->
+            visited.add(userId + ":" + correlationId + ":" + commandType));
+        Assertions.assertEquals(List.of("500:7:ACCEPT", "501:7:QUOTE"), visited);
+    }
+
+    @Test
+    public void retriedCommandsReplayTheirConfirmWithoutBeingApplied()
+    {
+        final RfqTestFixture fixture = new RfqTestFixture();
+        final ClusterClientResponder responder = fixture.responder;
+        final Rfqs rfqs = fixture.rfqs;
+        fixture.addInstrument(CUSIP);
+
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        Assertions.assertEquals(1, rfqs.getRfqCount());
+        verify(responder).createRfqConfirm(eq(1L), any(Rfq.class), eq(CreateRfqResult.SUCCESS));
+        verify(responder).replayConfirm(1L, RfqCommandType.CREATE, 1, CreateRfqResult.SUCCESS.value());
+
+        //the same correlation id from another user is a different command
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 501);
+        Assertions.assertEquals(2, rfqs.getRfqCount());
+
+        //a retried accept is answered as accepted, although the RFQ has since been evicted
+        rfqs.quoteRfq(2L, 1, 502, 1_000);
+        rfqs.acceptRfq(3L, 1, 500);
+        rfqs.acceptRfq(3L, 1, 500);
+        verify(responder, times(1)).acceptRfqConfirm(eq(3L), any(Rfq.class), eq(AcceptRfqResult.SUCCESS));
+        verify(responder).replayConfirm(3L, RfqCommandType.ACCEPT, 1, AcceptRfqResult.SUCCESS.value());
+        verify(responder, times(1)).broadcastRfqAccepted(any(Rfq.class));
+    }
+
+    @Test
+    public void deniedRejectIsNotAppliedAndRetriesReplayTheDenial()
+    {
+        final RfqTestFixture fixture = new RfqTestFixture();
+        final ClusterClientResponder responder = fixture.responder;
+        final Rfqs rfqs = fixture.rfqs;
+        fixture.addInstrument(CUSIP);
+
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        rfqs.quoteRfq(2L, 1, 502, 1_000);
+        rfqs.counterRfq(3L, 1, 500, 990);
+
+        rfqs.rejectRfq(4L, 1, 500);
+        rfqs.rejectRfq(4L, 1, 500);
+        verify(responder).rejectRfqConfirm(4L, null, RejectRfqResult.CANNOT_REJECT_OWN_PRICE);
+        verify(responder, never()).rejectRfqConfirm(eq(4L), any(Rfq.class), eq(RejectRfqResult.SUCCESS));
+        verify(responder).replayConfirm(
+            4L, RfqCommandType.REJECT, -1, RejectRfqResult.CANNOT_REJECT_OWN_PRICE.value());
+        verify(responder, never()).broadcastRfqRejected(any(Rfq.class));
+        Assertions.assertEquals(RfqStates.COUNTERED, rfqs.getRfq(1).getCurrentState().getCurrentState());
+    }
+}
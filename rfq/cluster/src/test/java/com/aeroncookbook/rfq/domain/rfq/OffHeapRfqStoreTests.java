@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import org.agrona.collections.IntArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class OffHeapRfqStoreTests
+{
+    private static final String CUSIP = "037833100";
+
+    private final OffHeapRfqStore underTest = new OffHeapRfqStore(2);
+
+    @Test
+    public void roundTripsFieldsThroughSlot()
+    {
+        underTest.add(7, 11L, 10_000, 200, Side.SELL, CUSIP, 500).setExpiryTimerId(42);
+        underTest.add(8, 12L, 20_000, 300, Side.BUY, "594918104", 501);
+
+        final Rfq rfq = underTest.get(7);
+        Assertions.assertEquals(7, rfq.getRfqId());
+        Assertions.assertEquals(11L, rfq.getCorrelationId());
+        Assertions.assertEquals(10_000, rfq.getExpireTimeMs());
+        Assertions.assertEquals(200, rfq.getQuantity());
+        Assertions.assertEquals(Side.SELL, rfq.getRequesterSide());
+        Assertions.assertEquals(CUSIP, rfq.getCusip());
+        Assertions.assertEquals(500, rfq.getRequesterUserId());
+        Assertions.assertEquals(42, rfq.getExpiryTimerId());
+        Assertions.assertEquals(RfqStates.CREATED, rfq.getCurrentState().getCurrentState());
+        Assertions.assertFalse(rfq.hasResponder());
+
+        rfq.quote(502, 1_000);
+        rfq.counter(500, 990);
+
+        final Rfq countered = underTest.get(7);
+        Assertions.assertEquals(RfqStates.COUNTERED, countered.getCurrentState().getCurrentState());
+        Assertions.assertEquals(502, countered.getResponderUserId());
+        Assertions.assertEquals(500, countered.getLastCounterUser());
+        Assertions.assertEquals(990, countered.getPrice());
+        Assertions.assertEquals("594918104", underTest.get(8).getCusip());
+    }
+
+    @Test
+    public void reusesFreedSlots()
+    {
+        underTest.add(1, 1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        underTest.add(2, 2L, 10_000, 200, Side.BUY, CUSIP, 500);
+        underTest.remove(1);
+        underTest.add(3, 3L, 10_000, 200, Side.BUY, CUSIP, 501);
+
+        Assertions.assertNull(underTest.get(1));
+        Assertions.assertEquals(2, underTest.size());
+        Assertions.assertEquals(2, underTest.getSlotCount());
+        Assertions.assertEquals(501, underTest.get(3).getRequesterUserId());
+        Assertions.assertEquals(RfqStates.CREATED, underTest.get(3).getCurrentState().getCurrentState());
+    }
+
+    @Test
+    public void growsBeyondInitialSlotsAndVisitsLiveRfqs()
+    {
+        for (int rfqId = 1; rfqId <= 100; rfqId++)
+        {
+            underTest.add(rfqId, rfqId, 10_000, 200, Side.BUY, CUSIP, 500);
+        }
+        for (int rfqId = 1; rfqId <= 100; rfqId += 2)
+        {
+            underTest.remove(rfqId);
+        }
+
+        final IntArrayList visited = new IntArrayList();
+        underTest.forEach(rfq -> visited.addInt(rfq.getRfqId()));
+
+        Assertions.assertEquals(50, underTest.size());
+        Assertions.assertEquals(50, visited.size());
+        Assertions.assertTrue(visited.containsInt(100));
+        Assertions.assertFalse(visited.containsInt(99));
+        Assertions.assertTrue(underTest.getCapacity() >= 100 * RfqFlyweight.SLOT_LENGTH);
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.infra.TimerManager;
+import org.agrona.collections.IntArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RfqExpiryEngineTests
+{
+    private final RfqTestFixture fixture = new RfqTestFixture();
+    private final TimerManager timerManager = fixture.timerManager;
+    private final IntArrayList expired = new IntArrayList();
+    private final RfqExpiryEngine underTest = new RfqExpiryEngine(fixture.context, timerManager, expired::addInt);
+
+    @Test
+    public void armsOneClusterTimerForManyRfqs()
+    {
+        for (int rfqId = 1; rfqId <= 1_000; rfqId++)
+        {
+            underTest.schedule(rfqId, 5_000 + rfqId);
+        }
+
+        Assertions.assertEquals(1_000, underTest.pendingCount());
+        Assertions.assertEquals(1, timerManager.getPendingTimers().size());
+        verify(fixture.cluster, times(1)).scheduleTimer(anyLong(), anyLong());
+    }
+
+    @Test
+    public void expiresOnlyDueRfqsAndRearms()
+    {
+        underTest.schedule(1, 2_000);
+        underTest.schedule(2, 3_000);
+        underTest.schedule(3, 60_000);
+
+        timerManager.onTimerEvent(underTest.getTickTimerCorrelationId(), 3_000);
+
+        Assertions.assertEquals(2, expired.size());
+        Assertions.assertTrue(expired.containsInt(1));
+        Assertions.assertTrue(expired.containsInt(2));
+        Assertions.assertEquals(1, underTest.pendingCount());
+        Assertions.assertEquals(1, timerManager.getPendingTimers().size());
+    }
+
+    @Test
+    public void cancelledRfqDoesNotExpire()
+    {
+        final long timerId = underTest.schedule(1, 2_000);
+        underTest.schedule(2, 2_000);
+        underTest.cancel(timerId);
+
+        timerManager.onTimerEvent(underTest.getTickTimerCorrelationId(), 2_000);
+
+        Assertions.assertEquals(1, expired.size());
+        Assertions.assertEquals(2, expired.getInt(0));
+        Assertions.assertEquals(0, underTest.pendingCount());
+        Assertions.assertTrue(timerManager.getPendingTimers().isEmpty());
+    }
+}
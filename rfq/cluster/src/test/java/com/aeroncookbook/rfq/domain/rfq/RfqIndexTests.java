@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import com.aeroncookbook.rfq.infra.ClusterClientResponder;
+import org.agrona.collections.IntArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+import static com.aeroncookbook.rfq.RfqTestFixture.OTHER_CUSIP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class RfqIndexTests
+{
+    private final RfqTestFixture fixture = new RfqTestFixture();
+    private final ClusterClientResponder responder = fixture.responder;
+    private final Rfqs rfqs = fixture.rfqs;
+    private final List<Integer> listed = new ArrayList<>();
+    private boolean truncated;
+
+    public RfqIndexTests()
+    {
+        doAnswer(invocation ->
+        {
+            listed.clear();
+            listed.addAll(invocation.<IntArrayList>getArgument(1));
+            truncated = invocation.getArgument(3);
+            return null;
+        }).when(responder).sendOpenRfqs(anyLong(), any(IntArrayList.class), any(RfqStore.class), anyBoolean());
+
+        fixture.addInstrument(CUSIP);
+        fixture.addInstrument(OTHER_CUSIP);
+    }
+
+    @Test
+    public void tracksTransitionsByCusipAndUser()
+    {
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        rfqs.createRfq(2L, 10_000, 200, Side.SELL, OTHER_CUSIP, 500);
+        rfqs.quoteRfq(3L, 1, 501, 1_000);
+
+        final RfqIndex index = rfqs.getIndex();
+        Assertions.assertEquals(1, index.countByCusip(Cusip.encode(CUSIP)));
+        Assertions.assertEquals(2, index.countByUser(500));
+        Assertions.assertEquals(1, index.countByUser(501));
+
+        rfqs.acceptRfq(4L, 1, 500);
+        rfqs.cancelRfq(5L, 2, 500);
+
+        Assertions.assertEquals(0, index.countByCusip(Cusip.encode(CUSIP)));
+        Assertions.assertEquals(0, index.countByCusip(Cusip.encode(OTHER_CUSIP)));
+        Assertions.assertEquals(0, index.countByUser(500));
+        Assertions.assertEquals(0, index.countByUser(501));
+    }
+
+    @Test
+    public void listsOpenRfqsByFilterInIdOrder()
+    {
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        rfqs.createRfq(2L, 10_000, 200, Side.BUY, OTHER_CUSIP, 501);
+        rfqs.createRfq(3L, 10_000, 200, Side.BUY, CUSIP, 501);
+        rfqs.quoteRfq(4L, 1, 501, 1_000);
+
+        rfqs.listOpenRfqs(10L, Cusip.NO_CUSIP, Rfqs.ANY_USER);
+        Assertions.assertEquals(List.of(1, 2, 3), listed);
+
+        rfqs.listOpenRfqs(11L, Cusip.encode(CUSIP), Rfqs.ANY_USER);
+        Assertions.assertEquals(List.of(1, 3), listed);
+
+        rfqs.listOpenRfqs(12L, Cusip.NO_CUSIP, 501);
+        Assertions.assertEquals(List.of(1, 2, 3), listed);
+
+        rfqs.listOpenRfqs(13L, Cusip.encode(OTHER_CUSIP), 501);
+        Assertions.assertEquals(List.of(2), listed);
+
+        rfqs.listOpenRfqs(14L, Cusip.NO_CUSIP, 502);
+        Assertions.assertTrue(listed.isEmpty());
+        Assertions.assertFalse(truncated);
+    }
+
+    @Test
+    public void capsListedRfqsAtTheOldestAndFlagsTruncation()
+    {
+        for (int i = 1; i <= Rfqs.MAX_OPEN_RFQS_LISTED + 1; i++)
+        {
+            rfqs.createRfq(i, 10_000, 200, Side.BUY, i % 2 == 0 ? CUSIP : OTHER_CUSIP, 500 + i % 3);
+        }
+
+        rfqs.listOpenRfqs(10L, Cusip.NO_CUSIP, Rfqs.ANY_USER);
+        Assertions.assertEquals(Rfqs.MAX_OPEN_RFQS_LISTED, listed.size());
+        Assertions.assertEquals(1, listed.get(0));
+        Assertions.assertEquals(Rfqs.MAX_OPEN_RFQS_LISTED, listed.get(listed.size() - 1));
+        Assertions.assertTrue(truncated);
+
+        rfqs.listOpenRfqs(11L, Cusip.encode(CUSIP), Rfqs.ANY_USER);
+        Assertions.assertEquals((Rfqs.MAX_OPEN_RFQS_LISTED + 1) / 2, listed.size());
+        Assertions.assertFalse(truncated);
+    }
+
+    @Test
+    public void cancelsOnlyRfqsRequestedByUser()
+    {
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        rfqs.createRfq(2L, 10_000, 200, Side.BUY, OTHER_CUSIP, 500);
+        rfqs.createRfq(3L, 10_000, 200, Side.BUY, CUSIP, 501);
+        rfqs.quoteRfq(4L, 3, 500, 1_000);
+
+        rfqs.cancelUserRfqs(5L, 500);
+
+        verify(responder).sendUserRfqsCanceled(5L, 500, 2);
+        verify(responder, times(2)).broadcastRfqCanceled(any(Rfq.class));
+        Assertions.assertEquals(1, rfqs.getRfqCount());
+        Assertions.assertNotNull(rfqs.getRfq(3));
+        Assertions.assertEquals(1, rfqs.getIndex().countByUser(500));
+        Assertions.assertEquals(1, rfqs.getExpiryEngine().pendingCount());
+
+        rfqs.cancelUserRfqs(6L, 500);
+        verify(responder).sendUserRfqsCanceled(eq(6L), eq(500), eq(0));
+    }
+}
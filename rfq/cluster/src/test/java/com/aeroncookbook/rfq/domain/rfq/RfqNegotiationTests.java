@@ -0,0 +1,103 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.rfq;
+
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.CounterRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.RejectRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import com.aeroncookbook.rfq.infra.ClusterClientResponder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+public class RfqNegotiationTests
+{
+    private static final int REQUESTER = 500;
+    private static final int RESPONDER = 502;
+    private final RfqTestFixture fixture = new RfqTestFixture();
+    private final ClusterClientResponder responder = fixture.responder;
+    private final Rfqs rfqs = fixture.rfqs;
+
+    public RfqNegotiationTests()
+    {
+        fixture.addInstrument(CUSIP);
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, REQUESTER);
+        rfqs.quoteRfq(2L, 1, RESPONDER, 1_000);
+    }
+
+    @Test
+    public void onlyTheRequesterMayAnswerTheFirstQuote()
+    {
+        rfqs.counterRfq(3L, 1, RESPONDER, 1_010);
+        rfqs.acceptRfq(4L, 1, RESPONDER);
+        rfqs.rejectRfq(5L, 1, RESPONDER);
+        verify(responder).counterRfqConfirm(3L, null, CounterRfqResult.CANNOT_COUNTER_OWN_PRICE);
+        verify(responder).acceptRfqConfirm(4L, null, AcceptRfqResult.CANNOT_ACCEPT_OWN_PRICE);
+        verify(responder).rejectRfqConfirm(5L, null, RejectRfqResult.CANNOT_REJECT_OWN_PRICE);
+        Assertions.assertEquals(RfqStates.QUOTED, state());
+
+        rfqs.acceptRfq(6L, 1, REQUESTER);
+        verify(responder).acceptRfqConfirm(eq(6L), any(Rfq.class), eq(AcceptRfqResult.SUCCESS));
+    }
+
+    @Test
+    public void userMayNotCounterAcceptOrRejectTheirOwnCounter()
+    {
+        rfqs.counterRfq(3L, 1, REQUESTER, 990);
+        verify(responder).counterRfqConfirm(eq(3L), any(Rfq.class), eq(CounterRfqResult.SUCCESS));
+
+        rfqs.counterRfq(4L, 1, REQUESTER, 980);
+        rfqs.acceptRfq(5L, 1, REQUESTER);
+        rfqs.rejectRfq(6L, 1, REQUESTER);
+        verify(responder).counterRfqConfirm(4L, null, CounterRfqResult.CANNOT_COUNTER_OWN_PRICE);
+        verify(responder).acceptRfqConfirm(5L, null, AcceptRfqResult.CANNOT_ACCEPT_OWN_PRICE);
+        verify(responder).rejectRfqConfirm(6L, null, RejectRfqResult.CANNOT_REJECT_OWN_PRICE);
+        Assertions.assertEquals(RfqStates.COUNTERED, state());
+        Assertions.assertEquals(990, rfqs.getRfq(1).getPrice());
+    }
+
+    @Test
+    public void counterpartyMayCounterAcceptOrRejectACounter()
+    {
+        rfqs.counterRfq(3L, 1, REQUESTER, 990);
+        rfqs.counterRfq(4L, 1, RESPONDER, 995);
+        verify(responder).counterRfqConfirm(eq(4L), any(Rfq.class), eq(CounterRfqResult.SUCCESS));
+        Assertions.assertEquals(RESPONDER, rfqs.getRfq(1).getLastCounterUser());
+
+        rfqs.acceptRfq(5L, 1, REQUESTER);
+        verify(responder).acceptRfqConfirm(eq(5L), any(Rfq.class), eq(AcceptRfqResult.SUCCESS));
+
+        rfqs.createRfq(6L, 10_000, 200, Side.SELL, CUSIP, REQUESTER);
+        rfqs.quoteRfq(7L, 2, RESPONDER, 1_000);
+        rfqs.counterRfq(8L, 2, REQUESTER, 1_010);
+        rfqs.rejectRfq(9L, 2, RESPONDER);
+        verify(responder).rejectRfqConfirm(eq(9L), any(Rfq.class), eq(RejectRfqResult.SUCCESS));
+        Assertions.assertNull(rfqs.getRfq(2));
+    }
+
+    private RfqStates state()
+    {
+        return rfqs.getRfq(1).getCurrentState().getCurrentState();
+    }
+}
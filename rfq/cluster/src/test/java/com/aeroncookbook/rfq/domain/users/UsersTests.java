@@ -0,0 +1,96 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting Ltd
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.domain.users;
+
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.infra.AuditJournal;
+import com.aeroncookbook.rfq.infra.ClusterClientResponder;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class UsersTests
+{
+    private final RfqTestFixture fixture = new RfqTestFixture();
+    private final ClusterClientResponder responder = fixture.responder;
+
+    public UsersTests()
+    {
+        fixture.addInstrument(CUSIP);
+    }
+
+    @Test
+    public void addsUsersWithPermissionsAndDisablesThem()
+    {
+        final AuditJournal auditJournal = mock(AuditJournal.class);
+        final Users users = new Users(responder, auditJournal);
+
+        Assertions.assertTrue(users.isValidUser(500));
+        Assertions.assertFalse(users.isValidUser(600));
+
+        users.addUser(1L, 600, true, false);
+        verify(responder).sendUserResult(1L, 600, true);
+        verify(auditJournal).userEvent(AuditEventType.USER_ADDED, 1L, 600, Users.ENABLED | Users.CAN_REQUEST);
+        Assertions.assertTrue(users.canRequest(600));
+        Assertions.assertFalse(users.canRespond(600));
+
+        users.disableUser(2L, 600);
+        verify(responder).sendUserResult(2L, 600, true);
+        Assertions.assertFalse(users.isValidUser(600));
+        Assertions.assertFalse(users.canRequest(600));
+        Assertions.assertEquals(4, users.userCount());
+
+        users.disableUser(3L, 700);
+        verify(responder).sendUserResult(3L, 700, false);
+        users.addUser(4L, 0, true, true);
+        verify(responder).sendUserResult(4L, 0, false);
+        Assertions.assertEquals(4, users.userCount());
+    }
+
+    @Test
+    public void deniesCommandsTheUserIsNotPermittedToSend()
+    {
+        final Users users = fixture.users;
+        final Rfqs rfqs = fixture.rfqs;
+
+        users.addUser(1L, 600, false, true);
+        users.addUser(2L, 601, true, false);
+
+        rfqs.createRfq(3L, 10_000, 200, Side.BUY, CUSIP, 600);
+        verify(responder).createRfqConfirm(eq(3L), isNull(), eq(CreateRfqResult.USER_NOT_PERMITTED));
+
+        rfqs.createRfq(4L, 10_000, 200, Side.BUY, CUSIP, 601);
+        Assertions.assertEquals(1, rfqs.getRfqCount());
+
+        rfqs.quoteRfq(5L, 1, 601, 1_000);
+        verify(responder).quoteRfqConfirm(eq(5L), isNull(), eq(QuoteRfqResult.USER_NOT_PERMITTED));
+
+        users.disableUser(6L, 600);
+        rfqs.quoteRfq(7L, 1, 600, 1_000);
+        verify(responder).quoteRfqConfirm(eq(7L), isNull(), eq(QuoteRfqResult.UNKNOWN_USER));
+    }
+}
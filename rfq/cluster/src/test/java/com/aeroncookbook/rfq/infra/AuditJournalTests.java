@@ -0,0 +1,120 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.AcceptRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.cluster.rfq.sbe.AuditRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import com.aeroncookbook.rfq.domain.instrument.InstrumentAddType;
+import org.agrona.BitUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.RecordDescriptor;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+
+public class AuditJournalTests
+{
+    @TempDir
+    private Path tempDir;
+
+    @Test
+    public void journalsEventsToFileAndReadsThemBack() throws IOException
+    {
+        final RingBuffer ringBuffer = RingBuffers.newRingBuffer(AuditJournalImpl.DEFAULT_CAPACITY);
+        final RfqTestFixture fixture = new RfqTestFixture(
+            ClusterClientResponderImpl::new, new ServiceConfig().auditRingBuffer(ringBuffer));
+        fixture.connectSession(7);
+
+        fixture.instruments.addInstrument(InstrumentAddType.INTERACTIVE, 1L, CUSIP, true, 100);
+        fixture.rfqs.createRfq(2L, 10_000, 200, Side.BUY, CUSIP, 500);
+        fixture.rfqs.quoteRfq(3L, 1, 501, 1_000);
+        fixture.rfqs.acceptRfq(4L, 1, 502);
+
+        final Path file = tempDir.resolve("audit.journal");
+        final AuditJournalAgent agent = new AuditJournalAgent(ringBuffer, file);
+        Assertions.assertEquals(4, agent.doWork());
+        agent.onClose();
+
+        final byte[] bytes = Files.readAllBytes(file);
+        Assertions.assertEquals(4 * AuditJournalImpl.RECORD_LENGTH, bytes.length);
+
+        final List<String> lines = new ArrayList<>();
+        final List<AuditEventType> types = new ArrayList<>();
+        final int records = AuditJournalReader.read(new UnsafeBuffer(bytes), bytes.length, record ->
+        {
+            types.add(record.eventType());
+            final StringBuilder line = new StringBuilder();
+            AuditJournalReader.format(record, line);
+            lines.add(line.toString());
+        });
+
+        Assertions.assertEquals(4, records);
+        Assertions.assertEquals(List.of(
+            AuditEventType.INSTRUMENT_ADDED,
+            AuditEventType.RFQ_CREATED,
+            AuditEventType.RFQ_QUOTED,
+            AuditEventType.ACCEPT_DENIED), types);
+        Assertions.assertEquals(
+            "1000 RFQ_QUOTED session=7 correlationId=3 rfqId=1 user=501 requester=500 responder=501 state=QUOTED " +
+            "quantity=200 price=1000 cusip=" + CUSIP, lines.get(2));
+        Assertions.assertEquals(
+            "1000 ACCEPT_DENIED session=7 correlationId=4 rfqId=1 user=502 result=" +
+            AcceptRfqResult.CANNOT_ACCEPT_RFQ_NOT_INVOLVED_WITH.value(), lines.get(3));
+        Assertions.assertEquals(0, fixture.auditJournalImpl.droppedRecords());
+    }
+
+    @Test
+    public void dropsAndCountsRecordsWhenRingBufferIsFull()
+    {
+        final RfqTestFixture fixture = new RfqTestFixture();
+        fixture.connectSession(7);
+        final RingBuffer ringBuffer = RingBuffers.newRingBuffer(1024);
+        final AuditJournalImpl journal = new AuditJournalImpl(fixture.context, ringBuffer);
+
+        final int capacityInRecords = 1024 / BitUtil.align(
+            AuditJournalImpl.RECORD_LENGTH + RecordDescriptor.HEADER_LENGTH, RecordDescriptor.ALIGNMENT);
+        for (int i = 0; i < capacityInRecords + 3; i++)
+        {
+            journal.instrumentEvent(AuditEventType.INSTRUMENT_ENABLED_FLAG_SET, i, Cusip.encode(CUSIP), true);
+        }
+
+        Assertions.assertEquals(3, journal.droppedRecords());
+        final List<Long> correlationIds = new ArrayList<>();
+        ringBuffer.read((msgTypeId, buffer, index, length) ->
+        {
+            final AuditRecordDecoder decoder = new AuditRecordDecoder();
+            decoder.wrapAndApplyHeader(buffer, index, new MessageHeaderDecoder());
+            correlationIds.add(decoder.correlationId());
+        });
+        Assertions.assertEquals(capacityInRecords, correlationIds.size());
+        Assertions.assertEquals(0L, correlationIds.get(0));
+    }
+}
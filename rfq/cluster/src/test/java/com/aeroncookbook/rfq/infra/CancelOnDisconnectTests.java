@@ -0,0 +1,110 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import io.aeron.cluster.service.ClientSession;
+import org.agrona.collections.IntArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class CancelOnDisconnectTests
+{
+    private final RfqTestFixture fixture = new RfqTestFixture();
+    private final ClientSessions clientSessions = fixture.clientSessions;
+    private final ClusterClientResponder responder = fixture.responder;
+    private final Rfqs rfqs = fixture.rfqs;
+    private final SessionUsers sessionUsers = clientSessions.getSessionUsers();
+    private final IntArrayList canceled = new IntArrayList();
+    private final IntArrayList expired = new IntArrayList();
+
+    public CancelOnDisconnectTests()
+    {
+        clientSessions.setClientSessionListener(new CancelOnDisconnect(sessionUsers, rfqs));
+
+        doAnswer(invocation ->
+        {
+            canceled.addAll(invocation.<IntArrayList>getArgument(1));
+            expired.addAll(invocation.<IntArrayList>getArgument(2));
+            return null;
+        }).when(responder).broadcastUserRfqsClosed(anyInt(), any(IntArrayList.class), any(IntArrayList.class));
+
+        fixture.addInstrument(CUSIP);
+    }
+
+    @Test
+    public void closesUserRfqsInOnePassWhenLastSessionCloses()
+    {
+        final ClientSession first = session(1);
+        final ClientSession second = session(2);
+        sessionUsers.bind(1, 500, true);
+        sessionUsers.bind(2, 500, true);
+
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        rfqs.createRfq(2L, 10_000, 200, Side.BUY, CUSIP, 501);
+        rfqs.quoteRfq(3L, 2, 500, 1_000);
+        rfqs.createRfq(4L, 10_000, 200, Side.BUY, CUSIP, 502);
+
+        clientSessions.removeSession(first, 2_000);
+        verify(responder, never()).broadcastUserRfqsClosed(anyInt(), any(IntArrayList.class), any(IntArrayList.class));
+        Assertions.assertEquals(3, rfqs.getRfqCount());
+
+        clientSessions.removeSession(second, 2_000);
+        Assertions.assertEquals(1, canceled.size());
+        Assertions.assertEquals(1, canceled.getInt(0));
+        Assertions.assertEquals(1, expired.size());
+        Assertions.assertEquals(2, expired.getInt(0));
+        Assertions.assertEquals(1, rfqs.getRfqCount());
+        Assertions.assertEquals(1, rfqs.getExpiryEngine().pendingCount());
+        Assertions.assertEquals(0, rfqs.getIndex().countByUser(500));
+        verify(responder, never()).broadcastRfqCanceled(any(Rfq.class));
+    }
+
+    @Test
+    public void leavesRfqsOpenWithoutCancelOnDisconnect()
+    {
+        final ClientSession first = session(1);
+        sessionUsers.bind(1, 500, false);
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+
+        clientSessions.removeSession(first, 2_000);
+
+        Assertions.assertEquals(1, rfqs.getRfqCount());
+        Assertions.assertEquals(SessionUsers.NO_USER, sessionUsers.userOf(1));
+        verify(responder, never()).broadcastUserRfqsClosed(anyInt(), any(IntArrayList.class), any(IntArrayList.class));
+    }
+
+    private ClientSession session(final long sessionId)
+    {
+        final ClientSession session = mock(ClientSession.class);
+        when(session.id()).thenReturn(sessionId);
+        clientSessions.addSession(session, 1_000);
+        return session;
+    }
+}
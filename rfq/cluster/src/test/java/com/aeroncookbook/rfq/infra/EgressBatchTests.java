@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqConfirmEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqCreatedEventDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.domain.rfq.HeapRfq;
+import io.aeron.cluster.client.AeronCluster;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.logbuffer.BufferClaim;
+import io.aeron.protocol.DataHeaderFlyweight;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EgressBatchTests
+{
+    private static final int PAYLOAD_OFFSET = DataHeaderFlyweight.HEADER_LENGTH + AeronCluster.SESSION_HEADER_LENGTH;
+
+    private final ClientSessions clientSessions = new ClientSessions();
+    private final SessionMessageContextImpl context = new SessionMessageContextImpl(
+        clientSessions, new ServiceConfig().egressMode(EgressMode.BATCHED));
+    private final ClusterClientResponder responder = new ClusterClientResponderImpl(context);
+    private final ClientSession session = mock(ClientSession.class);
+    private final List<UnsafeBuffer> claimedFrames = new ArrayList<>();
+
+    public EgressBatchTests()
+    {
+        when(session.id()).thenReturn(1L);
+        when(session.tryClaim(anyInt(), any(BufferClaim.class))).thenAnswer(invocation ->
+        {
+            final int length = invocation.getArgument(0);
+            final BufferClaim claim = invocation.getArgument(1);
+            final UnsafeBuffer frame = new UnsafeBuffer(new byte[PAYLOAD_OFFSET + length]);
+            claim.wrap(frame, 0, frame.capacity());
+            claimedFrames.add(frame);
+            return 1L;
+        });
+        clientSessions.addSession(session, 0);
+        context.setSessionContext(session, 0);
+    }
+
+    @Test
+    public void holdsConfirmAndBroadcastUntilFlushedThenClaimsEachInOrder()
+    {
+        final HeapRfq rfq = new HeapRfq(1, 1L, 10_000, 200, Side.BUY, "037833100", 500);
+        responder.createRfqConfirm(1L, rfq, CreateRfqResult.SUCCESS);
+        responder.broadcastNewRfq(rfq);
+
+        Assertions.assertTrue(claimedFrames.isEmpty());
+        Assertions.assertEquals(2, context.flushEgress());
+        Assertions.assertEquals(0, context.flushEgress());
+
+        verify(session, never()).offer(any(DirectBuffer.class), anyInt(), anyInt());
+        Assertions.assertEquals(2, claimedFrames.size());
+        Assertions.assertEquals(CreateRfqConfirmEventDecoder.TEMPLATE_ID, templateId(claimedFrames.get(0)));
+        Assertions.assertEquals(RfqCreatedEventDecoder.TEMPLATE_ID, templateId(claimedFrames.get(1)));
+    }
+
+    @Test
+    public void immediateModeOffersAsEncoded()
+    {
+        final SessionMessageContextImpl immediate = new SessionMessageContextImpl(clientSessions, new ServiceConfig());
+        immediate.setSessionContext(session, 0);
+        when(session.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenReturn(1L);
+
+        new ClusterClientResponderImpl(immediate).createRfqConfirm(1L, null, CreateRfqResult.UNKNOWN_USER);
+
+        verify(session).offer(any(DirectBuffer.class), anyInt(), anyInt());
+        Assertions.assertEquals(0, immediate.flushEgress());
+        Assertions.assertTrue(claimedFrames.isEmpty());
+    }
+
+    private static int templateId(final UnsafeBuffer frame)
+    {
+        return new MessageHeaderDecoder().wrap(frame, PAYLOAD_OFFSET).templateId();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqCommandDecoder;
+import org.HdrHistogram.EncodableHistogram;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.agrona.concurrent.CachedEpochClock;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileNotFoundException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+public class LatencyLogAgentTests
+{
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void writesTaggedIntervalsAndRollsOver() throws FileNotFoundException
+    {
+        final LatencyRecorderImpl latencyRecorder = new LatencyRecorderImpl();
+        final CachedEpochClock clock = new CachedEpochClock();
+        clock.update(1_000);
+        final LatencyLogAgent agent = new LatencyLogAgent(
+            latencyRecorder, tempDir.resolve("latency.hlog"), clock, 100, 1_000);
+
+        latencyRecorder.sessionOffer(1);
+        agent.onStart();
+        latencyRecorder.sessionMessage(CreateRfqCommandDecoder.TEMPLATE_ID, 2_000);
+        latencyRecorder.sessionMessage(CreateRfqCommandDecoder.TEMPLATE_ID, 3_000);
+        latencyRecorder.sessionMessage(-1, 4_000);
+        latencyRecorder.timerEvent(Long.MAX_VALUE);
+        Assertions.assertEquals(0, agent.doWork());
+
+        clock.update(1_100);
+        Assertions.assertEquals(1, agent.doWork());
+        latencyRecorder.sessionMessage(QuoteRfqCommandDecoder.TEMPLATE_ID, 5_000);
+        clock.update(2_000);
+        agent.doWork();
+        latencyRecorder.sessionOffer(6_000);
+        agent.onClose();
+
+        final Map<String, Long> firstCounts = readCounts(agent.rolledFile(1_000));
+        Assertions.assertEquals(2L, firstCounts.get("onSessionMessage.CreateRfqCommand"));
+        Assertions.assertEquals(1L, firstCounts.get("onSessionMessage.Other"));
+        Assertions.assertEquals(1L, firstCounts.get("onSessionMessage.QuoteRfqCommand"));
+        Assertions.assertEquals(1L, firstCounts.get("onTimerEvent"));
+        Assertions.assertNull(firstCounts.get("offerToSession"));
+
+        final Map<String, Long> rolledCounts = readCounts(agent.rolledFile(2_000));
+        Assertions.assertEquals(Map.of("offerToSession", 1L), rolledCounts);
+    }
+
+    private static Map<String, Long> readCounts(final Path file) throws FileNotFoundException
+    {
+        final Map<String, Long> counts = new HashMap<>();
+        final HistogramLogReader reader = new HistogramLogReader(file.toFile());
+        try
+        {
+            EncodableHistogram histogram;
+            while (null != (histogram = reader.nextIntervalHistogram()))
+            {
+                final Histogram interval = (Histogram)histogram;
+                counts.merge(interval.getTag(), interval.getTotalCount(), Long::sum);
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.ObserverRfqStatesDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.rfq.HeapRfq;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import io.aeron.Publication;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.CachedEpochClock;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ObserverFeedAgentTests
+{
+    private final ObserverFeedImpl feed =
+        new ObserverFeedImpl(RingBuffers.newRingBuffer(ObserverFeedImpl.DEFAULT_CAPACITY));
+    private final RfqTestFixture fixture = new RfqTestFixture(new ServiceConfig().observerFeed(feed));
+    private final Rfqs rfqs = fixture.rfqs;
+    private final CachedEpochClock clock = new CachedEpochClock();
+    private final List<UnsafeBuffer> published = new ArrayList<>();
+    private final ObserverFeedAgent underTest;
+
+    public ObserverFeedAgentTests()
+    {
+        fixture.addInstrument(CUSIP);
+
+        final Publication publication = mock(Publication.class);
+        when(publication.maxPayloadLength()).thenReturn(1376);
+        when(publication.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenAnswer(invocation ->
+        {
+            final DirectBuffer buffer = invocation.getArgument(0);
+            final int length = invocation.getArgument(2);
+            final UnsafeBuffer copy = new UnsafeBuffer(new byte[length]);
+            copy.putBytes(0, buffer, invocation.<Integer>getArgument(1), length);
+            published.add(copy);
+            return (long)published.size();
+        });
+        underTest = new ObserverFeedAgent(feed, publication, clock, 100);
+    }
+
+    @Test
+    public void publishesLatestStateOfEachChangedRfqOncePerInterval()
+    {
+        feed.roleChanged(true);
+        underTest.doWork();
+        Assertions.assertEquals(1, published.size());
+        Assertions.assertEquals(BooleanType.TRUE, decode(0).snapshot());
+
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        rfqs.quoteRfq(2L, 1, 501, 1_000);
+        rfqs.counterRfq(3L, 1, 500, 990);
+        rfqs.createRfq(4L, 10_000, 200, Side.SELL, CUSIP, 502);
+        rfqs.cancelRfq(5L, 2, 502);
+        underTest.doWork();
+        Assertions.assertEquals(1, published.size());
+
+        clock.update(100);
+        underTest.doWork();
+        Assertions.assertEquals(2, published.size());
+        final ObserverRfqStatesDecoder delta = decode(1);
+        Assertions.assertEquals(BooleanType.FALSE, delta.snapshot());
+        Assertions.assertEquals(2, delta.sequence());
+        final ObserverRfqStatesDecoder.RfqsDecoder states = delta.rfqs();
+        Assertions.assertEquals(2, states.count());
+        states.next();
+        Assertions.assertEquals(1, states.rfqId());
+        Assertions.assertEquals(990, states.price());
+        Assertions.assertEquals(RfqStates.COUNTERED.getStateId(), states.state());
+        states.next();
+        Assertions.assertEquals(2, states.rfqId());
+        Assertions.assertEquals(RfqStates.CANCELED.getStateId(), states.state());
+        Assertions.assertEquals(1, underTest.rfqCount());
+    }
+
+    @Test
+    public void followerKeepsStatesAndPublishesOnceLeader()
+    {
+        feed.roleChanged(false);
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        for (int interval = 0; interval < ObserverFeedAgent.SNAPSHOT_INTERVALS; interval++)
+        {
+            clock.update(interval * 100L);
+            underTest.doWork();
+        }
+        Assertions.assertTrue(published.isEmpty());
+        Assertions.assertEquals(1, underTest.rfqCount());
+
+        feed.roleChanged(true);
+        clock.update(ObserverFeedAgent.SNAPSHOT_INTERVALS * 100L);
+        underTest.doWork();
+
+        Assertions.assertEquals(1, published.size());
+        final ObserverRfqStatesDecoder snapshot = decode(0);
+        Assertions.assertEquals(BooleanType.TRUE, snapshot.snapshot());
+        Assertions.assertEquals(BooleanType.TRUE, snapshot.lastPage());
+        final ObserverRfqStatesDecoder.RfqsDecoder states = snapshot.rfqs();
+        Assertions.assertEquals(1, states.count());
+        Assertions.assertEquals(CUSIP, states.next().cusip());
+    }
+
+    @Test
+    public void roleChangeIsNotLostWhenRingBufferIsFull()
+    {
+        final HeapRfq rfq = new HeapRfq(1, 1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        while (feed.droppedRecords() == 0)
+        {
+            feed.rfqUpdated(rfq);
+        }
+        feed.roleChanged(true);
+        underTest.doWork();
+
+        Assertions.assertEquals(1, published.size());
+        Assertions.assertEquals(BooleanType.TRUE, decode(0).snapshot());
+        Assertions.assertEquals(1, decode(0).rfqs().count());
+    }
+
+    @Test
+    public void releasesRfqWhoseTerminalStateWasDroppedOnceLongExpired()
+    {
+        feed.roleChanged(true);
+        underTest.doWork();
+        //the RFQ's terminal state never arrives, as if dropped from a full ring buffer
+        feed.rfqUpdated(new HeapRfq(1, 1L, 10_000, 200, Side.BUY, CUSIP, 500));
+        for (int interval = 1; interval <= ObserverFeedAgent.SNAPSHOT_INTERVALS; interval++)
+        {
+            clock.update(interval * 100L);
+            underTest.doWork();
+        }
+        Assertions.assertEquals(1, underTest.rfqCount());
+        Assertions.assertEquals(1, decode(published.size() - 1).rfqs().count());
+
+        for (int interval = 1; interval <= ObserverFeedAgent.SNAPSHOT_INTERVALS; interval++)
+        {
+            clock.update(11_000 + interval * 100L);
+            underTest.doWork();
+        }
+        final ObserverRfqStatesDecoder snapshot = decode(published.size() - 1);
+        Assertions.assertEquals(BooleanType.TRUE, snapshot.snapshot());
+        Assertions.assertEquals(0, snapshot.rfqs().count());
+        Assertions.assertEquals(0, underTest.rfqCount());
+    }
+
+    private ObserverRfqStatesDecoder decode(final int index)
+    {
+        return new ObserverRfqStatesDecoder().wrapAndApplyHeader(published.get(index), 0, new MessageHeaderDecoder());
+    }
+}
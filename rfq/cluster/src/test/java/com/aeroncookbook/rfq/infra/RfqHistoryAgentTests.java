@@ -0,0 +1,217 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.BooleanType;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QueryRfqHistoryEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqHistoryListDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.rfq.HeapRfq;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import io.aeron.Publication;
+import io.aeron.Subscription;
+import io.aeron.logbuffer.FragmentHandler;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.ringbuffer.RingBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+import static com.aeroncookbook.rfq.RfqTestFixture.OTHER_CUSIP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RfqHistoryAgentTests
+{
+    private final RingBuffer ringBuffer = RingBuffers.newRingBuffer(RfqHistoryImpl.DEFAULT_CAPACITY);
+    private final RfqHistoryImpl history = new RfqHistoryImpl(ringBuffer);
+    private final RfqTestFixture fixture = new RfqTestFixture(new ServiceConfig().rfqHistory(history));
+    private final Rfqs rfqs = fixture.rfqs;
+    private final List<UnsafeBuffer> queries = new ArrayList<>();
+    private final List<UnsafeBuffer> answers = new ArrayList<>();
+
+    @TempDir
+    private Path tempDir;
+
+    public RfqHistoryAgentTests()
+    {
+        fixture.addInstrument(CUSIP);
+        fixture.addInstrument(OTHER_CUSIP);
+    }
+
+    @Test
+    public void storesEvictedRfqsAndAnswersQueriesByIdAndCusip()
+    {
+        rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        rfqs.createRfq(2L, 10_000, 300, Side.SELL, CUSIP, 500);
+        rfqs.createRfq(3L, 10_000, 400, Side.BUY, CUSIP, 500);
+        rfqs.createRfq(4L, 10_000, 500, Side.BUY, OTHER_CUSIP, 501);
+        rfqs.cancelRfq(5L, 1, 500);
+        rfqs.cancelRfq(6L, 2, 500);
+        rfqs.cancelRfq(7L, 4, 501);
+
+        final RfqHistoryStore store = new RfqHistoryStore(tempDir.resolve("history.dat"), 4096);
+        //a payload of 100 bytes fits a single RFQ per page
+        final RfqHistoryAgent agent = new RfqHistoryAgent(
+            ringBuffer, store, querySubscription(), responsePublication(100));
+        query(10L, 0, CUSIP, 0);
+        query(11L, 4, "", 0);
+        query(12L, 3, "", 0);
+        agent.doWork();
+
+        Assertions.assertEquals(3, store.recordCount());
+        Assertions.assertEquals(4, answers.size());
+        assertPage(answers.get(0), 10L, false, 2);
+        assertPage(answers.get(1), 10L, true, 1);
+        assertPage(answers.get(2), 11L, true, 4);
+        assertPage(answers.get(3), 12L, true);
+        Assertions.assertEquals(0, history.droppedRecords());
+        agent.onClose();
+    }
+
+    @Test
+    public void rebuildsIndexesOnReopenWithoutDuplicatingReplayedEvictions()
+    {
+        for (int i = 1; i <= 5; i++)
+        {
+            rfqs.createRfq(i, 10_000, 200, Side.BUY, CUSIP, 500);
+            rfqs.cancelRfq(100L + i, i, 500);
+        }
+
+        //the store grows by two records at a time, so appending five remaps it
+        final Path file = tempDir.resolve("history.dat");
+        final RfqHistoryAgent agent = new RfqHistoryAgent(
+            ringBuffer, new RfqHistoryStore(file, 2 * RfqHistoryStore.RECORD_LENGTH), null, null);
+        Assertions.assertEquals(5, agent.doWork());
+        agent.onClose();
+
+        final UnsafeBuffer record = new UnsafeBuffer(new byte[RfqHistoryStore.RECORD_LENGTH]);
+        try (RfqHistoryStore store = new RfqHistoryStore(file, 2 * RfqHistoryStore.RECORD_LENGTH))
+        {
+            Assertions.assertEquals(5, store.recordCount());
+            final int found = store.findRecord(3);
+            Assertions.assertEquals(3, store.record(found).rfqId());
+            Assertions.assertEquals(RfqStates.CANCELED.getStateId(), store.record(found).state());
+            Assertions.assertEquals(RfqHistoryStore.NOT_FOUND, store.findRecord(6));
+
+            record.putBytes(0, store.record(found).buffer(), store.record(found).offset() -
+                MessageHeaderDecoder.ENCODED_LENGTH, RfqHistoryStore.RECORD_LENGTH);
+            Assertions.assertFalse(store.append(record, 0));
+            Assertions.assertEquals(5, store.recordCount());
+        }
+    }
+
+    @Test
+    public void dropsAndCountsEvictionsRatherThanWaitingWhenRingBufferIsFull()
+    {
+        //a 1KB ring buffer holds a dozen records, and the service thread must not wait for the agent to drain it
+        final RingBuffer smallRingBuffer = RingBuffers.newRingBuffer(1024);
+        final RfqHistoryImpl smallHistory = new RfqHistoryImpl(smallRingBuffer);
+        for (int rfqId = 1; rfqId <= 200; rfqId++)
+        {
+            smallHistory.rfqArchived(new HeapRfq(rfqId, rfqId, 10_000, 200, Side.BUY, CUSIP, 500));
+        }
+
+        final RfqHistoryStore store = new RfqHistoryStore(tempDir.resolve("history.dat"), 4096);
+        final RfqHistoryAgent agent = new RfqHistoryAgent(smallRingBuffer, store, null, null);
+        final int stored = agent.doWork();
+
+        Assertions.assertTrue(stored > 0);
+        Assertions.assertEquals(200 - stored, smallHistory.droppedRecords());
+        Assertions.assertEquals(stored, store.recordCount());
+        Assertions.assertEquals(1, store.record(store.findRecord(1)).rfqId());
+        agent.onClose();
+    }
+
+    private void query(final long requestId, final int rfqId, final String cusip, final int maxResults)
+    {
+        final UnsafeBuffer buffer = new UnsafeBuffer(
+            new byte[MessageHeaderEncoder.ENCODED_LENGTH + QueryRfqHistoryEncoder.BLOCK_LENGTH]);
+        new QueryRfqHistoryEncoder().wrapAndApplyHeader(buffer, 0, new MessageHeaderEncoder())
+            .requestId(requestId)
+            .rfqId(rfqId)
+            .cusip(cusip)
+            .maxResults(maxResults);
+        queries.add(buffer);
+    }
+
+    private static void assertPage(
+        final UnsafeBuffer answer,
+        final long requestId,
+        final boolean lastPage,
+        final int... rfqIds)
+    {
+        final RfqHistoryListDecoder decoder = new RfqHistoryListDecoder()
+            .wrapAndApplyHeader(answer, 0, new MessageHeaderDecoder());
+        Assertions.assertEquals(requestId, decoder.requestId());
+        Assertions.assertEquals(lastPage ? BooleanType.TRUE : BooleanType.FALSE, decoder.lastPage());
+        final List<Integer> actual = new ArrayList<>();
+        for (final RfqHistoryListDecoder.RfqsDecoder rfq : decoder.rfqs())
+        {
+            Assertions.assertEquals(RfqStates.CANCELED.getStateId(), rfq.state());
+            actual.add(rfq.rfqId());
+        }
+        final List<Integer> expected = new ArrayList<>();
+        for (final int rfqId : rfqIds)
+        {
+            expected.add(rfqId);
+        }
+        Assertions.assertEquals(expected, actual);
+    }
+
+    private Subscription querySubscription()
+    {
+        final Subscription subscription = mock(Subscription.class);
+        when(subscription.poll(any(FragmentHandler.class), anyInt())).thenAnswer(invocation ->
+        {
+            final FragmentHandler handler = invocation.getArgument(0);
+            final int fragments = queries.size();
+            queries.forEach(query -> handler.onFragment(query, 0, query.capacity(), null));
+            queries.clear();
+            return fragments;
+        });
+        return subscription;
+    }
+
+    private Publication responsePublication(final int maxPayloadLength)
+    {
+        final Publication publication = mock(Publication.class);
+        when(publication.maxPayloadLength()).thenReturn(maxPayloadLength);
+        when(publication.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenAnswer(invocation ->
+        {
+            final DirectBuffer buffer = invocation.getArgument(0);
+            final int length = invocation.getArgument(2);
+            final UnsafeBuffer copy = new UnsafeBuffer(new byte[length]);
+            copy.putBytes(0, buffer, invocation.<Integer>getArgument(1), length);
+            answers.add(copy);
+            return (long)answers.size();
+        });
+        return publication;
+    }
+}
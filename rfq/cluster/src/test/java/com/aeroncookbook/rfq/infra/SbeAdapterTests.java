@@ -0,0 +1,116 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.CommandBatchEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqCommandEncoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import io.aeron.cluster.service.ClientSession;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class SbeAdapterTests
+{
+    private final RfqTestFixture fixture = new RfqTestFixture(ClusterClientResponderImpl::new, new ServiceConfig());
+    private final SbeAdapter underTest = new SbeAdapter(fixture.context, fixture.instruments, fixture.rfqs,
+        fixture.clientSessions.getSessionInterests(), fixture.clientSessions.getSessionUsers(), fixture.users,
+        fixture.responder);
+    private final ClientSession session = fixture.connectSession(1);
+    private final MessageHeaderEncoder headerEncoder = new MessageHeaderEncoder();
+    private final ExpandableArrayBuffer commandBuffer = new ExpandableArrayBuffer();
+    private final ExpandableArrayBuffer batchBuffer = new ExpandableArrayBuffer();
+
+    public SbeAdapterTests()
+    {
+        fixture.addInstrument(CUSIP);
+    }
+
+    @Test
+    public void appliesBatchedCommandsInOrderAndConfirmsEach()
+    {
+        final CommandBatchEncoder batch = new CommandBatchEncoder().wrapAndApplyHeader(batchBuffer, 0, headerEncoder);
+        final CommandBatchEncoder.CommandsEncoder commands = batch.commandsCount(3);
+        commands.next().putCommand(commandBuffer, 0, encodeCreate(1L));
+        commands.next().putCommand(commandBuffer, 0, encodeCreate(2L));
+        commands.next().putCommand(commandBuffer, 0, encodeQuote(3L, 2));
+
+        underTest.dispatch(batchBuffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + batch.encodedLength());
+
+        Assertions.assertEquals(2, fixture.rfqs.getRfqCount());
+        Assertions.assertEquals(RfqStates.CREATED, fixture.rfqs.getRfq(1).getCurrentState().getCurrentState());
+        Assertions.assertEquals(RfqStates.QUOTED, fixture.rfqs.getRfq(2).getCurrentState().getCurrentState());
+        //the session is not registered for broadcasts, so it sees only the confirm for each command
+        verify(session, times(3)).offer(any(DirectBuffer.class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void ignoresNestedBatch()
+    {
+        final UnsafeBuffer inner = new UnsafeBuffer(new byte[256]);
+        final CommandBatchEncoder innerBatch = new CommandBatchEncoder().wrapAndApplyHeader(inner, 0, headerEncoder);
+        innerBatch.commandsCount(1).next().putCommand(commandBuffer, 0, encodeCreate(1L));
+        final int innerLength = MessageHeaderEncoder.ENCODED_LENGTH + innerBatch.encodedLength();
+
+        final CommandBatchEncoder batch = new CommandBatchEncoder().wrapAndApplyHeader(batchBuffer, 0, headerEncoder);
+        final CommandBatchEncoder.CommandsEncoder commands = batch.commandsCount(2);
+        commands.next().putCommand(inner, 0, innerLength);
+        commands.next().putCommand(commandBuffer, 0, encodeCreate(2L));
+
+        underTest.dispatch(batchBuffer, 0, MessageHeaderEncoder.ENCODED_LENGTH + batch.encodedLength());
+
+        Assertions.assertEquals(1, fixture.rfqs.getRfqCount());
+        Assertions.assertEquals(2L, fixture.rfqs.getRfq(1).getCorrelationId());
+    }
+
+    private int encodeCreate(final long requestId)
+    {
+        final CreateRfqCommandEncoder encoder =
+            new CreateRfqCommandEncoder().wrapAndApplyHeader(commandBuffer, 0, headerEncoder);
+        encoder.requestId(requestId)
+            .expireTimeMs(10_000)
+            .quantity(200)
+            .requesterSide(Side.BUY)
+            .cusip(CUSIP)
+            .requesterUserId(500);
+        return MessageHeaderEncoder.ENCODED_LENGTH + encoder.encodedLength();
+    }
+
+    private int encodeQuote(final long requestId, final int rfqId)
+    {
+        final QuoteRfqCommandEncoder encoder =
+            new QuoteRfqCommandEncoder().wrapAndApplyHeader(commandBuffer, 0, headerEncoder);
+        encoder.requestId(requestId)
+            .rfqId(rfqId)
+            .responderUserId(501)
+            .price(1_000);
+        return MessageHeaderEncoder.ENCODED_LENGTH + encoder.encodedLength();
+    }
+}
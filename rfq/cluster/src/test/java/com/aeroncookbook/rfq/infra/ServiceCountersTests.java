@@ -0,0 +1,64 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.AuditEventType;
+import com.aeroncookbook.cluster.rfq.sbe.CreateRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.QuoteRfqResult;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.instrument.InstrumentAddType;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+
+public class ServiceCountersTests
+{
+    @Test
+    public void countsTransitionsAndDenialsByResultCode()
+    {
+        try (RfqTestFixture fixture = new RfqTestFixture(ClusterClientResponderImpl::new, new ServiceConfig()))
+        {
+            final ServiceCounters serviceCounters = fixture.serviceCounters;
+            final Rfqs rfqs = fixture.rfqs;
+            fixture.connectSession(1);
+            fixture.instruments.addInstrument(InstrumentAddType.INTERACTIVE, 1L, CUSIP, true, 100);
+
+            rfqs.createRfq(2L, 10_000, 200, Side.BUY, CUSIP, 500);
+            rfqs.createRfq(3L, 10_000, 200, Side.BUY, CUSIP, 500);
+            rfqs.createRfq(4L, 10_000, 200, Side.BUY, "594918104", 500);
+            rfqs.quoteRfq(5L, 1, 501, 1_000);
+            rfqs.quoteRfq(6L, 1, 502, 1_000);
+            rfqs.acceptRfq(7L, 1, 500);
+            serviceCounters.serviceState(rfqs.getRfqCount(), fixture.instruments.instrumentCount(), 1);
+
+            Assertions.assertEquals(2, serviceCounters.transitionCount(AuditEventType.RFQ_CREATED));
+            Assertions.assertEquals(1, serviceCounters.transitionCount(AuditEventType.RFQ_QUOTED));
+            Assertions.assertEquals(1, serviceCounters.transitionCount(AuditEventType.RFQ_ACCEPTED));
+            Assertions.assertEquals(0, serviceCounters.transitionCount(AuditEventType.RFQ_EXPIRED));
+            Assertions.assertEquals(1, serviceCounters.deniedCount(
+                AuditEventType.CREATE_DENIED, CreateRfqResult.UNKNOWN_CUSIP.value()));
+            Assertions.assertEquals(1, serviceCounters.deniedCount(
+                AuditEventType.QUOTE_DENIED, QuoteRfqResult.ANOTHER_USER_RESPONDED.value()));
+            Assertions.assertEquals(0, serviceCounters.deniedCount(
+                AuditEventType.QUOTE_DENIED, QuoteRfqResult.UNKNOWN_RFQ.value()));
+            Assertions.assertEquals(1, serviceCounters.liveRfqCount());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import io.aeron.Publication;
+import io.aeron.Aeron;
+import io.aeron.Counter;
+import io.aeron.cluster.service.ClientSession;
+import io.aeron.logbuffer.BufferClaim;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.agrona.concurrent.status.CountersManager;
+import org.agrona.concurrent.status.CountersReader;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SessionEgressTests
+{
+    private static final int MAX_QUEUED_BYTES = 64;
+    private static final int MESSAGE_LENGTH = 8;
+
+    private final UnsafeBuffer message = new UnsafeBuffer(new byte[MESSAGE_LENGTH]);
+    private final List<Long> delivered = new ArrayList<>();
+    private final ClientSession session = mock(ClientSession.class);
+    private boolean backPressured = true;
+
+    public SessionEgressTests()
+    {
+        when(session.id()).thenReturn(1L);
+        when(session.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenAnswer(invocation ->
+        {
+            if (backPressured)
+            {
+                return Publication.BACK_PRESSURED;
+            }
+            final DirectBuffer buffer = invocation.getArgument(0);
+            final int offset = invocation.getArgument(1);
+            delivered.add(buffer.getLong(offset));
+            return 1L;
+        });
+    }
+
+    @Test
+    public void queuesWhileBackPressuredAndDrainsInOrder()
+    {
+        final SessionEgress underTest = new SessionEgress(SlowConsumerPolicy.DROP, MAX_QUEUED_BYTES);
+        offer(underTest, 1);
+        offer(underTest, 2);
+
+        Assertions.assertEquals(0, underTest.doWork());
+        Assertions.assertEquals(1, underTest.getBackloggedQueues().size());
+        Assertions.assertTrue(underTest.getQueue(1).getQueuedBytes() > 0);
+
+        backPressured = false;
+        offer(underTest, 3);
+        Assertions.assertTrue(delivered.isEmpty());
+
+        Assertions.assertEquals(1, underTest.doWork());
+        Assertions.assertEquals(List.of(1L, 2L, 3L), delivered);
+        Assertions.assertTrue(underTest.getBackloggedQueues().isEmpty());
+    }
+
+    @Test
+    public void dropPolicyKeepsOldestMessages()
+    {
+        final SessionEgress underTest = new SessionEgress(SlowConsumerPolicy.DROP, MAX_QUEUED_BYTES);
+        for (long i = 1; i <= 6; i++)
+        {
+            offer(underTest, i);
+        }
+
+        backPressured = false;
+        underTest.doWork();
+
+        Assertions.assertEquals(List.of(1L, 2L, 3L, 4L), delivered);
+        Assertions.assertEquals(2, underTest.getQueue(1).getDroppedMessages());
+    }
+
+    @Test
+    public void dropOldestPolicyKeepsNewestMessages()
+    {
+        final SessionEgress underTest = new SessionEgress(SlowConsumerPolicy.DROP_OLDEST, MAX_QUEUED_BYTES);
+        for (long i = 1; i <= 6; i++)
+        {
+            offer(underTest, i);
+        }
+
+        backPressured = false;
+        underTest.doWork();
+
+        Assertions.assertEquals(List.of(3L, 4L, 5L, 6L), delivered);
+        Assertions.assertEquals(2, underTest.getQueue(1).getDroppedMessages());
+    }
+
+    @Test
+    public void disconnectPolicyClosesOnlyTheSlowSession()
+    {
+        final SessionEgress underTest = new SessionEgress(SlowConsumerPolicy.DISCONNECT, MAX_QUEUED_BYTES);
+        for (long i = 1; i <= 4; i++)
+        {
+            offer(underTest, i);
+        }
+        verify(session, never()).close();
+
+        offer(underTest, 5);
+
+        verify(session, times(1)).close();
+        Assertions.assertEquals(0, underTest.getQueue(1).getQueuedBytes());
+    }
+
+    @Test
+    public void publishesQueuedBytesAndDropsInPooledCountersAllocatedOnAttach()
+    {
+        final int counterCount = 3 * SessionEgress.COUNTER_SLOTS;
+        final CountersManager countersManager = new CountersManager(
+            new UnsafeBuffer(ByteBuffer.allocateDirect(counterCount * CountersReader.METADATA_LENGTH)),
+            new UnsafeBuffer(ByteBuffer.allocateDirect(counterCount * CountersReader.COUNTER_LENGTH)));
+        final List<Counter> counters = new ArrayList<>();
+        final Aeron aeron = mock(Aeron.class);
+        when(aeron.addCounter(anyInt(), anyString())).thenAnswer(invocation ->
+        {
+            final int counterId = countersManager.allocate(invocation.getArgument(1), invocation.getArgument(0));
+            counters.add(new Counter(countersManager, counterId));
+            return counters.get(counters.size() - 1);
+        });
+        final SessionEgress underTest = new SessionEgress(SlowConsumerPolicy.DROP, MAX_QUEUED_BYTES);
+        underTest.attach(aeron);
+        Assertions.assertEquals(counterCount, counters.size());
+
+        for (long i = 1; i <= 6; i++)
+        {
+            offer(underTest, i);
+        }
+
+        //the last slot allocated is the first taken
+        final int slot = counterCount - 3;
+        Assertions.assertEquals("Egress session id: slot=" + (SessionEgress.COUNTER_SLOTS - 1),
+            countersManager.getCounterLabel(counters.get(slot).id()));
+        Assertions.assertEquals(1, counters.get(slot).get());
+        Assertions.assertEquals(underTest.getQueue(1).getQueuedBytes(), counters.get(slot + 1).get());
+        Assertions.assertEquals(2, counters.get(slot + 2).get());
+
+        backPressured = false;
+        underTest.doWork();
+        Assertions.assertEquals(0, counters.get(slot + 1).get());
+
+        underTest.onSessionClosed(1);
+        Assertions.assertEquals(0, counters.get(slot).get());
+        Assertions.assertEquals(0, counters.get(slot + 2).get());
+        Assertions.assertFalse(counters.get(slot).isClosed());
+        verify(aeron, times(counterCount)).addCounter(anyInt(), anyString());
+
+        underTest.close();
+        Assertions.assertTrue(counters.get(slot).isClosed());
+    }
+
+    @Test
+    public void offersMessagesLongerThanAFrameAtTheResponseChannelMtu()
+    {
+        when(session.responseChannel()).thenReturn("aeron:udp?endpoint=localhost:9020|mtu=512");
+        when(session.tryClaim(anyInt(), any(BufferClaim.class))).thenReturn(Publication.BACK_PRESSURED);
+        final SessionEgress underTest = new SessionEgress(SlowConsumerPolicy.DROP, 1024);
+        final UnsafeBuffer longMessage = new UnsafeBuffer(new byte[512]);
+        backPressured = false;
+
+        underTest.claim(session, longMessage, 0, longMessage.capacity());
+        underTest.claim(session, message, 0, MESSAGE_LENGTH);
+
+        verify(session, never()).tryClaim(eq(longMessage.capacity()), any(BufferClaim.class));
+        verify(session).offer(longMessage, 0, longMessage.capacity());
+        verify(session).tryClaim(eq(MESSAGE_LENGTH), any(BufferClaim.class));
+    }
+
+    private void offer(final SessionEgress egress, final long value)
+    {
+        message.putLong(0, value);
+        egress.offer(session, message, 0, MESSAGE_LENGTH);
+    }
+}
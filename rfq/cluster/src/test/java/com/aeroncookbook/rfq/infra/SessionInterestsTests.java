@@ -0,0 +1,89 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.InterestType;
+import org.agrona.collections.LongHashSet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class SessionInterestsTests
+{
+    private static final String CUSIP = "037833100";
+    private static final String OTHER_CUSIP = "594918104";
+
+    private final SessionInterests underTest = new SessionInterests();
+    private final LongHashSet recipients = new LongHashSet();
+
+    @Test
+    public void newSessionReceivesEverything()
+    {
+        underTest.addSession(1);
+
+        underTest.collectRecipients(CUSIP, 500, 501, recipients);
+
+        Assertions.assertTrue(recipients.contains(1));
+    }
+
+    @Test
+    public void filteredSessionReceivesOnlyMatchingEventsOnce()
+    {
+        underTest.addSession(1);
+        underTest.addSession(2);
+        underTest.subscribe(1, InterestType.CUSIP, CUSIP, 0);
+        underTest.subscribe(1, InterestType.USER, "", 500);
+        underTest.subscribe(2, InterestType.USER, "", 600);
+
+        underTest.collectRecipients(CUSIP, 500, 0, recipients);
+        Assertions.assertEquals(1, recipients.size());
+        Assertions.assertTrue(recipients.contains(1));
+
+        underTest.collectRecipients(OTHER_CUSIP, 700, 600, recipients);
+        Assertions.assertEquals(1, recipients.size());
+        Assertions.assertTrue(recipients.contains(2));
+    }
+
+    @Test
+    public void closedSessionIsRemovedFromIndexes()
+    {
+        underTest.addSession(1);
+        underTest.subscribe(1, InterestType.CUSIP, CUSIP, 0);
+        underTest.removeSession(1);
+
+        underTest.collectRecipients(CUSIP, 500, 0, recipients);
+
+        Assertions.assertTrue(recipients.isEmpty());
+    }
+
+    @Test
+    public void interestsSurviveRestore()
+    {
+        underTest.addSession(1);
+        underTest.addSession(2);
+        underTest.unsubscribe(1, InterestType.ALL, "", 0);
+        underTest.subscribe(2, InterestType.USER, "", 500);
+
+        final SessionInterests restored = new SessionInterests();
+        underTest.forEachFilteredSession(restored::restoreInterest);
+        restored.addSession(1);
+        restored.addSession(2);
+
+        restored.collectRecipients(CUSIP, 500, 0, recipients);
+        Assertions.assertEquals(1, recipients.size());
+        Assertions.assertTrue(recipients.contains(2));
+    }
+}
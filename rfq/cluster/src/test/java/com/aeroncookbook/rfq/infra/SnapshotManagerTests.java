@@ -0,0 +1,366 @@
+/*
+ * Copyright 2023 Adaptive Financial Consulting
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.aeroncookbook.rfq.infra;
+
+import com.aeroncookbook.cluster.rfq.sbe.MessageHeaderDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.RfqTombstoneRecordDecoder;
+import com.aeroncookbook.cluster.rfq.sbe.Side;
+import com.aeroncookbook.rfq.RfqTestFixture;
+import com.aeroncookbook.rfq.domain.instrument.Cusip;
+import com.aeroncookbook.rfq.domain.instrument.Instruments;
+import com.aeroncookbook.rfq.domain.rfq.Rfq;
+import com.aeroncookbook.rfq.domain.rfq.RfqCommandType;
+import com.aeroncookbook.rfq.domain.rfq.Rfqs;
+import com.aeroncookbook.rfq.domain.rfq.states.RfqStates;
+import com.aeroncookbook.rfq.domain.users.Users;
+import io.aeron.ExclusivePublication;
+import io.aeron.Image;
+import io.aeron.cluster.client.ClusterException;
+import io.aeron.logbuffer.ControlledFragmentHandler;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.NoOpIdleStrategy;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.aeroncookbook.rfq.RfqTestFixture.CUSIP;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SnapshotManagerTests
+{
+    @Test
+    public void canRestoreDomainFromSnapshot()
+    {
+        final Node source = new Node();
+        source.fixture.addInstrument(CUSIP);
+        source.rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        source.rfqs.createRfq(2L, 20_000, 300, Side.SELL, CUSIP, 501);
+        source.rfqs.quoteRfq(3L, 2, 502, 1_000);
+        source.users.addUser(4L, 600, true, false);
+        source.users.disableUser(5L, 501);
+
+        final List<UnsafeBuffer> records = new ArrayList<>();
+        source.snapshotManager.takeSnapshot(capturingPublication(records));
+
+        final Node restored = new Node();
+        for (final UnsafeBuffer record : records)
+        {
+            restored.snapshotManager.onFragment(record, 0, record.capacity(), null);
+        }
+
+        Assertions.assertEquals(1, restored.instruments.instrumentCount());
+        Assertions.assertEquals(4, restored.users.userCount());
+        Assertions.assertTrue(restored.users.canRequest(600));
+        Assertions.assertFalse(restored.users.canRespond(600));
+        Assertions.assertFalse(restored.users.isValidUser(501));
+        Assertions.assertEquals(2, restored.rfqs.getRfqIdSequence());
+        Assertions.assertEquals(2, restored.rfqs.getRfqCount());
+        Assertions.assertEquals(
+            source.timerManager.getCorrelationIdSequence(), restored.timerManager.getCorrelationIdSequence());
+        Assertions.assertEquals(source.timerManager.getPendingTimers(), restored.timerManager.getPendingTimers());
+
+        final Rfq quoted = restored.rfqs.getRfq(2);
+        Assertions.assertEquals(RfqStates.QUOTED, quoted.getCurrentState().getCurrentState());
+        Assertions.assertEquals(502, quoted.getResponderUserId());
+        Assertions.assertEquals(1_000, quoted.getPrice());
+        Assertions.assertEquals(2L, quoted.getCorrelationId());
+
+        Assertions.assertEquals(source.rfqs.getCommandWindow().size(), restored.rfqs.getCommandWindow().size());
+        final int slot = restored.rfqs.getCommandWindow().find(502, 3L);
+        Assertions.assertEquals(RfqCommandType.QUOTE, restored.rfqs.getCommandWindow().commandType(slot));
+        Assertions.assertEquals(2, restored.rfqs.getCommandWindow().rfqId(slot));
+    }
+
+    @Test
+    public void restoredRfqExpiresOnTimerAndIsEvicted()
+    {
+        final Node source = new Node();
+        source.fixture.addInstrument(CUSIP);
+        source.rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+
+        final List<UnsafeBuffer> records = new ArrayList<>();
+        source.snapshotManager.takeSnapshot(capturingPublication(records));
+
+        final Node restored = new Node();
+        records.forEach(record -> restored.snapshotManager.onFragment(record, 0, record.capacity(), null));
+        final long tickTimerId = restored.rfqs.getExpiryEngine().getTickTimerCorrelationId();
+        Assertions.assertEquals(source.rfqs.getExpiryEngine().getTickTimerCorrelationId(), tickTimerId);
+        Assertions.assertEquals(1, restored.rfqs.getExpiryEngine().pendingCount());
+        restored.timerManager.onTimerEvent(tickTimerId, 10_000);
+
+        Assertions.assertNull(restored.rfqs.getRfq(1));
+        Assertions.assertEquals(0, restored.rfqs.getRfqCount());
+        Assertions.assertTrue(restored.timerManager.getPendingTimers().isEmpty());
+    }
+
+    @Test
+    public void loadsSnapshotImageUpToEndMarker()
+    {
+        final Node source = new Node();
+        source.fixture.addInstrument(CUSIP);
+        for (int i = 0; i < 1_000; i++)
+        {
+            source.rfqs.createRfq(i, 10_000, 200, Side.BUY, CUSIP, 500);
+        }
+
+        final List<UnsafeBuffer> records = new ArrayList<>();
+        source.snapshotManager.takeSnapshot(capturingPublication(records));
+
+        //the image never reaches end of stream, so loading must stop at the end of snapshot marker
+        final Node restored = new Node();
+        restored.snapshotManager.loadSnapshot(snapshotImage(records));
+
+        Assertions.assertEquals(1_000, restored.rfqs.getRfqCount());
+        Assertions.assertEquals(1, restored.instruments.instrumentCount());
+        Assertions.assertSame(
+            restored.instruments.lookup(Cusip.encode(CUSIP)).getCusip(), restored.rfqs.getRfq(1).getCusip());
+    }
+
+    @Test
+    public void restoresDeltaSnapshotFromChainOfBases()
+    {
+        final FakeSnapshotRecordings recordings = new FakeSnapshotRecordings();
+        final Node source = new Node();
+        source.snapshotManager.enableDeltaSnapshots(recordings, 3);
+        source.fixture.addInstrument(CUSIP);
+        source.rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        source.rfqs.createRfq(2L, 10_000, 300, Side.SELL, CUSIP, 501);
+        source.rfqs.createRfq(3L, 10_000, 400, Side.BUY, CUSIP, 502);
+        final List<UnsafeBuffer> full = recordings.take(source, 100);
+
+        source.rfqs.quoteRfq(4L, 1, 502, 1_000);
+        source.rfqs.cancelRfq(5L, 2, 501);
+        final List<UnsafeBuffer> firstDelta = recordings.take(source, 200);
+
+        source.rfqs.createRfq(6L, 10_000, 500, Side.SELL, CUSIP, 500);
+        source.rfqs.cancelRfq(7L, 3, 502);
+        final List<UnsafeBuffer> secondDelta = recordings.take(source, 300);
+
+        Assertions.assertEquals(3, countRecords(full, RfqRecordDecoder.TEMPLATE_ID));
+        Assertions.assertEquals(1, countRecords(secondDelta, RfqRecordDecoder.TEMPLATE_ID));
+        Assertions.assertEquals(1, countRecords(secondDelta, RfqTombstoneRecordDecoder.TEMPLATE_ID));
+
+        final Node restored = new Node();
+        restored.snapshotManager.enableDeltaSnapshots(recordings, 3);
+        restored.snapshotManager.loadSnapshot(snapshotImage(secondDelta));
+
+        Assertions.assertEquals(2, restored.rfqs.getRfqCount());
+        Assertions.assertEquals(RfqStates.QUOTED, restored.rfqs.getRfq(1).getCurrentState().getCurrentState());
+        Assertions.assertEquals(1_000, restored.rfqs.getRfq(1).getPrice());
+        Assertions.assertNull(restored.rfqs.getRfq(2));
+        Assertions.assertNull(restored.rfqs.getRfq(3));
+        Assertions.assertEquals(500, restored.rfqs.getRfq(4).getRequesterUserId());
+        Assertions.assertEquals(4, restored.rfqs.getRfqIdSequence());
+        Assertions.assertEquals(source.timerManager.getPendingTimers(), restored.timerManager.getPendingTimers());
+
+        //the restored node continues the chain where the source left off, so its next snapshot compacts it
+        restored.rfqs.quoteRfq(8L, 4, 501, 2_000);
+        final List<UnsafeBuffer> compacted = recordings.take(restored, 400);
+        final Node fromCompacted = new Node();
+        fromCompacted.snapshotManager.loadSnapshot(snapshotImage(compacted));
+        Assertions.assertEquals(2, fromCompacted.rfqs.getRfqCount());
+        Assertions.assertEquals(2_000, fromCompacted.rfqs.getRfq(4).getPrice());
+    }
+
+    @Test
+    public void takesDeltaOfLoadedSnapshotAsFirstSnapshotAfterRestart()
+    {
+        final FakeSnapshotRecordings recordings = new FakeSnapshotRecordings();
+        final Node source = new Node();
+        source.snapshotManager.enableDeltaSnapshots(recordings, 3);
+        source.fixture.addInstrument(CUSIP);
+        source.rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        source.rfqs.createRfq(2L, 10_000, 300, Side.SELL, CUSIP, 501);
+        final List<UnsafeBuffer> full = recordings.take(source, 100);
+
+        final Node restarted = new Node();
+        restarted.snapshotManager.enableDeltaSnapshots(recordings, 3);
+        restarted.snapshotManager.loadSnapshot(snapshotImage(full));
+        restarted.rfqs.cancelRfq(3L, 2, 501);
+        final List<UnsafeBuffer> delta = recordings.take(restarted, 200);
+
+        Assertions.assertEquals(0, countRecords(delta, RfqRecordDecoder.TEMPLATE_ID));
+        Assertions.assertEquals(1, countRecords(delta, RfqTombstoneRecordDecoder.TEMPLATE_ID));
+        final Node restored = new Node();
+        restored.snapshotManager.enableDeltaSnapshots(recordings, 3);
+        restored.snapshotManager.loadSnapshot(snapshotImage(delta));
+        Assertions.assertEquals(1, restored.rfqs.getRfqCount());
+        Assertions.assertNull(restored.rfqs.getRfq(2));
+    }
+
+    @Test
+    public void takesFullSnapshotWhenLatestRecordingIsNotTheTrackedSnapshot()
+    {
+        final FakeSnapshotRecordings recordings = new FakeSnapshotRecordings();
+        final Node source = new Node();
+        source.snapshotManager.enableDeltaSnapshots(recordings, 10);
+        source.fixture.addInstrument(CUSIP);
+        source.rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        source.rfqs.createRfq(2L, 10_000, 300, Side.SELL, CUSIP, 501);
+        final List<UnsafeBuffer> full = recordings.take(source, 100);
+
+        //a snapshot taken by another node at a later position is now the latest in the recording log
+        recordings.add(150, new ArrayList<>());
+        final List<UnsafeBuffer> next = recordings.take(source, 200);
+
+        Assertions.assertEquals(full.size(), next.size());
+        final Node restored = new Node();
+        restored.snapshotManager.loadSnapshot(snapshotImage(next));
+        Assertions.assertEquals(2, restored.rfqs.getRfqCount());
+    }
+
+    @Test
+    public void failsToLoadDeltaWhoseBaseIsNotTheSnapshotItWasTakenAgainst()
+    {
+        final FakeSnapshotRecordings recordings = new FakeSnapshotRecordings();
+        final Node source = new Node();
+        source.snapshotManager.enableDeltaSnapshots(recordings, 3);
+        source.fixture.addInstrument(CUSIP);
+        source.rfqs.createRfq(1L, 10_000, 200, Side.BUY, CUSIP, 500);
+        recordings.take(source, 100);
+        source.rfqs.createRfq(2L, 10_000, 300, Side.SELL, CUSIP, 501);
+        final List<UnsafeBuffer> delta = recordings.take(source, 200);
+
+        recordings.replace(0, new ArrayList<>());
+        final Node restored = new Node();
+        restored.snapshotManager.enableDeltaSnapshots(recordings, 3);
+        Assertions.assertThrows(ClusterException.class,
+            () -> restored.snapshotManager.loadSnapshot(snapshotImage(delta)));
+    }
+
+    private static Image snapshotImage(final List<UnsafeBuffer> records)
+    {
+        final Image image = mock(Image.class);
+        final int[] position = {0};
+        when(image.controlledPoll(any(ControlledFragmentHandler.class), anyInt())).thenAnswer(invocation ->
+        {
+            final ControlledFragmentHandler handler = invocation.getArgument(0);
+            final int fragmentLimit = invocation.getArgument(1);
+            int fragments = 0;
+            while (fragments < fragmentLimit && position[0] < records.size())
+            {
+                final UnsafeBuffer record = records.get(position[0]++);
+                fragments++;
+                if (handler.onFragment(record, 0, record.capacity(), null) == ControlledFragmentHandler.Action.BREAK)
+                {
+                    break;
+                }
+            }
+            return fragments;
+        });
+        return image;
+    }
+
+    private static ExclusivePublication capturingPublication(final List<UnsafeBuffer> records)
+    {
+        final ExclusivePublication publication = mock(ExclusivePublication.class);
+        when(publication.offer(any(DirectBuffer.class), anyInt(), anyInt())).thenAnswer(invocation ->
+        {
+            final DirectBuffer buffer = invocation.getArgument(0);
+            final int offset = invocation.getArgument(1);
+            final int length = invocation.getArgument(2);
+            final UnsafeBuffer copy = new UnsafeBuffer(new byte[length]);
+            copy.putBytes(0, buffer, offset, length);
+            records.add(copy);
+            return (long)records.size();
+        });
+        return publication;
+    }
+
+    private static long countRecords(final List<UnsafeBuffer> records, final int templateId)
+    {
+        final MessageHeaderDecoder headerDecoder = new MessageHeaderDecoder();
+        return records.stream().filter(record -> headerDecoder.wrap(record, 0).templateId() == templateId).count();
+    }
+
+    private static void replay(final List<UnsafeBuffer> records, final ControlledFragmentHandler handler)
+    {
+        for (final UnsafeBuffer record : records)
+        {
+            if (handler.onFragment(record, 0, record.capacity(), null) == ControlledFragmentHandler.Action.BREAK)
+            {
+                return;
+            }
+        }
+    }
+
+    private static final class FakeSnapshotRecordings implements SnapshotRecordings
+    {
+        private final Map<Long, List<UnsafeBuffer>> recordsById = new TreeMap<>();
+        private final Map<Long, Long> logPositionById = new TreeMap<>();
+
+        private List<UnsafeBuffer> take(final Node node, final long logPosition)
+        {
+            final List<UnsafeBuffer> records = new ArrayList<>();
+            node.snapshotManager.takeSnapshot(capturingPublication(records), logPosition);
+            add(logPosition, records);
+            return records;
+        }
+
+        private void add(final long logPosition, final List<UnsafeBuffer> records)
+        {
+            final long recordingId = recordsById.size();
+            recordsById.put(recordingId, records);
+            logPositionById.put(recordingId, logPosition);
+        }
+
+        private void replace(final long recordingId, final List<UnsafeBuffer> records)
+        {
+            recordsById.put(recordingId, records);
+        }
+
+        @Override
+        public long findLatestSnapshot(final long logPosition)
+        {
+            final long latest = recordsById.size() - 1;
+            return latest >= 0 && logPositionById.get(latest) == logPosition ? latest : NULL_RECORDING_ID;
+        }
+
+        @Override
+        public void replay(final long recordingId, final ControlledFragmentHandler handler)
+        {
+            SnapshotManagerTests.replay(recordsById.get(recordingId), handler);
+        }
+    }
+
+    private static final class Node
+    {
+        private final RfqTestFixture fixture = new RfqTestFixture(ClusterClientResponderImpl::new, new ServiceConfig());
+        private final TimerManager timerManager = fixture.timerManager;
+        private final Instruments instruments = fixture.instruments;
+        private final Users users = fixture.users;
+        private final Rfqs rfqs = fixture.rfqs;
+        private final SnapshotManager snapshotManager = new SnapshotManager(
+            fixture.context, instruments, users, rfqs, timerManager, fixture.clientSessions.getSessionInterests(),
+            fixture.clientSessions.getSessionUsers());
+
+        private Node()
+        {
+            fixture.connectSession(1);
+            snapshotManager.setIdleStrategy(NoOpIdleStrategy.INSTANCE);
+        }
+    }
+}
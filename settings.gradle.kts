@@ -20,4 +20,4 @@ include ("sbe-core", "sbe-protocol", "archive-core", "async", "ipc-core", "aeron
     "theory", "agrona", "archive-multi-host:archive-host", "archive-multi-host:archive-client",
     "archive-replication:archive-client", "archive-replication:archive-host", "archive-replication:archive-backup",
     "archive-replication:common", "aeron-mdc:aeron-mdc-publisher", "aeron-mdc:aeron-mdc-subscriber",
-    "rfq:cluster", "rfq:cluster-protocol", "rfq:admin")
+    "rfq:cluster", "rfq:cluster-protocol", "rfq:admin", "rfq:benchmarks")